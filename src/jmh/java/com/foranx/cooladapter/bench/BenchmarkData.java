@@ -0,0 +1,110 @@
+package com.foranx.cooladapter.bench;
+
+import com.foranx.cooladapter.config.AppConfiguration;
+import com.foranx.cooladapter.config.JobConfiguration;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Synthetic payment files and the job that maps them, shared by the benchmarks.
+ * The data is generated from a fixed seed so every run measures the same input.
+ */
+final class BenchmarkData {
+
+    static final String HEADER = "ID,DEBIT.ACCT,CREDIT.ACCT,AMOUNT,CURRENCY,VALUE.DATE,NAME,NARRATIVE";
+
+    private static final String[] NAMES = {
+            "Иванов Иван Иванович", "Петренко Олена", "Щукин Андрей", "John Smith", "Müller Jürgen",
+            "Ковальчук Юлія", "Smith & Sons Ltd", "Жуков Георгий"
+    };
+    private static final String[] NARRATIVES = {
+            "Salary payment", "  Оплата по договору № 15  ", "Invoice 2024/118, \"urgent\"",
+            "Transfer between own accounts", "Возврат средств", ""
+    };
+    private static final String[] CURRENCIES = {"USD", "EUR", "UAH", "RUB"};
+
+    private BenchmarkData() {}
+
+    /** Writes a CSV file of at least {@code bytes} bytes with a header line. */
+    static Path writeCsv(Path dir, long bytes) throws IOException {
+        Path file = dir.resolve("payments-" + bytes + ".csv");
+        Random random = new Random(42);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.write('\n');
+            long id = 1;
+            while (Files.size(file) < bytes) {
+                for (int i = 0; i < 10_000; i++) {
+                    out.write(row(random, id++));
+                    out.write('\n');
+                }
+                out.flush();
+            }
+        }
+        return file;
+    }
+
+    static String row(Random random, long id) {
+        String narrative = NARRATIVES[random.nextInt(NARRATIVES.length)];
+        if (narrative.indexOf(',') >= 0 || narrative.indexOf('"') >= 0) {
+            narrative = '"' + narrative.replace("\"", "\"\"") + '"';
+        }
+        return "FT" + id
+                + ",UA" + (100000000L + random.nextInt(900000000))
+                + ",UA" + (100000000L + random.nextInt(900000000))
+                + "," + random.nextInt(1_000_000) + "." + random.nextInt(100)
+                + "," + CURRENCIES[random.nextInt(CURRENCIES.length)]
+                + ",2024" + String.format("%02d%02d", 1 + random.nextInt(12), 1 + random.nextInt(28))
+                + "," + NAMES[random.nextInt(NAMES.length)]
+                + "," + narrative;
+    }
+
+    /** A name or narrative value: mixed scripts, some padded, some empty. */
+    static String text(Random random) {
+        return random.nextBoolean()
+                ? NAMES[random.nextInt(NAMES.length)]
+                : NARRATIVES[random.nextInt(NARRATIVES.length)];
+    }
+
+    /** A FUNDS.TRANSFER job over {@link #HEADER} with the usual trim/upper/translit chains. */
+    static JobConfiguration job(String readMode) {
+        return new JobConfiguration(jobProperties(readMode), new AppConfiguration());
+    }
+
+    /** The job of {@link #job}, as written to a job folder's {@code .properties} file. */
+    static Properties jobProperties(String readMode) {
+        Properties props = new Properties();
+        props.setProperty("application", "FUNDS.TRANSFER");
+        props.setProperty("version", "BULK");
+        props.setProperty("skipHeader", "true");
+        props.setProperty("readMode", readMode);
+        props.setProperty("idColumn", "1");
+        props.setProperty("field.2", "DEBIT.ACCT.NO");
+        props.setProperty("field.3", "CREDIT.ACCT.NO");
+        props.setProperty("field.4", "DEBIT.AMOUNT");
+        props.setProperty("field.5", "DEBIT.CURRENCY");
+        props.setProperty("field.6", "DEBIT.VALUE.DATE");
+        props.setProperty("field.7", "ORDERING.CUST:1:1");
+        props.setProperty("field.8", "PAYMENT.DETAILS:1:1");
+        props.setProperty("col.7", "trim,upper,translit");
+        props.setProperty("col.8", "trim,translit");
+        return props;
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (var paths = Files.walk(dir)) {
+            for (Path p : paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.foranx.cooladapter.bench;
+
+import com.foranx.cooladapter.config.JobConfiguration;
+import com.foranx.cooladapter.ofs.OfsBuilder;
+import com.foranx.cooladapter.parser.DataParser;
+import com.foranx.cooladapter.parser.DataRecord;
+import com.foranx.cooladapter.parser.ParallelFileParser;
+import com.foranx.cooladapter.parser.RecordReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File to OFS messages with a producer that drops every message: the same two paths as
+ * {@code FileProcessor.convert}, sequential and record-aligned parallel chunks, the latter
+ * on platform or virtual threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+    @Param({"STREAM", "MMAP"})
+    public String readMode;
+
+    @Param({"sequential", "platform", "virtual"})
+    public String threads;
+
+    @Param({"32"})
+    public int sizeMb;
+
+    @Param({"4"})
+    public int chunkMb;
+
+    private Path dir;
+    private Path file;
+    private JobConfiguration job;
+    private ExecutorService executor;
+    private ParallelFileParser parallelParser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("conversion-bench");
+        file = BenchmarkData.writeCsv(dir, (long) sizeMb << 20);
+        job = BenchmarkData.job(readMode);
+        int cores = Runtime.getRuntime().availableProcessors();
+        executor = switch (threads) {
+            case "sequential" -> null;
+            case "platform" -> Executors.newFixedThreadPool(cores);
+            case "virtual" -> Executors.newVirtualThreadPerTaskExecutor();
+            default -> throw new IllegalArgumentException("Unknown threads: " + threads);
+        };
+        if (executor != null) {
+            parallelParser = new ParallelFileParser(executor, cores * 2);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        BenchmarkData.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long convert(Blackhole producer) throws IOException {
+        DataParser parser = job.getParser();
+        OfsBuilder builder = job.getOfsBuilder();
+        if (parallelParser == null) {
+            long records = 0;
+            try (RecordReader reader = parser.open(file)) {
+                boolean skip = job.isSkipHeader();
+                while (reader.next()) {
+                    DataRecord record = reader.record();
+                    if (skip) {
+                        skip = false;
+                        continue;
+                    }
+                    producer.consume(builder.build(record));
+                    records++;
+                }
+            }
+            return records;
+        }
+
+        long[] records = {0};
+        parallelParser.parse(parser, file, 0, 1, (long) chunkMb << 20,
+                (chunk, reader) -> {
+                    List<String> messages = new ArrayList<>(1024);
+                    StringBuilder out = new StringBuilder(1024);
+                    boolean skip = job.isSkipHeader() && chunk.index() == 0;
+                    while (reader.next()) {
+                        if (skip) {
+                            skip = false;
+                            continue;
+                        }
+                        out.setLength(0);
+                        messages.add(builder.appendTo(out, reader.record()).toString());
+                    }
+                    return messages;
+                },
+                (chunk, messages) -> {
+                    for (String message : messages) {
+                        producer.consume(message);
+                    }
+                    records[0] += messages.size();
+                });
+        return records[0];
+    }
+}
@@ -0,0 +1,75 @@
+package com.foranx.cooladapter.bench;
+
+import com.foranx.cooladapter.parser.CsvDataParser;
+import com.foranx.cooladapter.parser.DataRecord;
+import com.foranx.cooladapter.parser.ReadMode;
+import com.foranx.cooladapter.parser.RecordReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to read every field of a synthetic CSV file, {@code mmap} against positional reads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvParserBenchmark {
+
+    @Param({"STREAM", "MMAP"})
+    public ReadMode readMode;
+
+    @Param({"32"})
+    public int sizeMb;
+
+    private Path dir;
+    private Path file;
+    private CsvDataParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("csv-bench");
+        file = BenchmarkData.writeCsv(dir, (long) sizeMb << 20);
+        parser = new CsvDataParser(',', '"', StandardCharsets.UTF_8, readMode);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long parseFile(Blackhole bh) throws IOException {
+        long records = 0;
+        try (RecordReader reader = parser.open(file)) {
+            while (reader.next()) {
+                DataRecord record = reader.record();
+                for (int i = 0; i < record.fieldCount(); i++) {
+                    bh.consume(record.field(i).length());
+                }
+                records++;
+            }
+        }
+        return records;
+    }
+}
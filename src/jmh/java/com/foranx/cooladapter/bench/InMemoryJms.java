@@ -0,0 +1,124 @@
+package com.foranx.cooladapter.bench;
+
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Broker stand-in for {@code JmsProducer}: a {@link ConnectionFactory} whose transacted
+ * sessions hand the texts of each committed transaction to a listener instead of a queue.
+ * Only the calls the adapter makes are implemented; the rest throw. A commit can be made to
+ * take {@code commitLatencyMs}, to model the round trip to a real broker.
+ */
+final class InMemoryJms {
+
+    private final Consumer<List<String>> onCommit;
+    private final long commitLatencyNanos;
+
+    /** @param onCommit called on the committing thread with the texts sent in the transaction */
+    InMemoryJms(Consumer<List<String>> onCommit, double commitLatencyMs) {
+        this.onCommit = onCommit;
+        this.commitLatencyNanos = (long) (commitLatencyMs * 1_000_000);
+    }
+
+    ConnectionFactory connectionFactory() {
+        return proxy(ConnectionFactory.class, (self, method, args) -> switch (method.getName()) {
+            case "createConnection" -> connection();
+            default -> unsupported(self, method.getName(), args);
+        });
+    }
+
+    private Connection connection() {
+        return proxy(Connection.class, (self, method, args) -> switch (method.getName()) {
+            case "createSession" -> session();
+            case "setExceptionListener", "start", "stop", "close" -> null;
+            default -> unsupported(self, method.getName(), args);
+        });
+    }
+
+    private Session session() {
+        List<String> transaction = new ArrayList<>();
+        return proxy(Session.class, (self, method, args) -> switch (method.getName()) {
+            case "createQueue" -> queue((String) args[0]);
+            case "createProducer" -> producer(transaction);
+            case "createTextMessage" -> message(args == null ? null : (String) args[0]);
+            case "commit" -> {
+                if (commitLatencyNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(commitLatencyNanos);
+                }
+                onCommit.accept(List.copyOf(transaction));
+                transaction.clear();
+                yield null;
+            }
+            case "rollback" -> {
+                transaction.clear();
+                yield null;
+            }
+            case "getTransacted" -> true;
+            case "close" -> null;
+            default -> unsupported(self, method.getName(), args);
+        });
+    }
+
+    private static Queue queue(String name) {
+        return proxy(Queue.class, (self, method, args) -> switch (method.getName()) {
+            case "getQueueName", "toString" -> name;
+            default -> unsupported(self, method.getName(), args);
+        });
+    }
+
+    private static MessageProducer producer(List<String> transaction) {
+        return proxy(MessageProducer.class, (self, method, args) -> switch (method.getName()) {
+            case "send" -> {
+                transaction.add(((TextMessage) args[0]).getText());
+                yield null;
+            }
+            case "close" -> null;
+            default -> unsupported(self, method.getName(), args);
+        });
+    }
+
+    /** A text message that keeps whatever headers are set on it. */
+    private static TextMessage message(String text) {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("Text", text);
+        return proxy(TextMessage.class, (self, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length == 1) {
+                headers.put(name.substring(3), args[0]);
+                return null;
+            }
+            if (name.startsWith("get") && args == null) {
+                return headers.get(name.substring(3));
+            }
+            return unsupported(self, name, args);
+        });
+    }
+
+    private static Object unsupported(Object self, String method, Object[] args) throws JMSException {
+        return switch (method) {
+            case "hashCode" -> System.identityHashCode(self);
+            case "equals" -> self == args[0];
+            case "toString" -> self.getClass().getInterfaces()[0].getSimpleName() + "@in-memory";
+            default -> throw new JMSException("Not supported by the in-memory broker: " + method);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(InMemoryJms.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
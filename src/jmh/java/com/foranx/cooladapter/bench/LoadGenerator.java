@@ -0,0 +1,133 @@
+package com.foranx.cooladapter.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+/**
+ * Writes synthetic job folders and payment files into a watched directory.
+ * <p>
+ * Everything is derived from the seed: file {@code n} has the same size, content, job folder
+ * and arrival offset in every run, so two runs differ only in how the adapter handled them.
+ * Record counts follow a log-normal distribution around {@code medianRecords} ({@code spread}
+ * is its sigma; 0 makes every file the same size), and arrivals are either evenly spaced at
+ * {@code rate} files per second or a Poisson process of that rate. Record IDs are
+ * {@code FT<file * 1000000 + record>}, so every message can be traced back to its file.
+ */
+final class LoadGenerator {
+
+    static final int MAX_RECORDS = 999_999;
+
+    private final Path root;
+    private final int jobs;
+    private final int medianRecords;
+    private final double spread;
+    private final double rate;
+    private final boolean poisson;
+    private final String readyMarker;
+    private final long seed;
+
+    /**
+     * @param rate        files per second; 0 writes them as fast as possible
+     * @param readyMarker suffix of the marker written after each file, or empty to rely on the quiet period
+     */
+    LoadGenerator(Path root, int jobs, int medianRecords, double spread, double rate, boolean poisson,
+                  String readyMarker, long seed) {
+        if (jobs < 1 || medianRecords < 1 || medianRecords > MAX_RECORDS || spread < 0 || rate < 0) {
+            throw new IllegalArgumentException("Invalid load: jobs=" + jobs + ", records=" + medianRecords
+                    + ", spread=" + spread + ", rate=" + rate);
+        }
+        this.root = root;
+        this.jobs = jobs;
+        this.medianRecords = medianRecords;
+        this.spread = spread;
+        this.rate = rate;
+        this.poisson = poisson;
+        this.readyMarker = readyMarker;
+        this.seed = seed;
+    }
+
+    /** Creates the job folders, each with the benchmark job's {@code .properties} file. */
+    void createJobs() throws IOException {
+        for (int j = 0; j < jobs; j++) {
+            Path dir = Files.createDirectories(jobDir(j));
+            try (OutputStream out = Files.newOutputStream(dir.resolve("job.properties"))) {
+                BenchmarkData.jobProperties("STREAM").store(out, "Generated by LoadGenerator");
+            }
+        }
+    }
+
+    /** Arrival of each of {@code files} files, in nanoseconds after the start. */
+    long[] schedule(int files) {
+        long[] offsets = new long[files];
+        if (rate == 0) {
+            return offsets;
+        }
+        Random random = new Random(seed);
+        double at = 0;
+        for (int i = 0; i < files; i++) {
+            offsets[i] = (long) (at * 1e9);
+            at += poisson ? -Math.log(1 - random.nextDouble()) / rate : 1 / rate;
+        }
+        return offsets;
+    }
+
+    /** Records in file {@code n}. */
+    int records(int n) {
+        if (spread == 0) {
+            return medianRecords;
+        }
+        double size = medianRecords * Math.exp(spread * new Random(seed ^ (n * 0x9E3779B97F4A7C15L)).nextGaussian());
+        return (int) Math.max(1, Math.min(MAX_RECORDS, Math.round(size)));
+    }
+
+    /**
+     * Writes file {@code n} under a name the adapter ignores and renames it into place, so it
+     * appears complete. Returns the file, which waits for {@link #markReady} or the quiet period.
+     */
+    Path write(int n) throws IOException {
+        Path dir = jobDir(n % jobs);
+        String name = String.format("load-%06d.csv", n);
+        Path partial = dir.resolve(name + ".part");
+        Random random = new Random(seed + n);
+        int records = records(n);
+        long firstId = (long) n * 1_000_000;
+        try (BufferedWriter out = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+            out.write(BenchmarkData.HEADER);
+            out.write('\n');
+            for (int r = 0; r < records; r++) {
+                out.write(BenchmarkData.row(random, firstId + r));
+                out.write('\n');
+            }
+        }
+        return Files.move(partial, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Writes the ready marker of {@code file}, if markers are used. */
+    void markReady(Path file) throws IOException {
+        if (!readyMarker.isEmpty()) {
+            Files.createFile(file.resolveSibling(file.getFileName() + readyMarker));
+        }
+    }
+
+    /** Calls {@code action} with the file number of every record in a message, one call per record. */
+    static void forEachRecord(String message, IntConsumer action) {
+        for (int at = message.indexOf(",FT"); at >= 0; at = message.indexOf(",FT", at + 3)) {
+            long id = 0;
+            for (int i = at + 3; i < message.length() && Character.isDigit(message.charAt(i)); i++) {
+                id = id * 10 + (message.charAt(i) - '0');
+            }
+            action.accept((int) (id / 1_000_000));
+        }
+    }
+
+    private Path jobDir(int job) {
+        return root.resolve(String.format("job-%02d", job));
+    }
+}
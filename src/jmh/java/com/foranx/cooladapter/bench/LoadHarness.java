@@ -0,0 +1,220 @@
+package com.foranx.cooladapter.bench;
+
+import com.foranx.cooladapter.config.AppConfiguration;
+import com.foranx.cooladapter.core.DirectoryWatcher;
+import com.foranx.cooladapter.core.FileProcessor;
+import com.foranx.cooladapter.metrics.LatencyHistogram;
+import com.foranx.cooladapter.mq.JmsConnectionFactory;
+import com.foranx.cooladapter.mq.JmsProducer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Capacity test of the whole pipeline on one machine: {@link LoadGenerator} writes files into
+ * a temporary watched directory while a real {@link DirectoryWatcher} and {@link FileProcessor}
+ * handle them, sending to {@link InMemoryJms} instead of a broker. Reports throughput and the
+ * latency from a file's appearance to the commit of each of its records, and of its last one.
+ * <p>
+ * Arguments are {@code key=value}. Load keys: {@code seed} (42), {@code jobs} (4), {@code files}
+ * (200), {@code rate} files per second (20; 0 for as fast as possible), {@code arrival}
+ * ({@code fixed} or {@code poisson}), {@code records} median per file (1000), {@code spread}
+ * log-normal sigma of the file size (0), {@code commitLatencyMs} (0), {@code timeoutS} (600)
+ * and {@code dir} to keep the files in a given directory. Any other key overrides an
+ * {@code application.properties} setting, e.g. {@code workerThreads=16 jmsBatchSize=500}.
+ * <pre>
+ *   mvn -P jmh test-compile exec:exec -Dbench.main=com.foranx.cooladapter.bench.LoadHarness \
+ *       -Djmh.args="files=1000 rate=50 records=5000 spread=1 arrival=poisson"
+ * </pre>
+ * With a fixed rate the latencies show whether the instance keeps up with that load; with
+ * {@code rate=0} the throughput is its capacity. The same seed replays the same files. The
+ * generator shares the JVM and the cores with the adapter, which matters on small machines.
+ */
+public final class LoadHarness {
+
+    private static final Map<String, String> LOAD_DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        LOAD_DEFAULTS.put("seed", "42");
+        LOAD_DEFAULTS.put("jobs", "4");
+        LOAD_DEFAULTS.put("files", "200");
+        LOAD_DEFAULTS.put("rate", "20");
+        LOAD_DEFAULTS.put("arrival", "fixed");
+        LOAD_DEFAULTS.put("records", "1000");
+        LOAD_DEFAULTS.put("spread", "0");
+        LOAD_DEFAULTS.put("commitLatencyMs", "0");
+        LOAD_DEFAULTS.put("timeoutS", "600");
+        LOAD_DEFAULTS.put("dir", "");
+    }
+
+    private LoadHarness() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> load = new LinkedHashMap<>(LOAD_DEFAULTS);
+        Properties app = new Properties();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                System.err.println("Arguments are key=value; load keys are " + LOAD_DEFAULTS.keySet()
+                        + ", any other key is an application.properties setting");
+                System.exit(2);
+            }
+            String key = arg.substring(0, eq).trim();
+            String value = arg.substring(eq + 1).trim();
+            if (LOAD_DEFAULTS.containsKey(key)) {
+                load.put(key, value);
+            } else {
+                app.setProperty(key, value);
+            }
+        }
+
+        boolean temporary = load.get("dir").isEmpty();
+        Path root = temporary ? Files.createTempDirectory("cooladapter-load")
+                : Files.createDirectories(Path.of(load.get("dir")));
+        try {
+            run(load, app, root);
+        } finally {
+            if (temporary) {
+                BenchmarkData.deleteRecursively(root);
+            }
+        }
+    }
+
+    private static void run(Map<String, String> load, Properties overrides, Path root) throws Exception {
+        int files = Integer.parseInt(load.get("files"));
+        Path watched = Files.createDirectories(root.resolve("in"));
+        Files.createDirectories(root.resolve("log"));
+
+        Properties props = new Properties();
+        props.setProperty("directory", watched.toString());
+        props.setProperty("stateDirectory", root.resolve("state").toString());
+        props.setProperty("logFolder", root.resolve("log").resolve("adapter.log").toString());
+        props.setProperty("fallbackLogName", "fallback.log");
+        props.setProperty("instanceId", "load");
+        props.setProperty("logLevel", "WARNING");
+        props.setProperty("fileQuietMs", "200");
+        props.putAll(overrides);
+        AppConfiguration config = new AppConfiguration();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        props.store(bytes, null);
+        config.init(new ByteArrayInputStream(bytes.toByteArray()));
+        Logger.getLogger("com.foranx").setLevel(Level.parse(config.getLogLevel().trim().toUpperCase()));
+
+        LoadGenerator generator = new LoadGenerator(watched, Integer.parseInt(load.get("jobs")),
+                Integer.parseInt(load.get("records")), Double.parseDouble(load.get("spread")),
+                Double.parseDouble(load.get("rate")), load.get("arrival").equalsIgnoreCase("poisson"),
+                config.getReadyMarker(), Long.parseLong(load.get("seed")));
+        generator.createJobs();
+        long[] schedule = generator.schedule(files);
+        AtomicIntegerArray remaining = new AtomicIntegerArray(files);
+        long totalRecords = 0;
+        for (int n = 0; n < files; n++) {
+            remaining.set(n, generator.records(n));
+            totalRecords += generator.records(n);
+        }
+
+        AtomicLongArray appeared = new AtomicLongArray(files);
+        LatencyHistogram recordLatency = new LatencyHistogram();
+        LatencyHistogram fileLatency = new LatencyHistogram();
+        LongAdder committed = new LongAdder();
+        AtomicLong lastCommit = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(files);
+        InMemoryJms jms = new InMemoryJms(texts -> {
+            long now = System.nanoTime();
+            for (String text : texts) {
+                LoadGenerator.forEachRecord(text, n -> {
+                    if (n < 0 || n >= files) {
+                        return;
+                    }
+                    recordLatency.record(now - appeared.get(n));
+                    committed.increment();
+                    if (remaining.decrementAndGet(n) == 0) {
+                        fileLatency.record(now - appeared.get(n));
+                        done.countDown();
+                    }
+                });
+            }
+            lastCommit.accumulateAndGet(now, Math::max);
+        }, Double.parseDouble(load.get("commitLatencyMs")));
+
+        JmsProducer producer = new JmsProducer(
+                new JmsConnectionFactory(jms.connectionFactory(), "LOAD.QUEUE",
+                        config.getJmsConnections(), config.getJmsSessionsPerConnection()),
+                config.getJmsBatchSize(), config.getJmsLingerMs(), config.getJmsMaxInFlight(), config.getJmsSenders());
+        DirectoryWatcher watcher = new DirectoryWatcher(config, new FileProcessor(config, producer));
+        watcher.start();
+
+        System.out.printf("Load: %d files, %d records, %s%n", files, totalRecords, load);
+        long bytesWritten = 0;
+        long maxLagNanos = 0;
+        long started = System.nanoTime();
+        long nextReport = started + TimeUnit.SECONDS.toNanos(5);
+        try {
+            for (int n = 0; n < files; n++) {
+                long due = started + schedule[n];
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                Path file = generator.write(n);
+                long now = System.nanoTime();
+                appeared.set(n, now);
+                bytesWritten += Files.size(file);
+                generator.markReady(file);
+                maxLagNanos = Math.max(maxLagNanos, now - due);
+                if (now >= nextReport) {
+                    report(now - started, files - (int) done.getCount(), committed.sum());
+                    nextReport = now + TimeUnit.SECONDS.toNanos(5);
+                }
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Long.parseLong(load.get("timeoutS")));
+            while (!done.await(5, TimeUnit.SECONDS) && System.nanoTime() < deadline) {
+                report(System.nanoTime() - started, files - (int) done.getCount(), committed.sum());
+            }
+        } finally {
+            watcher.stop();
+        }
+
+        long elapsed = Math.max(1, (lastCommit.get() != 0 ? lastCommit.get() : System.nanoTime()) - started);
+        double seconds = elapsed / 1e9;
+        System.out.println();
+        if (done.getCount() > 0) {
+            System.out.printf("INCOMPLETE: %d of %d files not fully sent before timeoutS%n", done.getCount(), files);
+        }
+        System.out.printf("Elapsed      %.2f s (first file to last commit), generator lag max %.1f ms%n",
+                seconds, maxLagNanos / 1e6);
+        System.out.printf("Throughput   %.1f files/s, %.0f records/s, %.1f MB/s%n",
+                (files - done.getCount()) / seconds, committed.sum() / seconds, bytesWritten / seconds / (1 << 20));
+        printLatency("Record", recordLatency);
+        printLatency("File", fileLatency);
+    }
+
+    private static void report(long elapsedNanos, int filesDone, long records) {
+        System.out.printf("  %6.1f s: %d files, %d records sent%n", elapsedNanos / 1e9, filesDone, records);
+    }
+
+    private static void printLatency(String what, LatencyHistogram histogram) {
+        System.out.printf("%-12s p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, max %.1f ms (%d samples)%n",
+                what + " latency", ms(histogram.quantileNanos(0.5)), ms(histogram.quantileNanos(0.9)),
+                ms(histogram.quantileNanos(0.99)), ms(histogram.quantileNanos(0.999)),
+                ms(histogram.getMaxNanos()), histogram.getCount());
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1e6;
+    }
+}
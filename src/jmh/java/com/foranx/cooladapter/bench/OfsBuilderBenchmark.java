@@ -0,0 +1,93 @@
+package com.foranx.cooladapter.bench;
+
+import com.foranx.cooladapter.ofs.OfsBuilder;
+import com.foranx.cooladapter.parser.CsvDataParser;
+import com.foranx.cooladapter.parser.DataRecord;
+import com.foranx.cooladapter.parser.ReadMode;
+import com.foranx.cooladapter.parser.RecordReader;
+import com.foranx.cooladapter.util.ByteBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building one OFS message from an already parsed record, handlers included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OfsBuilderBenchmark {
+
+    private static final int RECORDS = 256;
+
+    private OfsBuilder builder;
+    private RecordReader[] readers;
+    private DataRecord[] records;
+    private StringBuilder out;
+
+    @Setup
+    public void setUp() throws IOException {
+        builder = BenchmarkData.job("STREAM").getOfsBuilder();
+        // DataRecord is a flyweight, so every record is held by its own reader
+        CsvDataParser parser = new CsvDataParser(',', '"', StandardCharsets.UTF_8, ReadMode.STREAM,
+                new ByteBufferPool(4096, 0), CsvDataParser.DEFAULT_MMAP_WINDOW);
+        Random random = new Random(42);
+        readers = new RecordReader[RECORDS];
+        records = new DataRecord[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            byte[] row = (BenchmarkData.row(random, i) + "\n").getBytes(StandardCharsets.UTF_8);
+            readers[i] = parser.open(Channels.newChannel(new ByteArrayInputStream(row)));
+            if (!readers[i].next()) {
+                throw new IllegalStateException("No record in " + new String(row, StandardCharsets.UTF_8));
+            }
+            records[i] = readers[i].record();
+        }
+        out = new StringBuilder(1024);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (RecordReader reader : readers) {
+            reader.close();
+        }
+    }
+
+    /** Into the builder's thread-local buffer, as the sequential path does. */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void build(Blackhole bh) {
+        for (DataRecord record : records) {
+            bh.consume(builder.build(record).length());
+        }
+    }
+
+    /** Into a caller buffer and copied out to a String, as parallel chunks do. */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void appendToString(Blackhole bh) {
+        for (DataRecord record : records) {
+            out.setLength(0);
+            bh.consume(builder.appendTo(out, record).toString());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.foranx.cooladapter.bench;
+
+import com.foranx.cooladapter.handler.ValueHandler;
+import com.foranx.cooladapter.handler.ValueHandlers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one compiled handler chain per value, over a mix of Latin and Cyrillic values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueHandlerBenchmark {
+
+    private static final int VALUES = 1024;
+
+    @Param({"trim", "upper", "translit", "trim,upper,translit"})
+    public String chain;
+
+    private ValueHandler handler;
+    private String[] values;
+
+    @Setup
+    public void setUp() {
+        handler = ValueHandlers.compile(chain);
+        Random random = new Random(42);
+        values = new String[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = BenchmarkData.text(random);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void apply(Blackhole bh) {
+        for (String value : values) {
+            bh.consume(handler.apply(value));
+        }
+    }
+}
@@ -7,6 +7,8 @@ import jakarta.servlet.annotation.*;
 
 @WebServlet(name = "helloServlet", value = "/hello-servlet")
 public class AppLifecycleListener extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
     private String message;
 
     public void init() {
@@ -1,7 +1,13 @@
 package com.foranx.cooladapter.config;
 
+import com.foranx.cooladapter.core.ExecutionMode;
+import com.foranx.cooladapter.core.StartupMode;
+import com.foranx.cooladapter.util.AsyncFileHandler;
+import com.foranx.cooladapter.util.FileUtils;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -15,10 +21,45 @@ public class AppConfiguration {
     private String fallbackLogName;
     private String credentials = "INPUTT/123456";
     private String logLevel = "INFO";
+    private boolean logAsync = true;
+    private int logBufferSize = 8192;
+    private AsyncFileHandler.Overflow logOverflow = AsyncFileHandler.Overflow.BLOCK;
+    private int logFlushMs = 200;
+    private long logMaxFileSize = 100L << 20;
+    private int logMaxFiles = 5;
     private String directory = "~/S_FILE_UPLOADER";
     private String activeMqUrl = "tcp://192.168.38.3:5445";
     private String queue = "java:/queue/t24DSPPACKAGERQueue";
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+    private StartupMode startupMode = StartupMode.SEQUENTIAL;
+    private int startupThreads = 8;
+    private int workerThreads = Runtime.getRuntime().availableProcessors();
+    private int archiveThreads = 2;
+    private int stageQueueCapacity = 256;
+    private int maxPendingFiles = 10_000;
+    private int folderConcurrency = 4;
+    private int parserThreads = Runtime.getRuntime().availableProcessors();
+    private int jmsConnections = 2;
+    private int jmsSessionsPerConnection = 4;
+    private int jmsSenders = 4;
+    private int jmsBatchSize = 200;
+    private int jmsLingerMs = 5;
+    private int jmsMaxInFlight = 5000;
+    private int fileQuietMs = 2000;
+    private int reconcileIntervalMs = 60_000;
+    private String readyMarker = ".done";
+    private String stateDirectory;
+    private int checkpointIntervalMs = 0;
+    private String instanceId = defaultInstanceId();
+    private int leaseTimeoutMs = 30_000;
+    private int journalRetentionHours = 168;
+    private String replyQueue = "";
+    private int replyTimeoutMs = 300_000;
+    private long lookupCacheSize = 512L << 20;
+    private int lookupReloadMs = 10_000;
     private static final Logger log = Logger.getLogger(AppConfiguration.class.getName());
+    /** Default worker count with virtual threads, which cost little while blocked on the broker. */
+    private static final int VIRTUAL_WORKERS = 64;
 
     public AppConfiguration() {
     }
@@ -46,10 +87,91 @@ public class AppConfiguration {
         queue = props.getProperty("queue", queue);
         credentials = props.getProperty("credentials", credentials);
         logLevel = props.getProperty("logLevel", logLevel);
+        logAsync = Boolean.parseBoolean(props.getProperty("logAsync", String.valueOf(logAsync)).trim());
+        logBufferSize = parseInt(props, "logBufferSize", logBufferSize);
+        String overflow = props.getProperty("logOverflow");
+        if (overflow != null && !overflow.isBlank()) {
+            try {
+                logOverflow = AsyncFileHandler.Overflow.valueOf(overflow.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Unknown logOverflow: " + overflow, e);
+            }
+        }
+        logFlushMs = parseInt(props, "logFlushMs", logFlushMs);
+        String maxFileSize = props.getProperty("logMaxFileSize");
+        if (maxFileSize != null && !maxFileSize.isBlank()) {
+            logMaxFileSize = FileUtils.parseSize(maxFileSize);
+        }
+        logMaxFiles = parseInt(props, "logMaxFiles", logMaxFiles);
+        String mode = props.getProperty("executionMode");
+        if (mode != null && !mode.isBlank()) {
+            try {
+                executionMode = ExecutionMode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Unknown executionMode: " + mode, e);
+            }
+        }
+        String startup = props.getProperty("startupMode");
+        if (startup != null && !startup.isBlank()) {
+            try {
+                startupMode = StartupMode.valueOf(startup.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Unknown startupMode: " + startup, e);
+            }
+        }
+        startupThreads = parseInt(props, "startupThreads", startupThreads);
+        workerThreads = parseInt(props, "workerThreads",
+                executionMode == ExecutionMode.VIRTUAL ? VIRTUAL_WORKERS : workerThreads);
+        archiveThreads = parseInt(props, "archiveThreads", archiveThreads);
+        stageQueueCapacity = parseInt(props, "stageQueueCapacity", stageQueueCapacity);
+        maxPendingFiles = parseInt(props, "maxPendingFiles", maxPendingFiles);
+        folderConcurrency = parseInt(props, "folderConcurrency", folderConcurrency);
+        parserThreads = parseInt(props, "parserThreads", parserThreads);
+        jmsConnections = parseInt(props, "jmsConnections", jmsConnections);
+        jmsSessionsPerConnection = parseInt(props, "jmsSessionsPerConnection", jmsSessionsPerConnection);
+        jmsSenders = parseInt(props, "jmsSenders", jmsSenders);
+        jmsBatchSize = parseInt(props, "jmsBatchSize", jmsBatchSize);
+        jmsLingerMs = parseInt(props, "jmsLingerMs", jmsLingerMs);
+        jmsMaxInFlight = parseInt(props, "jmsMaxInFlight", jmsMaxInFlight);
+        fileQuietMs = parseInt(props, "fileQuietMs", fileQuietMs);
+        reconcileIntervalMs = parseInt(props, "reconcileIntervalMs", reconcileIntervalMs);
+        readyMarker = props.getProperty("readyMarker", readyMarker).trim();
+        stateDirectory = props.getProperty("stateDirectory", stateDirectory);
+        checkpointIntervalMs = parseInt(props, "checkpointIntervalMs", checkpointIntervalMs);
+        instanceId = props.getProperty("instanceId", instanceId).trim();
+        leaseTimeoutMs = parseInt(props, "leaseTimeoutMs", leaseTimeoutMs);
+        journalRetentionHours = parseInt(props, "journalRetentionHours", journalRetentionHours);
+        replyQueue = props.getProperty("replyQueue", replyQueue).trim();
+        replyTimeoutMs = parseInt(props, "replyTimeoutMs", replyTimeoutMs);
+        String cacheSize = props.getProperty("lookupCacheSize");
+        if (cacheSize != null && !cacheSize.isBlank()) {
+            lookupCacheSize = FileUtils.parseSize(cacheSize);
+        }
+        lookupReloadMs = parseInt(props, "lookupReloadMs", lookupReloadMs);
 
         validate();
     }
 
+    private static String defaultInstanceId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "local";
+        }
+    }
+
+    private static int parseInt(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(key + " must be an integer: " + value, e);
+        }
+    }
+
     public void validate() {
         if (directory == null || !Files.isDirectory(Paths.get(directory))) {
             throw new IllegalStateException("Directory " + directory + " does not exist");
@@ -74,6 +196,57 @@ public class AppConfiguration {
                     "Fallback log directory does not exist: " + fallbackParent
             );
         }
+
+        if (logBufferSize < 2 || logFlushMs < 1 || logMaxFileSize < 0 || logMaxFiles < 1) {
+            throw new IllegalStateException("Invalid async logging settings: logBufferSize=" + logBufferSize
+                    + ", logFlushMs=" + logFlushMs + ", logMaxFileSize=" + logMaxFileSize + ", logMaxFiles=" + logMaxFiles);
+        }
+        if (workerThreads < 1 || folderConcurrency < 1) {
+            throw new IllegalStateException("workerThreads and folderConcurrency must be positive");
+        }
+        if (archiveThreads < 1 || stageQueueCapacity < 1 || maxPendingFiles < 1) {
+            throw new IllegalStateException("archiveThreads, stageQueueCapacity and maxPendingFiles must be positive");
+        }
+        if (startupThreads < 1) {
+            throw new IllegalStateException("startupThreads must be positive: " + startupThreads);
+        }
+        if (parserThreads < 1) {
+            throw new IllegalStateException("parserThreads must be positive: " + parserThreads);
+        }
+        if (jmsConnections < 1 || jmsSessionsPerConnection < 1 || jmsSenders < 1) {
+            throw new IllegalStateException("jmsConnections, jmsSessionsPerConnection and jmsSenders must be positive");
+        }
+        if (jmsBatchSize < 1 || jmsLingerMs < 0) {
+            throw new IllegalStateException("Invalid JMS batching: jmsBatchSize=" + jmsBatchSize + ", jmsLingerMs=" + jmsLingerMs);
+        }
+        if (jmsMaxInFlight < jmsBatchSize) {
+            throw new IllegalStateException("jmsMaxInFlight must be at least jmsBatchSize");
+        }
+        if (checkpointIntervalMs < 0) {
+            throw new IllegalStateException("checkpointIntervalMs must not be negative: " + checkpointIntervalMs);
+        }
+        if (fileQuietMs < 0) {
+            throw new IllegalStateException("fileQuietMs must not be negative: " + fileQuietMs);
+        }
+        if (reconcileIntervalMs < 0) {
+            throw new IllegalStateException("reconcileIntervalMs must not be negative: " + reconcileIntervalMs);
+        }
+        if (instanceId.isEmpty() || instanceId.startsWith(".") || !instanceId.matches("[A-Za-z0-9._-]+")) {
+            throw new IllegalStateException("instanceId must be a plain file name: " + instanceId);
+        }
+        if (leaseTimeoutMs < 3) {
+            throw new IllegalStateException("leaseTimeoutMs must be at least 3: " + leaseTimeoutMs);
+        }
+        if (journalRetentionHours < 0) {
+            throw new IllegalStateException("journalRetentionHours must not be negative: " + journalRetentionHours);
+        }
+        if (replyTimeoutMs < 1) {
+            throw new IllegalStateException("replyTimeoutMs must be positive: " + replyTimeoutMs);
+        }
+        if (lookupCacheSize < 0 || lookupReloadMs < 0) {
+            throw new IllegalStateException("Invalid lookup cache: lookupCacheSize=" + lookupCacheSize
+                    + ", lookupReloadMs=" + lookupReloadMs);
+        }
     }
 
 
@@ -83,9 +256,80 @@ public class AppConfiguration {
     public String getFallbackLogName() { return fallbackLogName; }
     public String getCredentials() { return credentials; }
     public String getLogLevel() { return logLevel; }
+    public boolean isLogAsync() { return logAsync; }
+    public int getLogBufferSize() { return logBufferSize; }
+    public AsyncFileHandler.Overflow getLogOverflow() { return logOverflow; }
+    public int getLogFlushMs() { return logFlushMs; }
+    /** Size at which the log file is rotated; 0 disables rotation. */
+    public long getLogMaxFileSize() { return logMaxFileSize; }
+    public int getLogMaxFiles() { return logMaxFiles; }
     public String getDirectory() { return directory; }
     public String getActiveMqUrl() { return activeMqUrl; }
     public String getQueue() { return queue; }
+    /** Queue on which T24 replies to the messages; empty disables reply tracking. */
+    public String getReplyQueue() { return replyQueue; }
+    /** Time after which a message without a reply is reported as {@code TIMEOUT}. */
+    public int getReplyTimeoutMs() { return replyTimeoutMs; }
+    /** Off-heap bytes of lookup tables kept loaded; beyond that the least recently used are dropped. */
+    public long getLookupCacheSize() { return lookupCacheSize; }
+    /** Period of the check for changed lookup files; 0 disables reloading. */
+    public int getLookupReloadMs() { return lookupReloadMs; }
+    public ExecutionMode getExecutionMode() { return executionMode; }
+    public StartupMode getStartupMode() { return startupMode; }
+    /** Threads listing and registering directories at startup in {@link StartupMode#PARALLEL} mode. */
+    public int getStartupThreads() { return startupThreads; }
+    /** Threads converting files and handing their messages to the producer. */
+    public int getWorkerThreads() { return workerThreads; }
+    /** Threads waiting for the broker to commit a file's messages and archiving it. */
+    public int getArchiveThreads() { return archiveThreads; }
+    /**
+     * Files queued in front of the worker stage; a full queue blocks discovery. The archive queue
+     * holds {@code maxPendingFiles}, so send callbacks never wait for it.
+     */
+    public int getStageQueueCapacity() { return stageQueueCapacity; }
+    /** Files tracked from their first event until they are archived; beyond that discovery waits. */
+    public int getMaxPendingFiles() { return maxPendingFiles; }
+    /** Files of one job folder converted at the same time, unless its job sets {@code folderConcurrency}. */
+    public int getFolderConcurrency() { return folderConcurrency; }
+    public int getParserThreads() { return parserThreads; }
+    public int getJmsConnections() { return jmsConnections; }
+    public int getJmsSessionsPerConnection() { return jmsSessionsPerConnection; }
+    public int getJmsSenders() { return jmsSenders; }
+    public int getJmsBatchSize() { return jmsBatchSize; }
+    public int getJmsLingerMs() { return jmsLingerMs; }
+    public int getJmsMaxInFlight() { return jmsMaxInFlight; }
+    /**
+     * Delay between a commit and the save of the checkpoints it moved, to gather more commits into
+     * one save; 0 saves right away. This is the accepted duplicate window: a crash resends the
+     * records committed within it, plus those of a save in progress.
+     */
+    public int getCheckpointIntervalMs() { return checkpointIntervalMs; }
+    public int getFileQuietMs() { return fileQuietMs; }
+    /** Period of the pass that re-lists directories whose mtime moved; 0 disables it. */
+    public int getReconcileIntervalMs() { return reconcileIntervalMs; }
+    /** Suffix of the marker file that declares {@code name} complete, e.g. {@code name.done}; empty disables markers. */
+    public String getReadyMarker() { return readyMarker; }
+    /**
+     * Name of this instance among those sharing {@code directory}; defaults to the host name.
+     * Instances on one host need distinct ids.
+     */
+    public String getInstanceId() { return instanceId; }
+    /** Time after which the claims of an instance that stopped renewing its lease are taken back. */
+    public int getLeaseTimeoutMs() { return leaseTimeoutMs; }
+    /**
+     * How long the journal remembers delivered files, which is how long an identical copy dropped
+     * again is archived instead of sent; 0 remembers them forever.
+     */
+    public int getJournalRetentionHours() { return journalRetentionHours; }
+    /**
+     * Where the journals, checkpoints and leases live; defaults to {@code .cooladapter} under the
+     * watched directory. Instances sharing {@code directory} must share it too.
+     */
+    public Path getStateDirectory() {
+        return stateDirectory == null || stateDirectory.isBlank()
+                ? Paths.get(directory).resolve(".cooladapter")
+                : Paths.get(stateDirectory);
+    }
 
     public Map<String, Object> getAll() {
         Map<String, Object> map = new LinkedHashMap<>();
@@ -94,9 +338,42 @@ public class AppConfiguration {
         map.put("fallbackLogName", fallbackLogName);
         map.put("credentials", credentials);
         map.put("logLevel", logLevel);
+        map.put("logAsync", logAsync);
+        map.put("logBufferSize", logBufferSize);
+        map.put("logOverflow", logOverflow);
+        map.put("logFlushMs", logFlushMs);
+        map.put("logMaxFileSize", logMaxFileSize);
+        map.put("logMaxFiles", logMaxFiles);
         map.put("directory", directory);
         map.put("activeMqUrl", activeMqUrl);
         map.put("queue", queue);
+        map.put("replyQueue", replyQueue);
+        map.put("replyTimeoutMs", replyTimeoutMs);
+        map.put("lookupCacheSize", lookupCacheSize);
+        map.put("lookupReloadMs", lookupReloadMs);
+        map.put("executionMode", executionMode);
+        map.put("startupMode", startupMode);
+        map.put("startupThreads", startupThreads);
+        map.put("workerThreads", workerThreads);
+        map.put("archiveThreads", archiveThreads);
+        map.put("stageQueueCapacity", stageQueueCapacity);
+        map.put("maxPendingFiles", maxPendingFiles);
+        map.put("folderConcurrency", folderConcurrency);
+        map.put("parserThreads", parserThreads);
+        map.put("jmsConnections", jmsConnections);
+        map.put("jmsSessionsPerConnection", jmsSessionsPerConnection);
+        map.put("jmsSenders", jmsSenders);
+        map.put("jmsBatchSize", jmsBatchSize);
+        map.put("jmsLingerMs", jmsLingerMs);
+        map.put("jmsMaxInFlight", jmsMaxInFlight);
+        map.put("fileQuietMs", fileQuietMs);
+        map.put("reconcileIntervalMs", reconcileIntervalMs);
+        map.put("readyMarker", readyMarker);
+        map.put("stateDirectory", getStateDirectory());
+        map.put("checkpointIntervalMs", checkpointIntervalMs);
+        map.put("instanceId", instanceId);
+        map.put("leaseTimeoutMs", leaseTimeoutMs);
+        map.put("journalRetentionHours", journalRetentionHours);
         return map;
     }
 
@@ -108,7 +385,31 @@ public class AppConfiguration {
         log.info("directory           = " + directory);
         log.info("activeMqUrl         = " + activeMqUrl);
         log.info("queue               = " + queue);
+        log.info("replyQueue          = " + (replyQueue.isEmpty() ? "off" : replyQueue + " (timeout " + replyTimeoutMs + " ms)"));
+        log.info("lookupCache         = " + lookupCacheSize + " bytes, reload "
+                + (lookupReloadMs > 0 ? "every " + lookupReloadMs + " ms" : "off"));
         log.info("logLevel            = " + logLevel);
+        log.info("logAsync            = " + logAsync + (logAsync ? " (buffer " + logBufferSize + ", "
+                + logOverflow + " on overflow, flush " + logFlushMs + " ms)" : ""));
+        log.info("logRotation         = " + (logMaxFileSize > 0 ? logMaxFileSize + " bytes x " + logMaxFiles : "off"));
+        log.info("executionMode       = " + executionMode);
+        log.info("startupMode         = " + startupMode
+                + (startupMode == StartupMode.PARALLEL ? " (" + startupThreads + " threads)" : ""));
+        log.info("pipeline            = " + workerThreads + " workers, " + archiveThreads + " archivers, queues of "
+                + stageQueueCapacity + ", up to " + maxPendingFiles + " pending files");
+        log.info("folderConcurrency   = " + folderConcurrency);
+        log.info("parserThreads       = " + parserThreads);
+        log.info("jmsConnections      = " + jmsConnections + " x " + jmsSessionsPerConnection + " sessions");
+        log.info("jmsSenders          = " + jmsSenders);
+        log.info("jmsBatchSize        = " + jmsBatchSize + " (linger " + jmsLingerMs + " ms)");
+        log.info("jmsMaxInFlight      = " + jmsMaxInFlight);
+        log.info("fileQuietMs         = " + fileQuietMs);
+        log.info("reconcileInterval   = " + (reconcileIntervalMs > 0 ? reconcileIntervalMs + " ms" : "off"));
+        log.info("readyMarker         = " + readyMarker);
+        log.info("stateDirectory      = " + getStateDirectory());
+        log.info("checkpointInterval  = " + checkpointIntervalMs + " ms");
+        log.info("journalRetention    = " + (journalRetentionHours > 0 ? journalRetentionHours + " h" : "forever"));
+        log.info("instanceId          = " + instanceId + " (lease timeout " + leaseTimeoutMs + " ms)");
         log.info("credentials         = " + mask(credentials));
         log.info("========================================");
     }
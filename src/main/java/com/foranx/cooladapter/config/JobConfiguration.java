@@ -1,4 +1,368 @@
 package com.foranx.cooladapter.config;
 
+import com.foranx.cooladapter.handler.LookupHandler;
+import com.foranx.cooladapter.handler.ValueHandler;
+import com.foranx.cooladapter.handler.ValueHandlers;
+import com.foranx.cooladapter.lookup.LookupTables;
+import com.foranx.cooladapter.ofs.OfsBuilder;
+import com.foranx.cooladapter.ofs.OfsField;
+import com.foranx.cooladapter.ofs.OfsPacker;
+import com.foranx.cooladapter.ofs.OfsUtils;
+import com.foranx.cooladapter.parser.DataFormat;
+import com.foranx.cooladapter.parser.DataFormats;
+import com.foranx.cooladapter.parser.DataParser;
+import com.foranx.cooladapter.parser.ReadMode;
+import com.foranx.cooladapter.util.FileUtils;
+import com.foranx.cooladapter.validation.ColumnRule;
+import com.foranx.cooladapter.validation.FileValidator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
 public class JobConfiguration {
+
+    private final Properties properties;
+
+    private String format = DataFormats.DEFAULT;
+    private char delimiter = ',';
+    private char quote = '"';
+    private Charset charset = StandardCharsets.UTF_8;
+    private ReadMode readMode = ReadMode.STREAM;
+    private long splitThreshold = 64L << 20;
+    private long chunkSize = 16L << 20;
+    private final DataParser parser;
+
+    private String application;
+    private String version = "";
+    private String function = "I";
+    private String processFlag = "PROCESS";
+    private String credentials;
+    private int idColumn = -1;
+    private boolean skipEmptyValues = true;
+    private boolean skipHeader;
+    private int batchSize;
+    private int packSize = 1;
+    private long packMaxLength = 1L << 20;
+    private String packSeparator = "\n";
+    private int priority;
+    private int weight = 1;
+    private int folderConcurrency;
+    private int deadlineMs;
+    private final List<OfsField> fields = new ArrayList<>();
+    private final Map<Integer, String> handlerChains = new TreeMap<>();
+    private final Map<String, Path> lookupFiles = new TreeMap<>();
+    private final OfsBuilder ofsBuilder;
+    private int expectedColumns;
+    private int validationMaxErrors = 20;
+    private final Map<Integer, ColumnRule> checks = new TreeMap<>();
+    private final FileValidator validator;
+
+    public JobConfiguration(Properties props, AppConfiguration app) {
+        this(props, app, Path.of(""), null);
+    }
+
+    /**
+     * @param dir     job folder, against which relative lookup files are resolved
+     * @param lookups tables for the job's {@code lookup.NAME.file} entries; {@code null} when lookups are not available
+     */
+    public JobConfiguration(Properties props, AppConfiguration app, Path dir, LookupTables lookups) {
+        this.properties = props;
+
+        String formatName = props.getProperty("format");
+        DataFormat dataFormat = DataFormats.get(formatName != null && !formatName.isBlank() ? formatName : format);
+        format = dataFormat.name();
+        delimiter = parseChar(props.getProperty("delimiter"), delimiter, "delimiter");
+        quote = parseChar(props.getProperty("quote"), quote, "quote");
+
+        String encoding = props.getProperty("encoding");
+        if (encoding != null && !encoding.isBlank()) {
+            try {
+                charset = Charset.forName(encoding.trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Unsupported encoding: " + encoding, e);
+            }
+        }
+
+        String mode = props.getProperty("readMode");
+        if (mode != null && !mode.isBlank()) {
+            try {
+                readMode = ReadMode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Unknown readMode: " + mode, e);
+            }
+        }
+
+        String threshold = props.getProperty("splitThreshold");
+        if (threshold != null && !threshold.isBlank()) {
+            splitThreshold = FileUtils.parseSize(threshold);
+        }
+        String chunk = props.getProperty("chunkSize");
+        if (chunk != null && !chunk.isBlank()) {
+            chunkSize = FileUtils.parseSize(chunk);
+        }
+        if (chunkSize < 64 * 1024) {
+            throw new IllegalStateException("chunkSize must be at least 64K: " + chunkSize);
+        }
+
+        parser = dataFormat.create(new DataFormat.Settings(props, delimiter, quote, charset, readMode));
+
+        application = props.getProperty("application");
+        version = props.getProperty("version", version);
+        function = props.getProperty("function", function);
+        processFlag = props.getProperty("processFlag", processFlag);
+        credentials = props.getProperty("credentials", app.getCredentials());
+        skipEmptyValues = Boolean.parseBoolean(props.getProperty("skipEmptyValues", String.valueOf(skipEmptyValues)));
+        skipHeader = Boolean.parseBoolean(props.getProperty("skipHeader", String.valueOf(skipHeader)));
+        batchSize = app.getJmsBatchSize();
+        String batch = props.getProperty("batchSize");
+        if (batch != null && !batch.isBlank()) {
+            try {
+                batchSize = Integer.parseInt(batch.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("batchSize must be an integer: " + batch, e);
+            }
+            if (batchSize < 1 || batchSize > app.getJmsMaxInFlight()) {
+                throw new IllegalStateException("batchSize must be between 1 and jmsMaxInFlight: " + batchSize);
+            }
+        }
+
+        packSize = parseInt(props, "packSize", packSize);
+        String packLength = props.getProperty("packMaxLength");
+        if (packLength != null && !packLength.isBlank()) {
+            packMaxLength = FileUtils.parseSize(packLength);
+        }
+        packSeparator = props.getProperty("packSeparator", packSeparator);
+        if (packSize < 1 || packMaxLength < 1 || packMaxLength > Integer.MAX_VALUE - 8 || packSeparator.isEmpty()) {
+            throw new IllegalStateException("Invalid packing: packSize=" + packSize + ", packMaxLength=" + packMaxLength
+                    + ", packSeparator='" + packSeparator + "'");
+        }
+        for (int i = 0; i < packSeparator.length(); i++) {
+            if (OfsUtils.isReserved(packSeparator.charAt(i))) {
+                throw new IllegalStateException("packSeparator must not contain , / or \" characters: " + packSeparator);
+            }
+        }
+
+        priority = parseInt(props, "priority", priority);
+        weight = parseInt(props, "weight", weight);
+        folderConcurrency = parseInt(props, "folderConcurrency", app.getFolderConcurrency());
+        deadlineMs = parseInt(props, "deadlineMs", deadlineMs);
+        if (weight < 1 || folderConcurrency < 1 || deadlineMs < 0) {
+            throw new IllegalStateException("Invalid scheduling: weight=" + weight
+                    + ", folderConcurrency=" + folderConcurrency + ", deadlineMs=" + deadlineMs);
+        }
+
+        String id = props.getProperty("idColumn");
+        if (id != null && !id.isBlank()) {
+            idColumn = parseColumn(id, "idColumn");
+        }
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith("field.")) {
+                int column = parseColumn(key.substring("field.".length()), key);
+                fields.add(OfsField.parse(column, props.getProperty(key)));
+            }
+        }
+        fields.sort(Comparator.comparingInt(OfsField::column));
+
+        Map<String, ValueHandler> lookupHandlers = new HashMap<>();
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith("lookup.") && key.endsWith(".file") && key.length() >= "lookup..file".length()) {
+                String name = key.substring("lookup.".length(), key.length() - ".file".length());
+                lookupHandlers.put("lookup:" + name.toLowerCase(Locale.ROOT), lookup(props, name, dir, lookups));
+            }
+        }
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith("col.")) {
+                handlerChains.put(parseColumn(key.substring("col.".length()), key), props.getProperty(key).trim());
+            }
+        }
+        int width = handlerChains.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+        ValueHandler[] handlers = new ValueHandler[width];
+        handlerChains.forEach((column, chain) -> handlers[column] = ValueHandlers.compile(chain, lookupHandlers));
+
+        ofsBuilder = new OfsBuilder(application, version, function, processFlag, credentials,
+                idColumn, fields, skipEmptyValues, handlers);
+
+        expectedColumns = parseInt(props, "expectedColumns", expectedColumns);
+        validationMaxErrors = parseInt(props, "validationMaxErrors", validationMaxErrors);
+        if (expectedColumns < 0 || validationMaxErrors < 1) {
+            throw new IllegalStateException("Invalid validation: expectedColumns=" + expectedColumns
+                    + ", validationMaxErrors=" + validationMaxErrors);
+        }
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith("check.")) {
+                checks.put(parseColumn(key.substring("check.".length()), key), ColumnRule.parse(props.getProperty(key)));
+            }
+        }
+        if ((expectedColumns > 0 || !checks.isEmpty()) && !format.equals(DataFormats.DEFAULT)) {
+            throw new IllegalStateException("expectedColumns and check.N only apply to format=csv, not " + format);
+        }
+        validator = expectedColumns > 0 || !checks.isEmpty()
+                ? new FileValidator(delimiter, quote, charset, expectedColumns, checks, validationMaxErrors)
+                : null;
+    }
+
+    /**
+     * Handler of {@code lookup.NAME.file}: a mapping file of {@code key<delimiter>value} lines,
+     * read with the job's encoding and, unless {@code lookup.NAME.delimiter} is set, its delimiter.
+     * Keys missing from the file become {@code lookup.NAME.default} if set and stay as they are otherwise.
+     */
+    private LookupHandler lookup(Properties props, String name, Path dir, LookupTables lookups) {
+        String prefix = "lookup." + name;
+        if (name.isEmpty() || name.contains(",")) {
+            throw new IllegalStateException(prefix + ".file: invalid lookup name");
+        }
+        if (lookups == null) {
+            throw new IllegalStateException(prefix + ".file: lookup tables are not available here");
+        }
+        Path file = dir.resolve(props.getProperty(prefix + ".file").trim());
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalStateException(prefix + ".file: " + file + " does not exist");
+        }
+        lookupFiles.put(name, file);
+        char separator = parseChar(props.getProperty(prefix + ".delimiter"), delimiter, prefix + ".delimiter");
+        return new LookupHandler(lookups.source(file, separator, charset), props.getProperty(prefix + ".default"));
+    }
+
+    public static JobConfiguration load(Path propertiesFile, AppConfiguration app) throws IOException {
+        return load(propertiesFile, app, null);
+    }
+
+    public static JobConfiguration load(Path propertiesFile, AppConfiguration app, LookupTables lookups)
+            throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(propertiesFile)) {
+            props.load(in);
+        }
+        return new JobConfiguration(props, app, propertiesFile.toAbsolutePath().getParent(), lookups);
+    }
+
+    public Properties getProperties() { return properties; }
+    /** Name of the {@link DataFormat} the parser was created by. */
+    public String getFormat() { return format; }
+    public DataParser getParser() { return parser; }
+    public char getDelimiter() { return delimiter; }
+    public char getQuote() { return quote; }
+    public Charset getCharset() { return charset; }
+    public ReadMode getReadMode() { return readMode; }
+    /** Files of at least this many bytes are parsed as parallel chunks; 0 disables splitting. */
+    public long getSplitThreshold() { return splitThreshold; }
+    public long getChunkSize() { return chunkSize; }
+    public String getApplication() { return application; }
+    public String getVersion() { return version; }
+    public String getFunction() { return function; }
+    public String getProcessFlag() { return processFlag; }
+    public String getCredentials() { return credentials; }
+    /** 0-based ID column, or -1 when T24 allocates the ID. */
+    public int getIdColumn() { return idColumn; }
+    public boolean isSkipEmptyValues() { return skipEmptyValues; }
+    public boolean isSkipHeader() { return skipHeader; }
+    /** Maximum number of this job's messages sent in one JMS transaction. */
+    public int getBatchSize() { return batchSize; }
+    /** OFS messages joined into one JMS message; 1 sends every record on its own. */
+    public int getPackSize() { return packSize; }
+    /** Longest packed payload in characters; a single longer message is still sent. */
+    public long getPackMaxLength() { return packMaxLength; }
+    /** Joins the messages of a packed payload and the replies to it. */
+    public String getPackSeparator() { return packSeparator; }
+
+    /** A packer for one file, or {@code null} when the job does not pack. */
+    public OfsPacker newPacker() {
+        return packSize > 1 ? new OfsPacker(packSeparator, packSize, (int) packMaxLength) : null;
+    }
+
+    /** Folders with a higher priority get workers first. */
+    public int getPriority() { return priority; }
+    /** Share of the workers relative to other folders of the same priority. */
+    public int getWeight() { return weight; }
+    /** Files of this folder converted at the same time. */
+    public int getFolderConcurrency() { return folderConcurrency; }
+    /** Queue wait after which a file is served ahead of priority; 0 means none. */
+    public int getDeadlineMs() { return deadlineMs; }
+    public List<OfsField> getFields() { return fields; }
+    /** Handler chain declared for each 0-based column, as written in the job file. */
+    public Map<Integer, String> getHandlerChains() { return handlerChains; }
+    /** Mapping file of each {@code lookup.NAME.file} entry, by name. */
+    public Map<String, Path> getLookupFiles() { return lookupFiles; }
+    public OfsBuilder getOfsBuilder() { return ofsBuilder; }
+    /** Columns every record must have; 0 means any number. */
+    public int getExpectedColumns() { return expectedColumns; }
+    /** Checks declared for each 0-based column. */
+    public Map<Integer, ColumnRule> getChecks() { return checks; }
+    /** Validator run before a file is sent, or {@code null} if the job declares no checks. */
+    public FileValidator getValidator() { return validator; }
+
+    @Override
+    public String toString() {
+        return "application=" + application
+                + ", version=" + version
+                + ", function=" + function + "/" + processFlag
+                + ", idColumn=" + (idColumn >= 0 ? String.valueOf(idColumn + 1) : "auto")
+                + ", fields=" + fields.size()
+                + ", handlers=" + handlerChains.size()
+                + (lookupFiles.isEmpty() ? "" : ", lookups=" + lookupFiles.keySet())
+                + (validator != null ? ", checks=" + checks.size()
+                        + (expectedColumns > 0 ? ", expectedColumns=" + expectedColumns : "") : "")
+                + (format.equals(DataFormats.DEFAULT) ? "" : ", format=" + format)
+                + ", delimiter='" + (delimiter == '\t' ? "\\t" : String.valueOf(delimiter)) + "'"
+                + ", encoding=" + charset
+                + ", readMode=" + readMode
+                + ", batchSize=" + batchSize
+                + (packSize > 1 ? ", packSize=" + packSize + " (max " + packMaxLength + " chars)" : "")
+                + ", priority=" + priority
+                + ", weight=" + weight
+                + ", folderConcurrency=" + folderConcurrency
+                + (deadlineMs > 0 ? ", deadlineMs=" + deadlineMs : "");
+    }
+
+    private static int parseInt(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(key + " must be an integer: " + value, e);
+        }
+    }
+
+    /** Columns are numbered from 1 in job files and from 0 everywhere else. */
+    private static int parseColumn(String value, String name) {
+        try {
+            int column = Integer.parseInt(value.trim());
+            if (column < 1) {
+                throw new IllegalStateException(name + ": columns are numbered from 1");
+            }
+            return column - 1;
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(name + " is not a column number: " + value, e);
+        }
+    }
+
+    private static char parseChar(String value, char defaultValue, String name) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        return switch (value) {
+            case "\\t", "tab", "TAB" -> '\t';
+            default -> {
+                if (value.length() != 1) {
+                    throw new IllegalStateException(name + " must be a single character: '" + value + "'");
+                }
+                yield value.charAt(0);
+            }
+        };
+    }
 }
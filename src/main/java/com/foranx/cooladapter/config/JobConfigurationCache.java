@@ -0,0 +1,138 @@
+package com.foranx.cooladapter.config;
+
+import com.foranx.cooladapter.lookup.LookupTables;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Job configuration per job folder, loaded once and reused for every file of the folder.
+ * <p>
+ * Entries are dropped by {@link #invalidate} when the watcher reports a change to a
+ * {@code .properties} file, and are re-validated against the file's mtime and size
+ * (or the folder's mtime when it had no job file) at most once per {@code revalidateMs},
+ * in case an event was missed. Broken job files are cached as failures, so a folder
+ * full of data files reports the error without re-reading the file for each of them;
+ * only the message is kept, and every lookup throws a new exception for its own caller.
+ */
+public class JobConfigurationCache {
+
+    private static final Logger log = Logger.getLogger(JobConfigurationCache.class.getName());
+
+    private final AppConfiguration app;
+    private final LookupTables lookups;
+    private final long revalidateNanos;
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    /** @param lookups tables shared by the jobs' {@code lookup.NAME.file} entries */
+    public JobConfigurationCache(AppConfiguration app, LookupTables lookups, long revalidateMs) {
+        this.app = app;
+        this.lookups = lookups;
+        this.revalidateNanos = revalidateMs * 1_000_000L;
+    }
+
+    /**
+     * Returns the job of {@code dir}, or {@code null} when the folder has no {@code .properties} file.
+     *
+     * @throws IllegalStateException if the job file is invalid
+     */
+    public JobConfiguration get(Path dir) throws IOException {
+        Entry entry = entries.get(dir);
+        long now = System.nanoTime();
+        if (entry != null) {
+            if (now - entry.checkedAt < revalidateNanos) {
+                return entry.result();
+            }
+            // The window restarts only after a check passed, so steady hits cannot keep it open
+            if (entry.isCurrent()) {
+                entry.checkedAt = now;
+                return entry.result();
+            }
+        }
+        Entry loaded = load(dir);
+        entries.put(dir, loaded);
+        return loaded.result();
+    }
+
+    public void invalidate(Path dir) {
+        entries.remove(dir);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public static Path findPropertiesFile(Path dir) throws IOException {
+        try (var stream = Files.list(dir)) {
+            return stream
+                    .filter(p -> p.getFileName().toString().endsWith(".properties") && Files.isRegularFile(p))
+                    .min(Comparator.comparing(p -> p.getFileName().toString()))
+                    .orElse(null);
+        }
+    }
+
+    private Entry load(Path dir) throws IOException {
+        FileTime dirModified = Files.getLastModifiedTime(dir);
+        Path propertiesFile = findPropertiesFile(dir);
+        if (propertiesFile == null) {
+            return new Entry(dir, null, dirModified, -1, null, null);
+        }
+        BasicFileAttributes attrs = Files.readAttributes(propertiesFile, BasicFileAttributes.class);
+        try {
+            JobConfiguration job = JobConfiguration.load(propertiesFile, app, lookups);
+            log.info(">>> Job loaded from " + propertiesFile + ": " + job);
+            return new Entry(dir, propertiesFile, attrs.lastModifiedTime(), attrs.size(), job, null);
+        } catch (IllegalStateException e) {
+            String error = "Invalid job configuration " + propertiesFile + ": " + e.getMessage();
+            log.log(Level.WARNING, error, e);
+            return new Entry(dir, propertiesFile, attrs.lastModifiedTime(), attrs.size(), null, error);
+        }
+    }
+
+    private static final class Entry {
+        private final Path dir;
+        private final Path propertiesFile;
+        private final FileTime modified;
+        private final long size;
+        private final JobConfiguration job;
+        private final String error;
+        private volatile long checkedAt = System.nanoTime();
+
+        Entry(Path dir, Path propertiesFile, FileTime modified, long size,
+              JobConfiguration job, String error) {
+            this.dir = dir;
+            this.propertiesFile = propertiesFile;
+            this.modified = modified;
+            this.size = size;
+            this.job = job;
+            this.error = error;
+        }
+
+        boolean isCurrent() {
+            try {
+                if (propertiesFile == null) {
+                    return Files.getLastModifiedTime(dir).equals(modified);
+                }
+                BasicFileAttributes attrs = Files.readAttributes(propertiesFile, BasicFileAttributes.class);
+                return attrs.lastModifiedTime().equals(modified) && attrs.size() == size;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        JobConfiguration result() {
+            if (error != null) {
+                throw new IllegalStateException(error);
+            }
+            return job;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.foranx.cooladapter.config;
 
+import com.foranx.cooladapter.util.AsyncFileHandler;
+
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -8,9 +10,28 @@ import java.util.logging.*;
 
 public class LoggingConfiguration {
 
+    private static Handler installed;
+
     private LoggingConfiguration() {}
 
+    public static void init(AppConfiguration config) {
+        init(config.getLogFolder(), config.getLogLevel(), config);
+    }
+
     public static void init(String logFilePath, String logLevelStr) {
+        init(logFilePath, logLevelStr, null);
+    }
+
+    /** Closes the installed handler, writing out records still buffered. */
+    public static synchronized void shutdown() {
+        if (installed != null) {
+            Logger.getLogger("com.foranx").removeHandler(installed);
+            installed.close();
+            installed = null;
+        }
+    }
+
+    private static synchronized void init(String logFilePath, String logLevelStr, AppConfiguration config) {
         try {
             if (logFilePath == null || logFilePath.isBlank()) {
                 throw new IllegalArgumentException("logFilePath is null or blank");
@@ -28,24 +49,34 @@ public class LoggingConfiguration {
 
             for (Handler h : appLogger.getHandlers()) {
                 appLogger.removeHandler(h);
+                if (h == installed) {
+                    h.close();
+                }
             }
 
             appLogger.setLevel(userLevel);
             appLogger.setUseParentHandlers(false);
 
-            FileOutputStream fos = new FileOutputStream(logPath.toFile(), true);
-
-            StreamHandler fileHandler = new StreamHandler(fos, new SimpleFormatter()) {
-                @Override
-                public synchronized void publish(LogRecord record) {
-                    super.publish(record);
-                    flush();
-                }
-            };
+            Handler fileHandler;
+            if (config != null && config.isLogAsync()) {
+                fileHandler = new AsyncFileHandler(logPath, config.getLogBufferSize(), config.getLogOverflow(),
+                        config.getLogFlushMs(), config.getLogMaxFileSize(), config.getLogMaxFiles());
+            } else {
+                FileOutputStream fos = new FileOutputStream(logPath.toFile(), true);
+
+                fileHandler = new StreamHandler(fos, new SimpleFormatter()) {
+                    @Override
+                    public synchronized void publish(LogRecord record) {
+                        super.publish(record);
+                        flush();
+                    }
+                };
+            }
 
             fileHandler.setLevel(Level.ALL);
 
             appLogger.addHandler(fileHandler);
+            installed = fileHandler;
 
         } catch (IOException e) {
             throw new RuntimeException("Failed to initialize logging", e);
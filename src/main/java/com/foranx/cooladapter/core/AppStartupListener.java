@@ -23,7 +23,7 @@ public class AppStartupListener implements ServletContextListener {
 
             AppConfiguration config = new AppConfiguration();
             config.init(in);
-            LoggingConfiguration.init(config.getLogFolder(), config.getLogLevel());
+            LoggingConfiguration.init(config);
             config.logConfiguration();
 
             watcher = new DirectoryWatcher(config);
@@ -44,5 +44,6 @@ public class AppStartupListener implements ServletContextListener {
         } catch (Exception e) {
             log.log(Level.WARNING, "Failed to stop DirectoryWatcher", e);
         }
+        LoggingConfiguration.shutdown();
     }
 }
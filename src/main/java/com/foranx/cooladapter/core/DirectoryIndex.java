@@ -0,0 +1,123 @@
+package com.foranx.cooladapter.core;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Size and mtime of every file seen in the watched tree, grouped by directory.
+ * <p>
+ * Lets a rescan hand only new or changed files to the pipeline, and remembers each
+ * directory's own mtime at its last listing so that a directory whose entries did not
+ * change can be skipped with a single {@code stat}.
+ */
+final class DirectoryIndex {
+
+    private final Map<Path, Folder> folders = new ConcurrentHashMap<>();
+    private final AtomicInteger files = new AtomicInteger();
+
+    boolean contains(Path dir) {
+        return folders.containsKey(dir);
+    }
+
+    /** Adds {@code dir} if it is not indexed yet; returns whether it was added. */
+    boolean addDirectory(Path dir) {
+        return folders.putIfAbsent(dir, new Folder()) == null;
+    }
+
+    List<Path> directories() {
+        return new ArrayList<>(folders.keySet());
+    }
+
+    /** Whether {@code dir} may have gained or lost entries since {@link #listed} was last called for it. */
+    boolean isStale(Path dir, FileTime modified) {
+        Folder folder = folders.get(dir);
+        if (folder == null) {
+            return true;
+        }
+        synchronized (folder) {
+            return !modified.equals(folder.listedModified);
+        }
+    }
+
+    /**
+     * Records a full listing of {@code dir}, taken after its mtime was read as {@code modified}:
+     * files not in {@code names} are forgotten.
+     */
+    void listed(Path dir, FileTime modified, Set<String> names) {
+        Folder folder = folders.computeIfAbsent(dir, d -> new Folder());
+        synchronized (folder) {
+            int before = folder.files.size();
+            folder.files.keySet().retainAll(names);
+            files.addAndGet(folder.files.size() - before);
+            folder.listedModified = modified;
+        }
+    }
+
+    /** Records the current attributes of {@code file}; returns whether it is new or has changed. */
+    boolean update(Path file, BasicFileAttributes attrs) {
+        Folder folder = folders.computeIfAbsent(file.getParent(), d -> new Folder());
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+        synchronized (folder) {
+            long[] stamp = folder.files.get(file.getFileName().toString());
+            if (stamp == null) {
+                folder.files.put(file.getFileName().toString(), new long[]{size, modified});
+                files.incrementAndGet();
+                return true;
+            }
+            if (stamp[0] == size && stamp[1] == modified) {
+                return false;
+            }
+            stamp[0] = size;
+            stamp[1] = modified;
+            return true;
+        }
+    }
+
+    /** Forgets a file, or a directory with everything below it. */
+    void remove(Path path) {
+        if (folders.containsKey(path)) {
+            for (Path dir : folders.keySet()) {
+                if (dir.startsWith(path)) {
+                    Folder folder = folders.remove(dir);
+                    if (folder != null) {
+                        synchronized (folder) {
+                            files.addAndGet(-folder.files.size());
+                        }
+                    }
+                }
+            }
+            return;
+        }
+        Folder folder = path.getParent() == null ? null : folders.get(path.getParent());
+        if (folder != null) {
+            synchronized (folder) {
+                if (folder.files.remove(path.getFileName().toString()) != null) {
+                    files.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    int getFileCount() {
+        return files.get();
+    }
+
+    int getDirectoryCount() {
+        return folders.size();
+    }
+
+    private static final class Folder {
+        /** File name to {size, mtime in ms}. */
+        private final Map<String, long[]> files = new HashMap<>();
+        private FileTime listedModified;
+    }
+}
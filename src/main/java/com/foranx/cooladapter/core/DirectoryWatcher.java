@@ -1,35 +1,97 @@
 package com.foranx.cooladapter.core;
 
 import com.foranx.cooladapter.config.AppConfiguration;
+import com.foranx.cooladapter.config.JobConfiguration;
+import com.foranx.cooladapter.metrics.Metrics;
 
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Watches the root directory and drives files through the ingest pipeline:
+ * <pre>
+ *   discover     watcher thread and directory scanner, debounced by {@link FileStabilityScheduler}
+ *   convert      {@code workerThreads} shared fairly between folders by {@link FolderScheduler}:
+ *                read, parse, transform and build OFS, hand messages to the producer
+ *   send         {@code jmsSenders}, at most {@code jmsMaxInFlight} messages uncommitted
+ *   archive      {@code archiveThreads}: once the broker has committed every message of a file,
+ *                move it to {@code .processed}
+ * </pre>
+ * Every hand-off is bounded, so a slow broker fills the send window, then the stage queues,
+ * and finally makes discovery wait once {@code maxPendingFiles} files are in the pipeline.
+ * Nothing waits for the broker: the last send callback of a file queues it for archiving,
+ * and the archive queue holds {@code maxPendingFiles}, so that never blocks the producer.
+ * <p>
+ * Discovery keeps a {@link DirectoryIndex} of the tree. The startup walk registers, indexes
+ * and dispatches in a single pass, or with {@link StartupMode#PARALLEL} registers and indexes
+ * on several threads first and then feeds the backlog in mtime order; either way it runs in the
+ * background, and events are handled from the start. After an event {@code OVERFLOW}, and every
+ * {@code reconcileIntervalMs}, directories are re-listed only if their mtime moved, and only
+ * new or changed files are dispatched.
+ * <p>
+ * Several instances may watch the same directory: a file is processed by the instance whose
+ * claim on it succeeds, and claims of instances that died are recovered every
+ * {@code leaseTimeoutMs}; see {@link com.foranx.cooladapter.state.FileClaims}.
+ */
 public class DirectoryWatcher {
 
     private static final Logger log = Logger.getLogger(DirectoryWatcher.class.getName());
+    private static final String EVENTS_HELP = "File system events received by the watcher";
+    private static final LongAdder CREATE_EVENTS = Metrics.shared().counter(
+            "cooladapter_watcher_events_total{kind=\"create\"}", EVENTS_HELP);
+    private static final LongAdder MODIFY_EVENTS = Metrics.shared().counter(
+            "cooladapter_watcher_events_total{kind=\"modify\"}", EVENTS_HELP);
+    private static final LongAdder DELETE_EVENTS = Metrics.shared().counter(
+            "cooladapter_watcher_events_total{kind=\"delete\"}", EVENTS_HELP);
+    private static final LongAdder OVERFLOW_EVENTS = Metrics.shared().counter(
+            "cooladapter_watcher_events_total{kind=\"overflow\"}", EVENTS_HELP);
+    private static final LongAdder LISTINGS = Metrics.shared().counter(
+            "cooladapter_directory_listings_total", "Directories re-listed after an overflow or by reconciliation");
+    private static final LongAdder RECOVERED_CLAIMS = Metrics.shared().counter(
+            "cooladapter_recovered_claims_total", "Files taken back from expired or earlier claims");
     private final Path rootPath;
 
     private WatchService watchService;
-    private ExecutorService executor;
+    private FolderScheduler workers;
+    private PipelineStage archivers;
+    private ScheduledExecutorService scanner;
+    private Thread eventLoop;
     private final FileProcessor processor;
+    private final AppConfiguration config;
+    private FileStabilityScheduler stability;
 
     private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
-
-    private final Map<Path, Long> processedFiles = new ConcurrentHashMap<>();
-    private static final long PROCESS_TTL_MS = 2000;
+    private final DirectoryIndex index = new DirectoryIndex();
+    private final Set<Path> queuedRescans = ConcurrentHashMap.newKeySet();
 
     private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile int startupBacklog;
 
     public DirectoryWatcher(AppConfiguration config) {
+        this(config, new FileProcessor(config));
+    }
+
+    /** With a processor built by the caller, e.g. around a producer that does not need a broker. */
+    public DirectoryWatcher(AppConfiguration config, FileProcessor processor) {
         this.rootPath = Paths.get(config.getDirectory()).toAbsolutePath().normalize();
-        this.processor = new FileProcessor(config);
+        this.config = config;
+        this.processor = processor;
     }
 
     public void start() throws IOException {
@@ -41,15 +103,164 @@ public class DirectoryWatcher {
         log.info(">>> Root directory: " + rootPath);
 
         this.watchService = FileSystems.getDefault().newWatchService();
-        this.executor = Executors.newFixedThreadPool(
-                Runtime.getRuntime().availableProcessors()
-        );
+        this.workers = new FolderScheduler("file-worker", config.getWorkerThreads(),
+                config.getStageQueueCapacity(), config.getExecutionMode(), this::policyFor);
+        this.archivers = new PipelineStage("file-archiver", config.getArchiveThreads(),
+                config.getMaxPendingFiles(), config.getExecutionMode());
+        this.scanner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "directory-scanner");
+            t.setDaemon(true);
+            return t;
+        });
+        this.stability = new FileStabilityScheduler(workers::execute, this::process,
+                config.getFileQuietMs(), config.getReadyMarker(), config.getMaxPendingFiles());
+        Metrics.shared().gauge("cooladapter_watcher_pending_files",
+                "Files between their first event and the end of their processing", stability::getPending);
+        Metrics.shared().gauge("cooladapter_watcher_offered_files",
+                "Files found by the scanner and waiting for the pipeline to have room", stability::getOffered);
+        Metrics.shared().gauge("cooladapter_worker_queue_depth",
+                "Stable files waiting for a worker", workers::getQueueDepth);
+        Metrics.shared().gauge("cooladapter_archive_queue_depth",
+                "Sent files waiting for an archiver", archivers::getQueueDepth);
+        Metrics.shared().gauge("cooladapter_indexed_files", "Files in the directory index", index::getFileCount);
+        Metrics.shared().gauge("cooladapter_indexed_directories",
+                "Directories in the directory index", index::getDirectoryCount);
+
+        Metrics.shared().gauge("cooladapter_startup_backlog_files",
+                "Files found by the parallel startup scan and not yet handed to the pipeline", () -> startupBacklog);
+
+        registerDirectory(rootPath);
+        this.eventLoop = Thread.ofPlatform().name("directory-watcher").start(this::processEvents);
+
+        if (config.getStartupMode() == StartupMode.PARALLEL) {
+            Thread.ofPlatform().name("startup-scan").daemon().start(this::startupScan);
+        } else {
+            scanner.execute(() -> indexTree(rootPath));
+            schedulePeriodic(0);
+        }
 
-        registerAll(rootPath);
+        log.info(">>> DirectoryWatcher started.");
+    }
 
-        executor.submit(this::processEvents);
+    private void schedulePeriodic(long recoverDelayMs) {
+        long reconcileMs = config.getReconcileIntervalMs();
+        if (reconcileMs > 0) {
+            scanner.scheduleWithFixedDelay(this::reconcile, reconcileMs, reconcileMs, TimeUnit.MILLISECONDS);
+        }
+        long leaseMs = config.getLeaseTimeoutMs();
+        scanner.scheduleWithFixedDelay(this::recoverClaims, recoverDelayMs, leaseMs, TimeUnit.MILLISECONDS);
+    }
 
-        log.info(">>> DirectoryWatcher started.");
+    /**
+     * {@link StartupMode#PARALLEL}: registers and indexes the whole tree on {@code startupThreads},
+     * then hands the files found to the pipeline oldest first, holding back while
+     * {@code stageQueueCapacity} files are tracked. Until a directory is registered its files are
+     * left to the scan; after that, its events are handled as usual.
+     */
+    private void startupScan() {
+        long started = System.nanoTime();
+        Queue<Existing> found = new ConcurrentLinkedQueue<>();
+        ForkJoinPool pool = new ForkJoinPool(config.getStartupThreads());
+        try {
+            pool.invoke(new ScanTask(rootPath, found));
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Startup scan of " + rootPath + " failed", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        if (!running.get()) {
+            return;
+        }
+        Existing[] backlog = found.toArray(new Existing[0]);
+        Arrays.sort(backlog, Comparator.comparingLong(Existing::modified));
+        log.info(">>> Registered " + index.getDirectoryCount() + " directories in "
+                + (System.nanoTime() - started) / 1_000_000 + " ms, " + backlog.length + " files to process");
+        try {
+            schedulePeriodic(config.getLeaseTimeoutMs());
+        } catch (RejectedExecutionException e) {
+            return;
+        }
+
+        startupBacklog = backlog.length;
+        int window = config.getStageQueueCapacity();
+        for (Existing file : backlog) {
+            if (!running.get() || !stability.awaitPendingBelow(window)) {
+                return;
+            }
+            stability.touchExisting(file.path());
+            startupBacklog--;
+        }
+        if (backlog.length > 0) {
+            log.info(">>> Startup backlog handed to the pipeline after " + (System.nanoTime() - started) / 1_000_000 + " ms");
+        }
+    }
+
+    private record Existing(Path path, long modified) {
+    }
+
+    /**
+     * Registers one directory, takes back claims left in it, indexes it and collects its new
+     * files, then does the same for its subdirectories in parallel.
+     */
+    private final class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path dir;
+        private final transient Queue<Existing> found;
+
+        ScanTask(Path dir, Queue<Existing> found) {
+            this.dir = dir;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            if (!running.get()) {
+                return;
+            }
+            BasicFileAttributes dirAttrs = readAttributes(dir, LinkOption.NOFOLLOW_LINKS);
+            if (dirAttrs == null || !dirAttrs.isDirectory()) {
+                return;
+            }
+            try {
+                registerDirectory(dir);
+            } catch (IOException | ClosedWatchServiceException e) {
+                log.log(Level.WARNING, "Cannot watch " + dir, e);
+                return;
+            }
+            index.addDirectory(dir);
+            // Before the listing, so that the files taken back are part of the backlog
+            RECOVERED_CLAIMS.add(processor.recoverClaims(dir));
+
+            Set<String> names = new HashSet<>();
+            List<ScanTask> subdirs = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attrs = readAttributes(entry, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs == null) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        if (!isHidden(entry)) {
+                            subdirs.add(new ScanTask(entry, found));
+                        }
+                        continue;
+                    }
+                    BasicFileAttributes fileAttrs = fileAttributes(entry, attrs);
+                    if (fileAttrs != null) {
+                        names.add(entry.getFileName().toString());
+                        if (index.update(entry, fileAttrs)) {
+                            found.add(new Existing(entry, fileAttrs.lastModifiedTime().toMillis()));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed to scan " + dir, e);
+                return;
+            }
+            index.listed(dir, dirAttrs.lastModifiedTime(), names);
+            invokeAll(subdirs);
+        }
     }
 
     public void stop() {
@@ -65,46 +276,173 @@ public class DirectoryWatcher {
             }
         } catch (IOException ignored) {}
 
-        executor.shutdownNow();
-        try {
-            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
-                log.info(">>> Executor did not terminate in time");
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        stability.close();
+        eventLoop.interrupt();
+        scanner.shutdownNow();
+        workers.close();
+        archivers.close();
+        processor.close();
 
         log.info(">>> DirectoryWatcher stopped.");
     }
 
-    private void registerAll(Path start) throws IOException {
-        Files.walkFileTree(start, new SimpleFileVisitor<>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                registerDirectory(dir);
+    /**
+     * Registers every directory under {@code start}, indexes its files and dispatches the new
+     * or changed ones, in one walk. Runs on the scanner thread, which offers files to the
+     * pipeline rather than waiting for room, so rescans and claim recovery are never held up.
+     */
+    private void indexTree(Path start) {
+        Deque<Set<String>> listings = new ArrayDeque<>();
+        Deque<BasicFileAttributes> dirAttrs = new ArrayDeque<>();
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (isHidden(dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    registerDirectory(dir);
+                    index.addDirectory(dir);
+                    listings.push(new HashSet<>());
+                    dirAttrs.push(attrs);
+                    return FileVisitResult.CONTINUE;
+                }
 
-                scanExistingFiles(dir);
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    BasicFileAttributes fileAttrs = fileAttributes(file, attrs);
+                    if (fileAttrs != null) {
+                        listings.peek().add(file.getFileName().toString());
+                        if (index.update(file, fileAttrs)) {
+                            stability.offer(file);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    log.log(Level.FINE, "Cannot read " + file, e);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                    index.listed(dir, dirAttrs.pop().lastModifiedTime(), listings.pop());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to scan " + start, e);
+        }
+    }
 
-                return FileVisitResult.CONTINUE;
+    /**
+     * Re-lists {@code dir} if its mtime moved since the last listing (or always, if {@code force})
+     * and dispatches new or changed files; {@code force} dispatches every data file. New
+     * subdirectories are indexed, vanished ones dropped. Runs on the scanner thread.
+     */
+    private void rescanDirectory(Path dir, boolean force) {
+        queuedRescans.remove(dir);
+        BasicFileAttributes dirAttrs = readAttributes(dir, LinkOption.NOFOLLOW_LINKS);
+        if (dirAttrs == null || !dirAttrs.isDirectory()) {
+            index.remove(dir);
+            return;
+        }
+        if (!force && !index.isStale(dir, dirAttrs.lastModifiedTime())) {
+            return;
+        }
+        LISTINGS.increment();
+        Set<String> names = new HashSet<>();
+        List<Path> newDirs = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                BasicFileAttributes attrs = readAttributes(entry, LinkOption.NOFOLLOW_LINKS);
+                if (attrs == null) {
+                    continue;
+                }
+                if (attrs.isDirectory()) {
+                    if (!isHidden(entry) && !index.contains(entry)) {
+                        newDirs.add(entry);
+                    }
+                    continue;
+                }
+                BasicFileAttributes fileAttrs = fileAttributes(entry, attrs);
+                if (fileAttrs != null) {
+                    names.add(entry.getFileName().toString());
+                    boolean changed = index.update(entry, fileAttrs);
+                    if (changed || force && !entry.getFileName().toString().endsWith(".properties")) {
+                        stability.offer(entry);
+                    }
+                }
             }
-        });
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to scan " + dir, e);
+            return;
+        }
+        index.listed(dir, dirAttrs.lastModifiedTime(), names);
+        for (Path sub : newDirs) {
+            log.info(">>> NEW DIR: " + sub);
+            indexTree(sub);
+        }
     }
 
-    private void scanExistingFiles(Path dir) {
-        executor.submit(() -> {
+    private void requestRescan(Path dir) {
+        if (queuedRescans.add(dir)) {
             try {
-                Files.list(dir)
-                        .filter(Files::isRegularFile)
-                        .forEach(file -> handleFile(file, "STARTUP_SCAN"));
-            } catch (IOException e) {
-                log.log(Level.WARNING, "Failed to scan existing files in: " + dir, e);
+                scanner.execute(() -> rescanDirectory(dir, false));
+            } catch (RejectedExecutionException e) {
+                queuedRescans.remove(dir);
             }
-        });
+        }
+    }
+
+    /** Periodic safety net for events the watch service never delivered. */
+    private void reconcile() {
+        for (Path dir : index.directories()) {
+            if (!running.get()) {
+                return;
+            }
+            rescanDirectory(dir, false);
+        }
+    }
+
+    /**
+     * Takes back files claimed by instances that stopped renewing their lease, and this
+     * instance's claims from before a restart, and dispatches them again.
+     */
+    private void recoverClaims() {
+        for (Path dir : index.directories()) {
+            if (!running.get()) {
+                return;
+            }
+            int recovered = processor.recoverClaims(dir);
+            if (recovered > 0) {
+                RECOVERED_CLAIMS.add(recovered);
+                rescanDirectory(dir, false);
+            }
+        }
+    }
+
+    /** Attributes of {@code file} if it is a regular file or a link to one, otherwise {@code null}. */
+    private static BasicFileAttributes fileAttributes(Path file, BasicFileAttributes attrs) {
+        if (attrs.isSymbolicLink()) {
+            attrs = readAttributes(file);
+        }
+        return attrs != null && attrs.isRegularFile() ? attrs : null;
+    }
+
+    private static BasicFileAttributes readAttributes(Path path, LinkOption... options) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, options);
+        } catch (IOException e) {
+            return null;
+        }
     }
 
     private void registerDirectory(Path dir) throws IOException {
-        if (dir.getFileName().toString().equals(".processed")) {
-            log.info(">>> Пропускаем каталог .processed: " + dir);
+        if (isHidden(dir)) {
+            log.info(">>> Пропускаем служебный каталог: " + dir);
             return;
         }
         WatchKey key = dir.register(
@@ -133,94 +471,118 @@ public class DirectoryWatcher {
 
             for (WatchEvent<?> event : key.pollEvents()) {
                 WatchEvent.Kind<?> kind = event.kind();
-                if (kind == StandardWatchEventKinds.OVERFLOW) continue;
+                if (kind == StandardWatchEventKinds.OVERFLOW) {
+                    OVERFLOW_EVENTS.increment();
+                    requestRescan(dir);
+                    continue;
+                }
 
                 @SuppressWarnings("unchecked")
                 Path name = ((WatchEvent<Path>) event).context();
                 Path fullPath = dir.resolve(name);
 
                 if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                    CREATE_EVENTS.increment();
                     if (Files.isDirectory(fullPath, LinkOption.NOFOLLOW_LINKS)) {
-                        log.info(">>> NEW DIR: " + fullPath);
-                        try {
-                            registerAll(fullPath);
-                            scanNewFolder(fullPath);
-                        } catch (IOException e) {
-                            log.log(Level.WARNING, "Failed to register or scan new directory: " + fullPath, e);
+                        if (!isHidden(fullPath)) {
+                            log.info(">>> NEW DIR: " + fullPath);
+                            scanner.execute(() -> indexTree(fullPath));
                         }
                     } else {
-                        handleFile(fullPath, "CREATE");
+                        handleFile(fullPath);
                     }
                 }
 
+                if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+                    MODIFY_EVENTS.increment();
+                }
                 if (kind == StandardWatchEventKinds.ENTRY_MODIFY && Files.isRegularFile(fullPath)) {
-                    handleFile(fullPath, "MODIFY");
+                    handleFile(fullPath);
                 }
 
                 if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                    DELETE_EVENTS.increment();
                     log.info(">>> DELETE: " + fullPath);
+                    index.remove(fullPath);
+                    if (name.toString().endsWith(".properties")) {
+                        processor.invalidateJob(dir);
+                    }
                 }
             }
 
             boolean valid = key.reset();
             if (!valid) {
                 keys.remove(key);
+                index.remove(dir);
             }
         }
     }
 
-    private void handleFile(Path file, String eventType) {
-        long now = System.currentTimeMillis();
-
-        Long last = processedFiles.get(file);
-        if (last != null && (now - last) < PROCESS_TTL_MS) {
-            return;
+    private void handleFile(Path file) {
+        BasicFileAttributes attrs = readAttributes(file);
+        if (attrs != null && attrs.isRegularFile()) {
+            index.update(file, attrs);
+            stability.touch(file);
         }
+    }
 
-        processedFiles.put(file, now);
+    /** Scheduling of a folder's files, from its job; folders without a valid job get the defaults. */
+    private FolderScheduler.Policy policyFor(Path dir) {
+        try {
+            JobConfiguration job = processor.getJob(dir);
+            if (job != null) {
+                return new FolderScheduler.Policy(job.getPriority(), job.getWeight(),
+                        job.getFolderConcurrency(), job.getDeadlineMs());
+            }
+        } catch (IOException | IllegalStateException e) {
+            // reported when the folder's files are processed
+        }
+        return new FolderScheduler.Policy(0, 1, config.getFolderConcurrency(), 0);
+    }
 
-        executor.submit(() -> {
+    /**
+     * Convert stage; once the file's messages are committed it goes to the archive stage, which
+     * calls {@code done} when it is finished.
+     */
+    private void process(Path file, Runnable done) {
+        FileProcessor.Delivery delivery;
+        try {
+            delivery = processor.start(file);
+        } catch (RuntimeException e) {
+            done.run();
+            throw e;
+        }
+        if (!delivery.isPending()) {
+            finish(file, delivery, done);
+            return;
+        }
+        delivery.whenSent(() -> {
             try {
-                // Process the file
-                boolean processed = processor.processFile(file);
-
-                // Special case: if it's a .properties file, rescan folder
-                if (processed && file.getFileName().toString().endsWith(".properties")) {
-                    Path parent = file.getParent();
-                    log.info(">>> .properties created, rescanning folder: " + parent);
-                    scanExistingFiles(parent);
-                }
-
-                Thread.sleep(PROCESS_TTL_MS);
-                processedFiles.remove(file);
-            } catch (InterruptedException ignored) {
-                Thread.currentThread().interrupt();
+                archivers.execute(() -> finish(file, delivery, done));
+            } catch (RejectedExecutionException e) {
+                done.run();
             }
         });
     }
 
-    private void scanNewFolder(Path folder) {
-        executor.submit(() -> {
-            try {
-                Thread.sleep(100);
-                Files.walkFileTree(folder, new SimpleFileVisitor<>() {
-                    @Override
-                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                        if (dir.getFileName().toString().equals(".processed")) {
-                            return FileVisitResult.SKIP_SUBTREE; // пропускаем
-                        }
-                        return FileVisitResult.CONTINUE;
-                    }
+    private void finish(Path file, FileProcessor.Delivery delivery, Runnable done) {
+        boolean processed;
+        try {
+            processed = processor.finish(delivery);
+        } finally {
+            done.run();
+        }
 
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                        handleFile(file, "CREATE_SCAN");
-                        return FileVisitResult.CONTINUE;
-                    }
-                });
-            } catch (Exception e) {
-                log.log(Level.SEVERE, "Failed to scan folder: " + folder, e);
-            }
-        });
+        // Special case: if it's a .properties file, rescan folder
+        if (processed && file.getFileName().toString().endsWith(".properties")) {
+            Path parent = file.getParent();
+            log.info(">>> .properties created, rescanning folder: " + parent);
+            scanner.execute(() -> rescanDirectory(parent, true));
+        }
+    }
+
+    /** {@code .processed}, the state directory and other dot-folders are never watched. */
+    private boolean isHidden(Path dir) {
+        return !dir.equals(rootPath) && dir.getFileName().toString().startsWith(".");
     }
 }
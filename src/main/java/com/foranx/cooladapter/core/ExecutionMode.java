@@ -0,0 +1,12 @@
+package com.foranx.cooladapter.core;
+
+/** Kind of thread the pipeline stages run on; their sizes and queues are the same either way. */
+public enum ExecutionMode {
+    /** {@code workerThreads} platform workers, one per CPU unless set, and {@code archiveThreads} archivers. */
+    PLATFORM,
+    /**
+     * {@code workerThreads} virtual workers, 64 unless set, and {@code archiveThreads} archivers;
+     * cheap enough to keep many files converting while the producer waits for send window.
+     */
+    VIRTUAL
+}
@@ -0,0 +1,177 @@
+package com.foranx.cooladapter.core;
+
+import com.foranx.cooladapter.mq.SendCallback;
+import com.foranx.cooladapter.state.CheckpointStore;
+import com.foranx.cooladapter.state.CheckpointStore.Checkpoint;
+import com.foranx.cooladapter.state.ProcessingJournal.FileKey;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Turns out-of-order send acknowledgements of one file into checkpoints.
+ * <p>
+ * Messages are registered in file order; the checkpoint advances past a message only
+ * once it and every message before it have been committed, so resuming from it never
+ * skips an unsent record. A failed message stops the checkpoint for this attempt.
+ * <p>
+ * Send callbacks only move the acknowledged position in memory and report it through
+ * {@code onAdvance}; writing it out is left to {@link #flush}, which the processor's checkpoint
+ * flusher runs right after the commit (coalescing the commits that arrive meanwhile, like the
+ * journal's group commit), and once more to {@link #close}, so no file I/O runs on the
+ * producer's threads. A crash resends the records whose commit had not been saved yet.
+ */
+final class FileCheckpointer {
+
+    private static final Logger log = Logger.getLogger(FileCheckpointer.class.getName());
+
+    private final CheckpointStore store;
+    private final Path file;
+    private final FileKey key;
+    private final long baseRecords;
+    private final Runnable onAdvance;
+    private final Consumer<FileCheckpointer> onClose;
+    /** Serializes saves, so that an older position never overwrites a newer one. */
+    private final ReentrantLock saveLock = new ReentrantLock();
+
+    private long[] offsets = new long[1024];
+    private long[] lines = new long[1024];
+    private boolean[] done = new boolean[1024];
+    private long registered;
+    private long acked;
+    private boolean failed;
+    private long ackedOffset;
+    private long ackedLine;
+    /** Guarded by {@link #saveLock}. */
+    private long savedAcked;
+    private boolean closed;
+
+    /**
+     * @param onAdvance called, on the producer's thread, whenever the acknowledged position moves
+     * @param onClose   called once by {@link #close}
+     */
+    FileCheckpointer(CheckpointStore store, Path file, Checkpoint start, Runnable onAdvance,
+                     Consumer<FileCheckpointer> onClose) {
+        this.store = store;
+        this.file = file;
+        this.key = start.key();
+        this.baseRecords = start.records();
+        this.ackedOffset = start.offset();
+        this.ackedLine = start.nextLine();
+        this.onAdvance = onAdvance;
+        this.onClose = onClose;
+    }
+
+    /** Registers the next message of the file; the returned callback must be given to the producer. */
+    synchronized SendCallback track(long endOffset, long nextLine) {
+        if (registered - acked == offsets.length) {
+            grow();
+        }
+        int slot = slot(registered);
+        offsets[slot] = endOffset;
+        lines[slot] = nextLine;
+        done[slot] = false;
+        long seq = registered++;
+        return error -> complete(seq, error);
+    }
+
+    private void complete(long seq, Exception error) {
+        if (advance(seq, error)) {
+            onAdvance.run();
+        }
+    }
+
+    /** Returns whether the acknowledged position moved. */
+    private synchronized boolean advance(long seq, Exception error) {
+        if (error != null) {
+            failed = true;
+            return false;
+        }
+        done[slot(seq)] = true;
+        if (failed) {
+            return false;
+        }
+        long before = acked;
+        while (acked < registered && done[slot(acked)]) {
+            int slot = slot(acked);
+            ackedOffset = offsets[slot];
+            ackedLine = lines[slot];
+            done[slot] = false;
+            acked++;
+        }
+        return acked > before;
+    }
+
+    /** Saves the checkpoint if it moved since the last save; does nothing once closed. */
+    void flush() {
+        saveLock.lock();
+        try {
+            if (!closed) {
+                save();
+            }
+        } finally {
+            saveLock.unlock();
+        }
+    }
+
+    /**
+     * Saves the final position and stops further saves, so the processor can delete the
+     * checkpoint of a delivered file without a late flush bringing it back.
+     */
+    void close() {
+        saveLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            save();
+            closed = true;
+        } finally {
+            saveLock.unlock();
+        }
+        onClose.accept(this);
+    }
+
+    private void save() {
+        Checkpoint checkpoint;
+        long position;
+        synchronized (this) {
+            if (acked <= savedAcked) {
+                return;
+            }
+            position = acked;
+            checkpoint = new Checkpoint(key, ackedOffset, baseRecords + acked, ackedLine);
+        }
+        try {
+            store.save(file, checkpoint);
+            savedAcked = position;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to save checkpoint of " + file, e);
+        }
+    }
+
+    private int slot(long seq) {
+        return (int) (seq & (offsets.length - 1));
+    }
+
+    private void grow() {
+        int size = offsets.length;
+        long[] newOffsets = new long[size * 2];
+        long[] newLines = new long[size * 2];
+        boolean[] newDone = new boolean[size * 2];
+        for (long seq = acked; seq < registered; seq++) {
+            int from = slot(seq);
+            int to = (int) (seq & (size * 2 - 1));
+            newOffsets[to] = offsets[from];
+            newLines[to] = lines[from];
+            newDone[to] = done[from];
+        }
+        offsets = newOffsets;
+        lines = newLines;
+        done = newDone;
+    }
+}
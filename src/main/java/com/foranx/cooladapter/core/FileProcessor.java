@@ -1,75 +1,850 @@
 package com.foranx.cooladapter.core;
 
 import com.foranx.cooladapter.config.AppConfiguration;
+import com.foranx.cooladapter.config.JobConfiguration;
+import com.foranx.cooladapter.config.JobConfigurationCache;
+import com.foranx.cooladapter.lookup.LookupTables;
+import com.foranx.cooladapter.metrics.LatencyHistogram;
+import com.foranx.cooladapter.metrics.Metrics;
+import com.foranx.cooladapter.mq.CompletionTracker;
+import com.foranx.cooladapter.mq.InFlightTracker;
+import com.foranx.cooladapter.mq.JmsProducer;
+import com.foranx.cooladapter.mq.ReplyConsumer;
+import com.foranx.cooladapter.mq.SendCallback;
+import com.foranx.cooladapter.ofs.OfsBuilder;
+import com.foranx.cooladapter.ofs.OfsPacker;
+import com.foranx.cooladapter.parser.CompressedInput;
+import com.foranx.cooladapter.parser.DataParser;
+import com.foranx.cooladapter.parser.DataRecord;
+import com.foranx.cooladapter.parser.ParallelFileParser;
+import com.foranx.cooladapter.parser.RecordReader;
+import com.foranx.cooladapter.state.CheckpointStore;
+import com.foranx.cooladapter.state.CheckpointStore.Checkpoint;
+import com.foranx.cooladapter.state.FileClaims;
+import com.foranx.cooladapter.state.ProcessingJournal;
+import com.foranx.cooladapter.state.ProcessingJournal.FileKey;
+import com.foranx.cooladapter.state.ProcessingJournal.State;
+import com.foranx.cooladapter.state.SentFiles;
+import com.foranx.cooladapter.util.FileUtils;
+import com.foranx.cooladapter.validation.FileValidator;
+import com.foranx.cooladapter.validation.ValidationReport;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
-import java.util.Properties;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class FileProcessor {
 
     private static final Logger log = Logger.getLogger(FileProcessor.class.getName());
+    private static final long JOB_REVALIDATE_MS = 1000;
+    /** One record in 64 is timed for the OFS build histogram. */
+    private static final int BUILD_SAMPLE_MASK = 63;
+
+    private static final LongAdder FILES_SENT = Metrics.shared().counter(
+            "cooladapter_files_total{result=\"sent\"}", "Data files handled, by outcome");
+    private static final LongAdder FILES_DUPLICATE = Metrics.shared().counter(
+            "cooladapter_files_total{result=\"duplicate\"}", "Data files handled, by outcome");
+    private static final LongAdder FILES_CLAIMED_ELSEWHERE = Metrics.shared().counter(
+            "cooladapter_files_total{result=\"claimed_elsewhere\"}", "Data files handled, by outcome");
+    private static final LongAdder FILES_REJECTED = Metrics.shared().counter(
+            "cooladapter_files_total{result=\"rejected\"}", "Data files handled, by outcome");
+    private static final LongAdder FILES_FAILED = Metrics.shared().counter(
+            "cooladapter_files_total{result=\"failed\"}", "Data files handled, by outcome");
+    private static final LongAdder RECORDS = Metrics.shared().counter(
+            "cooladapter_records_total", "Records converted to OFS messages");
+    private static final LongAdder PACKED_RECORDS = Metrics.shared().counter(
+            "cooladapter_packed_records_total", "Records sent inside a packed payload rather than on their own");
+    private static final LongAdder BYTES = Metrics.shared().counter(
+            "cooladapter_parsed_bytes_total", "Bytes of input parsed");
+    private static final LatencyHistogram FILE_TIME = Metrics.shared().histogram(
+            "cooladapter_file_seconds", "Time to process one data file, from pickup to archive");
+    private static final LatencyHistogram VALIDATE_TIME = Metrics.shared().histogram(
+            "cooladapter_validate_seconds", "Time to validate a file before it is sent");
+    private static final LatencyHistogram CONVERT_TIME = Metrics.shared().histogram(
+            "cooladapter_convert_seconds", "Time to parse a file and hand its messages to the producer");
+    private static final LatencyHistogram SEND_WAIT_TIME = Metrics.shared().histogram(
+            "cooladapter_send_wait_seconds", "Time from the end of conversion until every message is committed");
+    private static final LatencyHistogram BUILD_TIME = Metrics.shared().histogram(
+            "cooladapter_ofs_build_seconds", "Time to build one OFS message (sampled)");
+
     private final AppConfiguration config;
+    private final ForkJoinPool parserPool;
+    private final ParallelFileParser parallelParser;
+    private final JmsProducer producer;
+    private final LookupTables lookups;
+    private final JobConfigurationCache jobs;
+    private final ProcessingJournal journal;
+    /** What any instance delivered; the journal only knows this instance's files. */
+    private final SentFiles sentFiles;
+    private final CheckpointStore checkpoints;
+    private final FileClaims claims;
+    /** Correlation of T24 replies, or {@code null} without a reply queue. */
+    private final InFlightTracker replies;
+    private final ReplyConsumer replyConsumer;
+    private final Set<FileResults> openResults = ConcurrentHashMap.newKeySet();
+    /** Checkpointers of the files being sent, saved by {@link #checkpointFlusher}. */
+    private final Set<FileCheckpointer> openCheckpointers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService checkpointFlusher;
+    /** Set while a pass of {@link #checkpointFlusher} is scheduled and has not started yet. */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicInteger filesInFlight = new AtomicInteger();
 
     public FileProcessor(AppConfiguration config) {
+        this(config, new JmsProducer(config));
+    }
+
+    public FileProcessor(AppConfiguration config, JmsProducer producer) {
         this.config = config;
+        this.producer = producer;
+        this.lookups = new LookupTables(config.getLookupCacheSize(), config.getLookupReloadMs());
+        this.jobs = new JobConfigurationCache(config, lookups, JOB_REVALIDATE_MS);
+        Path journalFile = config.getStateDirectory().resolve("journal-" + config.getInstanceId() + ".log");
+        try {
+            long retentionMs = TimeUnit.HOURS.toMillis(config.getJournalRetentionHours());
+            this.journal = ProcessingJournal.open(journalFile, retentionMs);
+            this.sentFiles = new SentFiles(config.getStateDirectory().resolve("sent"), retentionMs);
+            this.checkpoints = new CheckpointStore(config.getStateDirectory().resolve("checkpoints"));
+            this.claims = new FileClaims(config.getStateDirectory().resolve("leases"), config.getInstanceId(),
+                    config.getLeaseTimeoutMs());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open state directory " + config.getStateDirectory(), e);
+        }
+        if (config.getReplyQueue().isEmpty()) {
+            this.replies = null;
+            this.replyConsumer = null;
+        } else {
+            String prefix = config.getInstanceId() + "-";
+            this.replies = new InFlightTracker(prefix, config.getReplyTimeoutMs());
+            this.replyConsumer = new ReplyConsumer(config, prefix, replies);
+        }
+        this.parserPool = new ForkJoinPool(config.getParserThreads());
+        this.parallelParser = new ParallelFileParser(parserPool, config.getParserThreads() * 2);
+        this.checkpointFlusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        Metrics.shared().gauge("cooladapter_files_in_flight", "Data files being processed", filesInFlight::get);
+    }
+
+    public void close() {
+        producer.close();
+        checkpointFlusher.shutdownNow();
+        flushCheckpoints();
+        if (replies != null) {
+            replyConsumer.close();
+            replies.close();
+            for (FileResults results : openResults) {
+                results.close();
+            }
+        }
+        parserPool.shutdownNow();
+        try {
+            parserPool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lookups.close();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to close journal", e);
+        }
+        try {
+            claims.close();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to release lease", e);
+        }
+    }
+
+    /**
+     * Moves the files under {@code dir} claimed by instances whose lease expired, or by this
+     * instance before a restart, back into {@code dir}; returns how many were moved.
+     */
+    public int recoverClaims(Path dir) {
+        return claims.recover(dir);
+    }
+
+    /**
+     * The job of {@code dir}, or {@code null} if it has no {@code .properties} file.
+     *
+     * @throws IllegalStateException if the job file is invalid
+     */
+    public JobConfiguration getJob(Path dir) throws IOException {
+        return jobs.get(dir);
+    }
+
+    /** Drops the cached job of {@code dir}, e.g. after its {@code .properties} file was deleted. */
+    public void invalidateJob(Path dir) {
+        jobs.invalidate(dir);
     }
 
     public boolean processFile(Path file) {
+        return finish(start(file));
+    }
+
+    /**
+     * First half of {@link #processFile}: converts the file and hands its messages to the
+     * producer. The result must be passed to {@link #finish}, usually by another stage.
+     */
+    public Delivery start(Path file) {
         try {
-            if (!Files.isRegularFile(file)) return false;
+            if (!Files.isRegularFile(file)) return Delivery.done(false);
 
             Path parentDir = file.getParent();
-            if (parentDir.getFileName().toString().equals(".processed")) return false;
+            if (parentDir.getFileName().toString().startsWith(".")) return Delivery.done(false);
 
-            String ext = getFileExtension(file.getFileName().toString());
-            if (!config.getSupportedExtensions().contains(ext) && !ext.equals("properties")) return false;
+            String name = file.getFileName().toString();
+            boolean isProperties = getFileExtension(name).equals("properties");
+            if (!isProperties && !isSupported(name)) return Delivery.done(false);
 
-            Path propertiesFile;
-            try (var stream = Files.list(parentDir)) {
-                propertiesFile = stream
-                        .filter(p -> p.toString().endsWith(".properties"))
-                        .findFirst()
-                        .orElse(null);
+            if (isProperties) {
+                jobs.invalidate(parentDir);
             }
-
-            if (!file.getFileName().toString().endsWith(".properties") && propertiesFile == null) {
+            JobConfiguration job = jobs.get(parentDir);
+            if (!isProperties && job == null) {
                 log.info(">>> Skipping file " + file + ": no .properties in folder");
-                return false;
-            }
-
-            if (propertiesFile != null) {
-                Properties props = new Properties();
-                try (InputStream in = Files.newInputStream(propertiesFile)) {
-                    props.load(in);
-                }
-                log.info(">>> Properties from " + propertiesFile + ": " + props);
+                return Delivery.done(false);
             }
 
             Path processedDir = parentDir.resolve(".processed");
             Files.createDirectories(processedDir);
 
-            if (!file.getFileName().toString().endsWith(".properties")) {
-                Path processedFile = processedDir.resolve(file.getFileName());
-                if (!Files.exists(processedFile) || Files.mismatch(file, processedFile) != -1) {
-                    log.info(">>> Processing file: " + file);
-                    Files.copy(file, processedFile, StandardCopyOption.REPLACE_EXISTING);
-                    log.info(">>> File copied to .processed: " + processedFile);
-                } else {
-                    log.info(">>> File already processed and unchanged: " + file);
-                }
+            if (!isProperties) {
+                return startDataFile(file, job, processedDir);
             }
 
+            return Delivery.done(true);
+        } catch (IOException | IllegalStateException e) {
+            log.log(Level.WARNING, "Error processing file: " + file, e);
+            return Delivery.done(false);
+        }
+    }
+
+    /**
+     * Second half of {@link #processFile}: waits until the broker has committed every
+     * message, then archives the file. Returns whether the file was processed. The pipeline
+     * calls it from {@link Delivery#whenSent}, when there is nothing left to wait for.
+     */
+    public boolean finish(Delivery delivery) {
+        if (delivery.tracker == null) {
+            return delivery.result;
+        }
+        Path file = delivery.file;
+        LongAdder outcome = FILES_FAILED;
+        try {
+            try {
+                delivery.tracker.await(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.info(">>> Interrupted while waiting for " + file);
+                return false;
+            } finally {
+                delivery.checkpointer.close();
+                SEND_WAIT_TIME.recordSince(delivery.converted);
+            }
+            CompletionTracker tracker = delivery.tracker;
+            if (tracker.getFailed() > 0) {
+                log.log(Level.WARNING, ">>> " + tracker.getFailed() + " of " + delivery.records + " messages from "
+                        + file + " were not sent", tracker.getFirstError());
+                return false;
+            }
+            journal.record(file, State.SENT, delivery.key, delivery.records);
+            sentFiles.record(file, delivery.key, delivery.records);
+            log.info(">>> Sent " + delivery.records + " messages from " + file);
+
+            Path processedFile = archive(delivery.claimed, delivery.processedDir);
+            claims.done(delivery.claimed);
+            journal.record(file, State.ACKED, delivery.key, delivery.records);
+            checkpoints.delete(file);
+            log.info(">>> File moved to .processed: " + processedFile);
+            outcome = FILES_SENT;
             return true;
+        } catch (NoSuchFileException e) {
+            log.warning(">>> Claim on " + file + " was taken back while it was sent; lease expired?");
+            return false;
         } catch (IOException e) {
             log.log(Level.WARNING, "Error processing file: " + file, e);
             return false;
+        } finally {
+            if (outcome == FILES_FAILED) {
+                releaseClaim(delivery.claimed);
+            }
+            filesInFlight.decrementAndGet();
+            outcome.increment();
+            FILE_TIME.recordSince(delivery.started);
         }
     }
 
+    /**
+     * Ends the claim on a file that failed, so that the next claim recovery moves it back into
+     * its folder and it is tried again, by this instance or another one.
+     */
+    private void releaseClaim(Path claimed) {
+        claims.done(claimed);
+        if (Files.exists(claimed)) {
+            log.info(">>> " + claimed + " is left to be retried after the next claim recovery");
+        }
+    }
+
+    private Delivery startDataFile(Path file, JobConfiguration job, Path processedDir) throws IOException {
+        long started = System.nanoTime();
+        filesInFlight.incrementAndGet();
+        LongAdder outcome = FILES_FAILED;
+        Path claimed = null;
+        try {
+            claimed = claims.claim(file);
+            if (claimed == null) {
+                log.fine(">>> File claimed by another instance: " + file);
+                outcome = FILES_CLAIMED_ELSEWHERE;
+                return Delivery.done(false);
+            }
+            deleteReadyMarker(file);
+            FileKey key = fileKey(claimed);
+            long sentRecords = alreadySent(file, key);
+            if (sentRecords >= 0) {
+                log.info(">>> File already sent and unchanged, archiving: " + file);
+                archive(claimed, processedDir);
+                claims.done(claimed);
+                journal.record(file, State.ACKED, key, sentRecords);
+                outcome = FILES_DUPLICATE;
+                return Delivery.done(true);
+            }
+
+            Checkpoint start = checkpoints.load(file);
+            if (start != null && key.sameContent(start.key())) {
+                log.info(">>> Resuming file " + file + " after " + start.records()
+                        + " sent records (offset " + start.offset() + ")");
+            } else {
+                log.info(">>> Processing file: " + file);
+                start = new Checkpoint(key, 0, 0, 1);
+                String failures = job.getValidator() != null ? validate(file, claimed, job) : null;
+                if (failures != null) {
+                    reject(file, claimed, key, failures);
+                    outcome = FILES_REJECTED;
+                    return Delivery.done(false);
+                }
+            }
+            journal.record(file, State.SEEN, key, start.records());
+            Delivery delivery = send(file, claimed, job, start, processedDir, started);
+            outcome = null;
+            return delivery;
+        } finally {
+            if (outcome != null) {
+                if (outcome == FILES_FAILED && claimed != null) {
+                    releaseClaim(claimed);
+                }
+                filesInFlight.decrementAndGet();
+                outcome.increment();
+                FILE_TIME.recordSince(started);
+            }
+        }
+    }
+
+    /**
+     * Deletes the ready marker of a claimed file, so that it cannot release a later file of the
+     * same name before that one is complete.
+     */
+    private void deleteReadyMarker(Path file) {
+        String marker = config.getReadyMarker();
+        if (marker.isEmpty()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + marker));
+        } catch (IOException e) {
+            log.log(Level.FINE, "Cannot delete the ready marker of " + file, e);
+        }
+    }
+
+    /**
+     * Hands the records after {@code start} to the producer without waiting for them. The journal
+     * and checkpoints know the file by its path in the job folder, {@code claimed} is where it is read.
+     */
+    private Delivery send(Path file, Path claimed, JobConfiguration job, Checkpoint start, Path processedDir,
+                          long started) throws IOException {
+        FileKey key = start.key();
+        CompletionTracker tracker = new CompletionTracker();
+        FileResults results = replies == null ? null : openResults(file, processedDir);
+        FileCheckpointer checkpointer = new FileCheckpointer(checkpoints, file, start, this::requestFlush,
+                openCheckpointers::remove);
+        openCheckpointers.add(checkpointer);
+        FileSender sender = new FileSender(file, job, tracker, checkpointer, results);
+        long records;
+        try {
+            records = start.records() + convert(claimed, job, start, sender);
+            sender.flush();
+        } catch (IOException | RuntimeException e) {
+            checkpointer.close();
+            throw e;
+        } finally {
+            if (results != null) {
+                results.seal();
+            }
+        }
+        journal.record(file, State.PARSED, key, records);
+        return new Delivery(false, file, claimed, processedDir, key, tracker, checkpointer, records, started);
+    }
+
+    /**
+     * Hands the messages of one file to the producer: one JMS message per record, or, when the
+     * job packs, up to {@code packSize} records per payload. Each record still has its own
+     * checkpoint entry, completion and result line. Used by one thread at a time.
+     */
+    private final class FileSender implements MessageSink {
+        private final Path file;
+        private final JobConfiguration job;
+        private final CompletionTracker tracker;
+        private final FileCheckpointer checkpointer;
+        private final FileResults results;
+        private final OfsPacker packer;
+        private final SendCallback[] packAcks;
+        private final long[] packLines;
+
+        FileSender(Path file, JobConfiguration job, CompletionTracker tracker, FileCheckpointer checkpointer,
+                   FileResults results) {
+            this.file = file;
+            this.job = job;
+            this.tracker = tracker;
+            this.checkpointer = checkpointer;
+            this.results = results;
+            this.packer = job.newPacker();
+            this.packAcks = new SendCallback[packer == null ? 0 : job.getPackSize()];
+            this.packLines = new long[packAcks.length];
+        }
+
+        @Override
+        public void accept(CharSequence message, long line, long offset, long nextLine) throws IOException {
+            if (log.isLoggable(Level.FINE)) {
+                log.fine(">>> OFS line " + line + ": " + message);
+            }
+            boolean packed = packer != null && packer.accepts(message);
+            if (!packed || !packer.fits(message)) {
+                flush();
+            }
+            SendCallback acked = checkpointer.track(offset, nextLine);
+            tracker.register();
+            if (results != null) {
+                results.expect();
+            }
+            if (!packed) {
+                String correlationId = results == null ? null
+                        : replies.register((status, detail) -> results.record(line, status, detail));
+                send(message.toString(), correlationId, error -> {
+                    acked.onCompletion(error);
+                    tracker.onCompletion(error);
+                });
+                return;
+            }
+            packAcks[packer.size()] = acked;
+            packLines[packer.size()] = line;
+            packer.add(message);
+            if (packer.isFull()) {
+                flush();
+            }
+        }
+
+        /** Sends the records packed so far. */
+        void flush() throws IOException {
+            int n = packer == null ? 0 : packer.size();
+            if (n == 0) {
+                return;
+            }
+            SendCallback[] acks = Arrays.copyOf(packAcks, n);
+            String correlationId = null;
+            if (results != null) {
+                InFlightTracker.Outcome[] outcomes = new InFlightTracker.Outcome[n];
+                for (int i = 0; i < n; i++) {
+                    long line = packLines[i];
+                    outcomes[i] = (status, detail) -> results.record(line, status, detail);
+                }
+                correlationId = replies.register(outcomes, packer.getSeparator());
+            }
+            send(packer.drain(), correlationId, error -> {
+                for (SendCallback acked : acks) {
+                    acked.onCompletion(error);
+                    tracker.onCompletion(error);
+                }
+            });
+            PACKED_RECORDS.add(n);
+        }
+
+        private void send(String text, String correlationId, SendCallback callback) throws IOException {
+            try {
+                producer.send(text, job.getBatchSize(), correlationId, error -> {
+                    callback.onCompletion(error);
+                    if (error != null && correlationId != null) {
+                        replies.fail(correlationId, "not sent: " + error);
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (correlationId != null) {
+                    replies.fail(correlationId, "not sent: interrupted");
+                }
+                throw new InterruptedIOException("Interrupted while sending " + file);
+            }
+        }
+    }
+
+    /**
+     * Schedules a pass of the flusher after a commit moved a checkpoint. Commits that arrive before
+     * the pass starts share it, and those that arrive while it saves schedule the next one, so a
+     * busy file costs one save per save latency rather than one per batch.
+     */
+    private void requestFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                checkpointFlusher.schedule(() -> {
+                    flushScheduled.set(false);
+                    flushCheckpoints();
+                }, config.getCheckpointIntervalMs(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Closing: close() saves the checkpoints itself
+            }
+        }
+    }
+
+    /** Saves the checkpoints that moved since the last pass. */
+    private void flushCheckpoints() {
+        for (FileCheckpointer checkpointer : openCheckpointers) {
+            checkpointer.flush();
+        }
+    }
+
+    private FileResults openResults(Path file, Path processedDir) throws IOException {
+        FileResults results = FileResults.open(processedDir, file, openResults::remove);
+        openResults.add(results);
+        return results;
+    }
+
+    /**
+     * A file between {@link #start} and {@link #finish}: either already done, or with its
+     * messages handed to the producer and awaiting the broker.
+     */
+    public static final class Delivery {
+        private static final Delivery DONE = new Delivery(true, null, null, null, null, null, null, 0, 0);
+        private static final Delivery NOT_DONE = new Delivery(false, null, null, null, null, null, null, 0, 0);
+
+        private final boolean result;
+        private final Path file;
+        private final Path claimed;
+        private final Path processedDir;
+        private final FileKey key;
+        private final CompletionTracker tracker;
+        private final FileCheckpointer checkpointer;
+        private final long records;
+        private final long started;
+        /** When the last message was handed to the producer. */
+        private final long converted = System.nanoTime();
+
+        private Delivery(boolean result, Path file, Path claimed, Path processedDir, FileKey key,
+                         CompletionTracker tracker, FileCheckpointer checkpointer, long records, long started) {
+            this.result = result;
+            this.file = file;
+            this.claimed = claimed;
+            this.processedDir = processedDir;
+            this.key = key;
+            this.tracker = tracker;
+            this.checkpointer = checkpointer;
+            this.records = records;
+            this.started = started;
+        }
+
+        static Delivery done(boolean result) {
+            return result ? DONE : NOT_DONE;
+        }
+
+        /** Whether {@link #finish} has to wait for the broker. */
+        public boolean isPending() {
+            return tracker != null;
+        }
+
+        /**
+         * Runs {@code action} once the broker has completed every message, on the producer's
+         * thread that completed the last one; it must hand the rest of the work off.
+         */
+        public void whenSent(Runnable action) {
+            if (tracker == null) {
+                action.run();
+            } else {
+                tracker.whenDone(action);
+            }
+        }
+    }
+
+    /**
+     * Runs the job's checks on {@code claimed}, on every entry of an archive; returns the error
+     * report, or {@code null} if the file passed.
+     */
+    private String validate(Path file, Path claimed, JobConfiguration job) throws IOException {
+        long started = System.nanoTime();
+        FileValidator validator = job.getValidator();
+        try {
+            if (!CompressedInput.isCompressed(claimed.getFileName().toString())) {
+                try (FileChannel channel = FileChannel.open(claimed, StandardOpenOption.READ)) {
+                    return failures(file.toString(), validator.validate(channel, job.isSkipHeader()));
+                }
+            }
+            try (CompressedInput input = CompressedInput.open(claimed,
+                    entry -> config.getSupportedExtensions().contains(getFileExtension(entry)))) {
+                while (input.nextEntry()) {
+                    String failures = failures(file + "!" + input.entryName(),
+                            validator.validate(input.channel(), job.isSkipHeader()));
+                    if (failures != null) {
+                        return failures;
+                    }
+                }
+                return null;
+            }
+        } finally {
+            VALIDATE_TIME.recordSince(started);
+        }
+    }
+
+    private static String failures(String name, ValidationReport report) {
+        if (report.isValid()) {
+            log.info(">>> Validated " + name + ": " + report.getRecords() + " records");
+            return null;
+        }
+        return name + ": " + report;
+    }
+
+    /** Moves a file that failed validation to {@code .rejected}, next to its error report. */
+    private void reject(Path file, Path claimed, FileKey key, String failures) throws IOException {
+        log.warning(">>> Validation failed for " + failures);
+        Path rejectedDir = Files.createDirectories(file.resolveSibling(".rejected"));
+        Files.writeString(rejectedDir.resolve(file.getFileName() + ".errors.txt"), failures);
+        Path target = archive(claimed, rejectedDir);
+        claims.done(claimed);
+        journal.record(file, State.REJECTED, key, 0);
+        log.warning(">>> File moved to .rejected: " + target);
+    }
+
+    /**
+     * Number of records sent from the content {@code key} of {@code file}, by this instance or
+     * another one, or -1 if that content was not delivered yet.
+     */
+    private long alreadySent(Path file, FileKey key) throws IOException {
+        ProcessingJournal.Entry last = journal.get(file);
+        if (last != null && key.sameContent(last.key())
+                && (last.state() == State.SENT || last.state() == State.ACKED)) {
+            return last.records();
+        }
+        SentFiles.Sent sent = sentFiles.get(file);
+        return sent != null && key.sameContent(sent.key()) ? sent.records() : -1;
+    }
+
+    private static FileKey fileKey(Path file) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        return new FileKey(attrs.size(), attrs.lastModifiedTime().toMillis(), FileUtils.crc32c(file));
+    }
+
+    private static Path archive(Path file, Path processedDir) throws IOException {
+        Path target = processedDir.resolve(file.getFileName());
+        try {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    @FunctionalInterface
+    interface MessageSink {
+        void accept(CharSequence message, long lineNumber, long endOffset, long nextLine) throws IOException;
+    }
+
+    /** Converts the records from {@code start} on; returns how many were handed to the sink. */
+    private long convert(Path file, JobConfiguration job, Checkpoint start, MessageSink sink) throws IOException {
+        long started = System.nanoTime();
+        DataParser parser = job.getParser();
+        OfsBuilder builder = job.getOfsBuilder();
+        long[] records = {0};
+        int chunks = 1;
+        boolean skipHeader = job.isSkipHeader() && start.offset() == 0;
+        boolean compressed = CompressedInput.isCompressed(file.getFileName().toString());
+
+        if (compressed) {
+            records[0] = convertCompressed(file, job, start, sink);
+        } else if (job.getSplitThreshold() > 0 && Files.size(file) >= job.getSplitThreshold()
+                && ParallelFileParser.isSplittable(parser)) {
+            chunks = parallelParser.parse(parser, file, start.offset(), start.nextLine(), job.getChunkSize(),
+                    (chunk, reader) -> buildChunk(reader, builder, skipHeader && chunk.index() == 0),
+                    (chunk, batch) -> {
+                        for (int i = 0; i < batch.size; i++) {
+                            sink.accept(batch.messages[i], batch.lines[i], batch.endOffsets[i], batch.nextLines[i]);
+                        }
+                        records[0] += batch.size;
+                    });
+        } else {
+            try (RecordReader reader = parser.open(file, start.offset())) {
+                // A resumed reader starts after the header, which took record index 0
+                reader.numbering(start.nextLine(), start.records() + (job.isSkipHeader() && !skipHeader ? 1 : 0));
+                boolean skip = skipHeader;
+                while (reader.next()) {
+                    DataRecord record = reader.record();
+                    if (skip) {
+                        skip = false;
+                        continue;
+                    }
+                    CharSequence message;
+                    if ((records[0] & BUILD_SAMPLE_MASK) == 0) {
+                        long buildStarted = System.nanoTime();
+                        message = builder.build(record);
+                        BUILD_TIME.recordSince(buildStarted);
+                    } else {
+                        message = builder.build(record);
+                    }
+                    sink.accept(message, record.lineNumber(), record.endOffset(), record.nextLineNumber());
+                    records[0]++;
+                }
+            }
+        }
+
+        CONVERT_TIME.recordSince(started);
+        RECORDS.add(records[0]);
+        if (!compressed) {
+            BYTES.add(Files.size(file) - start.offset());
+        }
+        long ms = (System.nanoTime() - started) / 1_000_000;
+        log.info(">>> Converted " + records[0] + " records from " + file + " in " + ms + " ms"
+                + (chunks > 1 ? " (" + chunks + " chunks)" : ""));
+        return records[0];
+    }
+
+    /**
+     * Converts a {@code .gz} or {@code .zip} while decompressing it, entry by entry. Offsets count
+     * decompressed bytes across the entries that are parsed, so resuming re-reads the archive and
+     * skips what was already sent. Line numbers and record indexes run on across the entries
+     * instead of restarting with each one; each entry has its own header.
+     */
+    private long convertCompressed(Path file, JobConfiguration job, Checkpoint start, MessageSink sink)
+            throws IOException {
+        DataParser parser = job.getParser();
+        OfsBuilder builder = job.getOfsBuilder();
+        long records = 0;
+        long parsed = 0;
+        long base = 0;
+        long line = 1;
+        long index = 0;
+        int entries = 0;
+        try (CompressedInput input = CompressedInput.open(file,
+                name -> config.getSupportedExtensions().contains(getFileExtension(name)))) {
+            while (input.nextEntry()) {
+                entries++;
+                long toSkip = start.offset() - base;
+                long skipped = input.skip(toSkip);
+                if (skipped < toSkip) {
+                    // sent completely before the checkpoint
+                    base += skipped;
+                    continue;
+                }
+                boolean resumed = skipped > 0;
+                long origin = base + skipped;
+                log.info(">>> Reading " + input.entryName() + " from " + file
+                        + (resumed ? " at offset " + skipped : ""));
+                if (resumed) {
+                    // every entry up to this one started with a header
+                    line = start.nextLine();
+                    index = start.records() + (job.isSkipHeader() ? entries : 0);
+                }
+                try (RecordReader reader = parser.open(input.channel())) {
+                    reader.numbering(line, index);
+                    boolean skip = job.isSkipHeader() && !resumed;
+                    while (reader.next()) {
+                        DataRecord record = reader.record();
+                        // the next entry starts on a new line, even after a last line without
+                        // terminator; checkpoints carry the same number, so resuming agrees
+                        line = Math.max(record.nextLineNumber(), record.lineNumber() + 1);
+                        index = record.recordIndex() + 1;
+                        if (skip) {
+                            skip = false;
+                            continue;
+                        }
+                        sink.accept(builder.build(record), record.lineNumber(), origin + record.endOffset(), line);
+                        records++;
+                    }
+                }
+                base += input.position();
+                parsed += input.position() - skipped;
+            }
+        }
+        BYTES.add(parsed);
+        return records;
+    }
+
+    private static OfsChunk buildChunk(RecordReader reader, OfsBuilder builder, boolean skipHeader) throws IOException {
+        OfsChunk batch = new OfsChunk();
+        StringBuilder out = new StringBuilder(1024);
+        while (reader.next()) {
+            DataRecord record = reader.record();
+            if (skipHeader) {
+                skipHeader = false;
+                continue;
+            }
+            out.setLength(0);
+            if ((batch.size & BUILD_SAMPLE_MASK) == 0) {
+                long buildStarted = System.nanoTime();
+                builder.appendTo(out, record);
+                BUILD_TIME.recordSince(buildStarted);
+            } else {
+                builder.appendTo(out, record);
+            }
+            batch.add(out.toString(), record.lineNumber(), record.endOffset(), record.nextLineNumber());
+        }
+        return batch;
+    }
+
+    /** Messages built from one chunk, kept until earlier chunks have been emitted. */
+    private static final class OfsChunk {
+        String[] messages = new String[1024];
+        long[] lines = new long[1024];
+        long[] endOffsets = new long[1024];
+        long[] nextLines = new long[1024];
+        int size;
+
+        void add(String message, long line, long endOffset, long nextLine) {
+            if (size == messages.length) {
+                messages = Arrays.copyOf(messages, size * 2);
+                lines = Arrays.copyOf(lines, size * 2);
+                endOffsets = Arrays.copyOf(endOffsets, size * 2);
+                nextLines = Arrays.copyOf(nextLines, size * 2);
+            }
+            messages[size] = message;
+            lines[size] = line;
+            endOffsets[size] = endOffset;
+            nextLines[size] = nextLine;
+            size++;
+        }
+    }
+
+    /**
+     * Plain files by extension, {@code .gz} files by the extension of the name inside, and every
+     * {@code .zip}, whose entries are filtered by extension when it is read.
+     */
+    private boolean isSupported(String name) {
+        if (CompressedInput.isCompressed(name)) {
+            String dataName = CompressedInput.dataName(name);
+            return dataName == null || config.getSupportedExtensions().contains(getFileExtension(dataName));
+        }
+        return config.getSupportedExtensions().contains(getFileExtension(name));
+    }
 
     private String getFileExtension(String filename) {
         int idx = filename.lastIndexOf('.');
@@ -0,0 +1,111 @@
+package com.foranx.cooladapter.core;
+
+import com.foranx.cooladapter.mq.InFlightTracker.Status;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * T24's verdict on every record of one data file, one line {@code line TAB status TAB detail}
+ * per reply, in the order the replies arrive. Lines go to {@code name.result.part} in
+ * {@code .processed}, which is renamed to {@code name.result} once every message sent in this
+ * attempt has a result. A resumed file appends to the same part file, and a record that is
+ * sent again after a failure gets a second line; the last one counts.
+ */
+final class FileResults {
+
+    private static final Logger log = Logger.getLogger(FileResults.class.getName());
+
+    private final Path part;
+    private final Path target;
+    private final Consumer<FileResults> onClose;
+    private BufferedWriter writer;
+    private long expected;
+    private long received;
+    private long errors;
+    private boolean sealed;
+
+    private FileResults(Path part, Path target, BufferedWriter writer, Consumer<FileResults> onClose) {
+        this.part = part;
+        this.target = target;
+        this.writer = writer;
+        this.onClose = onClose;
+    }
+
+    /** @param onClose called once the file is complete or closed */
+    static FileResults open(Path processedDir, Path file, Consumer<FileResults> onClose) throws IOException {
+        Path target = processedDir.resolve(file.getFileName() + ".result");
+        Path part = processedDir.resolve(file.getFileName() + ".result.part");
+        BufferedWriter writer = Files.newBufferedWriter(part, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new FileResults(part, target, writer, onClose);
+    }
+
+    /** Counts one more message whose result is to be written. */
+    synchronized void expect() {
+        expected++;
+    }
+
+    /** No more messages will be sent in this attempt. */
+    synchronized void seal() {
+        sealed = true;
+        completeIfDone();
+    }
+
+    synchronized void record(long line, Status status, String detail) {
+        if (writer == null) {
+            return;
+        }
+        received++;
+        if (status != Status.OK) {
+            errors++;
+        }
+        try {
+            writer.append(Long.toString(line)).append('\t').append(status.name()).append('\t')
+                    .append(detail == null ? "" : detail).append('\n');
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot write " + part, e);
+        }
+        completeIfDone();
+    }
+
+    private void completeIfDone() {
+        if (!sealed || received < expected || writer == null) {
+            return;
+        }
+        close();
+        try {
+            try {
+                Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            log.info(">>> Results written to " + target + ": " + (received - errors) + " OK, " + errors + " not OK");
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot rename " + part, e);
+        }
+    }
+
+    /** Writes what was received so far and leaves the part file; later results are dropped. */
+    synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot write " + part, e);
+        }
+        writer = null;
+        onClose.accept(this);
+    }
+}
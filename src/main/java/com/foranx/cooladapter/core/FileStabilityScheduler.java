@@ -0,0 +1,364 @@
+package com.foranx.cooladapter.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Debounces watcher events before files reach the workers.
+ * <p>
+ * A file is dispatched once its size and mtime have not changed for {@code quietMs}, or as
+ * soon as its ready marker ({@code name + readyMarker}) exists. A marker older than its file
+ * is left over from an earlier file of the same name and is ignored; the processor deletes
+ * markers when it claims their file. Further events for a waiting file only push its
+ * deadline back; events for a file that is being processed make it checked again
+ * afterwards, and it runs again only if it actually changed. All waiting is done by one
+ * timer thread, worker threads never sleep.
+ * <p>
+ * At most {@code maxPending} files are tracked, from their first event until their
+ * processing completes; {@link #touch} of a new file waits for room, which holds back
+ * discovery while the later stages are saturated. {@link #offer} leaves that wait to an
+ * intake thread, for callers such as the directory scanner that must keep going.
+ */
+final class FileStabilityScheduler implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(FileStabilityScheduler.class.getName());
+
+    private final BiConsumer<Path, Runnable> workers;
+    private final BiConsumer<Path, Runnable> action;
+    private final long quietNanos;
+    private final String readyMarker;
+    private final int maxPending;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService intake;
+    /** Files handed to {@link #offer} and not yet touched by the intake thread. */
+    private final Set<Path> offered = ConcurrentHashMap.newKeySet();
+    private final Map<Path, Candidate> candidates = new HashMap<>();
+    private boolean closed;
+
+    /**
+     * @param workers queues a task for a file, possibly waiting for room; throws
+     *                {@link RejectedExecutionException} once closed
+     * @param action  runs on {@code workers} and is given a callback that it must call exactly
+     *                once, possibly from another thread, when processing of the file is complete
+     */
+    FileStabilityScheduler(BiConsumer<Path, Runnable> workers, BiConsumer<Path, Runnable> action, long quietMs,
+                           String readyMarker, int maxPending) {
+        this.workers = workers;
+        this.action = action;
+        this.quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMs);
+        this.readyMarker = readyMarker == null ? "" : readyMarker;
+        this.maxPending = maxPending;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "file-stability");
+            t.setDaemon(true);
+            return t;
+        });
+        this.intake = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "file-intake");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Reports a created, modified or scanned file. */
+    void touch(Path file) {
+        touch(file, false);
+    }
+
+    /**
+     * Reports a scanned file without waiting: it is touched, in order, by the intake thread,
+     * which waits for room instead of the caller. A file already waiting there is not queued twice.
+     */
+    void offer(Path file) {
+        if (offered.add(file)) {
+            try {
+                intake.execute(() -> {
+                    offered.remove(file);
+                    touch(file);
+                });
+            } catch (RejectedExecutionException e) {
+                offered.remove(file);
+            }
+        }
+    }
+
+    /**
+     * Reports a file left from before startup: it counts as quiet since its mtime rather than
+     * since now, so a file nobody wrote to for {@code quietMs} runs without waiting again.
+     */
+    void touchExisting(Path file) {
+        touch(file, true);
+    }
+
+    private void touch(Path file, boolean quietSinceModified) {
+        if (isMarker(file)) {
+            String name = file.getFileName().toString();
+            Path data = file.resolveSibling(name.substring(0, name.length() - readyMarker.length()));
+            if (isReady(data)) {
+                dispatchNow(data);
+            }
+            return;
+        }
+        if (isReady(file)) {
+            dispatchNow(file);
+            return;
+        }
+        BasicFileAttributes attrs = readAttributes(file);
+        if (attrs == null) {
+            return;
+        }
+        synchronized (this) {
+            Candidate c = candidates.get(file);
+            if (c == null) {
+                if (!awaitRoom()) {
+                    return;
+                }
+                c = candidates.get(file);
+            }
+            if (c != null) {
+                c.changedAt = System.nanoTime();
+                c.dirty |= c.running;
+                return;
+            }
+            c = new Candidate();
+            c.observe(attrs);
+            candidates.put(file, c);
+            long delay = quietNanos;
+            if (quietSinceModified) {
+                long age = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - attrs.lastModifiedTime().toMillis());
+                long quietFor = Math.max(0, Math.min(age, quietNanos));
+                c.changedAt -= quietFor;
+                delay -= quietFor;
+            }
+            schedule(file, c, delay);
+        }
+    }
+
+    private void dispatchNow(Path file) {
+        BasicFileAttributes attrs = readAttributes(file);
+        if (attrs == null || !attrs.isRegularFile()) {
+            return;
+        }
+        synchronized (this) {
+            if (!candidates.containsKey(file) && !awaitRoom()) {
+                return;
+            }
+            Candidate c = candidates.computeIfAbsent(file, f -> new Candidate());
+            if (c.running) {
+                c.dirty = true;
+                return;
+            }
+            if (c.timer != null) {
+                c.timer.cancel(false);
+                c.timer = null;
+            }
+            c.observe(attrs);
+            c.start();
+        }
+        execute(file);
+    }
+
+    private void check(Path file, Candidate expected) {
+        BasicFileAttributes attrs = readAttributes(file);
+        synchronized (this) {
+            Candidate c = candidates.get(file);
+            if (c != expected || c.running) {
+                return;
+            }
+            c.timer = null;
+            if (attrs == null) {
+                remove(file);
+                return;
+            }
+            long now = System.nanoTime();
+            if (c.observe(attrs)) {
+                c.changedAt = now;
+            }
+            long quietFor = now - c.changedAt;
+            if (quietFor < quietNanos) {
+                schedule(file, c, quietNanos - quietFor);
+                return;
+            }
+            if (c.isUnchangedSinceLastRun()) {
+                remove(file);
+                return;
+            }
+            c.start();
+        }
+        execute(file);
+    }
+
+    private void execute(Path file) {
+        try {
+            workers.accept(file, () -> {
+                AtomicBoolean once = new AtomicBoolean();
+                Runnable done = () -> {
+                    if (once.compareAndSet(false, true)) {
+                        finished(file);
+                    }
+                };
+                try {
+                    action.accept(file, done);
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Failed to process " + file, e);
+                    done.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                remove(file);
+            }
+        }
+    }
+
+    private synchronized void finished(Path file) {
+        Candidate c = candidates.get(file);
+        if (c == null) {
+            return;
+        }
+        c.running = false;
+        if (c.dirty) {
+            c.dirty = false;
+            schedule(file, c, quietNanos);
+        } else {
+            remove(file);
+        }
+    }
+
+    private void schedule(Path file, Candidate c, long delayNanos) {
+        try {
+            c.timer = timer.schedule(() -> check(file, c), delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            remove(file);
+        }
+    }
+
+    /** Waits, with the monitor held, until a new file may be tracked; {@code false} if closed or interrupted. */
+    private boolean awaitRoom() {
+        while (!closed && candidates.size() >= maxPending) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return !closed;
+    }
+
+    private void remove(Path file) {
+        if (candidates.remove(file) != null) {
+            notifyAll();
+        }
+    }
+
+    private boolean isMarker(Path file) {
+        return !readyMarker.isEmpty() && file.getFileName().toString().endsWith(readyMarker)
+                && file.getFileName().toString().length() > readyMarker.length();
+    }
+
+    /** Whether {@code file} has a ready marker written no earlier than its last modification. */
+    private boolean isReady(Path file) {
+        if (readyMarker.isEmpty()) {
+            return false;
+        }
+        BasicFileAttributes marker = readAttributes(file.resolveSibling(file.getFileName() + readyMarker));
+        if (marker == null) {
+            return false;
+        }
+        BasicFileAttributes data = readAttributes(file);
+        return data != null && marker.lastModifiedTime().compareTo(data.lastModifiedTime()) >= 0;
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Waits until fewer than {@code limit} files are tracked; {@code false} if closed or interrupted.
+     * Lets a caller with many files feed them in as the pipeline drains.
+     */
+    synchronized boolean awaitPendingBelow(int limit) {
+        while (!closed && candidates.size() >= limit) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return !closed;
+    }
+
+    /** Files waiting to become stable or being processed. */
+    synchronized int getPending() {
+        return candidates.size();
+    }
+
+    /** Files offered by the scanner and still waiting for room. */
+    int getOffered() {
+        return offered.size();
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        intake.shutdownNow();
+        offered.clear();
+        synchronized (this) {
+            closed = true;
+            candidates.clear();
+            notifyAll();
+        }
+    }
+
+    private static final class Candidate {
+        private long size = -1;
+        private FileTime modified;
+        private long changedAt = System.nanoTime();
+        private long runSize = -1;
+        private FileTime runModified;
+        private boolean running;
+        private boolean dirty;
+        private ScheduledFuture<?> timer;
+
+        /** Records the current attributes and tells whether they differ from the previous ones. */
+        boolean observe(BasicFileAttributes attrs) {
+            boolean changed = attrs.size() != size || !attrs.lastModifiedTime().equals(modified);
+            size = attrs.size();
+            modified = attrs.lastModifiedTime();
+            return changed;
+        }
+
+        boolean isUnchangedSinceLastRun() {
+            return size == runSize && modified.equals(runModified);
+        }
+
+        void start() {
+            running = true;
+            runSize = size;
+            runModified = modified;
+        }
+    }
+}
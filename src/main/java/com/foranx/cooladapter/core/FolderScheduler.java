@@ -0,0 +1,258 @@
+package com.foranx.cooladapter.core;
+
+import com.foranx.cooladapter.metrics.LatencyHistogram;
+import com.foranx.cooladapter.metrics.Metrics;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Worker stage that shares its threads between job folders instead of serving one FIFO.
+ * <p>
+ * Each folder has its own queue. A free worker takes the head of:
+ * <ol>
+ *   <li>the folder whose head file has waited past its {@code deadlineMs}, earliest deadline first;</li>
+ *   <li>otherwise the highest {@code priority} folder, and among equal priorities the one with
+ *       the smallest virtual time (start-time fair queuing: a dispatch advances the folder's
+ *       virtual time by {@code 1 / weight}, so backlogged folders get workers in proportion
+ *       to their weights, and a folder that was idle does not bank credit).</li>
+ * </ol>
+ * Folders already running {@code maxConcurrency} files are skipped, so a limit never parks
+ * a worker. Submitting blocks while {@code capacity} files are queued in total.
+ */
+final class FolderScheduler implements AutoCloseable {
+
+    /** How a folder is served; taken from its job configuration. */
+    record Policy(int priority, int weight, int maxConcurrency, long deadlineMs) {
+    }
+
+    private static final Logger log = Logger.getLogger(FolderScheduler.class.getName());
+    private static final LatencyHistogram QUEUE_WAIT = Metrics.shared().histogram(
+            "cooladapter_worker_queue_wait_seconds", "Time a stable file waited for a worker");
+    private static final LongAdder BOOSTS = Metrics.shared().counter(
+            "cooladapter_deadline_boosts_total", "Files dispatched ahead of priority because their deadline passed");
+
+    private final String name;
+    private final int capacity;
+    private final Function<Path, Policy> policies;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition ready = lock.newCondition();
+    private final Map<Path, Folder> folders = new HashMap<>();
+    private final List<Folder> backlogged = new ArrayList<>();
+    private final Thread[] threads;
+    private double clock;
+    private int queued;
+    private volatile boolean closed;
+
+    FolderScheduler(String name, int threads, int capacity, ExecutionMode mode, Function<Path, Policy> policies) {
+        this.name = name;
+        this.capacity = capacity;
+        this.policies = policies;
+        Thread.Builder builder = mode == ExecutionMode.VIRTUAL
+                ? Thread.ofVirtual().name(name + "-", 0)
+                : Thread.ofPlatform().daemon().name(name + "-", 0);
+        this.threads = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            this.threads[i] = builder.start(this::run);
+        }
+    }
+
+    /**
+     * Queues {@code task} for the folder of {@code file}, waiting while the stage is full;
+     * rejects it if the stage is closed or the caller is interrupted.
+     */
+    void execute(Path file, Runnable task) {
+        Path dir = file.getParent();
+        Policy policy = policies.apply(dir);
+        lock.lock();
+        try {
+            while (queued >= capacity && !closed) {
+                notFull.await();
+            }
+            if (closed) {
+                throw new RejectedExecutionException(name + " is closed");
+            }
+            Folder folder = folders.computeIfAbsent(dir, Folder::new);
+            folder.policy = policy;
+            if (folder.queue.isEmpty()) {
+                // start-time fair queuing: an idle folder rejoins at the current virtual time
+                folder.virtualTime = Math.max(folder.virtualTime, clock);
+                backlogged.add(folder);
+            }
+            folder.queue.add(new Task(task, System.nanoTime()));
+            queued++;
+            ready.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for " + name, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getQueueDepth() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            Folder folder;
+            Task task;
+            lock.lock();
+            try {
+                while ((folder = select(System.nanoTime())) == null) {
+                    if (closed) {
+                        return;
+                    }
+                    ready.await();
+                }
+                task = folder.queue.poll();
+                queued--;
+                folder.running++;
+                if (folder.queue.isEmpty()) {
+                    backlogged.remove(folder);
+                }
+                notFull.signal();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            QUEUE_WAIT.recordSince(task.enqueuedAt);
+            try {
+                task.runnable.run();
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "Task failed in " + name, e);
+            } finally {
+                finished(folder);
+            }
+        }
+    }
+
+    /** Picks the folder to serve next and charges it; {@code null} if none is eligible. */
+    private Folder select(long now) {
+        Folder overdue = null;
+        Folder best = null;
+        for (Folder f : backlogged) {
+            if (f.running >= f.policy.maxConcurrency()) {
+                continue;
+            }
+            long deadline = f.deadline();
+            if (deadline != Long.MAX_VALUE && now - deadline >= 0
+                    && (overdue == null || deadline - overdue.deadline() < 0)) {
+                overdue = f;
+            }
+            if (best == null
+                    || f.policy.priority() > best.policy.priority()
+                    || f.policy.priority() == best.policy.priority() && f.virtualTime < best.virtualTime) {
+                best = f;
+            }
+        }
+        Folder chosen = overdue != null ? overdue : best;
+        if (chosen != null) {
+            if (overdue != null && overdue != best) {
+                BOOSTS.increment();
+            }
+            clock = Math.max(clock, chosen.virtualTime);
+            chosen.virtualTime += 1.0 / chosen.policy.weight();
+        }
+        return chosen;
+    }
+
+    private void finished(Folder folder) {
+        lock.lock();
+        try {
+            folder.running--;
+            if (folder.running == 0 && folder.queue.isEmpty()) {
+                folders.remove(folder.dir);
+            }
+            if (!backlogged.isEmpty()) {
+                ready.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Interrupts the threads and waits up to {@code timeoutMs} for them; queued files are dropped. */
+    void close(long timeoutMs) {
+        lock.lock();
+        try {
+            closed = true;
+            folders.clear();
+            backlogged.clear();
+            queued = 0;
+            notFull.signalAll();
+            ready.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread t : threads) {
+            t.interrupt();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            for (Thread t : threads) {
+                long left = deadline - System.nanoTime();
+                if (left > 0) {
+                    t.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(left)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Thread t : threads) {
+            if (t.isAlive()) {
+                log.info(">>> " + name + " did not terminate in time");
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        close(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private record Task(Runnable runnable, long enqueuedAt) {
+    }
+
+    private static final class Folder {
+        private final Path dir;
+        private final ArrayDeque<Task> queue = new ArrayDeque<>();
+        private Policy policy;
+        private int running;
+        private double virtualTime;
+
+        Folder(Path dir) {
+            this.dir = dir;
+        }
+
+        /** When the head file becomes overdue, or {@link Long#MAX_VALUE} without a deadline. */
+        long deadline() {
+            Task head = queue.peek();
+            return head == null || policy.deadlineMs() <= 0
+                    ? Long.MAX_VALUE
+                    : head.enqueuedAt + TimeUnit.MILLISECONDS.toNanos(policy.deadlineMs());
+        }
+    }
+}
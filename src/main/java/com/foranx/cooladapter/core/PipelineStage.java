@@ -0,0 +1,106 @@
+package com.foranx.cooladapter.core;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One stage of the ingest pipeline: a fixed number of threads taking tasks from a bounded
+ * queue. {@link #execute} blocks while the queue is full, so a slow stage holds back the
+ * stage feeding it instead of letting tasks pile up on the heap.
+ */
+final class PipelineStage implements Executor, AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(PipelineStage.class.getName());
+
+    private final String name;
+    private final BlockingQueue<Runnable> queue;
+    private final Thread[] threads;
+    private volatile boolean closed;
+
+    PipelineStage(String name, int threads, int capacity, ExecutionMode mode) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        Thread.Builder builder = mode == ExecutionMode.VIRTUAL
+                ? Thread.ofVirtual().name(name + "-", 0)
+                : Thread.ofPlatform().daemon().name(name + "-", 0);
+        this.threads = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            this.threads[i] = builder.start(this::run);
+        }
+    }
+
+    /** Queues {@code task}, waiting for room; rejects it if the stage is closed or the caller is interrupted. */
+    @Override
+    public void execute(Runnable task) {
+        try {
+            while (!queue.offer(task, 100, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    throw new RejectedExecutionException(name + " is closed");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for " + name, e);
+        }
+        if (closed) {
+            queue.remove(task);
+            throw new RejectedExecutionException(name + " is closed");
+        }
+    }
+
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void run() {
+        while (!closed) {
+            Runnable task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "Task failed in " + name, e);
+            }
+        }
+    }
+
+    /** Interrupts the threads and waits up to {@code timeoutMs} for them; queued tasks are dropped. */
+    void close(long timeoutMs) {
+        closed = true;
+        queue.clear();
+        for (Thread t : threads) {
+            t.interrupt();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            for (Thread t : threads) {
+                long left = deadline - System.nanoTime();
+                if (left > 0) {
+                    t.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(left)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Thread t : threads) {
+            if (t.isAlive()) {
+                log.info(">>> " + name + " did not terminate in time");
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        close(TimeUnit.SECONDS.toMillis(10));
+    }
+}
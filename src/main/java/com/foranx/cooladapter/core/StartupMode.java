@@ -0,0 +1,11 @@
+package com.foranx.cooladapter.core;
+
+public enum StartupMode {
+    /** One walk of the tree registers, indexes and dispatches every directory in turn. */
+    SEQUENTIAL,
+    /**
+     * {@code startupThreads} register and index directories in parallel; once every directory
+     * is watched, the files found are dispatched oldest first, a few at a time.
+     */
+    PARALLEL
+}
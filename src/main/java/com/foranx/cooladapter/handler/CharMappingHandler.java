@@ -0,0 +1,24 @@
+package com.foranx.cooladapter.handler;
+
+/**
+ * Handler that replaces every character independently of its neighbours.
+ * Consecutive mapping handlers of a chain are fused into a single lookup table
+ * by {@link ValueHandlers#compile}, so the whole run costs one pass per value.
+ */
+public abstract class CharMappingHandler implements ValueHandler {
+
+    private volatile FusedCharHandler compiled;
+
+    /** Returns the replacement for {@code c}, or {@code null} to keep it. */
+    protected abstract String map(char c);
+
+    @Override
+    public CharSequence apply(CharSequence value) {
+        FusedCharHandler handler = compiled;
+        if (handler == null) {
+            handler = new FusedCharHandler(new CharMappingHandler[]{this});
+            compiled = handler;
+        }
+        return handler.apply(value);
+    }
+}
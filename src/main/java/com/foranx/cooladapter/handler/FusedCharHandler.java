@@ -0,0 +1,96 @@
+package com.foranx.cooladapter.handler;
+
+/**
+ * A run of {@link CharMappingHandler}s compiled into one lookup table. Characters
+ * below {@link #TABLE_SIZE} (Latin and Cyrillic) are mapped with two array reads;
+ * anything above falls back to applying the handlers one after another.
+ */
+final class FusedCharHandler implements ValueHandler {
+
+    static final int TABLE_SIZE = 0x0500;
+
+    private final CharMappingHandler[] stages;
+    private final boolean[] changes = new boolean[TABLE_SIZE];
+    private final char[] single = new char[TABLE_SIZE];
+    private final String[] multi = new String[TABLE_SIZE];
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(StringBuilder::new);
+
+    FusedCharHandler(CharMappingHandler[] stages) {
+        this.stages = stages;
+        for (int c = 0; c < TABLE_SIZE; c++) {
+            String mapped = mapSlow((char) c);
+            if (mapped == null) {
+                single[c] = (char) c;
+            } else if (mapped.length() == 1) {
+                changes[c] = true;
+                single[c] = mapped.charAt(0);
+            } else {
+                changes[c] = true;
+                multi[c] = mapped;
+            }
+        }
+    }
+
+    @Override
+    public CharSequence apply(CharSequence value) {
+        int length = value.length();
+        int i = 0;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c < TABLE_SIZE ? changes[c] : mapSlow(c) != null) break;
+            i++;
+        }
+        if (i == length) {
+            return value;
+        }
+
+        StringBuilder out = buffers.get();
+        out.setLength(0);
+        out.append(value, 0, i);
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < TABLE_SIZE) {
+                String m = multi[c];
+                if (m != null) {
+                    out.append(m);
+                } else {
+                    out.append(single[c]);
+                }
+            } else {
+                String mapped = mapSlow(c);
+                if (mapped != null) {
+                    out.append(mapped);
+                } else {
+                    out.append(c);
+                }
+            }
+        }
+        return out;
+    }
+
+    /** Runs {@code c} through every stage; {@code null} if the result is {@code c} itself. */
+    private String mapSlow(char c) {
+        String current = null;
+        for (CharMappingHandler stage : stages) {
+            if (current == null) {
+                current = stage.map(c);
+            } else {
+                StringBuilder next = null;
+                for (int k = 0; k < current.length(); k++) {
+                    char ch = current.charAt(k);
+                    String m = stage.map(ch);
+                    if (m != null && next == null) {
+                        next = new StringBuilder(current.length() + 4).append(current, 0, k);
+                    }
+                    if (next != null) {
+                        next.append(m != null ? m : String.valueOf(ch));
+                    }
+                }
+                if (next != null) {
+                    current = next.toString();
+                }
+            }
+        }
+        return current == null || (current.length() == 1 && current.charAt(0) == c) ? null : current;
+    }
+}
@@ -0,0 +1,39 @@
+package com.foranx.cooladapter.handler;
+
+import com.foranx.cooladapter.lookup.LookupTable;
+import com.foranx.cooladapter.lookup.LookupTables;
+import com.foranx.cooladapter.metrics.Metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replaces a value by the one its lookup table maps it to, e.g. a legacy branch code by the
+ * T24 company ID. Values missing from the table become {@code defaultValue}, or pass unchanged
+ * when there is none. Declared per job as {@code lookup.NAME.file} and used as
+ * {@code lookup:NAME} in a column's chain.
+ */
+public class LookupHandler implements ValueHandler {
+
+    private static final LongAdder MISSES = Metrics.shared().counter(
+            "cooladapter_lookup_misses_total", "Values not found in their lookup table");
+
+    private final LookupTables.Source source;
+    private final String defaultValue;
+    private final ThreadLocal<LookupTable.View> views = ThreadLocal.withInitial(LookupTable.View::new);
+
+    /** @param defaultValue value for keys missing from the table, or {@code null} to keep them */
+    public LookupHandler(LookupTables.Source source, String defaultValue) {
+        this.source = source;
+        this.defaultValue = defaultValue;
+    }
+
+    @Override
+    public CharSequence apply(CharSequence value) {
+        CharSequence mapped = source.table().get(value, views.get());
+        if (mapped != null) {
+            return mapped;
+        }
+        MISSES.increment();
+        return defaultValue != null ? defaultValue : value;
+    }
+}
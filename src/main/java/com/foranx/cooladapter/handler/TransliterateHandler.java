@@ -1,4 +1,36 @@
 package com.foranx.cooladapter.handler;
 
-public class TransliterateHandler {
+/**
+ * Cyrillic to Latin transliteration following ICAO Doc 9303 (the scheme used in
+ * Russian and Ukrainian passports), e.g. {@code Щука -> SHCHuka}.
+ */
+public class TransliterateHandler extends CharMappingHandler {
+
+    private static final char FIRST = 'Ѐ';
+    private static final String[] TABLE = new String[0x0500 - FIRST];
+
+    static {
+        String upper = "АБВГДЕЁЖЗИЙКЛМНОПРСТУФХЦЧШЩЪЫЬЭЮЯ";
+        String[] latin = {"A", "B", "V", "G", "D", "E", "E", "ZH", "Z", "I", "I", "K", "L", "M", "N", "O", "P",
+                "R", "S", "T", "U", "F", "KH", "TS", "CH", "SH", "SHCH", "IE", "Y", "", "E", "IU", "IA"};
+        for (int i = 0; i < upper.length(); i++) {
+            put(upper.charAt(i), latin[i]);
+        }
+        // Ukrainian and Belarusian letters
+        put('Є', "IE");
+        put('І', "I");
+        put('Ї', "I");
+        put('Ґ', "G");
+        put('Ў', "U");
+    }
+
+    private static void put(char upper, String latin) {
+        TABLE[upper - FIRST] = latin;
+        TABLE[Character.toLowerCase(upper) - FIRST] = latin.toLowerCase();
+    }
+
+    @Override
+    protected String map(char c) {
+        return c >= FIRST && c < FIRST + TABLE.length ? TABLE[c - FIRST] : null;
+    }
 }
@@ -0,0 +1,27 @@
+package com.foranx.cooladapter.handler;
+
+import com.foranx.cooladapter.util.CharSlice;
+
+/** Strips leading and trailing characters up to and including space, like {@link String#trim()}. */
+public class TrimHandler implements ValueHandler {
+
+    private final ThreadLocal<CharSlice> slices = ThreadLocal.withInitial(CharSlice::new);
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(StringBuilder::new);
+
+    @Override
+    public CharSequence apply(CharSequence value) {
+        int end = value.length();
+        int start = 0;
+        while (start < end && value.charAt(start) <= ' ') start++;
+        while (end > start && value.charAt(end - 1) <= ' ') end--;
+        if (start == 0 && end == value.length()) {
+            return value;
+        }
+        if (value instanceof CharSlice slice) {
+            return slices.get().set(slice.array(), slice.offset() + start, end - start);
+        }
+        StringBuilder out = buffers.get();
+        out.setLength(0);
+        return out.append(value, start, end);
+    }
+}
@@ -1,4 +1,10 @@
 package com.foranx.cooladapter.handler;
 
-public class UpperCaseHandler {
+public class UpperCaseHandler extends CharMappingHandler {
+
+    @Override
+    protected String map(char c) {
+        char upper = Character.toUpperCase(c);
+        return upper == c ? null : String.valueOf(upper);
+    }
 }
@@ -1,4 +1,20 @@
 package com.foranx.cooladapter.handler;
 
+/**
+ * Transformation applied to a column value before it is written into an OFS message.
+ * <p>
+ * Handlers return the input instance itself when nothing has to change. Otherwise the
+ * result may live in a buffer owned by the handler and the calling thread, so it is only
+ * valid until the handler is applied again on that thread; callers consume it right away.
+ */
+@FunctionalInterface
 public interface ValueHandler {
+
+    ValueHandler IDENTITY = value -> value;
+
+    CharSequence apply(CharSequence value);
+
+    default ValueHandler andThen(ValueHandler next) {
+        return value -> next.apply(apply(value));
+    }
 }
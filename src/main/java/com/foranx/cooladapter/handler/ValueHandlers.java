@@ -0,0 +1,90 @@
+package com.foranx.cooladapter.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Registry of named handlers and compiler of handler chains such as {@code trim,upper,translit}.
+ */
+public final class ValueHandlers {
+
+    private static final Map<String, Supplier<ValueHandler>> REGISTRY = new ConcurrentHashMap<>();
+
+    static {
+        register("trim", TrimHandler::new);
+        register("upper", UpperCaseHandler::new);
+        register("translit", TransliterateHandler::new);
+    }
+
+    private ValueHandlers() {}
+
+    public static void register(String name, Supplier<ValueHandler> factory) {
+        REGISTRY.put(name.toLowerCase(Locale.ROOT), factory);
+    }
+
+    /**
+     * Compiles a comma separated chain into a single handler. Every step gets its own
+     * handler instance; adjacent character mappings are fused into one table.
+     */
+    public static ValueHandler compile(String spec) {
+        return compile(spec, Map.of());
+    }
+
+    /**
+     * Like {@link #compile(String)}, with handlers that only exist in one job, such as its
+     * {@code lookup:NAME} tables, looked up by lower case name before the registry. They are
+     * shared rather than instantiated per step.
+     */
+    public static ValueHandler compile(String spec, Map<String, ValueHandler> local) {
+        List<ValueHandler> steps = new ArrayList<>();
+        List<CharMappingHandler> run = new ArrayList<>();
+        for (String name : spec.split(",")) {
+            String key = name.trim().toLowerCase(Locale.ROOT);
+            if (key.isEmpty()) {
+                continue;
+            }
+            ValueHandler handler = local.get(key);
+            if (handler == null) {
+                Supplier<ValueHandler> factory = REGISTRY.get(key);
+                if (factory == null) {
+                    throw new IllegalStateException("Unknown value handler '" + name.trim() + "' in '" + spec + "'");
+                }
+                handler = factory.get();
+            }
+            if (handler instanceof CharMappingHandler mapping) {
+                run.add(mapping);
+            } else {
+                flush(run, steps);
+                steps.add(handler);
+            }
+        }
+        flush(run, steps);
+
+        return switch (steps.size()) {
+            case 0 -> ValueHandler.IDENTITY;
+            case 1 -> steps.get(0);
+            default -> new Chain(steps.toArray(new ValueHandler[0]));
+        };
+    }
+
+    private static void flush(List<CharMappingHandler> run, List<ValueHandler> steps) {
+        if (!run.isEmpty()) {
+            steps.add(new FusedCharHandler(run.toArray(new CharMappingHandler[0])));
+            run.clear();
+        }
+    }
+
+    private record Chain(ValueHandler[] steps) implements ValueHandler {
+        @Override
+        public CharSequence apply(CharSequence value) {
+            for (ValueHandler step : steps) {
+                value = step.apply(value);
+            }
+            return value;
+        }
+    }
+}
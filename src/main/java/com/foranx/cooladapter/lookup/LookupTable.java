@@ -0,0 +1,219 @@
+package com.foranx.cooladapter.lookup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Immutable map from source values to target values, loaded from a mapping file with one
+ * {@code key<delimiter>value} per line. Blank lines and lines starting with {@code #} are
+ * skipped, keys and values are trimmed, and a later line wins over an earlier one.
+ * <p>
+ * Everything lives in two direct buffers, so a table with millions of entries is not on the
+ * heap: {@code data} holds each entry as its key length, value length, key and value chars,
+ * and {@code slots} is an open-addressing table of {@code (hash, offset + 1)} pairs with
+ * linear probing, at most three quarters full. A lookup hashes the value, probes until it
+ * finds the hash with equal chars or an empty slot, and points the caller's {@link View} at the
+ * stored value. The table keeps no per-thread state, so nothing outlives it once it is evicted
+ * or reloaded except the views that still point into it.
+ */
+public final class LookupTable {
+
+    private static final int MAX_LENGTH = Character.MAX_VALUE;
+
+    private final CharBuffer data;
+    private final IntBuffer slots;
+    private final int mask;
+    private int size;
+
+    /**
+     * Mutable, reusable result of {@link #get}: a value stored in some table. The view is only
+     * valid until its owner passes it to another lookup.
+     */
+    public static final class View implements CharSequence {
+        private CharBuffer data;
+        private int start;
+        private int length;
+
+        private View set(CharBuffer data, int start, int length) {
+            this.data = data;
+            this.start = start;
+            this.length = length;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            // Absolute reads only, so views of one table can be used by several threads at once
+            return data.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + length);
+            }
+            char[] chars = new char[end - start];
+            data.get(this.start + start, chars);
+            return new String(chars);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length).toString();
+        }
+    }
+
+    private LookupTable(CharBuffer data, IntBuffer slots) {
+        this.data = data;
+        this.slots = slots;
+        this.mask = slots.capacity() / 2 - 1;
+    }
+
+    /**
+     * Reads {@code file} twice: once to size the buffers, once to fill them.
+     *
+     * @throws IllegalStateException if a line has no delimiter or a key or value is too long
+     */
+    public static LookupTable load(Path file, char delimiter, Charset charset) throws IOException {
+        long entries = 0;
+        long chars = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, charset)) {
+            String line;
+            long number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                int split = split(line, delimiter, file, number);
+                if (split >= 0) {
+                    entries++;
+                    chars += 2 + line.length() - 1;
+                }
+            }
+        }
+        if (entries > (1 << 26) || chars > Integer.MAX_VALUE / 2) {
+            throw new IllegalStateException("Lookup file " + file + " is too large: " + entries + " entries");
+        }
+
+        int capacity = Integer.highestOneBit((int) Math.max(2, entries + entries / 3)) << 1;
+        CharBuffer data = ByteBuffer.allocateDirect((int) chars * 2).order(ByteOrder.nativeOrder()).asCharBuffer();
+        IntBuffer slots = ByteBuffer.allocateDirect(capacity * 2 * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        LookupTable table = new LookupTable(data, slots);
+        try (BufferedReader reader = Files.newBufferedReader(file, charset)) {
+            String line;
+            long number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                int split = split(line, delimiter, file, number);
+                if (split < 0) {
+                    continue;
+                }
+                if (data.remaining() < line.length() + 1) {
+                    throw new IllegalStateException("Lookup file " + file + " changed while it was read");
+                }
+                table.put(line.substring(0, split).strip(), line.substring(split + 1).strip());
+            }
+        }
+        return table;
+    }
+
+    /** Position of the delimiter, or -1 for a line to skip. */
+    private static int split(String line, char delimiter, Path file, long number) {
+        if (line.isBlank() || line.stripLeading().startsWith("#")) {
+            return -1;
+        }
+        int split = line.indexOf(delimiter);
+        if (split < 0) {
+            throw new IllegalStateException("Lookup file " + file + ", line " + number + ": no '" + delimiter + "'");
+        }
+        if (split > MAX_LENGTH || line.length() - split - 1 > MAX_LENGTH) {
+            throw new IllegalStateException("Lookup file " + file + ", line " + number
+                    + ": key or value longer than " + MAX_LENGTH + " characters");
+        }
+        return split;
+    }
+
+    private void put(String key, String value) {
+        int hash = hash(key);
+        int offset = data.position();
+        data.put((char) key.length()).put((char) value.length()).put(key).put(value);
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int stored = slots.get(slot * 2 + 1);
+            if (stored == 0) {
+                size++;
+            }
+            if (stored == 0 || slots.get(slot * 2) == hash && keyEquals(stored - 1, key)) {
+                slots.put(slot * 2, hash).put(slot * 2 + 1, offset + 1);
+                return;
+            }
+        }
+    }
+
+    /**
+     * The value mapped to {@code key}, as {@code view} pointed at it, or {@code null}. The
+     * caller owns {@code view}, e.g. one per thread, and must not share it between threads.
+     */
+    public CharSequence get(CharSequence key, View view) {
+        int hash = hash(key);
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int stored = slots.get(slot * 2 + 1);
+            if (stored == 0) {
+                return null;
+            }
+            if (slots.get(slot * 2) == hash && keyEquals(stored - 1, key)) {
+                int offset = stored - 1;
+                return view.set(data, offset + 2 + data.get(offset), data.get(offset + 1));
+            }
+        }
+    }
+
+    private boolean keyEquals(int offset, CharSequence key) {
+        int length = key.length();
+        if (data.get(offset) != length) {
+            return false;
+        }
+        int base = offset + 2;
+        for (int i = 0; i < length; i++) {
+            if (data.get(base + i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(CharSequence key) {
+        int h = 0;
+        for (int i = 0, n = key.length(); i < n; i++) {
+            h = 31 * h + key.charAt(i);
+        }
+        // Spread the bits so that similar codes do not fill neighbouring slots
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    /** Distinct keys; a key on several lines counts once. */
+    public int size() {
+        return size;
+    }
+
+    /** Off-heap bytes held by the table. */
+    public long bytes() {
+        return data.capacity() * 2L + slots.capacity() * (long) Integer.BYTES;
+    }
+}
@@ -0,0 +1,248 @@
+package com.foranx.cooladapter.lookup;
+
+import com.foranx.cooladapter.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mapping files in memory, shared by every job that names the same file.
+ * <p>
+ * A table is loaded on its first lookup and stays resident until the tables together exceed
+ * {@code maxBytes}; then tables are evicted in CLOCK order: each lookup sets the table's
+ * reference bit, and the eviction hand clears set bits and drops the first table whose bit was
+ * already clear, i.e. one not used since the hand last passed. An evicted table is loaded
+ * again on its next lookup. Lookups never take a lock once the table is resident.
+ * <p>
+ * CLOCK stands in for the LRU or W-TinyLFU policy one might expect: it approximates LRU with
+ * one bit per table, so a lookup writes a flag instead of reordering a list under a lock, and
+ * with a handful of large tables a frequency sketch would have little to tell apart.
+ * <p>
+ * Every {@code reloadMs} the files of resident tables are checked, and a table whose file's
+ * mtime or size changed is loaded again in the background and swapped in; values converted
+ * until then use the old one. A file that cannot be read keeps the previous table, so mapping
+ * files should be replaced by renaming a complete file over them.
+ */
+public final class LookupTables implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(LookupTables.class.getName());
+
+    private static final LongAdder LOADS = Metrics.shared().counter(
+            "cooladapter_lookup_loads_total", "Lookup tables loaded from their mapping file, including reloads");
+    private static final LongAdder EVICTIONS = Metrics.shared().counter(
+            "cooladapter_lookup_evictions_total", "Lookup tables dropped to stay within lookupCacheSize");
+
+    private final long maxBytes;
+    private final Map<Key, Source> sources = new ConcurrentHashMap<>();
+    /** Resident tables in CLOCK order; guarded by {@code this}. */
+    private final List<Source> resident = new ArrayList<>();
+    private int hand;
+    private volatile long residentBytes;
+    private final ScheduledExecutorService reloader;
+
+    private record Key(Path file, char delimiter, Charset charset) {
+    }
+
+    /** @param reloadMs period of the check for changed mapping files; 0 disables reloading */
+    public LookupTables(long maxBytes, long reloadMs) {
+        this.maxBytes = maxBytes;
+        if (reloadMs > 0) {
+            this.reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "lookup-reload");
+                t.setDaemon(true);
+                return t;
+            });
+            reloader.scheduleWithFixedDelay(this::reloadChanged, reloadMs, reloadMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.reloader = null;
+        }
+        Metrics.shared().gauge("cooladapter_lookup_bytes", "Off-heap bytes of resident lookup tables", () -> residentBytes);
+    }
+
+    /** The table of {@code file}, which is not read before its first lookup. */
+    public Source source(Path file, char delimiter, Charset charset) {
+        Key key = new Key(file.toAbsolutePath().normalize(), delimiter, charset);
+        return sources.computeIfAbsent(key, Source::new);
+    }
+
+    private synchronized void admit(Source source, LookupTable table) {
+        resident.add(source);
+        residentBytes += table.bytes();
+        source.table = table;
+        trim(source);
+    }
+
+    /** Publishes a reloaded table unless the old one was evicted meanwhile. */
+    private synchronized boolean replace(Source source, LookupTable old, LookupTable table) {
+        if (source.table != old) {
+            return false;
+        }
+        residentBytes += table.bytes() - old.bytes();
+        source.table = table;
+        trim(source);
+        return true;
+    }
+
+    /** Evicts tables other than {@code keep} until the rest fit into {@code maxBytes}. */
+    private void trim(Source keep) {
+        int passes = 2 * resident.size();
+        while (residentBytes > maxBytes && resident.size() > 1 && passes-- > 0) {
+            if (hand >= resident.size()) {
+                hand = 0;
+            }
+            Source victim = resident.get(hand);
+            if (victim == keep) {
+                hand++;
+            } else if (victim.referenced) {
+                victim.referenced = false;
+                hand++;
+            } else {
+                resident.remove(hand);
+                residentBytes -= victim.table.bytes();
+                victim.table = null;
+                EVICTIONS.increment();
+                log.info(">>> Lookup table evicted: " + victim.key.file());
+            }
+        }
+        if (residentBytes > maxBytes && resident.size() == 1) {
+            log.warning(">>> Lookup table " + keep.key.file() + " alone exceeds lookupCacheSize (" + maxBytes + " bytes)");
+        }
+    }
+
+    private void reloadChanged() {
+        List<Source> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(resident);
+        }
+        for (Source source : snapshot) {
+            try {
+                source.reloadIfChanged();
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "Cannot reload lookup file " + source.key.file(), e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+        synchronized (this) {
+            for (Source source : resident) {
+                source.table = null;
+            }
+            resident.clear();
+            residentBytes = 0;
+        }
+    }
+
+    /** One mapping file, resident or not. */
+    public final class Source {
+        private final Key key;
+        private volatile LookupTable table;
+        private volatile boolean referenced;
+        /** Attributes of the file the table was read from; guarded by {@code this}. */
+        private FileTime modified;
+        private long size;
+
+        private Source(Key key) {
+            this.key = key;
+        }
+
+        public Path file() {
+            return key.file();
+        }
+
+        /** Whether the table is in memory; otherwise the next lookup loads it. */
+        boolean isResident() {
+            return table != null;
+        }
+
+        /**
+         * The current table, loaded first if it is not resident.
+         *
+         * @throws IllegalStateException if the mapping file cannot be read
+         */
+        public LookupTable table() {
+            LookupTable current = table;
+            if (current == null) {
+                current = load();
+            }
+            if (!referenced) {
+                referenced = true;
+            }
+            return current;
+        }
+
+        private synchronized LookupTable load() {
+            LookupTable current = table;
+            if (current != null) {
+                return current;
+            }
+            try {
+                current = read();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read lookup file " + key.file(), e);
+            }
+            admit(this, current);
+            return current;
+        }
+
+        private synchronized void reloadIfChanged() {
+            LookupTable old = table;
+            if (old == null) {
+                return;
+            }
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(key.file(), BasicFileAttributes.class);
+            } catch (IOException e) {
+                log.fine(">>> Lookup file " + key.file() + " is gone, keeping the loaded table");
+                return;
+            }
+            if (attrs.lastModifiedTime().equals(modified) && attrs.size() == size) {
+                return;
+            }
+            LookupTable fresh;
+            try {
+                fresh = read();
+            } catch (IOException | IllegalStateException e) {
+                // Remember the attributes so that a broken file is reported once, not every period
+                modified = attrs.lastModifiedTime();
+                size = attrs.size();
+                log.log(Level.WARNING, "Cannot reload lookup file " + key.file() + ", keeping the previous table", e);
+                return;
+            }
+            if (replace(this, old, fresh)) {
+                log.info(">>> Lookup table reloaded: " + key.file());
+            }
+        }
+
+        private LookupTable read() throws IOException {
+            long started = System.nanoTime();
+            BasicFileAttributes attrs = Files.readAttributes(key.file(), BasicFileAttributes.class);
+            LookupTable loaded = LookupTable.load(key.file(), key.delimiter(), key.charset());
+            modified = attrs.lastModifiedTime();
+            size = attrs.size();
+            LOADS.increment();
+            log.info(">>> Lookup table loaded from " + key.file() + ": " + loaded.size() + " entries, "
+                    + loaded.bytes() + " bytes in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+            return loaded;
+        }
+    }
+}
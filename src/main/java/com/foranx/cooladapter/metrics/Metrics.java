@@ -0,0 +1,121 @@
+package com.foranx.cooladapter.metrics;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide registry of counters, gauges and latency histograms.
+ * <p>
+ * Components look their metrics up once and keep the returned objects, so the hot path
+ * only touches a {@link LongAdder} or a {@link LatencyHistogram}. Names follow Prometheus
+ * conventions and may carry labels, e.g. {@code cooladapter_watcher_events_total{kind="create"}};
+ * series with the same name before the braces form one metric family.
+ */
+public final class Metrics {
+
+    private static final Metrics SHARED = new Metrics();
+
+    private final Map<String, Entry> entries = new ConcurrentSkipListMap<>(
+            Comparator.comparing(Metrics::family).thenComparing(Comparator.naturalOrder()));
+
+    public static Metrics shared() {
+        return SHARED;
+    }
+
+    public LongAdder counter(String name, String help) {
+        return (LongAdder) entries.computeIfAbsent(name, n -> new Entry(Type.COUNTER, help, new LongAdder())).value;
+    }
+
+    public LatencyHistogram histogram(String name, String help) {
+        return (LatencyHistogram) entries.computeIfAbsent(name,
+                n -> new Entry(Type.SUMMARY, help, new LatencyHistogram())).value;
+    }
+
+    /** Registers a gauge, replacing one registered earlier under the same name. */
+    public void gauge(String name, String help, LongSupplier value) {
+        entries.put(name, new Entry(Type.GAUGE, help, value));
+    }
+
+    /** Prometheus text exposition format 0.0.4; histograms are exported as summaries in seconds. */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        String lastFamily = null;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            String name = e.getKey();
+            Entry entry = e.getValue();
+            String family = family(name);
+            if (!family.equals(lastFamily)) {
+                sb.append("# HELP ").append(family).append(' ').append(entry.help).append('\n');
+                sb.append("# TYPE ").append(family).append(' ').append(entry.type.name().toLowerCase(Locale.ROOT)).append('\n');
+                lastFamily = family;
+            }
+            switch (entry.type) {
+                case COUNTER -> sb.append(name).append(' ').append(((LongAdder) entry.value).sum()).append('\n');
+                case GAUGE -> sb.append(name).append(' ').append(((LongSupplier) entry.value).getAsLong()).append('\n');
+                case SUMMARY -> {
+                    LatencyHistogram h = (LatencyHistogram) entry.value;
+                    String labels = labels(name);
+                    for (double q : new double[]{0.5, 0.9, 0.99, 0.999}) {
+                        sb.append(family).append("{quantile=\"").append(q).append('"')
+                                .append(labels.isEmpty() ? "" : "," + labels).append("} ")
+                                .append(LatencyHistogram.seconds(h.quantileNanos(q))).append('\n');
+                    }
+                    String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+                    sb.append(family).append("_sum").append(suffix).append(' ')
+                            .append(LatencyHistogram.seconds(h.getSumNanos())).append('\n');
+                    sb.append(family).append("_count").append(suffix).append(' ').append(h.getCount()).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Flat JSON object; histograms become objects with count, sum, quantiles and max in seconds. */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(4096).append('{');
+        boolean first = true;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append("\n  \"").append(e.getKey().replace("\"", "\\\"")).append("\": ");
+            Entry entry = e.getValue();
+            switch (entry.type) {
+                case COUNTER -> sb.append(((LongAdder) entry.value).sum());
+                case GAUGE -> sb.append(((LongSupplier) entry.value).getAsLong());
+                case SUMMARY -> {
+                    LatencyHistogram h = (LatencyHistogram) entry.value;
+                    sb.append("{\"count\": ").append(h.getCount())
+                            .append(", \"sum\": ").append(LatencyHistogram.seconds(h.getSumNanos()))
+                            .append(", \"p50\": ").append(LatencyHistogram.seconds(h.quantileNanos(0.5)))
+                            .append(", \"p90\": ").append(LatencyHistogram.seconds(h.quantileNanos(0.9)))
+                            .append(", \"p99\": ").append(LatencyHistogram.seconds(h.quantileNanos(0.99)))
+                            .append(", \"p999\": ").append(LatencyHistogram.seconds(h.quantileNanos(0.999)))
+                            .append(", \"max\": ").append(LatencyHistogram.seconds(h.getMaxNanos()))
+                            .append('}');
+                }
+            }
+        }
+        return sb.append("\n}\n").toString();
+    }
+
+    private static String family(String name) {
+        int brace = name.indexOf('{');
+        return brace < 0 ? name : name.substring(0, brace);
+    }
+
+    private static String labels(String name) {
+        int brace = name.indexOf('{');
+        return brace < 0 ? "" : name.substring(brace + 1, name.length() - 1);
+    }
+
+    private enum Type { COUNTER, GAUGE, SUMMARY }
+
+    private record Entry(Type type, String help, Object value) {
+    }
+}
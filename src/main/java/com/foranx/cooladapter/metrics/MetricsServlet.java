@@ -0,0 +1,28 @@
+package com.foranx.cooladapter.metrics;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/** Serves {@link Metrics#shared()} in Prometheus text format, or as JSON with {@code ?format=json}. */
+@WebServlet(name = "metricsServlet", value = "/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        if ("json".equalsIgnoreCase(request.getParameter("format"))) {
+            response.setContentType("application/json");
+            response.getWriter().write(Metrics.shared().toJson());
+        } else {
+            response.setContentType("text/plain; version=0.0.4");
+            response.getWriter().write(Metrics.shared().toPrometheus());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.foranx.cooladapter.mq;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts the outstanding messages of one unit of work (usually a file).
+ * {@link #register} and {@link #onCompletion} only move counters and allocate nothing; callers
+ * that need more per message, like the file sender which also moves the file's checkpoint,
+ * call {@link #onCompletion} from their own callback.
+ */
+public class CompletionTracker implements SendCallback {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition done = lock.newCondition();
+    private final AtomicReference<Exception> firstError = new AtomicReference<>();
+    private long pending;
+    private long completed;
+    private long failed;
+    private Runnable whenDone;
+
+    /** Must be called before the message is handed to the producer. */
+    public void register() {
+        lock.lock();
+        try {
+            pending++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onCompletion(Exception error) {
+        if (error != null) {
+            firstError.compareAndSet(null, error);
+        }
+        Runnable action = null;
+        lock.lock();
+        try {
+            pending--;
+            if (error == null) completed++;
+            else failed++;
+            if (pending == 0) {
+                done.signalAll();
+                action = whenDone;
+                whenDone = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    /**
+     * Runs {@code action} once every registered message has completed: right away if none is
+     * outstanding, otherwise on the thread that completes the last one, so it must not block.
+     * Call it after the last {@link #register}.
+     */
+    public void whenDone(Runnable action) {
+        lock.lock();
+        try {
+            if (pending > 0) {
+                whenDone = action;
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        action.run();
+    }
+
+    /** Waits until every registered message has completed; returns {@code false} on timeout. */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (pending > 0) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = done.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCompleted() {
+        lock.lock();
+        try {
+            return completed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getFailed() {
+        lock.lock();
+        try {
+            return failed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Exception getFirstError() {
+        return firstError.get();
+    }
+}
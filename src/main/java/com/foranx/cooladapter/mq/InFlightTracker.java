@@ -0,0 +1,203 @@
+package com.foranx.cooladapter.mq;
+
+import com.foranx.cooladapter.metrics.LatencyHistogram;
+import com.foranx.cooladapter.metrics.Metrics;
+import com.foranx.cooladapter.ofs.OfsResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Messages waiting for their reply, by correlation ID.
+ * <p>
+ * Nobody blocks on a reply: {@link #register} stores the caller's {@link Outcome}, which is
+ * called exactly once, by the reply consumer when the reply arrives, by {@link #fail} when the
+ * message was not sent, or by the timer when no reply came within the timeout.
+ * <p>
+ * A packed message carries several records; its reply holds one reply per record, joined by
+ * the pack's separator, and each record's outcome gets its own part. A reply that does not
+ * split, e.g. T24 rejecting the whole payload, applies to every record.
+ * <p>
+ * Timeouts use a hashed wheel: an entry sits in the slot of the tick at which it expires and
+ * leaves it when its reply arrives, so the timer thread only looks at the slot of the current
+ * tick, never at the whole table.
+ */
+public class InFlightTracker implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(InFlightTracker.class.getName());
+    private static final int SLOTS = 512;
+    private static final long MIN_TICK_MS = 10;
+
+    private static final String REPLIES_HELP = "Sent records by the reply they got";
+    private static final LongAdder REPLIES_OK = Metrics.shared().counter(
+            "cooladapter_replies_total{status=\"ok\"}", REPLIES_HELP);
+    private static final LongAdder REPLIES_ERROR = Metrics.shared().counter(
+            "cooladapter_replies_total{status=\"error\"}", REPLIES_HELP);
+    private static final LongAdder REPLIES_TIMEOUT = Metrics.shared().counter(
+            "cooladapter_replies_total{status=\"timeout\"}", REPLIES_HELP);
+    private static final LongAdder UNMATCHED = Metrics.shared().counter(
+            "cooladapter_replies_unmatched_total", "Replies whose correlation ID was not in flight");
+    private static final LatencyHistogram REPLY_TIME = Metrics.shared().histogram(
+            "cooladapter_reply_seconds", "Time from registering a message until its reply");
+
+    public enum Status { OK, ERROR, TIMEOUT }
+
+    @FunctionalInterface
+    public interface Outcome {
+        /** Called once per record, on the consumer or timer thread, so it must not block. */
+        void onResult(Status status, String detail);
+    }
+
+    private final String prefix;
+    private final long timeoutTicks;
+    private final long tickNanos;
+    private final ConcurrentHashMap<String, Entry> inFlight = new ConcurrentHashMap<>();
+    private final List<Set<Entry>> wheel = new ArrayList<>(SLOTS);
+    private final AtomicLong sequence = new AtomicLong();
+    private final ScheduledExecutorService timer;
+    private volatile long tick;
+
+    /** @param separator joins the replies of a packed message; {@code null} for a single record */
+    private record Entry(String id, Outcome[] outcomes, Pattern separator, long deadline, long registered) {
+    }
+
+    /**
+     * @param idPrefix start of every correlation ID, so that a consumer can select the replies
+     *                 of this instance; a token of the current run is appended
+     */
+    public InFlightTracker(String idPrefix, long timeoutMs) {
+        long tickMs = Math.max(MIN_TICK_MS, timeoutMs / (SLOTS / 2));
+        this.prefix = idPrefix + Long.toString(System.currentTimeMillis(), 36) + "-";
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.timeoutTicks = (timeoutMs + tickMs - 1) / tickMs;
+        for (int i = 0; i < SLOTS; i++) {
+            wheel.add(ConcurrentHashMap.newKeySet());
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reply-timeouts");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::advance, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        Metrics.shared().gauge("cooladapter_replies_in_flight", "Sent messages waiting for their reply", inFlight::size);
+    }
+
+    /** Starts tracking a message; returns the correlation ID to send it with. */
+    public String register(Outcome outcome) {
+        return register(new Outcome[]{outcome}, null);
+    }
+
+    /**
+     * Starts tracking a packed message whose records have the given outcomes, in payload order;
+     * returns the correlation ID to send it with.
+     */
+    public String register(Outcome[] outcomes, String separator) {
+        String id = prefix + sequence.incrementAndGet();
+        Pattern split = separator == null ? null : Pattern.compile(Pattern.quote(separator));
+        // One tick of slack: the current tick may be about to end
+        Entry entry = new Entry(id, outcomes, split, tick + timeoutTicks + 1, System.nanoTime());
+        wheel.get(slot(entry.deadline)).add(entry);
+        inFlight.put(id, entry);
+        return id;
+    }
+
+    /**
+     * Delivers the OFS reply {@code reply} to {@code correlationId}; returns {@code false} if it
+     * was not in flight.
+     */
+    public boolean complete(String correlationId, String reply) {
+        Entry entry = correlationId == null ? null : inFlight.remove(correlationId);
+        if (entry == null) {
+            UNMATCHED.increment();
+            return false;
+        }
+        wheel.get(slot(entry.deadline)).remove(entry);
+        REPLY_TIME.recordSince(entry.registered);
+        Outcome[] outcomes = entry.outcomes;
+        String[] parts = entry.separator == null || reply == null ? null : entry.separator.split(reply, -1);
+        if (parts == null || parts.length == 1) {
+            OfsResponse response = OfsResponse.parse(reply);
+            for (Outcome outcome : outcomes) {
+                deliver(entry, outcome, response);
+            }
+            return true;
+        }
+        for (int i = 0; i < outcomes.length; i++) {
+            if (i < parts.length && !parts[i].isBlank()) {
+                deliver(entry, outcomes[i], OfsResponse.parse(parts[i]));
+            } else {
+                REPLIES_ERROR.increment();
+                notify(entry, outcomes[i], Status.ERROR, "no reply to this record in the packed reply");
+            }
+        }
+        return true;
+    }
+
+    private static void deliver(Entry entry, Outcome outcome, OfsResponse response) {
+        (response.success() ? REPLIES_OK : REPLIES_ERROR).increment();
+        notify(entry, outcome, response.success() ? Status.OK : Status.ERROR, response.summary());
+    }
+
+    /** Ends tracking of a message that was not sent, e.g. because its transaction rolled back. */
+    public void fail(String correlationId, String detail) {
+        Entry entry = inFlight.remove(correlationId);
+        if (entry != null) {
+            wheel.get(slot(entry.deadline)).remove(entry);
+            REPLIES_ERROR.add(entry.outcomes.length);
+            notifyEach(entry, Status.ERROR, detail);
+        }
+    }
+
+    public int size() {
+        return inFlight.size();
+    }
+
+    private void advance() {
+        long now = ++tick;
+        Set<Entry> due = wheel.get(slot(now));
+        for (Entry entry : due) {
+            if (entry.deadline <= now && inFlight.remove(entry.id, entry)) {
+                due.remove(entry);
+                REPLIES_TIMEOUT.add(entry.outcomes.length);
+                notifyEach(entry, Status.TIMEOUT, "no reply within " + timeoutTicks * tickNanos / 1_000_000 + " ms");
+            }
+        }
+    }
+
+    private static void notifyEach(Entry entry, Status status, String detail) {
+        for (Outcome outcome : entry.outcomes) {
+            notify(entry, outcome, status, detail);
+        }
+    }
+
+    private static void notify(Entry entry, Outcome outcome, Status status, String detail) {
+        try {
+            outcome.onResult(status, detail);
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Reply callback failed for " + entry.id, e);
+        }
+    }
+
+    private static int slot(long tick) {
+        return (int) (tick & (SLOTS - 1));
+    }
+
+    /** Stops the timer; messages still in flight get no outcome. */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        if (!inFlight.isEmpty()) {
+            log.info(">>> " + inFlight.size() + " messages still waiting for a reply at shutdown");
+        }
+    }
+}
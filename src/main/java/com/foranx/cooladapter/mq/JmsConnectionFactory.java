@@ -1,4 +1,262 @@
 package com.foranx.cooladapter.mq;
 
-public class JmsConnectionFactory {
+import com.foranx.cooladapter.config.AppConfiguration;
+import com.foranx.cooladapter.metrics.Metrics;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of transacted sessions, each with a producer bound to the target queue,
+ * spread over a fixed number of connections. Connections are opened lazily and
+ * replaced after the broker reports them broken.
+ */
+public class JmsConnectionFactory implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(JmsConnectionFactory.class.getName());
+    private static final LongAdder CONNECTION_FAILURES = Metrics.shared().counter(
+            "cooladapter_jms_connection_failures_total", "JMS connections that failed or could not be opened");
+
+    private final ConnectionFactory factory;
+    private final String queueName;
+    private final String replyQueueName;
+    private final Holder[] connections;
+    private final Semaphore permits;
+    private final LinkedBlockingQueue<PooledSession> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger nextConnection = new AtomicInteger();
+    private volatile boolean closed;
+
+    public JmsConnectionFactory(AppConfiguration config) {
+        this(new ActiveMQConnectionFactory(config.getActiveMqUrl()), physicalQueueName(config.getQueue()),
+                config.getReplyQueue().isEmpty() ? null : physicalQueueName(config.getReplyQueue()),
+                config.getJmsConnections(), config.getJmsSessionsPerConnection());
+    }
+
+    public JmsConnectionFactory(ConnectionFactory factory, String queueName, int connections, int sessionsPerConnection) {
+        this(factory, queueName, null, connections, sessionsPerConnection);
+    }
+
+    /** @param replyQueueName queue named in the {@code JMSReplyTo} of correlated messages, or {@code null} */
+    public JmsConnectionFactory(ConnectionFactory factory, String queueName, String replyQueueName,
+                                int connections, int sessionsPerConnection) {
+        if (connections < 1 || sessionsPerConnection < 1) {
+            throw new IllegalArgumentException("connections and sessionsPerConnection must be positive");
+        }
+        this.factory = factory;
+        this.queueName = queueName;
+        this.replyQueueName = replyQueueName;
+        this.connections = new Holder[connections];
+        for (int i = 0; i < connections; i++) {
+            this.connections[i] = new Holder(i);
+        }
+        this.permits = new Semaphore(connections * sessionsPerConnection, true);
+    }
+
+    /**
+     * Strips a JNDI prefix such as {@code java:/queue/}, since the queue is looked up
+     * directly on the broker rather than through the application server.
+     */
+    public static String physicalQueueName(String queue) {
+        int idx = queue.lastIndexOf('/');
+        return idx >= 0 ? queue.substring(idx + 1) : queue;
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+
+    /** Borrows a session, blocking while all of them are in use. */
+    public PooledSession borrow() throws JMSException, InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("JmsConnectionFactory is closed");
+        }
+        permits.acquire();
+        try {
+            PooledSession session;
+            while ((session = idle.poll()) != null) {
+                if (session.isUsable()) {
+                    return session;
+                }
+                session.closeQuietly();
+            }
+            return open();
+        } catch (JMSException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void release(PooledSession session) {
+        if (closed || !session.isUsable()) {
+            session.closeQuietly();
+        } else {
+            idle.offer(session);
+        }
+        permits.release();
+    }
+
+    private PooledSession open() throws JMSException {
+        Holder holder = connections[Math.floorMod(nextConnection.getAndIncrement(), connections.length)];
+        Connection connection = holder.get();
+        try {
+            Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+            Queue queue = session.createQueue(queueName);
+            MessageProducer producer = session.createProducer(queue);
+            Queue replyTo = replyQueueName == null ? null : session.createQueue(replyQueueName);
+            return new PooledSession(holder, holder.generation, session, producer, replyTo);
+        } catch (JMSException e) {
+            holder.invalidate(connection);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledSession session;
+        while ((session = idle.poll()) != null) {
+            session.closeQuietly();
+        }
+        for (Holder holder : connections) {
+            holder.close();
+        }
+    }
+
+    private final class Holder {
+        private final int index;
+        private Connection connection;
+        private volatile int generation;
+
+        Holder(int index) {
+            this.index = index;
+        }
+
+        synchronized Connection get() throws JMSException {
+            if (connection == null) {
+                Connection created;
+                try {
+                    created = factory.createConnection();
+                } catch (JMSException | RuntimeException e) {
+                    CONNECTION_FAILURES.increment();
+                    throw e;
+                }
+                int current = generation;
+                created.setExceptionListener(e -> {
+                    log.log(Level.WARNING, "JMS connection " + index + " failed", e);
+                    CONNECTION_FAILURES.increment();
+                    invalidate(current);
+                });
+                created.start();
+                connection = created;
+                log.info(">>> JMS connection " + index + " opened to queue " + queueName);
+            }
+            return connection;
+        }
+
+        synchronized void invalidate(Connection failed) {
+            if (connection == failed) {
+                invalidate(generation);
+            }
+        }
+
+        synchronized void invalidate(int failedGeneration) {
+            if (generation != failedGeneration || connection == null) {
+                return;
+            }
+            generation++;
+            try {
+                connection.close();
+            } catch (JMSException ignored) {
+            }
+            connection = null;
+        }
+
+        synchronized void close() {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (JMSException e) {
+                    log.log(Level.FINE, "Failed to close JMS connection " + index, e);
+                }
+                connection = null;
+            }
+        }
+    }
+
+    public static final class PooledSession {
+        private final Holder holder;
+        private final int generation;
+        private final Session session;
+        private final MessageProducer producer;
+        private final Queue replyTo;
+        private boolean broken;
+
+        private PooledSession(Holder holder, int generation, Session session, MessageProducer producer, Queue replyTo) {
+            this.holder = holder;
+            this.generation = generation;
+            this.session = session;
+            this.producer = producer;
+            this.replyTo = replyTo;
+        }
+
+        public Session session() { return session; }
+
+        public TextMessage createTextMessage(String text) throws JMSException {
+            return session.createTextMessage(text);
+        }
+
+        /** A message whose reply T24 sends, with the same correlation ID, to the reply queue. */
+        public TextMessage createTextMessage(String text, String correlationId) throws JMSException {
+            TextMessage message = session.createTextMessage(text);
+            message.setJMSCorrelationID(correlationId);
+            if (replyTo != null) {
+                message.setJMSReplyTo(replyTo);
+            }
+            return message;
+        }
+
+        public void send(TextMessage message) throws JMSException {
+            producer.send(message);
+        }
+
+        public void commit() throws JMSException {
+            session.commit();
+        }
+
+        public void rollbackQuietly() {
+            try {
+                session.rollback();
+            } catch (JMSException ignored) {
+            }
+        }
+
+        /** Marks the session (and its connection) as unusable after a JMS failure. */
+        public void markBroken() {
+            broken = true;
+            holder.invalidate(generation);
+        }
+
+        boolean isUsable() {
+            return !broken && holder.generation == generation;
+        }
+
+        void closeQuietly() {
+            try {
+                session.close();
+            } catch (JMSException ignored) {
+            }
+        }
+    }
 }
@@ -1,4 +1,262 @@
 package com.foranx.cooladapter.mq;
 
-public class JmsProducer {
+import com.foranx.cooladapter.config.AppConfiguration;
+import com.foranx.cooladapter.metrics.LatencyHistogram;
+import com.foranx.cooladapter.metrics.Metrics;
+import jakarta.jms.JMSException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Asynchronous, batching producer.
+ * <p>
+ * {@link #send} only queues the message: sender threads drain the queue into batches of
+ * up to {@code batchSize} messages, waiting at most {@code lingerMs} for a batch to fill,
+ * and send each batch in one transaction on a pooled session. Callbacks fire after the
+ * commit (or rollback). At most {@code maxInFlight} messages can be queued or unconfirmed;
+ * beyond that {@link #send} blocks, which slows the parser down to the broker's pace.
+ */
+public class JmsProducer implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(JmsProducer.class.getName());
+    private static final long FAILURE_BACKOFF_MS = 500;
+
+    private static final LongAdder SENT = Metrics.shared().counter(
+            "cooladapter_jms_messages_total{result=\"sent\"}", "Messages committed or rolled back by the broker");
+    private static final LongAdder FAILED = Metrics.shared().counter(
+            "cooladapter_jms_messages_total{result=\"failed\"}", "Messages committed or rolled back by the broker");
+    private static final LatencyHistogram COMMIT_TIME = Metrics.shared().histogram(
+            "cooladapter_jms_batch_seconds", "Time to send and commit one batch");
+    private static final LatencyHistogram BLOCKED_TIME = Metrics.shared().histogram(
+            "cooladapter_jms_backpressure_seconds", "Time send() waited for room in the in-flight window");
+
+    private final JmsConnectionFactory factory;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final int maxInFlight;
+    private final Semaphore window;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread[] senders;
+    private volatile boolean running = true;
+
+    public JmsProducer(AppConfiguration config) {
+        this(new JmsConnectionFactory(config), config.getJmsBatchSize(), config.getJmsLingerMs(),
+                config.getJmsMaxInFlight(), config.getJmsSenders());
+    }
+
+    public JmsProducer(JmsConnectionFactory factory, int batchSize, long lingerMs, int maxInFlight, int senderCount) {
+        if (batchSize < 1 || maxInFlight < batchSize || senderCount < 1 || lingerMs < 0) {
+            throw new IllegalArgumentException("Invalid producer settings: batchSize=" + batchSize
+                    + ", maxInFlight=" + maxInFlight + ", senders=" + senderCount + ", lingerMs=" + lingerMs);
+        }
+        this.factory = factory;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.maxInFlight = maxInFlight;
+        this.window = new Semaphore(maxInFlight);
+        this.senders = new Thread[senderCount];
+        for (int i = 0; i < senderCount; i++) {
+            Thread t = new Thread(this::runSender, "jms-sender-" + i);
+            t.setDaemon(true);
+            senders[i] = t;
+            t.start();
+        }
+        Metrics.shared().gauge("cooladapter_jms_queue_depth", "Messages waiting for a sender thread", queue::size);
+        // Reads the semaphore rather than this, which is not fully constructed yet
+        Semaphore permits = window;
+        Metrics.shared().gauge("cooladapter_jms_in_flight", "Messages queued or sent but not yet committed",
+                () -> maxInFlight - permits.availablePermits());
+    }
+
+    /**
+     * Queues a message for sending. Blocks while {@code maxInFlight} messages are
+     * still waiting for their transaction to complete. Once the producer is closed, the
+     * callback is called at once with an {@link IllegalStateException}.
+     */
+    public void send(String text, SendCallback callback) throws InterruptedException {
+        send(text, batchSize, callback);
+    }
+
+    /**
+     * Same as {@link #send(String, SendCallback)}, but the message never shares a
+     * transaction with more than {@code batchLimit} messages.
+     */
+    public void send(String text, int batchLimit, SendCallback callback) throws InterruptedException {
+        send(text, batchLimit, null, callback);
+    }
+
+    /**
+     * Same as {@link #send(String, int, SendCallback)}, with {@code correlationId} as the
+     * {@code JMSCorrelationID} of the message, unless it is {@code null}.
+     */
+    public void send(String text, int batchLimit, String correlationId, SendCallback callback)
+            throws InterruptedException {
+        if (!window.tryAcquire()) {
+            long started = System.nanoTime();
+            window.acquire();
+            BLOCKED_TIME.recordSince(started);
+        }
+        if (!running) {
+            window.release();
+            callback.onCompletion(new IllegalStateException("JmsProducer is closed"));
+            return;
+        }
+        Pending pending = new Pending(text, Math.max(1, Math.min(batchLimit, batchSize)), correlationId, callback);
+        queue.add(pending);
+        if (!running && queue.remove(pending)) {
+            // close() drained the queue before this message arrived
+            window.release();
+            callback.onCompletion(new IllegalStateException("JmsProducer is closed"));
+        }
+    }
+
+    /** Messages queued or sent but not yet committed. */
+    public int getInFlight() {
+        return maxInFlight - window.availablePermits();
+    }
+
+    /** Waits until every message queued so far has completed. */
+    public void flush() throws InterruptedException {
+        window.acquire(maxInFlight);
+        window.release(maxInFlight);
+    }
+
+    private void runSender() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        Pending carry = null;
+        while (running || carry != null || !queue.isEmpty()) {
+            try {
+                Pending first = carry != null ? carry : queue.poll(100, TimeUnit.MILLISECONDS);
+                carry = null;
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                int limit = first.batchLimit;
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < limit) {
+                    Pending next = queue.poll();
+                    if (next == null) {
+                        long wait = deadline - System.nanoTime();
+                        if (wait <= 0 || (next = queue.poll(wait, TimeUnit.NANOSECONDS)) == null) {
+                            break;
+                        }
+                    }
+                    if (batch.size() >= next.batchLimit) {
+                        // Would exceed the limit of that message: it starts the next batch
+                        carry = next;
+                        break;
+                    }
+                    batch.add(next);
+                    limit = Math.min(limit, next.batchLimit);
+                }
+            } catch (InterruptedException e) {
+                // Interrupted by close(): send what is already held
+            }
+            if (!batch.isEmpty()) {
+                sendBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void sendBatch(List<Pending> batch) {
+        Exception error = null;
+        JmsConnectionFactory.PooledSession session = null;
+        long started = System.nanoTime();
+        try {
+            session = factory.borrow();
+            for (Pending pending : batch) {
+                session.send(pending.correlationId == null
+                        ? session.createTextMessage(pending.text)
+                        : session.createTextMessage(pending.text, pending.correlationId));
+            }
+            session.commit();
+            COMMIT_TIME.recordSince(started);
+        } catch (JMSException | RuntimeException e) {
+            error = e;
+            if (session != null) {
+                session.rollbackQuietly();
+                session.markBroken();
+            }
+        } catch (InterruptedException e) {
+            error = e;
+            Thread.currentThread().interrupt();
+        } finally {
+            if (session != null) {
+                factory.release(session);
+            }
+        }
+
+        for (Pending pending : batch) {
+            try {
+                pending.callback.onCompletion(error);
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "Send callback failed", e);
+            }
+        }
+        window.release(batch.size());
+        (error == null ? SENT : FAILED).add(batch.size());
+
+        if (error != null && !(error instanceof InterruptedException)) {
+            log.log(Level.WARNING, "Failed to send batch of " + batch.size() + " messages", error);
+            try {
+                Thread.sleep(FAILURE_BACKOFF_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread sender : senders) {
+            try {
+                sender.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (Thread sender : senders) {
+            sender.interrupt();
+        }
+
+        List<Pending> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        Exception closed = new IllegalStateException("JmsProducer closed before the message was sent");
+        for (Pending pending : abandoned) {
+            pending.callback.onCompletion(closed);
+        }
+        window.release(abandoned.size());
+        // Wakes sends still waiting for room, which then fail their callback
+        window.release(maxInFlight);
+        factory.close();
+    }
+
+    /** A queued message; compared by identity, so that {@code send} removes exactly its own. */
+    private static final class Pending {
+        final String text;
+        final int batchLimit;
+        final String correlationId;
+        final SendCallback callback;
+
+        Pending(String text, int batchLimit, String correlationId, SendCallback callback) {
+            this.text = text;
+            this.batchLimit = batchLimit;
+            this.correlationId = correlationId;
+            this.callback = callback;
+        }
+    }
 }
@@ -0,0 +1,119 @@
+package com.foranx.cooladapter.mq;
+
+import com.foranx.cooladapter.config.AppConfiguration;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Listens on the reply queue and hands every T24 reply to the {@link InFlightTracker}.
+ * Only replies whose correlation ID starts with this instance's prefix are consumed, so
+ * several instances can share one reply queue. The connection is reopened after a failure.
+ */
+public class ReplyConsumer implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(ReplyConsumer.class.getName());
+    private static final long RECONNECT_MS = 5000;
+
+    private final ConnectionFactory factory;
+    private final String queueName;
+    private final String selector;
+    private final InFlightTracker tracker;
+    private final ScheduledExecutorService reconnect;
+    private Connection connection;
+    private volatile boolean closed;
+
+    public ReplyConsumer(AppConfiguration config, String idPrefix, InFlightTracker tracker) {
+        this(new ActiveMQConnectionFactory(config.getActiveMqUrl()),
+                JmsConnectionFactory.physicalQueueName(config.getReplyQueue()), idPrefix, tracker);
+    }
+
+    public ReplyConsumer(ConnectionFactory factory, String queueName, String idPrefix, InFlightTracker tracker) {
+        this.factory = factory;
+        this.queueName = queueName;
+        this.selector = "JMSCorrelationID LIKE '" + idPrefix.replace("'", "''") + "%'";
+        this.tracker = tracker;
+        this.reconnect = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reply-reconnect");
+            t.setDaemon(true);
+            return t;
+        });
+        reconnect.execute(this::connect);
+    }
+
+    private synchronized void connect() {
+        if (closed) {
+            return;
+        }
+        try {
+            Connection created = factory.createConnection();
+            try {
+                created.setExceptionListener(e -> {
+                    log.log(Level.WARNING, "Reply connection failed", e);
+                    disconnect(created);
+                });
+                Session session = created.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                MessageConsumer consumer = session.createConsumer(session.createQueue(queueName), selector);
+                consumer.setMessageListener(this::onMessage);
+                created.start();
+            } catch (JMSException | RuntimeException e) {
+                closeQuietly(created);
+                throw e;
+            }
+            connection = created;
+            log.info(">>> Listening for replies on " + queueName);
+        } catch (JMSException | RuntimeException e) {
+            log.log(Level.WARNING, "Cannot listen on reply queue " + queueName + ", retrying in "
+                    + RECONNECT_MS + " ms", e);
+            reconnect.schedule(this::connect, RECONNECT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void disconnect(Connection failed) {
+        if (connection != failed || closed) {
+            return;
+        }
+        closeQuietly(failed);
+        connection = null;
+        reconnect.schedule(this::connect, RECONNECT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void onMessage(Message message) {
+        try {
+            String text = message instanceof TextMessage textMessage ? textMessage.getText() : null;
+            if (!tracker.complete(message.getJMSCorrelationID(), text) && log.isLoggable(Level.FINE)) {
+                log.fine(">>> Reply for unknown message " + message.getJMSCorrelationID() + ": " + text);
+            }
+        } catch (JMSException | RuntimeException e) {
+            log.log(Level.WARNING, "Cannot read reply", e);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (JMSException ignored) {
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        reconnect.shutdownNow();
+        if (connection != null) {
+            closeQuietly(connection);
+            connection = null;
+        }
+    }
+}
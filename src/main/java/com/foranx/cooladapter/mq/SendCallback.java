@@ -0,0 +1,11 @@
+package com.foranx.cooladapter.mq;
+
+@FunctionalInterface
+public interface SendCallback {
+
+    /**
+     * Called once the transaction that carried the message was committed ({@code error == null})
+     * or rolled back. Runs on a sender thread, so it must not block.
+     */
+    void onCompletion(Exception error);
+}
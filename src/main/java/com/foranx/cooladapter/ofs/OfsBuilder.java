@@ -1,4 +1,104 @@
 package com.foranx.cooladapter.ofs;
 
-public class OfsBuilder {
+import com.foranx.cooladapter.handler.ValueHandler;
+import com.foranx.cooladapter.parser.DataRecord;
+
+import java.util.List;
+
+/**
+ * Builds {@code APP,VERSION/FUNCTION/PROCESS,USER/PASS,ID,FIELD:1:1=VALUE,...} messages.
+ * <p>
+ * Everything that does not depend on the record (header, field prefixes) is computed
+ * once per job, so building a message only copies the prefixes and escaped values into
+ * a reused {@link StringBuilder}. Instances are immutable and shared between threads.
+ */
+public final class OfsBuilder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFERS =
+            ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
+
+    private final String header;
+    private final int idColumn;
+    private final ValueHandler idHandler;
+    private final int[] columns;
+    private final String[] prefixes;
+    private final ValueHandler[] handlers;
+    private final boolean skipEmpty;
+
+    /**
+     * @param idColumn       0-based column holding the record ID, or -1 to let T24 allocate it
+     * @param columnHandlers compiled handler chain per 0-based column; missing or {@code null} entries keep the value
+     */
+    public OfsBuilder(String application, String version, String function, String processFlag,
+                      String credentials, int idColumn, List<OfsField> fields, boolean skipEmpty,
+                      ValueHandler[] columnHandlers) {
+        String app = OfsUtils.requirePlain(application, "application");
+        if (app.isEmpty()) {
+            throw new IllegalStateException("application is not set");
+        }
+        if (fields.isEmpty()) {
+            throw new IllegalStateException("No OFS fields mapped for " + app);
+        }
+        this.header = app + ","
+                + OfsUtils.requirePlain(version, "version") + "/"
+                + OfsUtils.requirePlain(function, "function") + "/"
+                + OfsUtils.requirePlain(processFlag, "processFlag") + ","
+                + (credentials == null ? "" : credentials.trim()) + ",";
+        this.idColumn = idColumn;
+        this.idHandler = handlerFor(columnHandlers, idColumn);
+        this.columns = new int[fields.size()];
+        this.prefixes = new String[fields.size()];
+        this.handlers = new ValueHandler[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            columns[i] = fields.get(i).column();
+            prefixes[i] = fields.get(i).prefix();
+            handlers[i] = handlerFor(columnHandlers, columns[i]);
+        }
+        this.skipEmpty = skipEmpty;
+    }
+
+    /** Header up to and including the comma before the record ID. */
+    public String getHeader() {
+        return header;
+    }
+
+    /**
+     * Builds the message for {@code record} into this thread's buffer. The returned
+     * builder is overwritten by the next call on the same thread.
+     */
+    public StringBuilder build(DataRecord record) {
+        StringBuilder out = BUFFERS.get();
+        if (out.capacity() > MAX_RETAINED_CAPACITY) {
+            out = new StringBuilder(INITIAL_CAPACITY);
+            BUFFERS.set(out);
+        }
+        out.setLength(0);
+        return appendTo(out, record);
+    }
+
+    public StringBuilder appendTo(StringBuilder out, DataRecord record) {
+        out.append(header);
+        if (idColumn >= 0) {
+            OfsUtils.appendEscaped(out, idHandler.apply(record.fieldOrEmpty(idColumn)));
+        }
+        for (int i = 0; i < columns.length; i++) {
+            CharSequence value = handlers[i].apply(record.fieldOrEmpty(columns[i]));
+            if (skipEmpty && value.isEmpty()) {
+                continue;
+            }
+            out.append(prefixes[i]);
+            OfsUtils.appendEscaped(out, value);
+        }
+        return out;
+    }
+
+    private static ValueHandler handlerFor(ValueHandler[] columnHandlers, int column) {
+        if (column < 0 || columnHandlers == null || column >= columnHandlers.length || columnHandlers[column] == null) {
+            return ValueHandler.IDENTITY;
+        }
+        return columnHandlers[column];
+    }
 }
@@ -0,0 +1,34 @@
+package com.foranx.cooladapter.ofs;
+
+/**
+ * Mapping of a source column (0-based) to a T24 field, e.g. {@code DEBIT.ACCT.NO:1:1}.
+ */
+public record OfsField(int column, String name, int multiValue, int subValue) {
+
+    public OfsField {
+        OfsUtils.requirePlain(name, "Field name");
+        if (name.isBlank() || column < 0 || multiValue < 1 || subValue < 1) {
+            throw new IllegalStateException("Invalid OFS field mapping: column " + column + " -> " + name);
+        }
+    }
+
+    /** Parses {@code NAME}, {@code NAME:mv} or {@code NAME:mv:sv}. */
+    public static OfsField parse(int column, String spec) {
+        String[] parts = spec.trim().split(":");
+        try {
+            int mv = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            int sv = parts.length > 2 ? Integer.parseInt(parts[2].trim()) : 1;
+            if (parts.length > 3) {
+                throw new IllegalStateException("Invalid OFS field: " + spec);
+            }
+            return new OfsField(column, parts[0].trim(), mv, sv);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid OFS field: " + spec, e);
+        }
+    }
+
+    /** The {@code ,NAME:mv:sv=} text that precedes the value in a message. */
+    String prefix() {
+        return "," + name + ":" + multiValue + ":" + subValue + "=";
+    }
+}
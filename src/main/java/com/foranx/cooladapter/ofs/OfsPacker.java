@@ -0,0 +1,76 @@
+package com.foranx.cooladapter.ofs;
+
+/**
+ * Joins consecutive OFS messages of one file into a single bulk payload,
+ * {@code MSG1<separator>MSG2<separator>...}, of at most {@code maxRecords} messages and
+ * {@code maxLength} characters. T24 answers such a payload with one reply per message,
+ * joined by the same separator and in the same order.
+ * <p>
+ * A message that contains the separator could not be told apart from two messages, so
+ * {@link #accepts} refuses it and it is sent alone. Not thread-safe; one packer per file.
+ */
+public final class OfsPacker {
+
+    private final String separator;
+    private final int maxRecords;
+    private final int maxLength;
+    private final StringBuilder payload = new StringBuilder();
+    private int records;
+
+    public OfsPacker(String separator, int maxRecords, int maxLength) {
+        if (separator.isEmpty() || maxRecords < 2 || maxLength < 1) {
+            throw new IllegalArgumentException("Invalid packing: separator='" + separator
+                    + "', maxRecords=" + maxRecords + ", maxLength=" + maxLength);
+        }
+        this.separator = separator;
+        this.maxRecords = maxRecords;
+        this.maxLength = maxLength;
+    }
+
+    /** Whether {@code message} may be packed at all; messages containing the separator may not. */
+    public boolean accepts(CharSequence message) {
+        int n = separator.length();
+        char first = separator.charAt(0);
+        for (int i = 0, last = message.length() - n; i <= last; i++) {
+            if (message.charAt(i) == first && (n == 1 || separator.contentEquals(message.subSequence(i, i + n)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Whether {@code message} still fits into the current payload; an empty payload takes any message. */
+    public boolean fits(CharSequence message) {
+        return records == 0
+                || records < maxRecords && payload.length() + separator.length() + message.length() <= maxLength;
+    }
+
+    public void add(CharSequence message) {
+        if (records > 0) {
+            payload.append(separator);
+        }
+        payload.append(message);
+        records++;
+    }
+
+    /** Messages in the current payload. */
+    public int size() {
+        return records;
+    }
+
+    public boolean isFull() {
+        return records >= maxRecords || payload.length() >= maxLength;
+    }
+
+    /** Returns the payload and starts a new one. */
+    public String drain() {
+        String text = payload.toString();
+        payload.setLength(0);
+        records = 0;
+        return text;
+    }
+
+    public String getSeparator() {
+        return separator;
+    }
+}
@@ -0,0 +1,30 @@
+package com.foranx.cooladapter.ofs;
+
+/**
+ * Reply of T24 to one OFS message: {@code ID/MSG.ID/FLAG,...}, where {@code FLAG} is
+ * {@code 1} when the transaction was posted and {@code -1} (or anything else) when it was
+ * rejected; the rest carries the record or the error messages.
+ */
+public record OfsResponse(String transactionId, boolean success, String text) {
+
+    public static OfsResponse parse(String reply) {
+        if (reply == null) {
+            return new OfsResponse("", false, "empty reply");
+        }
+        int comma = reply.indexOf(',');
+        String header = comma < 0 ? reply : reply.substring(0, comma);
+        String[] parts = header.split("/", -1);
+        boolean success = parts.length >= 3 && parts[2].trim().equals("1");
+        return new OfsResponse(parts[0].trim(), success, reply);
+    }
+
+    /** The error messages of a rejected reply, or the transaction ID of a posted one, on one line. */
+    public String summary() {
+        if (success) {
+            return transactionId;
+        }
+        int comma = text.indexOf(',');
+        String body = comma < 0 ? text : text.substring(comma + 1);
+        return body.replace('\r', ' ').replace('\n', ' ').replace('\t', ' ').strip();
+    }
+}
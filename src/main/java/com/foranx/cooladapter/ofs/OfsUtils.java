@@ -1,4 +1,55 @@
 package com.foranx.cooladapter.ofs;
 
-public class OfsUtils {
+/**
+ * OFS message syntax helpers.
+ * <p>
+ * T24 reserves {@code ,} (field separator), {@code /} (header separator) and {@code "}
+ * in OFS data; values carry them as {@code ?}, {@code ^} and {@code |} respectively.
+ */
+public final class OfsUtils {
+
+    private OfsUtils() {}
+
+    public static char escape(char c) {
+        return switch (c) {
+            case ',' -> '?';
+            case '/' -> '^';
+            case '"' -> '|';
+            default -> c;
+        };
+    }
+
+    public static boolean isReserved(char c) {
+        return c == ',' || c == '/' || c == '"';
+    }
+
+    /** Appends {@code value} to {@code out}, replacing reserved characters in the same pass. */
+    public static StringBuilder appendEscaped(StringBuilder out, CharSequence value) {
+        int length = value.length();
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '/' || c == '"') {
+                out.append(value, run, i).append(escape(c));
+                run = i + 1;
+            }
+        }
+        return out.append(value, run, length);
+    }
+
+    public static String escape(CharSequence value) {
+        return appendEscaped(new StringBuilder(value.length()), value).toString();
+    }
+
+    static String requirePlain(String value, String what) {
+        if (value == null) {
+            return "";
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (isReserved(value.charAt(i))) {
+                throw new IllegalStateException(what + " must not contain , / or \" characters: " + value);
+            }
+        }
+        return value.trim();
+    }
 }
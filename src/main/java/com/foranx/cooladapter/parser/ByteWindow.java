@@ -0,0 +1,157 @@
+package com.foranx.cooladapter.parser;
+
+import com.foranx.cooladapter.util.ByteBufferPool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Sliding window of input bytes. Readers scan {@code buffer()[0, limit())} and call
+ * {@link #refill(int)} when they run out of bytes in the middle of a record.
+ */
+abstract class ByteWindow implements Closeable {
+
+    protected ByteBuffer buf;
+    /** Input offset of {@code buf} index 0. */
+    protected long base;
+
+    ByteBuffer buffer() { return buf; }
+    long base() { return base; }
+    int limit() { return buf.limit(); }
+
+    /**
+     * Discards the bytes before {@code keepFrom} and makes more input available.
+     * When it returns {@code true} every index has moved down by {@code keepFrom}
+     * (possibly without new bytes being added); {@code false} means the input is
+     * exhausted and nothing was changed.
+     */
+    abstract boolean refill(int keepFrom) throws IOException;
+
+    @Override
+    public void close() {
+    }
+
+    static ByteWindow stream(ReadableByteChannel channel, ByteBufferPool pool) {
+        return new Buffered(pool, channel, null, 0, Long.MAX_VALUE);
+    }
+
+    static ByteWindow file(FileChannel channel, long start, long end, ByteBufferPool pool) {
+        return new Buffered(pool, null, channel, start, end);
+    }
+
+    static ByteWindow mapped(FileChannel channel, long start, long end, int windowSize) throws IOException {
+        return new Mapped(channel, start, end, windowSize);
+    }
+
+    private static final class Buffered extends ByteWindow {
+        private final ByteBufferPool pool;
+        private final ReadableByteChannel stream;
+        private final FileChannel file;
+        private final long end;
+        private long readPosition;
+        private boolean eof;
+
+        Buffered(ByteBufferPool pool, ReadableByteChannel stream, FileChannel file, long start, long end) {
+            this.pool = pool;
+            this.stream = stream;
+            this.file = file;
+            this.base = start;
+            this.readPosition = start;
+            this.end = end;
+            this.buf = pool.acquire();
+            this.buf.limit(0);
+        }
+
+        @Override
+        boolean refill(int keepFrom) throws IOException {
+            if (eof) {
+                return false;
+            }
+            int remaining = buf.limit() - keepFrom;
+            if (remaining == buf.capacity()) {
+                // A single record fills the whole buffer
+                ByteBuffer grown = ByteBuffer.allocate(buf.capacity() * 2);
+                buf.position(keepFrom);
+                grown.put(buf);
+                pool.release(buf);
+                buf = grown;
+            } else {
+                buf.position(keepFrom);
+                buf.compact();
+            }
+            base += keepFrom;
+
+            if (file != null) {
+                long left = end - readPosition;
+                if (left < buf.remaining()) {
+                    buf.limit(buf.position() + (int) left);
+                }
+                while (buf.hasRemaining()) {
+                    int n = file.read(buf, readPosition);
+                    if (n < 0) break;
+                    readPosition += n;
+                }
+                if (readPosition >= end || buf.hasRemaining()) {
+                    eof = true;
+                }
+            } else {
+                while (buf.hasRemaining()) {
+                    int n = stream.read(buf);
+                    if (n < 0) {
+                        eof = true;
+                        break;
+                    }
+                    if (n == 0) break;
+                }
+            }
+            buf.flip();
+            return true;
+        }
+
+        @Override
+        public void close() {
+            pool.release(buf);
+            buf = ByteBuffer.allocate(0);
+        }
+    }
+
+    private static final class Mapped extends ByteWindow {
+        private final FileChannel channel;
+        private final long end;
+        private final int windowSize;
+
+        Mapped(FileChannel channel, long start, long end, int windowSize) throws IOException {
+            this.channel = channel;
+            this.end = end;
+            this.windowSize = windowSize;
+            this.base = start;
+            this.buf = map(start, 0);
+            this.buf.limit(0);
+            // The first refill maps the real window
+        }
+
+        @Override
+        boolean refill(int keepFrom) throws IOException {
+            long windowEnd = base + buf.limit();
+            if (windowEnd >= end) {
+                return false;
+            }
+            long newBase = base + keepFrom;
+            long size = windowSize;
+            if (keepFrom == 0 && buf.limit() >= windowSize) {
+                // A single record is larger than the window
+                size = Math.min((long) buf.limit() * 2, Integer.MAX_VALUE - 8);
+            }
+            buf = map(newBase, (int) Math.min(size, end - newBase));
+            base = newBase;
+            return true;
+        }
+
+        private ByteBuffer map(long position, int size) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.foranx.cooladapter.parser;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Data files inside a {@code .gz} or {@code .zip}, decompressed while they are read and never
+ * expanded to disk. A gzip file holds one data file named like the archive without {@code .gz};
+ * a zip is read entry by entry, skipping directories and entries the caller does not accept.
+ * <p>
+ * {@link #channel()} feeds the current entry to {@link DataParser#open(ReadableByteChannel)}.
+ */
+public final class CompressedInput implements Closeable {
+
+    public static final String GZIP_EXTENSION = "gz";
+    public static final String ZIP_EXTENSION = "zip";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String fileName;
+    private final InputStream in;
+    private final ZipInputStream zip;
+    private final Predicate<String> accept;
+    private final ReadableByteChannel channel = new EntryChannel();
+    private InputStream entry;
+    private String entryName;
+    private long position;
+    private boolean started;
+
+    private CompressedInput(Path file, Predicate<String> accept) throws IOException {
+        this.fileName = file.getFileName().toString();
+        this.accept = accept;
+        InputStream raw = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        try {
+            if (extension(fileName).equals(GZIP_EXTENSION)) {
+                this.in = new GZIPInputStream(raw, BUFFER_SIZE);
+                this.zip = null;
+            } else {
+                this.zip = new ZipInputStream(raw);
+                this.in = zip;
+            }
+        } catch (IOException | RuntimeException e) {
+            raw.close();
+            throw e;
+        }
+    }
+
+    /** Opens a {@code .gz} or {@code .zip}; {@code accept} is given the name of every data file inside. */
+    public static CompressedInput open(Path file, Predicate<String> accept) throws IOException {
+        return new CompressedInput(file, accept);
+    }
+
+    public static boolean isCompressed(String fileName) {
+        String ext = extension(fileName);
+        return ext.equals(GZIP_EXTENSION) || ext.equals(ZIP_EXTENSION);
+    }
+
+    /**
+     * Name of the data file inside a gzip file ({@code orders.csv.gz} gives {@code orders.csv}),
+     * or {@code null} for a zip, whose entries carry their own names.
+     */
+    public static String dataName(String fileName) {
+        return extension(fileName).equals(GZIP_EXTENSION)
+                ? fileName.substring(0, fileName.length() - GZIP_EXTENSION.length() - 1)
+                : null;
+    }
+
+    /** Moves to the next accepted data file; returns {@code false} when there is none. */
+    public boolean nextEntry() throws IOException {
+        position = 0;
+        if (zip == null) {
+            if (started) {
+                entry = null;
+                return false;
+            }
+            started = true;
+            entryName = dataName(fileName);
+            entry = accept.test(entryName) ? in : null;
+            return entry != null;
+        }
+        ZipEntry next;
+        while ((next = zip.getNextEntry()) != null) {
+            String name = next.getName();
+            String baseName = name.substring(name.lastIndexOf('/') + 1);
+            if (!next.isDirectory() && !baseName.startsWith(".") && accept.test(baseName)) {
+                entryName = name;
+                entry = zip;
+                return true;
+            }
+        }
+        entry = null;
+        return false;
+    }
+
+    /** Name of the current data file, relative to the archive. */
+    public String entryName() {
+        return entryName;
+    }
+
+    /** Decompressed bytes of the current data file read or skipped so far. */
+    public long position() {
+        return position;
+    }
+
+    /** Skips up to {@code n} decompressed bytes of the current data file; returns how many were skipped. */
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n) {
+            long s = entry.skip(n - skipped);
+            if (s <= 0) {
+                if (entry.read() < 0) {
+                    break;
+                }
+                s = 1;
+            }
+            skipped += s;
+        }
+        position += skipped;
+        return skipped;
+    }
+
+    /** The current data file. Closing it does nothing; close this input instead. */
+    public ReadableByteChannel channel() {
+        return channel;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static String extension(String fileName) {
+        int idx = fileName.lastIndexOf('.');
+        return idx > 0 ? fileName.substring(idx + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private final class EntryChannel implements ReadableByteChannel {
+        private byte[] scratch;
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (entry == null) {
+                return -1;
+            }
+            int n;
+            if (dst.hasArray()) {
+                n = entry.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+                if (n > 0) {
+                    dst.position(dst.position() + n);
+                }
+            } else {
+                if (scratch == null) {
+                    scratch = new byte[BUFFER_SIZE];
+                }
+                n = entry.read(scratch, 0, Math.min(scratch.length, dst.remaining()));
+                if (n > 0) {
+                    dst.put(scratch, 0, n);
+                }
+            }
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return entry != null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -1,4 +1,239 @@
 package com.foranx.cooladapter.parser;
 
-public class CsvDataParser {
+import com.foranx.cooladapter.util.ByteBufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming CSV parser. Scans raw bytes for delimiters, quotes and newlines,
+ * so the charset must encode those characters as single ASCII bytes
+ * (UTF-8, windows-1251, cp866, ISO-8859-x...). Memory use is bounded by the
+ * buffer (or mapping window) size plus the largest record.
+ */
+public class CsvDataParser implements DataParser {
+
+    public static final int DEFAULT_MMAP_WINDOW = 64 << 20;
+
+    private final char delimiter;
+    private final char quote;
+    private final Charset charset;
+    private final ReadMode readMode;
+    private final ByteBufferPool pool;
+    private final int mmapWindow;
+
+    public CsvDataParser() {
+        this(',', '"', StandardCharsets.UTF_8, ReadMode.STREAM);
+    }
+
+    public CsvDataParser(char delimiter, char quote, Charset charset, ReadMode readMode) {
+        this(delimiter, quote, charset, readMode, ByteBufferPool.shared(), DEFAULT_MMAP_WINDOW);
+    }
+
+    public CsvDataParser(char delimiter, char quote, Charset charset, ReadMode readMode,
+                         ByteBufferPool pool, int mmapWindow) {
+        checkSingleByte(delimiter, charset, "delimiter");
+        checkSingleByte(quote, charset, "quote");
+        checkSingleByte('\n', charset, "newline");
+        if (delimiter == quote || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("Invalid delimiter: '" + delimiter + "'");
+        }
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.charset = charset;
+        this.readMode = readMode;
+        this.pool = pool;
+        this.mmapWindow = mmapWindow;
+    }
+
+    public char getDelimiter() { return delimiter; }
+    public char getQuote() { return quote; }
+    public Charset getCharset() { return charset; }
+    public ReadMode getReadMode() { return readMode; }
+
+    @Override
+    public RecordReader open(ReadableByteChannel channel) {
+        return new CsvRecordReader(ByteWindow.stream(channel, pool));
+    }
+
+    @Override
+    public RecordReader open(FileChannel channel, long start, long end) throws IOException {
+        ByteWindow window = readMode == ReadMode.MMAP
+                ? ByteWindow.mapped(channel, start, end, mmapWindow)
+                : ByteWindow.file(channel, start, end, pool);
+        return new CsvRecordReader(window);
+    }
+
+    @Override
+    public RecordSplitter splitter() {
+        return new RecordSplitter(delimiter, quote, pool);
+    }
+
+    static void checkSingleByte(char c, Charset charset, String what) {
+        byte[] encoded = String.valueOf(c).getBytes(charset);
+        if (c > 0x7F || encoded.length != 1 || encoded[0] != (byte) c) {
+            throw new IllegalArgumentException(
+                    "Charset " + charset + " does not encode " + what + " '" + c + "' as a single ASCII byte");
+        }
+    }
+
+    private static final int NEED_MORE = 0;
+    private static final int RECORD = 1;
+    private static final int BLANK = 2;
+
+    private final class CsvRecordReader implements RecordReader {
+        private final ByteWindow window;
+        private final DataRecord record = new DataRecord(charset, quote);
+        private final byte delim = (byte) delimiter;
+        private final byte quoteByte = (byte) quote;
+
+        private int pos;
+        private boolean exhausted;
+        private long line = 1;
+        private long index;
+
+        CsvRecordReader(ByteWindow window) {
+            this.window = window;
+        }
+
+        @Override
+        public RecordReader numbering(long firstLine, long firstRecordIndex) {
+            this.line = firstLine;
+            this.index = firstRecordIndex;
+            return this;
+        }
+
+        @Override
+        public DataRecord record() {
+            return record;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            while (true) {
+                if (exhausted && pos >= window.limit()) {
+                    return false;
+                }
+                int status = scan(exhausted);
+                if (status == RECORD) {
+                    return true;
+                }
+                if (status == BLANK) {
+                    continue;
+                }
+                if (window.refill(pos)) {
+                    pos = 0;
+                } else {
+                    exhausted = true;
+                }
+            }
+        }
+
+        private int scan(boolean atEof) {
+            ByteBuffer buf = window.buffer();
+            int limit = buf.limit();
+            int start = pos;
+            int i = start;
+            int fieldStart = i;
+            int quoteEnd = -1;
+            boolean quoted = false;
+            boolean inQuotes = false;
+            boolean escaped = false;
+            int newlines = 0;
+
+            record.reset(buf);
+
+            while (i < limit) {
+                byte b = buf.get(i);
+                if (inQuotes) {
+                    if (b == quoteByte) {
+                        if (i + 1 >= limit && !atEof) {
+                            return NEED_MORE;
+                        }
+                        if (i + 1 < limit && buf.get(i + 1) == quoteByte) {
+                            escaped = true;
+                            i += 2;
+                            continue;
+                        }
+                        inQuotes = false;
+                        quoteEnd = i;
+                    } else if (b == '\n') {
+                        newlines++;
+                    }
+                    i++;
+                    continue;
+                }
+                if (b == delim) {
+                    addField(fieldStart, i, quoted, quoteEnd, escaped);
+                    fieldStart = i + 1;
+                    quoted = false;
+                    escaped = false;
+                    quoteEnd = -1;
+                } else if (b == '\n') {
+                    int end = i > fieldStart && buf.get(i - 1) == '\r' ? i - 1 : i;
+                    addField(fieldStart, end, quoted, quoteEnd, escaped);
+                    return complete(start, i + 1, newlines + 1, end == start);
+                } else if (b == quoteByte && i == fieldStart) {
+                    quoted = true;
+                    inQuotes = true;
+                }
+                i++;
+            }
+
+            if (!atEof) {
+                return NEED_MORE;
+            }
+            // Last record without a trailing newline
+            int end = !inQuotes && limit > fieldStart && buf.get(limit - 1) == '\r' ? limit - 1 : limit;
+            addField(fieldStart, end, quoted, quoteEnd, escaped);
+            return complete(start, limit, newlines, end == start);
+        }
+
+        private void addField(int start, int end, boolean quoted, int quoteEnd, boolean escaped) {
+            if (quoted) {
+                record.addField(start + 1, quoteEnd >= 0 ? quoteEnd : end, escaped);
+            } else {
+                record.addField(start, end, false);
+            }
+        }
+
+        private int complete(int start, int end, int lines, boolean blank) {
+            long base = window.base();
+            pos = end;
+            if (blank) {
+                line += lines;
+                return BLANK;
+            }
+            record.finish(line, line + lines, index++, base + start, base + end);
+            line += lines;
+            return RECORD;
+        }
+
+        @Override
+        public void close() {
+            window.close();
+        }
+    }
+
+    /** {@code format=csv}, the default: the job's {@code delimiter} and {@code quote}. */
+    public static final class Format implements DataFormat {
+
+        @Override
+        public String name() {
+            return DataFormats.DEFAULT;
+        }
+
+        @Override
+        public DataParser create(Settings settings) {
+            try {
+                return new CsvDataParser(settings.delimiter(), settings.quote(), settings.charset(), settings.readMode());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
 }
@@ -0,0 +1,31 @@
+package com.foranx.cooladapter.parser;
+
+import java.nio.charset.Charset;
+import java.util.Properties;
+
+/**
+ * Input format that a job selects with {@code format=NAME}. Implementations are found with
+ * {@link java.util.ServiceLoader} through {@code META-INF/services/com.foranx.cooladapter.parser.DataFormat},
+ * so a format shipped in its own jar only needs to be on the class path. Every format fills
+ * the same {@link DataRecord}, so the transform and OFS stages do not depend on it.
+ */
+public interface DataFormat {
+
+    /** Name used in {@code format=}, matched ignoring case. */
+    String name();
+
+    /**
+     * Creates the job's parser.
+     *
+     * @throws IllegalStateException if the job's format-specific keys are missing or invalid
+     */
+    DataParser create(Settings settings);
+
+    /**
+     * What a job declares about its input.
+     *
+     * @param properties the whole job file, for format-specific keys
+     */
+    record Settings(Properties properties, char delimiter, char quote, Charset charset, ReadMode readMode) {
+    }
+}
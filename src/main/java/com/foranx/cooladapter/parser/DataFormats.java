@@ -0,0 +1,43 @@
+package com.foranx.cooladapter.parser;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the {@link DataFormat}s found on the class path, by lower case name.
+ */
+public final class DataFormats {
+
+    public static final String DEFAULT = "csv";
+
+    private static final Map<String, DataFormat> REGISTRY = new ConcurrentHashMap<>();
+
+    static {
+        for (DataFormat format : ServiceLoader.load(DataFormat.class, DataFormat.class.getClassLoader())) {
+            register(format);
+        }
+    }
+
+    private DataFormats() {}
+
+    public static void register(DataFormat format) {
+        REGISTRY.put(format.name().toLowerCase(Locale.ROOT), format);
+    }
+
+    /** @throws IllegalStateException if no format has this name */
+    public static DataFormat get(String name) {
+        DataFormat format = REGISTRY.get(name.trim().toLowerCase(Locale.ROOT));
+        if (format == null) {
+            throw new IllegalStateException("Unknown format '" + name.trim() + "', available: " + names());
+        }
+        return format;
+    }
+
+    public static Set<String> names() {
+        return new TreeSet<>(REGISTRY.keySet());
+    }
+}
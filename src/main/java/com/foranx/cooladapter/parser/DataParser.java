@@ -1,4 +1,40 @@
 package com.foranx.cooladapter.parser;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
 public interface DataParser {
+
+    /** Reads records sequentially from a channel that cannot be positioned (pipes, decompressors). */
+    RecordReader open(ReadableByteChannel channel) throws IOException;
+
+    /**
+     * Reads the records in {@code [start, end)} of a file. {@code start} must be a record boundary.
+     * The channel is only read with positional reads and is not closed by the reader,
+     * so several readers may share it.
+     */
+    RecordReader open(FileChannel channel, long start, long end) throws IOException;
+
+    /** Splitter that finds record boundaries for parallel parsing, or {@code null} if the format cannot be split. */
+    default RecordSplitter splitter() {
+        return null;
+    }
+
+    default RecordReader open(Path file) throws IOException {
+        return open(file, 0);
+    }
+
+    /** Reads {@code file} from {@code start}, which must be a record boundary, to its end. */
+    default RecordReader open(Path file, long start) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return RecordReader.closing(open(channel, start, channel.size()), channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
 }
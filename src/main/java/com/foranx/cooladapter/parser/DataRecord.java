@@ -0,0 +1,260 @@
+package com.foranx.cooladapter.parser;
+
+import com.foranx.cooladapter.util.CharSlice;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Flyweight view of the current record of a {@link RecordReader}.
+ * <p>
+ * The reader reuses one instance for the whole file: field offsets point into the
+ * reader's buffer and are decoded lazily into a shared char buffer on first access.
+ * Values returned by {@link #field(int)} are only valid until the next call to
+ * {@link RecordReader#next()}; call {@code toString()} on them to keep a copy.
+ * <p>
+ * Parsers fill it with {@link #reset}, {@link #addField} or {@link #setField}, and
+ * {@link #finish}; those calls are public so that formats plugged in through
+ * {@link DataFormat} produce the same view as the built-in ones.
+ */
+public final class DataRecord {
+
+    /** How the bytes of a field escape characters that {@link #field} must restore. */
+    public enum Escaping {
+        NONE,
+        /** CSV: a quote inside a quoted field is written twice. */
+        DOUBLED_QUOTES,
+        /** JSON string: backslash escapes such as {@code \"} and {@code \n}, including four-digit hex escapes. */
+        BACKSLASH
+    }
+
+    private final CharsetDecoder decoder;
+    private final char quote;
+
+    private ByteBuffer source;
+    private ByteBuffer sourceView;
+
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private Escaping[] escaping = new Escaping[16];
+    private int fieldCount;
+
+    private char[] chars = new char[512];
+    private CharBuffer charView = CharBuffer.wrap(chars);
+    private int[] charStarts = new int[16];
+    private int[] charEnds = new int[16];
+    private CharSlice[] views = new CharSlice[0];
+    private boolean decoded;
+
+    private long lineNumber;
+    private long nextLineNumber;
+    private long recordIndex;
+    private long startOffset;
+    private long endOffset;
+
+    /** @param quote the quote character of {@link Escaping#DOUBLED_QUOTES} fields */
+    public DataRecord(Charset charset, char quote) {
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.quote = quote;
+    }
+
+    public int fieldCount() { return fieldCount; }
+    /** 1-based physical line on which the record starts. */
+    public long lineNumber() { return lineNumber; }
+    /** 0-based index of the record within the input. */
+    public long recordIndex() { return recordIndex; }
+    /** Byte offset of the first byte of the record. */
+    public long startOffset() { return startOffset; }
+    /** Byte offset just past the record terminator; a reader opened here resumes with the next record. */
+    public long endOffset() { return endOffset; }
+    /** Line number at {@link #endOffset()}, to pass to {@link RecordReader#numbering} when resuming there. */
+    public long nextLineNumber() { return nextLineNumber; }
+
+    public CharSequence field(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + index + " of " + fieldCount + " at line " + lineNumber);
+        }
+        if (!decoded) {
+            decode();
+        }
+        return views[index];
+    }
+
+    /** Returns the field or an empty sequence when the record is shorter than expected. */
+    public CharSequence fieldOrEmpty(int index) {
+        return index < fieldCount ? field(index) : "";
+    }
+
+    /** Starts the next record; field offsets added until {@link #finish} index {@code buffer}. */
+    public void reset(ByteBuffer buffer) {
+        if (source != buffer) {
+            source = buffer;
+            sourceView = buffer.duplicate();
+        }
+        fieldCount = 0;
+        decoded = false;
+    }
+
+    public void addField(int start, int end, boolean hasEscapedQuotes) {
+        addField(start, end, hasEscapedQuotes ? Escaping.DOUBLED_QUOTES : Escaping.NONE);
+    }
+
+    public void addField(int start, int end, Escaping escapes) {
+        setField(fieldCount, start, end, escapes);
+    }
+
+    /**
+     * Sets field {@code index}, for formats whose fields do not come in column order.
+     * Fields skipped up to {@code index} are empty; a field set twice keeps the last bytes.
+     */
+    public void setField(int index, int start, int end, Escaping escapes) {
+        if (index >= starts.length) {
+            int size = Math.max(index + 1, starts.length * 2);
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            escaping = Arrays.copyOf(escaping, size);
+        }
+        for (int i = fieldCount; i < index; i++) {
+            starts[i] = 0;
+            ends[i] = 0;
+            escaping[i] = Escaping.NONE;
+        }
+        starts[index] = start;
+        ends[index] = end;
+        escaping[index] = escapes;
+        fieldCount = Math.max(fieldCount, index + 1);
+    }
+
+    public void finish(long lineNumber, long nextLineNumber, long recordIndex, long startOffset, long endOffset) {
+        this.lineNumber = lineNumber;
+        this.nextLineNumber = nextLineNumber;
+        this.recordIndex = recordIndex;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+    }
+
+    private void decode() {
+        int total = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            total += ends[i] - starts[i];
+        }
+        int needed = (int) Math.ceil(total * (double) decoder.maxCharsPerByte());
+        if (chars.length < needed) {
+            chars = new char[Math.max(needed, chars.length * 2)];
+            charView = CharBuffer.wrap(chars);
+        }
+        if (charStarts.length < fieldCount) {
+            charStarts = new int[starts.length];
+            charEnds = new int[starts.length];
+        }
+        if (views.length < fieldCount) {
+            CharSlice[] grown = Arrays.copyOf(views, starts.length);
+            for (int i = views.length; i < grown.length; i++) {
+                grown[i] = new CharSlice();
+            }
+            views = grown;
+        }
+
+        int pos = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            int start = starts[i];
+            int end = ends[i];
+            charStarts[i] = pos;
+
+            int j = start;
+            while (j < end) {
+                byte b = source.get(j);
+                if (b < 0) break;
+                chars[pos++] = (char) b;
+                j++;
+            }
+            if (j < end) {
+                // Non-ASCII bytes: hand the rest of the field to the charset decoder
+                sourceView.clear().position(j).limit(end);
+                charView.clear().position(pos);
+                decoder.reset();
+                decoder.decode(sourceView, charView, true);
+                decoder.flush(charView);
+                pos = charView.position();
+            }
+            if (escaping[i] == Escaping.DOUBLED_QUOTES) {
+                pos = unescapeQuotes(charStarts[i], pos);
+            } else if (escaping[i] == Escaping.BACKSLASH) {
+                pos = unescapeBackslashes(charStarts[i], pos);
+            }
+            charEnds[i] = pos;
+            views[i].set(chars, charStarts[i], pos - charStarts[i]);
+        }
+        decoded = true;
+    }
+
+    private int unescapeQuotes(int from, int to) {
+        int w = from;
+        for (int r = from; r < to; r++) {
+            char c = chars[r];
+            chars[w++] = c;
+            if (c == quote && r + 1 < to && chars[r + 1] == quote) {
+                r++;
+            }
+        }
+        return w;
+    }
+
+    /** Resolves JSON escapes in place; an unknown or truncated escape is kept as written. */
+    private int unescapeBackslashes(int from, int to) {
+        int w = from;
+        for (int r = from; r < to; r++) {
+            char c = chars[r];
+            if (c == '\\' && r + 1 < to) {
+                char next = chars[r + 1];
+                int resolved = switch (next) {
+                    case '"', '\\', '/' -> next;
+                    case 'b' -> '\b';
+                    case 'f' -> '\f';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    case 't' -> '\t';
+                    case 'u' -> r + 5 < to ? hex(r + 2) : -1;
+                    default -> -1;
+                };
+                if (resolved >= 0) {
+                    chars[w++] = (char) resolved;
+                    r += next == 'u' ? 5 : 1;
+                    continue;
+                }
+            }
+            chars[w++] = c;
+        }
+        return w;
+    }
+
+    /** Value of the four hex digits at {@code at}, or -1. */
+    private int hex(int at) {
+        int value = 0;
+        for (int i = at; i < at + 4; i++) {
+            int digit = Character.digit(chars[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("line ").append(lineNumber).append(": [");
+        for (int i = 0; i < fieldCount; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(field(i));
+        }
+        return sb.append(']').toString();
+    }
+}
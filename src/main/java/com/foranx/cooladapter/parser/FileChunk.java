@@ -0,0 +1,14 @@
+package com.foranx.cooladapter.parser;
+
+/**
+ * Record-aligned byte range {@code [start, end)} of a file.
+ *
+ * @param index     position of the chunk in file order
+ * @param firstLine 1-based line number of the first byte of the chunk
+ */
+public record FileChunk(int index, long start, long end, long firstLine) {
+
+    public long length() {
+        return end - start;
+    }
+}
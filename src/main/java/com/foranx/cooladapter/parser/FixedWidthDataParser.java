@@ -0,0 +1,139 @@
+package com.foranx.cooladapter.parser;
+
+import com.foranx.cooladapter.util.ByteBufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Parser of positional files: one record per line, each field at fixed byte positions.
+ * Positions count bytes, which are characters for the single-byte charsets such files are
+ * written in. A line shorter than the layout gives empty or truncated trailing fields, and
+ * with {@code trim} the space padding around each field is dropped.
+ */
+public class FixedWidthDataParser implements DataParser {
+
+    private final int[] starts;
+    private final int[] ends;
+    private final boolean trim;
+    private final Charset charset;
+    private final ReadMode readMode;
+    private final ByteBufferPool pool;
+    private final int mmapWindow;
+
+    /**
+     * @param starts 0-based first byte of each field
+     * @param ends   0-based byte just past each field
+     */
+    public FixedWidthDataParser(int[] starts, int[] ends, boolean trim, Charset charset, ReadMode readMode) {
+        this(starts, ends, trim, charset, readMode, ByteBufferPool.shared(), CsvDataParser.DEFAULT_MMAP_WINDOW);
+    }
+
+    public FixedWidthDataParser(int[] starts, int[] ends, boolean trim, Charset charset, ReadMode readMode,
+                                ByteBufferPool pool, int mmapWindow) {
+        CsvDataParser.checkSingleByte('\n', charset, "newline");
+        if (starts.length == 0 || starts.length != ends.length) {
+            throw new IllegalArgumentException("Fixed-width layout needs one start and end per field");
+        }
+        for (int i = 0; i < starts.length; i++) {
+            if (starts[i] < 0 || ends[i] <= starts[i]) {
+                throw new IllegalArgumentException("Invalid fixed-width field " + (i + 1)
+                        + ": bytes " + (starts[i] + 1) + "-" + ends[i]);
+            }
+        }
+        this.starts = starts.clone();
+        this.ends = ends.clone();
+        this.trim = trim;
+        this.charset = charset;
+        this.readMode = readMode;
+        this.pool = pool;
+        this.mmapWindow = mmapWindow;
+    }
+
+    @Override
+    public RecordReader open(ReadableByteChannel channel) {
+        return new FixedWidthReader(ByteWindow.stream(channel, pool));
+    }
+
+    @Override
+    public RecordReader open(FileChannel channel, long start, long end) throws IOException {
+        ByteWindow window = readMode == ReadMode.MMAP
+                ? ByteWindow.mapped(channel, start, end, mmapWindow)
+                : ByteWindow.file(channel, start, end, pool);
+        return new FixedWidthReader(window);
+    }
+
+    /** Lines hold no quoting, so any newline is a record boundary. */
+    @Override
+    public RecordSplitter splitter() {
+        return new RecordSplitter(pool);
+    }
+
+    private final class FixedWidthReader extends LineRecordReader {
+
+        FixedWidthReader(ByteWindow window) {
+            super(window, new DataRecord(charset, (char) 0));
+        }
+
+        @Override
+        boolean parse(ByteBuffer buf, int start, int end, long lineNumber) {
+            int length = end - start;
+            for (int i = 0; i < starts.length; i++) {
+                int from = start + Math.min(starts[i], length);
+                int to = start + Math.min(ends[i], length);
+                if (trim) {
+                    while (from < to && buf.get(from) == ' ') {
+                        from++;
+                    }
+                    while (to > from && buf.get(to - 1) == ' ') {
+                        to--;
+                    }
+                }
+                record.addField(from, to, DataRecord.Escaping.NONE);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * {@code format=fixed}: {@code fixedColumns} lists the 1-based, inclusive byte range of
+     * each column, e.g. {@code 1-10,11-18,19}; {@code fixedTrim=false} keeps the padding.
+     */
+    public static final class Format implements DataFormat {
+
+        @Override
+        public String name() {
+            return "fixed";
+        }
+
+        @Override
+        public DataParser create(Settings settings) {
+            String layout = settings.properties().getProperty("fixedColumns");
+            if (layout == null || layout.isBlank()) {
+                throw new IllegalStateException("format=fixed needs fixedColumns, e.g. 1-10,11-18");
+            }
+            String[] ranges = layout.split(",");
+            int[] starts = new int[ranges.length];
+            int[] ends = new int[ranges.length];
+            for (int i = 0; i < ranges.length; i++) {
+                String range = ranges[i].trim();
+                int dash = range.indexOf('-');
+                try {
+                    starts[i] = Integer.parseInt(dash < 0 ? range : range.substring(0, dash).trim()) - 1;
+                    ends[i] = Integer.parseInt(dash < 0 ? range : range.substring(dash + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalStateException("Invalid fixedColumns range '" + range + "' in " + layout, e);
+                }
+            }
+            boolean trim = Boolean.parseBoolean(settings.properties().getProperty("fixedTrim", "true").trim());
+            try {
+                return new FixedWidthDataParser(starts, ends, trim, settings.charset(), settings.readMode());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.foranx.cooladapter.parser;
+
+import com.foranx.cooladapter.util.ByteBufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Parser of line-delimited JSON: one flat object per line, whose members are mapped to
+ * columns by name. Strings are unescaped when the field is read, nested objects and arrays
+ * are passed on as their JSON text, {@code null} and missing members are empty, and
+ * members not mapped to a column are skipped. Member names are compared as written,
+ * without resolving escapes. JSON keeps newlines escaped inside strings, so every newline
+ * byte ends a record and files can be split like positional ones.
+ */
+public class JsonLinesDataParser implements DataParser {
+
+    private final byte[][] names;
+    private final Charset charset;
+    private final ReadMode readMode;
+    private final ByteBufferPool pool;
+    private final int mmapWindow;
+
+    /** @param names member name of each column */
+    public JsonLinesDataParser(String[] names, Charset charset, ReadMode readMode) {
+        this(names, charset, readMode, ByteBufferPool.shared(), CsvDataParser.DEFAULT_MMAP_WINDOW);
+    }
+
+    public JsonLinesDataParser(String[] names, Charset charset, ReadMode readMode,
+                               ByteBufferPool pool, int mmapWindow) {
+        CsvDataParser.checkSingleByte('\n', charset, "newline");
+        CsvDataParser.checkSingleByte('"', charset, "quote");
+        if (names.length == 0) {
+            throw new IllegalArgumentException("JSON lines need at least one member name");
+        }
+        this.names = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            this.names[i] = names[i].getBytes(charset);
+        }
+        this.charset = charset;
+        this.readMode = readMode;
+        this.pool = pool;
+        this.mmapWindow = mmapWindow;
+    }
+
+    @Override
+    public RecordReader open(ReadableByteChannel channel) {
+        return new JsonLinesReader(ByteWindow.stream(channel, pool));
+    }
+
+    @Override
+    public RecordReader open(FileChannel channel, long start, long end) throws IOException {
+        ByteWindow window = readMode == ReadMode.MMAP
+                ? ByteWindow.mapped(channel, start, end, mmapWindow)
+                : ByteWindow.file(channel, start, end, pool);
+        return new JsonLinesReader(window);
+    }
+
+    @Override
+    public RecordSplitter splitter() {
+        return new RecordSplitter(pool);
+    }
+
+    private final class JsonLinesReader extends LineRecordReader {
+
+        private ByteBuffer buf;
+        private int lineStart;
+        private int i;
+        private int end;
+        private long lineNumber;
+
+        JsonLinesReader(ByteWindow window) {
+            super(window, new DataRecord(charset, '"'));
+        }
+
+        @Override
+        boolean parse(ByteBuffer buf, int start, int end, long lineNumber) throws IOException {
+            this.buf = buf;
+            this.lineStart = start;
+            this.i = start;
+            this.end = end;
+            this.lineNumber = lineNumber;
+            if (skipSpace() == end) {
+                return false;
+            }
+            expect('{');
+            if (skipSpace() < end && buf.get(i) == '}') {
+                i++;
+            } else {
+                while (true) {
+                    skipSpace();
+                    expect('"');
+                    int nameStart = i;
+                    int nameEnd = skipString();
+                    skipSpace();
+                    expect(':');
+                    skipSpace();
+                    member(column(nameStart, nameEnd));
+                    skipSpace();
+                    if (i < end && buf.get(i) == ',') {
+                        i++;
+                        continue;
+                    }
+                    expect('}');
+                    break;
+                }
+            }
+            if (skipSpace() != end) {
+                throw malformed("text after the object");
+            }
+            if (record.fieldCount() < names.length) {
+                record.setField(names.length - 1, 0, 0, DataRecord.Escaping.NONE);
+            }
+            return true;
+        }
+
+        /** Reads the value at {@code i} into {@code column}, or skips it when {@code column} is -1. */
+        private void member(int column) throws IOException {
+            if (i == end) {
+                throw malformed("missing value");
+            }
+            byte b = buf.get(i);
+            int from = i;
+            int to;
+            DataRecord.Escaping escaping = DataRecord.Escaping.NONE;
+            if (b == '"') {
+                i++;
+                from = i;
+                to = skipString();
+                for (int k = from; k < to; k++) {
+                    if (buf.get(k) == '\\') {
+                        escaping = DataRecord.Escaping.BACKSLASH;
+                        break;
+                    }
+                }
+            } else if (b == '{' || b == '[') {
+                skipNested();
+                to = i;
+            } else {
+                while (i < end && !isSpace(buf.get(i)) && buf.get(i) != ',' && buf.get(i) != '}') {
+                    i++;
+                }
+                to = i;
+                if (to == from) {
+                    throw malformed("missing value");
+                }
+                if (isNull(from, to)) {
+                    to = from;
+                }
+            }
+            if (column >= 0) {
+                record.setField(column, from, to, escaping);
+            }
+        }
+
+        /** Moves past the closing quote of the string whose content starts at {@code i}; returns its end. */
+        private int skipString() throws IOException {
+            while (i < end) {
+                byte b = buf.get(i++);
+                if (b == '"') {
+                    return i - 1;
+                }
+                if (b == '\\') {
+                    i++;
+                }
+            }
+            throw malformed("unterminated string");
+        }
+
+        private void skipNested() throws IOException {
+            int depth = 0;
+            while (i < end) {
+                byte b = buf.get(i++);
+                if (b == '"') {
+                    skipString();
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if ((b == '}' || b == ']') && --depth == 0) {
+                    return;
+                }
+            }
+            throw malformed("unterminated object or array");
+        }
+
+        private int column(int from, int to) {
+            int length = to - from;
+            for (int c = 0; c < names.length; c++) {
+                byte[] name = names[c];
+                if (name.length == length && matches(name, from)) {
+                    return c;
+                }
+            }
+            return -1;
+        }
+
+        private boolean matches(byte[] name, int from) {
+            for (int k = 0; k < name.length; k++) {
+                if (buf.get(from + k) != name[k]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isNull(int from, int to) {
+            return to - from == 4 && buf.get(from) == 'n' && buf.get(from + 1) == 'u'
+                    && buf.get(from + 2) == 'l' && buf.get(from + 3) == 'l';
+        }
+
+        private int skipSpace() {
+            while (i < end && isSpace(buf.get(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t' || b == '\r';
+        }
+
+        private void expect(char c) throws IOException {
+            if (i == end || buf.get(i) != c) {
+                throw malformed("expected '" + c + "'");
+            }
+            i++;
+        }
+
+        private IOException malformed(String what) {
+            return new IOException("Malformed JSON at line " + lineNumber + ", byte " + (i - lineStart + 1)
+                    + ": " + what);
+        }
+    }
+
+    /**
+     * {@code format=jsonl}: {@code jsonFields} lists the member name of each column in
+     * order, e.g. {@code id,name,amount}, so that {@code col.N} and {@code idColumn} work as for CSV.
+     */
+    public static final class Format implements DataFormat {
+
+        @Override
+        public String name() {
+            return "jsonl";
+        }
+
+        @Override
+        public DataParser create(Settings settings) {
+            String fields = settings.properties().getProperty("jsonFields");
+            if (fields == null || fields.isBlank()) {
+                throw new IllegalStateException("format=jsonl needs jsonFields, e.g. id,name,amount");
+            }
+            String[] names = fields.split(",");
+            for (int k = 0; k < names.length; k++) {
+                names[k] = names[k].trim();
+            }
+            try {
+                return new JsonLinesDataParser(names, settings.charset(), settings.readMode());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.foranx.cooladapter.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reader of formats with exactly one record per line, which cannot contain a newline byte.
+ * Finds the lines, skips blank ones, and leaves the fields of each to {@link #parse}.
+ */
+abstract class LineRecordReader implements RecordReader {
+
+    private final ByteWindow window;
+    protected final DataRecord record;
+
+    private int pos;
+    /** Bytes from {@code pos} up to here are known to hold no newline. */
+    private int scanned;
+    private boolean exhausted;
+    private long line = 1;
+    private long index;
+
+    LineRecordReader(ByteWindow window, DataRecord record) {
+        this.window = window;
+        this.record = record;
+    }
+
+    /**
+     * Adds the fields of the line {@code buf[start, end)}, without its terminator, to the
+     * record; returns {@code false} to skip the line.
+     */
+    abstract boolean parse(ByteBuffer buf, int start, int end, long lineNumber) throws IOException;
+
+    @Override
+    public RecordReader numbering(long firstLine, long firstRecordIndex) {
+        this.line = firstLine;
+        this.index = firstRecordIndex;
+        return this;
+    }
+
+    @Override
+    public DataRecord record() {
+        return record;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (true) {
+            if (exhausted && pos >= window.limit()) {
+                return false;
+            }
+            ByteBuffer buf = window.buffer();
+            int limit = buf.limit();
+            int newline = -1;
+            for (int i = Math.max(pos, scanned); i < limit; i++) {
+                if (buf.get(i) == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            if (newline < 0 && !exhausted) {
+                scanned = limit;
+                if (window.refill(pos)) {
+                    scanned -= pos;
+                    pos = 0;
+                } else {
+                    exhausted = true;
+                }
+                continue;
+            }
+
+            // Last line without a trailing newline once the input is exhausted
+            int start = pos;
+            int next = newline < 0 ? limit : newline + 1;
+            int end = newline < 0 ? limit : newline;
+            if (end > start && buf.get(end - 1) == '\r') {
+                end--;
+            }
+            long lineNumber = line;
+            pos = next;
+            scanned = next;
+            if (newline >= 0) {
+                line++;
+            }
+
+            record.reset(buf);
+            if (end > start && parse(buf, start, end, lineNumber)) {
+                long base = window.base();
+                record.finish(lineNumber, line, index++, base + start, base + next);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        window.close();
+    }
+}
@@ -0,0 +1,106 @@
+package com.foranx.cooladapter.parser;
+
+import com.foranx.cooladapter.metrics.LatencyHistogram;
+import com.foranx.cooladapter.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parses one file as several record-aligned chunks in parallel.
+ * <p>
+ * Chunks are processed on the given executor, at most {@code maxChunksInFlight} at a
+ * time, and their results are handed to the consumer on the calling thread strictly in
+ * file order. Readers of a chunk report absolute line numbers; record indexes restart
+ * at 0 in each chunk, the consumer rebases them using the counts of earlier chunks.
+ * The executor must not be the one running the caller, or the caller may wait on
+ * tasks that never get a thread.
+ */
+public final class ParallelFileParser {
+
+    @FunctionalInterface
+    public interface ChunkProcessor<R> {
+        R process(FileChunk chunk, RecordReader reader) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface ChunkConsumer<R> {
+        void accept(FileChunk chunk, R result) throws Exception;
+    }
+
+    private static final LatencyHistogram SPLIT_TIME = Metrics.shared().histogram(
+            "cooladapter_parser_split_seconds", "Time to find the chunk boundaries of a file");
+    private static final LatencyHistogram CHUNK_TIME = Metrics.shared().histogram(
+            "cooladapter_parser_chunk_seconds", "Time to parse and process one chunk");
+
+    private final ExecutorService executor;
+    private final int maxChunksInFlight;
+
+    public ParallelFileParser(ExecutorService executor, int maxChunksInFlight) {
+        this.executor = executor;
+        this.maxChunksInFlight = Math.max(1, maxChunksInFlight);
+    }
+
+    public static boolean isSplittable(DataParser parser) {
+        return parser.splitter() != null;
+    }
+
+    public <R> int parse(DataParser parser, Path file, long start, long firstLine, long chunkSize,
+                         ChunkProcessor<R> processor, ChunkConsumer<R> consumer) throws IOException {
+        RecordSplitter splitter = parser.splitter();
+        if (splitter == null) {
+            throw new IllegalArgumentException(parser + " cannot split its input");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long splitStarted = System.nanoTime();
+            List<FileChunk> chunks = splitter.split(channel, start, channel.size(), firstLine, chunkSize, executor);
+            SPLIT_TIME.recordSince(splitStarted);
+
+            Deque<Future<R>> inFlight = new ArrayDeque<>();
+            int next = 0;
+            try {
+                for (FileChunk chunk : chunks) {
+                    while (next < chunks.size() && inFlight.size() < maxChunksInFlight) {
+                        FileChunk pending = chunks.get(next++);
+                        inFlight.add(executor.submit(() -> {
+                            long started = System.nanoTime();
+                            try (RecordReader reader = parser.open(channel, pending.start(), pending.end())) {
+                                reader.numbering(pending.firstLine(), 0);
+                                return processor.process(pending, reader);
+                            } finally {
+                                CHUNK_TIME.recordSince(started);
+                            }
+                        }));
+                    }
+                    R result = inFlight.removeFirst().get();
+                    consumer.accept(chunk, result);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while parsing " + file, e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) throw io;
+                if (cause instanceof RuntimeException re) throw re;
+                throw new IOException("Failed to parse chunk of " + file, cause);
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Failed to consume chunk of " + file, e);
+            } finally {
+                for (Future<R> future : inFlight) {
+                    future.cancel(true);
+                }
+            }
+            return chunks.size();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.foranx.cooladapter.parser;
+
+public enum ReadMode {
+    /** Positional reads into a pooled heap buffer. */
+    STREAM,
+    /** Memory-mapped windows over the file. */
+    MMAP
+}
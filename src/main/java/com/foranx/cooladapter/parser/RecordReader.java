@@ -0,0 +1,51 @@
+package com.foranx.cooladapter.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Cursor over the records of one input. Not thread-safe: each thread opens its own reader.
+ */
+public interface RecordReader extends Closeable {
+
+    /** Advances to the next record; returns {@code false} at the end of the input. */
+    boolean next() throws IOException;
+
+    /** The current record. The same instance is returned (and overwritten) for every record. */
+    DataRecord record();
+
+    /**
+     * Sets the line number and record index reported for the first record,
+     * used when the reader does not start at the beginning of the input.
+     */
+    RecordReader numbering(long firstLine, long firstRecordIndex);
+
+    static RecordReader closing(RecordReader reader, Closeable resource) {
+        return new RecordReader() {
+            @Override
+            public boolean next() throws IOException {
+                return reader.next();
+            }
+
+            @Override
+            public DataRecord record() {
+                return reader.record();
+            }
+
+            @Override
+            public RecordReader numbering(long firstLine, long firstRecordIndex) {
+                reader.numbering(firstLine, firstRecordIndex);
+                return this;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    reader.close();
+                } finally {
+                    resource.close();
+                }
+            }
+        };
+    }
+}
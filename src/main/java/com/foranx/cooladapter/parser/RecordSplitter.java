@@ -0,0 +1,224 @@
+package com.foranx.cooladapter.parser;
+
+import com.foranx.cooladapter.util.ByteBufferPool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Cuts a file into chunks that start on record boundaries.
+ * <p>
+ * The file is first cut into equal raw slices which are scanned in parallel. Whether a
+ * newline ends a record depends on the quoting state at the start of the slice, which is
+ * only known once the slices before it are scanned, so each slice is scanned from all four
+ * states of the CSV automaton at once (start of a field, unquoted field, inside quotes,
+ * just after a quote inside quotes): the four states are packed into one byte and moved
+ * by a single table lookup per input byte. Chaining the slices' results in file order
+ * then gives the exact state at each raw boundary, which is moved forward to the next
+ * record terminator without reading the file sequentially.
+ * <p>
+ * The automaton follows {@link CsvDataParser}: a quote opens a quoted field only as the
+ * first byte of a field, doubled quotes inside it are literal, and any other quote is
+ * data, so a stray quote in an unquoted value such as {@code PIPE 12" STEEL} does not
+ * shift the boundaries. The delimiter and quote bytes may be 0 for formats without them.
+ */
+public final class RecordSplitter {
+
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    /** After a quote inside a quoted field: it closes the field unless another quote follows. */
+    private static final int CLOSING = 3;
+
+    private static final int OTHER = 0;
+    private static final int DELIMITER = 1;
+    private static final int NEWLINE = 2;
+    private static final int QUOTE = 3;
+
+    /** Each state in the 2 bits at {@code 2 * state}, i.e. every state mapped to itself. */
+    private static final int IDENTITY = FIELD_START | UNQUOTED << 2 | QUOTED << 4 | CLOSING << 6;
+    /** Next packed states by {@code packed << 2 | class}. */
+    private static final byte[] PACKED = new byte[256 * 4];
+
+    static {
+        for (int packed = 0; packed < 256; packed++) {
+            for (int type = 0; type < 4; type++) {
+                int next = 0;
+                for (int s = 0; s < 4; s++) {
+                    next |= next((packed >> 2 * s) & 3, type) << 2 * s;
+                }
+                PACKED[packed << 2 | type] = (byte) next;
+            }
+        }
+    }
+
+    private final byte[] classes = new byte[256];
+    private final ByteBufferPool pool;
+
+    /** For formats whose records are lines, without quoting. */
+    public RecordSplitter(ByteBufferPool pool) {
+        this((char) 0, (char) 0, pool);
+    }
+
+    public RecordSplitter(char delimiter, char quote) {
+        this(delimiter, quote, ByteBufferPool.shared());
+    }
+
+    public RecordSplitter(char delimiter, char quote, ByteBufferPool pool) {
+        if (quote != 0) {
+            if (delimiter != 0) {
+                classes[delimiter & 0xFF] = DELIMITER;
+            }
+            classes[quote & 0xFF] = QUOTE;
+        }
+        classes['\n'] = NEWLINE;
+        this.pool = pool;
+    }
+
+    public List<FileChunk> split(FileChannel channel, long start, long end, long firstLine,
+                                 long chunkSize, Executor executor) throws IOException {
+        long length = end - start;
+        int parts = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (length + chunkSize - 1) / chunkSize));
+        if (parts == 1) {
+            return List.of(new FileChunk(0, start, end, firstLine));
+        }
+
+        long[] rawStarts = new long[parts + 1];
+        for (int k = 0; k < parts; k++) {
+            rawStarts[k] = start + length * k / parts;
+        }
+        rawStarts[parts] = end;
+
+        List<CompletableFuture<long[]>> counts = new ArrayList<>(parts);
+        for (int k = 0; k < parts; k++) {
+            long from = rawStarts[k];
+            long to = rawStarts[k + 1];
+            counts.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return count(channel, from, to);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+
+        List<FileChunk> chunks = new ArrayList<>(parts);
+        int state = FIELD_START;
+        long lines = firstLine;
+        long chunkStart = start;
+        long chunkLine = firstLine;
+        for (int k = 1; k < parts; k++) {
+            long[] previous = join(counts.get(k - 1));
+            state = (int) (previous[0] >> 2 * state) & 3;
+            lines += previous[1];
+
+            long boundary = rawStarts[k];
+            if (boundary <= chunkStart) {
+                continue;
+            }
+            long[] aligned = align(channel, boundary, end, state);
+            long alignedStart = aligned[0];
+            if (alignedStart >= end) {
+                break;
+            }
+            if (alignedStart <= chunkStart) {
+                continue;
+            }
+            chunks.add(new FileChunk(chunks.size(), chunkStart, alignedStart, chunkLine));
+            chunkStart = alignedStart;
+            chunkLine = lines + aligned[1];
+        }
+        chunks.add(new FileChunk(chunks.size(), chunkStart, end, chunkLine));
+        return chunks;
+    }
+
+    /** Returns the packed end states of the slice for each start state and its number of newlines. */
+    private long[] count(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buf = pool.acquire();
+        try {
+            byte[] classes = this.classes;
+            int packed = IDENTITY;
+            long newlines = 0;
+            long position = from;
+            byte[] array = buf.array();
+            while (position < to) {
+                buf.clear();
+                if (to - position < buf.capacity()) {
+                    buf.limit((int) (to - position));
+                }
+                int n = channel.read(buf, position);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    int type = classes[array[i] & 0xFF];
+                    packed = PACKED[packed << 2 | type] & 0xFF;
+                    if (type == NEWLINE) newlines++;
+                }
+                position += n;
+            }
+            return new long[]{packed, newlines};
+        } finally {
+            pool.release(buf);
+        }
+    }
+
+    /** Returns the offset just past the first record terminator and the number of newlines up to it. */
+    private long[] align(FileChannel channel, long from, long end, int state) throws IOException {
+        ByteBuffer buf = pool.acquire();
+        try {
+            byte[] array = buf.array();
+            long position = from;
+            long newlines = 0;
+            while (position < end) {
+                buf.clear();
+                if (end - position < buf.capacity()) {
+                    buf.limit((int) (end - position));
+                }
+                int n = channel.read(buf, position);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    int type = classes[array[i] & 0xFF];
+                    if (type == NEWLINE) {
+                        newlines++;
+                        if (state != QUOTED) {
+                            return new long[]{position + i + 1, newlines};
+                        }
+                    }
+                    state = next(state, type);
+                }
+                position += n;
+            }
+            return new long[]{end, newlines};
+        } finally {
+            pool.release(buf);
+        }
+    }
+
+    private static int next(int state, int type) {
+        if (state == QUOTED) {
+            return type == QUOTE ? CLOSING : QUOTED;
+        }
+        return switch (type) {
+            case DELIMITER, NEWLINE -> FIELD_START;
+            case QUOTE -> state == FIELD_START || state == CLOSING ? QUOTED : UNQUOTED;
+            default -> UNQUOTED;
+        };
+    }
+
+    private static long[] join(CompletableFuture<long[]> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+    }
+}
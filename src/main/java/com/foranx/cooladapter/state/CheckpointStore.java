@@ -0,0 +1,84 @@
+package com.foranx.cooladapter.state;
+
+import com.foranx.cooladapter.state.ProcessingJournal.FileKey;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * How far each partially sent file got: one small file per input, replaced atomically
+ * on every save. A checkpoint only applies to the content it was written for, so
+ * {@link #load} callers compare its {@link FileKey} with the file's current one.
+ */
+public final class CheckpointStore {
+
+    /**
+     * @param offset   byte offset of the first record not yet acknowledged
+     * @param records  number of records acknowledged before {@code offset}
+     * @param nextLine line number at {@code offset}
+     */
+    public record Checkpoint(FileKey key, long offset, long records, long nextLine) {
+    }
+
+    private final Path dir;
+
+    public CheckpointStore(Path dir) throws IOException {
+        this.dir = Files.createDirectories(dir);
+    }
+
+    /** Checkpoint saved for {@code file}, or {@code null}. */
+    public Checkpoint load(Path file) throws IOException {
+        String content;
+        try {
+            content = Files.readString(pathOf(file), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        String[] parts = content.strip().split("\t", 7);
+        if (parts.length < 7 || !parts[6].equals(file.toString())) {
+            return null;
+        }
+        try {
+            FileKey key = new FileKey(Long.parseLong(parts[3]), Long.parseLong(parts[4]),
+                    Integer.parseUnsignedInt(parts[5], 16));
+            return new Checkpoint(key, Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public void save(Path file, Checkpoint checkpoint) throws IOException {
+        FileKey key = checkpoint.key();
+        String line = checkpoint.offset() + "\t" + checkpoint.records() + "\t" + checkpoint.nextLine() + "\t"
+                + key.size() + "\t" + key.modified() + "\t" + Integer.toHexString(key.crc()) + "\t" + file + "\n";
+        Path target = pathOf(file);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(false);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void delete(Path file) throws IOException {
+        Files.deleteIfExists(pathOf(file));
+    }
+
+    private Path pathOf(Path file) {
+        CRC32C crc = new CRC32C();
+        crc.update(file.toString().getBytes(StandardCharsets.UTF_8));
+        return dir.resolve(file.getFileName() + "-" + Long.toHexString(crc.getValue()) + ".ckpt");
+    }
+}
@@ -0,0 +1,185 @@
+package com.foranx.cooladapter.state;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ownership of input files when several instances watch the same directory.
+ * <p>
+ * An instance claims a file by renaming {@code dir/name} to {@code dir/.inprogress/<instance>/name};
+ * the rename is atomic on one file system, so exactly one instance wins and the others see the
+ * file vanish. Every instance keeps a lease file {@code <instance>.lease} alive by touching it
+ * every third of the lease timeout. Claims of an instance whose lease stopped changing for the
+ * lease timeout, and claims this instance left behind in an earlier run, are moved back into
+ * their folder, where any instance can claim them again.
+ * <p>
+ * Lease ages are measured on the local clock from the moment a change was last observed, so the
+ * clocks of the instances need not agree.
+ */
+public final class FileClaims implements Closeable {
+
+    private static final Logger log = Logger.getLogger(FileClaims.class.getName());
+    public static final String CLAIM_DIR = ".inprogress";
+    private static final String LEASE_SUFFIX = ".lease";
+
+    private final String instanceId;
+    private final Path leaseDir;
+    private final Path leaseFile;
+    private final long leaseTimeoutMs;
+    private final Set<Path> active = ConcurrentHashMap.newKeySet();
+    private final Map<String, Observed> leases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeat;
+
+    private record Observed(FileTime modified, long seenAt) {
+    }
+
+    public FileClaims(Path leaseDir, String instanceId, long leaseTimeoutMs) throws IOException {
+        this.instanceId = instanceId;
+        this.leaseDir = Files.createDirectories(leaseDir);
+        this.leaseFile = leaseDir.resolve(instanceId + LEASE_SUFFIX);
+        this.leaseTimeoutMs = leaseTimeoutMs;
+        renew();
+        long period = Math.max(1, leaseTimeoutMs / 3);
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lease-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat.scheduleAtFixedRate(this::heartbeat, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Moves {@code file} into this instance's claim folder and returns its new path, or
+     * {@code null} if another instance claimed it first.
+     */
+    public Path claim(Path file) throws IOException {
+        Path claimed = file.resolveSibling(CLAIM_DIR).resolve(instanceId).resolve(file.getFileName());
+        Files.createDirectories(claimed.getParent());
+        active.add(claimed);
+        try {
+            Files.move(file, claimed, StandardCopyOption.ATOMIC_MOVE);
+            return claimed;
+        } catch (NoSuchFileException e) {
+            active.remove(claimed);
+            return null;
+        } catch (IOException | RuntimeException e) {
+            active.remove(claimed);
+            throw e;
+        }
+    }
+
+    /**
+     * Ends the claim on {@code claimed}: once it was archived, or after it failed, in which case
+     * the next {@link #recover} moves it back into its folder to be tried again.
+     */
+    public void done(Path claimed) {
+        active.remove(claimed);
+    }
+
+    /**
+     * Moves the orphaned claims under {@code dir} back into it; returns how many files were
+     * moved. A file is left where it is if a new file of the same name was dropped meanwhile.
+     */
+    public int recover(Path dir) {
+        Path claimDir = dir.resolve(CLAIM_DIR);
+        if (!Files.isDirectory(claimDir)) {
+            return 0;
+        }
+        int moved = 0;
+        try (DirectoryStream<Path> owners = Files.newDirectoryStream(claimDir, Files::isDirectory)) {
+            for (Path owner : owners) {
+                String id = owner.getFileName().toString();
+                if (!id.equals(instanceId) && !isExpired(id)) {
+                    continue;
+                }
+                moved += recoverOwner(dir, owner);
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot list claims in " + claimDir, e);
+        }
+        return moved;
+    }
+
+    private int recoverOwner(Path dir, Path owner) throws IOException {
+        int moved = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(owner, Files::isRegularFile)) {
+            for (Path claimed : files) {
+                if (active.contains(claimed)) {
+                    continue;
+                }
+                Path target = dir.resolve(claimed.getFileName());
+                if (Files.exists(target)) {
+                    // an atomic rename would replace it
+                    log.warning(">>> Cannot recover " + claimed + ": " + target + " exists");
+                    continue;
+                }
+                try {
+                    Files.move(claimed, target, StandardCopyOption.ATOMIC_MOVE);
+                    moved++;
+                    log.info(">>> Recovered " + claimed + " claimed by " + owner.getFileName());
+                } catch (NoSuchFileException e) {
+                    // recovered by another instance
+                } catch (AtomicMoveNotSupportedException e) {
+                    throw new IOException("Claims need atomic renames in " + dir, e);
+                }
+            }
+        }
+        return moved;
+    }
+
+    /** Whether the lease of {@code id} has not changed for the lease timeout, or does not exist. */
+    private boolean isExpired(String id) {
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(leaseDir.resolve(id + LEASE_SUFFIX));
+        } catch (IOException e) {
+            return true;
+        }
+        long now = System.nanoTime();
+        Observed seen = leases.compute(id, (k, last) ->
+                last != null && last.modified().equals(modified) ? last : new Observed(modified, now));
+        return now - seen.seenAt() >= TimeUnit.MILLISECONDS.toNanos(leaseTimeoutMs);
+    }
+
+    private void heartbeat() {
+        try {
+            renew();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot renew lease " + leaseFile, e);
+        }
+    }
+
+    private void renew() throws IOException {
+        try {
+            Files.setLastModifiedTime(leaseFile, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            Files.writeString(leaseFile, instanceId + "\n");
+        }
+    }
+
+    /** Stops renewing the lease and removes it, so other instances recover what is left at once. */
+    @Override
+    public void close() throws IOException {
+        heartbeat.shutdownNow();
+        Files.deleteIfExists(leaseFile);
+    }
+}
@@ -0,0 +1,243 @@
+package com.foranx.cooladapter.state;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Append-only record of what happened to each input file.
+ * <p>
+ * Every state change is one line {@code STATE size mtime crc32c records recorded path},
+ * separated by tabs. Only the states recovery relies on ({@link State#durable}) are forced
+ * to disk before the call returns; callers arriving while a force is running share the next
+ * one, so concurrent files cost one fsync per round instead of one each. The other states
+ * reach the disk with the next force. Locks are {@link ReentrantLock}s, which do not pin the
+ * carrier of a virtual thread.
+ * <p>
+ * At startup the journal is replayed, keeping the last line per path, and rewritten with
+ * just those lines, minus {@code ACKED} entries recorded longer than the retention ago. A
+ * torn last line left by a crash is ignored.
+ */
+public final class ProcessingJournal implements Closeable {
+
+    private static final Logger log = Logger.getLogger(ProcessingJournal.class.getName());
+
+    public enum State {
+        /** Picked up for processing. */
+        SEEN(false),
+        /** Every record converted and queued for sending. */
+        PARSED(false),
+        /** Every message committed by the broker. */
+        SENT(true),
+        /** Delivered and archived to {@code .processed}. */
+        ACKED(true),
+        /** Failed validation and moved to {@code .rejected}; nothing was sent. */
+        REJECTED(false);
+
+        /** Whether a crash must not lose it: it is what stops a delivered file from being sent again. */
+        public final boolean durable;
+
+        State(boolean durable) {
+            this.durable = durable;
+        }
+    }
+
+    /**
+     * Identity of a file's content. {@code modified} is recorded for diagnostics but deliberately
+     * ignored for identity, since a copy or touch changes it without changing the content;
+     * {@link #sameContent} compares only {@code size} and {@code crc}.
+     */
+    public record FileKey(long size, long modified, int crc) {
+
+        public boolean sameContent(FileKey other) {
+            return other != null && size == other.size && crc == other.crc;
+        }
+    }
+
+    /** {@code recorded} is when the line was written, in epoch milliseconds. */
+    public record Entry(Path path, State state, FileKey key, long records, long recorded) {
+    }
+
+    private final Path file;
+    /** Guards {@link #entries}, {@link #appended} and writes to the channel. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Held by the caller forcing the channel; the others wait for it and usually find their line forced. */
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Map<Path, Entry> entries = new HashMap<>();
+    private FileChannel channel;
+    /** Number of lines written, and how many of them are known to be on disk. */
+    private long appended;
+    private volatile long synced;
+
+    private ProcessingJournal(Path file) {
+        this.file = file;
+    }
+
+    /** Opens the journal, dropping {@code ACKED} entries older than {@code ackedRetentionMs}; 0 keeps them all. */
+    public static ProcessingJournal open(Path file, long ackedRetentionMs) throws IOException {
+        ProcessingJournal journal = new ProcessingJournal(file);
+        journal.replay();
+        journal.compact(ackedRetentionMs);
+        journal.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return journal;
+    }
+
+    /** Last recorded state of {@code path}, or {@code null} if the journal never saw it. */
+    public Entry get(Path path) {
+        lock.lock();
+        try {
+            return entries.get(path);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void record(Path path, State state, FileKey key, long records) throws IOException {
+        Entry entry = new Entry(path, state, key, records, System.currentTimeMillis());
+        ByteBuffer line = ByteBuffer.wrap(format(entry).getBytes(StandardCharsets.UTF_8));
+        long seq;
+        lock.lock();
+        try {
+            while (line.hasRemaining()) {
+                channel.write(line);
+            }
+            entries.put(path, entry);
+            seq = ++appended;
+        } finally {
+            lock.unlock();
+        }
+        if (state.durable) {
+            sync(seq);
+        }
+    }
+
+    /** Forces every line up to {@code seq}, together with whatever was appended meanwhile. */
+    private void sync(long seq) throws IOException {
+        if (synced >= seq) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (synced >= seq) {
+                return;
+            }
+            long upTo;
+            lock.lock();
+            try {
+                upTo = appended;
+            } finally {
+                lock.unlock();
+            }
+            channel.force(false);
+            synced = upTo;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncLock.lock();
+        lock.lock();
+        try {
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        } finally {
+            lock.unlock();
+            syncLock.unlock();
+        }
+    }
+
+    private void replay() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Entry entry = parse(line);
+                if (entry == null) {
+                    skipped++;
+                } else {
+                    entries.put(entry.path(), entry);
+                }
+            }
+        }
+        log.info(">>> Journal " + file + " replayed: " + entries.size() + " files"
+                + (skipped > 0 ? ", " + skipped + " unreadable lines skipped" : ""));
+    }
+
+    private void compact(long ackedRetentionMs) throws IOException {
+        if (ackedRetentionMs > 0) {
+            long cutoff = System.currentTimeMillis() - ackedRetentionMs;
+            int before = entries.size();
+            entries.values().removeIf(e -> e.state() == State.ACKED && e.recorded() < cutoff);
+            if (entries.size() < before) {
+                log.info(">>> Journal " + file + ": dropped " + (before - entries.size())
+                        + " acknowledged files older than " + ackedRetentionMs + " ms");
+            }
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Entry entry : entries.values()) {
+                writer.write(format(entry));
+            }
+        }
+        try (FileChannel sync = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            sync.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String format(Entry entry) {
+        FileKey key = entry.key();
+        return entry.state() + "\t" + key.size() + "\t" + key.modified() + "\t"
+                + Integer.toHexString(key.crc()) + "\t" + entry.records() + "\t" + entry.recorded()
+                + "\t" + entry.path() + "\n";
+    }
+
+    /** Lines written before the {@code recorded} column have six fields; their age counts from the replay. */
+    private static Entry parse(String line) {
+        String[] parts = line.split("\t", 7);
+        if (parts.length < 6) {
+            return null;
+        }
+        try {
+            FileKey key = new FileKey(Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                    Integer.parseUnsignedInt(parts[3], 16));
+            if (parts.length == 6) {
+                return new Entry(Path.of(parts[5]), State.valueOf(parts[0]), key, Long.parseLong(parts[4]),
+                        System.currentTimeMillis());
+            }
+            return new Entry(Path.of(parts[6]), State.valueOf(parts[0]), key, Long.parseLong(parts[4]),
+                    Long.parseLong(parts[5]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
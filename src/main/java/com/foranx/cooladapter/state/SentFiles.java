@@ -0,0 +1,107 @@
+package com.foranx.cooladapter.state;
+
+import com.foranx.cooladapter.state.ProcessingJournal.FileKey;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * Content last delivered from each input path, shared by every instance using the state
+ * directory: one small file per path, replaced atomically on every delivery.
+ * <p>
+ * Each instance keeps its own {@link ProcessingJournal}, so the journal alone does not stop
+ * instance B from sending a file again that instance A already delivered; this store does.
+ * Like the journal's {@code ACKED} entries, records older than the retention are dropped
+ * when the store is opened.
+ */
+public final class SentFiles {
+
+    private static final Logger log = Logger.getLogger(SentFiles.class.getName());
+    private static final String SUFFIX = ".sent";
+
+    /** @param records number of records sent from the content {@code key} identifies */
+    public record Sent(FileKey key, long records) {
+    }
+
+    private final Path dir;
+
+    /** @param retentionMs age after which a record is dropped at opening; 0 keeps them all */
+    public SentFiles(Path dir, long retentionMs) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        if (retentionMs > 0) {
+            prune(System.currentTimeMillis() - retentionMs);
+        }
+    }
+
+    /** What was last sent from {@code file}, by any instance, or {@code null}. */
+    public Sent get(Path file) throws IOException {
+        String content;
+        try {
+            content = Files.readString(pathOf(file), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        String[] parts = content.strip().split("\t", 5);
+        if (parts.length < 5 || !parts[4].equals(file.toString())) {
+            return null;
+        }
+        try {
+            FileKey key = new FileKey(Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                    Integer.parseUnsignedInt(parts[3], 16));
+            return new Sent(key, Long.parseLong(parts[0]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Records that every record of the content {@code key} of {@code file} was sent; forced to disk. */
+    public void record(Path file, FileKey key, long records) throws IOException {
+        String line = records + "\t" + key.size() + "\t" + key.modified() + "\t"
+                + Integer.toHexString(key.crc()) + "\t" + file + "\n";
+        Path target = pathOf(file);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(false);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void prune(long cutoff) throws IOException {
+        int dropped = 0;
+        try (DirectoryStream<Path> records = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path record : records) {
+                try {
+                    if (Files.getLastModifiedTime(record).toMillis() < cutoff && Files.deleteIfExists(record)) {
+                        dropped++;
+                    }
+                } catch (NoSuchFileException e) {
+                    // Replaced or pruned by another instance meanwhile
+                }
+            }
+        }
+        if (dropped > 0) {
+            log.info(">>> Dropped " + dropped + " records of sent files older than the retention");
+        }
+    }
+
+    private Path pathOf(Path file) {
+        CRC32C crc = new CRC32C();
+        crc.update(file.toString().getBytes(StandardCharsets.UTF_8));
+        return dir.resolve(file.getFileName() + "-" + Long.toHexString(crc.getValue()) + SUFFIX);
+    }
+}
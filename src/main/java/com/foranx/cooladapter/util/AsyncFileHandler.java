@@ -0,0 +1,238 @@
+package com.foranx.cooladapter.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * File handler that never makes the logging thread wait for the disk.
+ * <p>
+ * {@link #publish} formats the record on the caller's thread, without any lock, and puts
+ * the text into a {@link MpscRingBuffer}; one writer thread writes the texts in batches
+ * through a buffered writer. The file is flushed every {@code flushMs}, as soon as the
+ * writer catches up after a WARNING or worse, and on close. When it grows past
+ * {@code maxFileSize} it is rotated to {@code name.1 .. name.N}; if a rename fails, the
+ * handler keeps appending to the current file and tries again at the next flush. A full
+ * buffer either drops the record (counted and reported in the file) or blocks the caller
+ * until the writer makes room.
+ */
+public final class AsyncFileHandler extends Handler {
+
+    public enum Overflow { DROP, BLOCK }
+
+    private static final int WRITE_BUFFER = 64 * 1024;
+
+    private final Path file;
+    private final MpscRingBuffer<String> ring;
+    private final Overflow overflow;
+    private final long flushNanos;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+
+    private FileChannel channel;
+    private Writer out;
+    private volatile boolean running = true;
+    private volatile boolean parked;
+    private volatile boolean urgent;
+
+    public AsyncFileHandler(Path file, int bufferSize, Overflow overflow, long flushMs,
+                            long maxFileSize, int maxFiles) throws IOException {
+        this.file = file;
+        this.ring = new MpscRingBuffer<>(bufferSize);
+        this.overflow = overflow;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMs);
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = Math.max(1, maxFiles);
+        setFormatter(new FastLogFormatter());
+        open();
+        this.writer = new Thread(this::runWriter, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!running || !isLoggable(record)) {
+            return;
+        }
+        String text = format(record);
+        if (text == null) {
+            return;
+        }
+        while (!ring.offer(text)) {
+            if (overflow == Overflow.DROP) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(100_000);
+            if (!running) {
+                return;
+            }
+        }
+        if (parked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /** Records dropped because the buffer was full. */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void flush() {
+        LockSupport.unpark(writer);
+    }
+
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        boolean unflushed = false;
+        long flushedAt = System.nanoTime();
+        long reportedDrops = 0;
+        long written = 0;
+        while (running || !ring.isEmpty()) {
+            String text = ring.poll();
+            if (text != null) {
+                write(text);
+                unflushed = true;
+                written += text.length();
+                if (written >= WRITE_BUFFER || System.nanoTime() - flushedAt >= flushNanos) {
+                    flushAndRotate();
+                    unflushed = false;
+                    urgent = false;
+                    written = 0;
+                    flushedAt = System.nanoTime();
+                }
+                continue;
+            }
+
+            long drops = reportDrops(reportedDrops);
+            if (drops != reportedDrops) {
+                reportedDrops = drops;
+                unflushed = true;
+            }
+            long sinceFlush = System.nanoTime() - flushedAt;
+            if (unflushed && (urgent || sinceFlush >= flushNanos || !running)) {
+                flushAndRotate();
+                unflushed = false;
+                urgent = false;
+                written = 0;
+                flushedAt = System.nanoTime();
+                continue;
+            }
+            if (running) {
+                parked = true;
+                if (ring.isEmpty()) {
+                    LockSupport.parkNanos(unflushed ? flushNanos - sinceFlush : flushNanos);
+                }
+                parked = false;
+            }
+        }
+        reportDrops(reportedDrops);
+        flushAndRotate();
+        try {
+            out.close();
+        } catch (IOException e) {
+            reportError("Failed to close log file", e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    /** Writes how many records were dropped since {@code reported}; returns the new total. */
+    private long reportDrops(long reported) {
+        long drops = dropped.sum();
+        if (drops != reported) {
+            write(format(new LogRecord(Level.WARNING, ">>> " + (drops - reported)
+                    + " log records dropped: logging buffer full")));
+        }
+        return drops;
+    }
+
+    private String format(LogRecord record) {
+        try {
+            String text = getFormatter().format(record);
+            if (record.getLevel().intValue() >= Level.WARNING.intValue()) {
+                urgent = true;
+            }
+            return text;
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            return null;
+        }
+    }
+
+    private void write(String text) {
+        if (text == null) {
+            return;
+        }
+        try {
+            out.write(text);
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private void flushAndRotate() {
+        try {
+            out.flush();
+            if (maxFileSize > 0 && channel.size() >= maxFileSize) {
+                rotate();
+            }
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        try {
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path from = file.resolveSibling(file.getFileName() + "." + i);
+                if (Files.exists(from)) {
+                    Files.move(from, file.resolveSibling(file.getFileName() + "." + (i + 1)),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            // Also after a failed rename, which leaves the full file in place to append to
+            open();
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8),
+                WRITE_BUFFER);
+    }
+}
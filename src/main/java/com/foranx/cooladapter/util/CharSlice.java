@@ -0,0 +1,48 @@
+package com.foranx.cooladapter.util;
+
+/**
+ * Mutable, reusable view over a region of a {@code char[]}.
+ * The view is only valid until the owner repoints it at another region.
+ */
+public final class CharSlice implements CharSequence {
+
+    private char[] array = new char[0];
+    private int offset;
+    private int length;
+
+    public CharSlice set(char[] array, int offset, int length) {
+        this.array = array;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    public char[] array() { return array; }
+    public int offset() { return offset; }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return array[offset + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + length);
+        }
+        return new String(array, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(array, offset, length);
+    }
+}
@@ -0,0 +1,82 @@
+package com.foranx.cooladapter.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.logging.Formatter;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Produces the same text as {@link SimpleFormatter} with its default format, without
+ * {@code String.format}: the timestamp is rendered once per second and reused. If a custom
+ * {@code java.util.logging.SimpleFormatter.format} is configured, formatting is delegated
+ * to {@link SimpleFormatter} so the configured layout is kept.
+ */
+public final class FastLogFormatter extends Formatter {
+
+    private static final String FORMAT_PROPERTY = "java.util.logging.SimpleFormatter.format";
+
+    private final SimpleFormatter custom;
+    private final DateTimeFormatter dateFormat;
+    private volatile Stamp stamp = new Stamp(Long.MIN_VALUE, "");
+
+    public FastLogFormatter() {
+        String format = LogManager.getLogManager().getProperty(FORMAT_PROPERTY);
+        if (format == null) {
+            format = System.getProperty(FORMAT_PROPERTY);
+        }
+        this.custom = format != null ? new SimpleFormatter() : null;
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        this.dateFormat = DateTimeFormatter.ofPattern("MMM dd, yyyy h:mm:ss ", locale).withZone(ZoneId.systemDefault());
+    }
+
+    @Override
+    public String format(LogRecord record) {
+        if (custom != null) {
+            return custom.format(record);
+        }
+        String message = formatMessage(record);
+        String source = record.getSourceClassName();
+        if (source != null) {
+            if (record.getSourceMethodName() != null) {
+                source += " " + record.getSourceMethodName();
+            }
+        } else {
+            source = record.getLoggerName();
+        }
+
+        StringBuilder sb = new StringBuilder(64 + message.length());
+        sb.append(timestamp(record.getInstant())).append(source).append(System.lineSeparator())
+                .append(record.getLevel().getLocalizedName()).append(": ").append(message);
+        if (record.getThrown() != null) {
+            StringWriter sw = new StringWriter();
+            PrintWriter pw = new PrintWriter(sw);
+            pw.println();
+            record.getThrown().printStackTrace(pw);
+            pw.close();
+            sb.append(sw);
+        }
+        return sb.append(System.lineSeparator()).toString();
+    }
+
+    private String timestamp(Instant instant) {
+        long second = instant.getEpochSecond();
+        Stamp current = stamp;
+        if (current.second != second) {
+            Instant truncated = Instant.ofEpochSecond(second);
+            // %Tp of SimpleFormatter: the locale's AM/PM marker in upper case
+            String marker = String.format("%Tp", truncated.atZone(ZoneId.systemDefault()));
+            current = new Stamp(second, dateFormat.format(truncated) + marker + " ");
+            stamp = current;
+        }
+        return current.text;
+    }
+
+    private record Stamp(long second, String text) {
+    }
+}
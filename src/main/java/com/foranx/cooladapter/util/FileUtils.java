@@ -1,4 +1,57 @@
 package com.foranx.cooladapter.util;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.zip.CRC32C;
+
 public class FileUtils {
+
+    private FileUtils() {}
+
+    /** Parses sizes such as {@code 65536}, {@code 512K}, {@code 64MB} or {@code 1g}. */
+    public static long parseSize(String value) {
+        String s = value.trim().toUpperCase(Locale.ROOT);
+        if (s.endsWith("B")) {
+            s = s.substring(0, s.length() - 1);
+        }
+        long multiplier = 1;
+        if (!s.isEmpty()) {
+            switch (s.charAt(s.length() - 1)) {
+                case 'K' -> multiplier = 1L << 10;
+                case 'M' -> multiplier = 1L << 20;
+                case 'G' -> multiplier = 1L << 30;
+                default -> { }
+            }
+            if (multiplier != 1) {
+                s = s.substring(0, s.length() - 1);
+            }
+        }
+        try {
+            return Long.parseLong(s.trim()) * multiplier;
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid size: '" + value + "'", e);
+        }
+    }
+
+    /** CRC32C of the whole file, read sequentially through a pooled buffer. */
+    public static int crc32c(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBufferPool pool = ByteBufferPool.shared();
+        ByteBuffer buf = pool.acquire();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf.clear();
+            while (channel.read(buf) >= 0) {
+                buf.flip();
+                crc.update(buf);
+                buf.clear();
+            }
+        } finally {
+            pool.release(buf);
+        }
+        return (int) crc.getValue();
+    }
 }
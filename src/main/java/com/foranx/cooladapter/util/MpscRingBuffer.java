@@ -0,0 +1,82 @@
+package com.foranx.cooladapter.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer.
+ * <p>
+ * Each slot carries a sequence number: producers claim a position with one CAS on the
+ * tail and publish the element by advancing the slot's sequence, so neither side ever
+ * takes a lock. {@link #poll} must only be called from one thread at a time.
+ */
+public final class MpscRingBuffer<E> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+
+    /** Adds {@code e} unless the buffer is full. */
+    public boolean offer(E e) {
+        long pos = tail.get();
+        while (true) {
+            int slot = (int) (pos & mask);
+            long diff = sequences.getAcquire(slot) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    elements[slot] = e;
+                    sequences.setRelease(slot, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /** Removes the oldest element, or returns {@code null} if none is published yet. */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long pos = head;
+        int slot = (int) (pos & mask);
+        if (sequences.getAcquire(slot) != pos + 1) {
+            return null;
+        }
+        E e = (E) elements[slot];
+        elements[slot] = null;
+        sequences.setRelease(slot, pos + elements.length);
+        head = pos + 1;
+        return e;
+    }
+
+    /** Approximate number of queued elements. */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+}
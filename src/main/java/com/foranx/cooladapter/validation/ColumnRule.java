@@ -0,0 +1,165 @@
+package com.foranx.cooladapter.validation;
+
+import java.util.Locale;
+
+/**
+ * Checks on the raw value of one column, declared in a job file as a comma separated list,
+ * e.g. {@code check.3=required,date} or {@code check.5=decimal:2,maxlen:19}:
+ * <pre>
+ *   required     the value is not empty
+ *   int          optional minus sign and 1 to 18 digits
+ *   decimal[:n]  optional minus sign, digits, optionally a point and at most n decimals
+ *   date         yyyyMMdd, a real calendar date
+ *   maxlen:n     at most n characters
+ * </pre>
+ * Type checks skip empty values; combine them with {@code required} to forbid those.
+ */
+public final class ColumnRule {
+
+    enum Type { TEXT, INT, DECIMAL, DATE }
+
+    private final boolean required;
+    private final Type type;
+    private final int scale;
+    private final int maxLength;
+
+    private ColumnRule(boolean required, Type type, int scale, int maxLength) {
+        this.required = required;
+        this.type = type;
+        this.scale = scale;
+        this.maxLength = maxLength;
+    }
+
+    public static ColumnRule parse(String spec) {
+        boolean required = false;
+        Type type = Type.TEXT;
+        int scale = Integer.MAX_VALUE;
+        int maxLength = Integer.MAX_VALUE;
+        for (String part : spec.split(",")) {
+            String token = part.trim().toLowerCase(Locale.ROOT);
+            if (token.isEmpty()) {
+                continue;
+            }
+            int colon = token.indexOf(':');
+            String name = colon < 0 ? token : token.substring(0, colon);
+            String arg = colon < 0 ? null : token.substring(colon + 1);
+            switch (name) {
+                case "required" -> required = true;
+                case "int" -> type = Type.INT;
+                case "decimal" -> {
+                    type = Type.DECIMAL;
+                    if (arg != null) {
+                        scale = parseArg(arg, token, spec);
+                    }
+                }
+                case "date" -> type = Type.DATE;
+                case "maxlen" -> {
+                    if (arg == null) {
+                        throw new IllegalStateException("maxlen needs a length in '" + spec + "'");
+                    }
+                    maxLength = parseArg(arg, token, spec);
+                }
+                default -> throw new IllegalStateException("Unknown check '" + part.trim() + "' in '" + spec + "'");
+            }
+        }
+        return new ColumnRule(required, type, scale, maxLength);
+    }
+
+    boolean isRequired() {
+        return required;
+    }
+
+    /**
+     * Checks the value in {@code bytes[start, end)}, {@code length} characters long;
+     * returns what is wrong with it, or {@code null}.
+     */
+    String check(byte[] bytes, int start, int end, int length) {
+        if (start == end) {
+            return required ? "is empty" : null;
+        }
+        if (length > maxLength) {
+            return "is " + length + " characters, at most " + maxLength + " allowed";
+        }
+        return switch (type) {
+            case TEXT -> null;
+            case INT -> isInteger(bytes, start, end) ? null : "is not an integer";
+            case DECIMAL -> isDecimal(bytes, start, end, scale) ? null
+                    : scale == Integer.MAX_VALUE ? "is not a decimal" : "is not a decimal with at most " + scale + " decimals";
+            case DATE -> isDate(bytes, start, end) ? null : "is not a yyyyMMdd date";
+        };
+    }
+
+    private static boolean isInteger(byte[] b, int start, int end) {
+        if (b[start] == '-') {
+            start++;
+        }
+        int digits = end - start;
+        return digits > 0 && digits <= 18 && digitsOnly(b, start, end);
+    }
+
+    private static boolean isDecimal(byte[] b, int start, int end, int scale) {
+        if (b[start] == '-') {
+            start++;
+        }
+        int point = -1;
+        for (int i = start; i < end; i++) {
+            if (b[i] == '.' && point < 0) {
+                point = i;
+            } else if (b[i] < '0' || b[i] > '9') {
+                return false;
+            }
+        }
+        if (point < 0) {
+            return end > start;
+        }
+        int decimals = end - point - 1;
+        return point > start && decimals > 0 && decimals <= scale;
+    }
+
+    private static boolean isDate(byte[] b, int start, int end) {
+        if (end - start != 8 || !digitsOnly(b, start, end)) {
+            return false;
+        }
+        int year = number(b, start, 4);
+        int month = number(b, start + 4, 2);
+        int day = number(b, start + 6, 2);
+        if (month < 1 || month > 12 || day < 1) {
+            return false;
+        }
+        int days = switch (month) {
+            case 2 -> year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+        return day <= days;
+    }
+
+    private static boolean digitsOnly(byte[] b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (b[i] < '0' || b[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int number(byte[] b, int start, int digits) {
+        int n = 0;
+        for (int i = start; i < start + digits; i++) {
+            n = n * 10 + (b[i] - '0');
+        }
+        return n;
+    }
+
+    private static int parseArg(String arg, String token, String spec) {
+        try {
+            int n = Integer.parseInt(arg);
+            if (n >= 0) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalStateException("Invalid number in '" + token + "' of '" + spec + "'");
+    }
+}
@@ -0,0 +1,350 @@
+package com.foranx.cooladapter.validation;
+
+import com.foranx.cooladapter.util.ByteBufferPool;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Checks a delimited file before anything is sent: the column count of every record, the
+ * {@link ColumnRule}s of the job and that non-ASCII values are valid in the job's charset.
+ * The scan stops at {@code maxErrors} errors.
+ * <p>
+ * Delimiters, quotes and newlines are found eight bytes at a time (SWAR): each word is
+ * compared with all three at once and only words that contain one are looked at byte by
+ * byte, which also tells whether a value is pure ASCII and can skip the charset decoder.
+ * Quoting follows {@link com.foranx.cooladapter.parser.CsvDataParser}: a quote opens a quoted
+ * value only at the start of a field.
+ */
+public final class FileValidator {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long NEWLINES = ONES * '\n';
+    private static final int NEED_MORE = -1;
+    /** Longest value quoted in an error message. */
+    private static final int SHOWN = 32;
+
+    private final byte delimiter;
+    private final byte quote;
+    private final boolean quoting;
+    private final Charset charset;
+    private final int expectedColumns;
+    private final ColumnRule[] rules;
+    private final int maxErrors;
+    private final ByteBufferPool pool;
+
+    /**
+     * @param expectedColumns columns every record must have, or 0 for any number
+     * @param rules           checks by 0-based column
+     */
+    public FileValidator(char delimiter, char quote, Charset charset, int expectedColumns,
+                         Map<Integer, ColumnRule> rules, int maxErrors) {
+        this(delimiter, quote, charset, expectedColumns, rules, maxErrors, ByteBufferPool.shared());
+    }
+
+    public FileValidator(char delimiter, char quote, Charset charset, int expectedColumns,
+                         Map<Integer, ColumnRule> rules, int maxErrors, ByteBufferPool pool) {
+        if (maxErrors < 1) {
+            throw new IllegalArgumentException("maxErrors must be positive: " + maxErrors);
+        }
+        this.delimiter = (byte) delimiter;
+        this.quote = (byte) quote;
+        this.quoting = quote != 0;
+        this.charset = charset;
+        this.expectedColumns = expectedColumns;
+        this.rules = new ColumnRule[rules.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1];
+        rules.forEach((column, rule) -> this.rules[column] = rule);
+        this.maxErrors = maxErrors;
+        this.pool = pool;
+    }
+
+    /** Scans {@code in} to its end, or to the {@code maxErrors}-th error. */
+    public ValidationReport validate(ReadableByteChannel in, boolean skipHeader) throws IOException {
+        return new Scan(skipHeader).run(in);
+    }
+
+    private static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        // Exact for the lowest matching byte; bytes above a match may be reported falsely
+        return (x - ONES) & ~x & HIGHS;
+    }
+
+    /** State of one scan; the validator itself is shared by all threads. */
+    private final class Scan {
+        private final ValidationReport report = new ValidationReport(maxErrors);
+        private final CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        private final CharBuffer chars = CharBuffer.allocate(1024);
+        private final long delimiters = ONES * (delimiter & 0xFF);
+        private final long quotes = ONES * (quote & 0xFF);
+        private boolean header;
+        private long line = 1;
+
+        private byte[] bytes;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private boolean[] nonAscii = new boolean[16];
+        private int[] escapes = new int[16];
+        private int fieldCount;
+        private int newlines;
+        private boolean unclosed;
+        private boolean blank;
+
+        Scan(boolean skipHeader) {
+            this.header = skipHeader;
+        }
+
+        ValidationReport run(ReadableByteChannel in) throws IOException {
+            ByteBuffer pooled = pool.acquire();
+            ByteBuffer buf = pooled;
+            try {
+                buf.clear().limit(0);
+                int pos = 0;
+                boolean eof = false;
+                while (true) {
+                    if (eof && pos >= buf.limit()) {
+                        return report;
+                    }
+                    bytes = buf.array();
+                    long recordLine = line;
+                    int end = scanRecord(pos, buf.limit(), eof);
+                    if (end != NEED_MORE) {
+                        pos = end;
+                        if (!checkRecord(recordLine)) {
+                            return report;
+                        }
+                        continue;
+                    }
+                    if (pos == 0 && buf.limit() == buf.capacity()) {
+                        // A single record fills the whole buffer
+                        ByteBuffer grown = ByteBuffer.allocate(buf.capacity() * 2);
+                        grown.put(buf.position(0));
+                        buf = grown;
+                    } else {
+                        buf.position(pos);
+                        buf.compact();
+                    }
+                    pos = 0;
+                    while (buf.hasRemaining()) {
+                        int n = in.read(buf);
+                        if (n < 0) {
+                            eof = true;
+                            break;
+                        }
+                        if (n == 0) break;
+                    }
+                    buf.flip();
+                }
+            } finally {
+                pool.release(pooled);
+            }
+        }
+
+        /** Finds the fields of the record at {@code start}; returns the offset past it, or {@link #NEED_MORE}. */
+        private int scanRecord(int start, int limit, boolean atEof) {
+            byte[] a = bytes;
+            fieldCount = 0;
+            newlines = 0;
+            unclosed = false;
+            int fieldStart = start;
+            int quoteEnd = -1;
+            int escaped = 0;
+            boolean high = false;
+            int i = start;
+            while (true) {
+                int hit = -1;
+                while (i + Long.BYTES <= limit) {
+                    long word = (long) LONGS.get(a, i);
+                    long found = matches(word, delimiters) | matches(word, NEWLINES)
+                            | (quoting ? matches(word, quotes) : 0);
+                    if (found == 0) {
+                        high |= (word & HIGHS) != 0;
+                        i += Long.BYTES;
+                        continue;
+                    }
+                    int k = Long.numberOfTrailingZeros(found) >>> 3;
+                    high |= (word & HIGHS & ((1L << (k << 3)) - 1)) != 0;
+                    i += k;
+                    hit = i;
+                    break;
+                }
+                if (hit < 0) {
+                    for (; i < limit; i++) {
+                        byte b = a[i];
+                        if (b == delimiter || b == '\n' || quoting && b == quote) {
+                            hit = i;
+                            break;
+                        }
+                        high |= b < 0;
+                    }
+                    if (hit < 0) {
+                        break;
+                    }
+                }
+
+                byte b = a[i];
+                if (b == delimiter) {
+                    addField(fieldStart, i, quoteEnd, escaped, high);
+                    fieldStart = i + 1;
+                    quoteEnd = -1;
+                    escaped = 0;
+                    high = false;
+                    i++;
+                } else if (b == '\n') {
+                    int end = i > fieldStart && a[i - 1] == '\r' ? i - 1 : i;
+                    addField(fieldStart, end, quoteEnd, escaped, high);
+                    blank = end == start;
+                    line += newlines + 1;
+                    return i + 1;
+                } else if (i != fieldStart) {
+                    // A quote inside an unquoted value is data
+                    i++;
+                } else {
+                    int j = i + 1;
+                    while (true) {
+                        if (j >= limit) {
+                            if (!atEof) {
+                                return NEED_MORE;
+                            }
+                            unclosed = true;
+                            break;
+                        }
+                        byte c = a[j];
+                        if (c == quote) {
+                            if (j + 1 >= limit && !atEof) {
+                                return NEED_MORE;
+                            }
+                            if (j + 1 < limit && a[j + 1] == quote) {
+                                escaped++;
+                                j += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        if (c == '\n') {
+                            newlines++;
+                        }
+                        high |= c < 0;
+                        j++;
+                    }
+                    quoteEnd = j;
+                    i = Math.min(j + 1, limit);
+                }
+            }
+
+            if (!atEof) {
+                return NEED_MORE;
+            }
+            // Last record without a trailing newline
+            int end = quoteEnd < 0 && limit > fieldStart && a[limit - 1] == '\r' ? limit - 1 : limit;
+            addField(fieldStart, end, quoteEnd, escaped, high);
+            blank = end == start;
+            line += newlines;
+            return limit;
+        }
+
+        private void addField(int start, int end, int quoteEnd, int escaped, boolean high) {
+            if (fieldCount == starts.length) {
+                int size = fieldCount * 2;
+                starts = Arrays.copyOf(starts, size);
+                ends = Arrays.copyOf(ends, size);
+                nonAscii = Arrays.copyOf(nonAscii, size);
+                escapes = Arrays.copyOf(escapes, size);
+            }
+            if (quoteEnd >= 0) {
+                start++;
+                end = quoteEnd;
+            }
+            starts[fieldCount] = start;
+            ends[fieldCount] = end;
+            nonAscii[fieldCount] = high;
+            escapes[fieldCount] = escaped;
+            fieldCount++;
+        }
+
+        /** Checks the record just scanned; returns {@code false} when the scan should stop. */
+        private boolean checkRecord(long recordLine) {
+            if (blank) {
+                return true;
+            }
+            if (header) {
+                header = false;
+                return true;
+            }
+            report.countRecord();
+            if (unclosed) {
+                return report.add(recordLine, fieldCount - 1, "quoted value is not closed");
+            }
+            if (expectedColumns > 0 && fieldCount != expectedColumns) {
+                return report.add(recordLine, -1, fieldCount + " columns, expected " + expectedColumns);
+            }
+            for (int column = 0; column < fieldCount; column++) {
+                ColumnRule rule = column < rules.length ? rules[column] : null;
+                if (rule == null && !nonAscii[column]) {
+                    continue;
+                }
+                int start = starts[column];
+                int end = ends[column];
+                int length = end - start;
+                if (nonAscii[column]) {
+                    length = decodedLength(start, end);
+                    if (length < 0) {
+                        if (!report.add(recordLine, column, "is not valid " + charset.name() + ": " + show(start, end))) {
+                            return false;
+                        }
+                        continue;
+                    }
+                }
+                String error = rule == null ? null : rule.check(bytes, start, end, length - escapes[column]);
+                if (error != null && !report.add(recordLine, column, error + ": " + show(start, end))) {
+                    return false;
+                }
+            }
+            for (int column = fieldCount; column < rules.length; column++) {
+                if (rules[column] != null && rules[column].isRequired()
+                        && !report.add(recordLine, column, "is missing")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Characters in {@code bytes[start, end)}, or -1 if they are not valid in the charset. */
+        private int decodedLength(int start, int end) {
+            ByteBuffer in = ByteBuffer.wrap(bytes, start, end - start);
+            decoder.reset();
+            int length = 0;
+            CoderResult result;
+            do {
+                chars.clear();
+                result = decoder.decode(in, chars, true);
+                length += chars.position();
+                if (result.isError()) {
+                    return -1;
+                }
+            } while (result.isOverflow());
+            chars.clear();
+            decoder.flush(chars);
+            return length + chars.position();
+        }
+
+        private String show(int start, int end) {
+            int shown = Math.min(end - start, SHOWN);
+            return "'" + new String(bytes, start, shown, charset) + (shown < end - start ? "...'" : "'");
+        }
+    }
+}
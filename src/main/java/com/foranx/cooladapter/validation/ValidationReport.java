@@ -0,0 +1,69 @@
+package com.foranx.cooladapter.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Outcome of {@link FileValidator#validate}: the first errors found and how far the scan got. */
+public final class ValidationReport {
+
+    /** One problem; {@code column} is 0-based, or -1 for the whole record. */
+    public record Error(long line, int column, String message) {
+
+        @Override
+        public String toString() {
+            return "line " + line + (column >= 0 ? ", column " + (column + 1) : "") + ": " + message;
+        }
+    }
+
+    private final int maxErrors;
+    private final List<Error> errors = new ArrayList<>();
+    private long records;
+
+    ValidationReport(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    /** Adds an error; returns {@code false} once {@code maxErrors} were found and the scan should stop. */
+    boolean add(long line, int column, String message) {
+        errors.add(new Error(line, column, message));
+        return errors.size() < maxErrors;
+    }
+
+    void countRecord() {
+        records++;
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    public List<Error> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /** Records checked; when the scan stopped early, the records up to the last error. */
+    public long getRecords() {
+        return records;
+    }
+
+    /** Whether the scan stopped at {@code maxErrors} before the end of the input. */
+    public boolean isTruncated() {
+        return errors.size() >= maxErrors;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (isValid()) {
+            sb.append(records).append(" records, no errors");
+        } else {
+            sb.append(errors.size()).append(isTruncated() ? " or more errors in the first " : " errors in ")
+                    .append(records).append(" records");
+        }
+        for (Error error : errors) {
+            sb.append('\n').append(error);
+        }
+        return sb.append('\n').toString();
+    }
+}
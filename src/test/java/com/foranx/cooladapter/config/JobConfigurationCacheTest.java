@@ -0,0 +1,106 @@
+package com.foranx.cooladapter.config;
+
+import com.foranx.cooladapter.lookup.LookupTables;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link JobConfigurationCache}: re-validation when the watcher missed a change. */
+class JobConfigurationCacheTest {
+
+    private static final long REVALIDATE_MS = 300;
+
+    @TempDir
+    Path root;
+
+    private AppConfiguration app;
+    private Path jobDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(root.resolve("log"));
+        jobDir = Files.createDirectories(root.resolve("in").resolve("payments"));
+        Properties props = new Properties();
+        props.setProperty("directory", root.resolve("in").toString());
+        props.setProperty("stateDirectory", root.resolve("state").toString());
+        props.setProperty("logFolder", root.resolve("log").resolve("adapter.log").toString());
+        props.setProperty("fallbackLogName", "fallback.log");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        props.store(bytes, null);
+        app = new AppConfiguration();
+        app.init(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test
+    void changeWithoutEventIsSeenWhileFilesKeepArriving() throws Exception {
+        Path propertiesFile = writeJob("FUNDS.TRANSFER");
+        JobConfigurationCache cache = new JobConfigurationCache(app, new LookupTables(0, 0), REVALIDATE_MS);
+        assertEquals("FUNDS.TRANSFER", cache.get(jobDir).getApplication());
+
+        writeJob("CUSTOMER.UPDATE");
+        // Make the change visible even on file systems with a coarse mtime
+        Files.setLastModifiedTime(propertiesFile, FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+
+        long start = System.nanoTime();
+        String application = "FUNDS.TRANSFER";
+        // A file every 100 ms: each one hits the cache well within the re-validation interval
+        while (application.equals("FUNDS.TRANSFER")
+                && System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(10 * REVALIDATE_MS)) {
+            Thread.sleep(100);
+            application = cache.get(jobDir).getApplication();
+        }
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals("CUSTOMER.UPDATE", application, "the changed job file must be re-read");
+        assertTrue(waited <= 3 * REVALIDATE_MS, "re-read after " + waited + " ms");
+    }
+
+    @Test
+    void unchangedJobIsReusedAcrossRevalidations() throws Exception {
+        writeJob("FUNDS.TRANSFER");
+        JobConfigurationCache cache = new JobConfigurationCache(app, new LookupTables(0, 0), REVALIDATE_MS);
+        JobConfiguration first = cache.get(jobDir);
+
+        Thread.sleep(2 * REVALIDATE_MS);
+        assertSame(first, cache.get(jobDir));
+        assertSame(first, cache.get(jobDir));
+    }
+
+    @Test
+    void invalidateReloadsAtOnce() throws Exception {
+        writeJob("FUNDS.TRANSFER");
+        JobConfigurationCache cache = new JobConfigurationCache(app, new LookupTables(0, 0), 60_000);
+        cache.get(jobDir);
+
+        writeJob("CUSTOMER.UPDATE");
+        cache.invalidate(jobDir);
+        assertEquals("CUSTOMER.UPDATE", cache.get(jobDir).getApplication());
+    }
+
+    private Path writeJob(String application) throws IOException {
+        Properties job = new Properties();
+        job.setProperty("application", application);
+        job.setProperty("version", "BULK");
+        job.setProperty("skipHeader", "true");
+        job.setProperty("idColumn", "1");
+        job.setProperty("field.2", "DEBIT.AMOUNT");
+        Path file = jobDir.resolve("payments.properties");
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            job.store(writer, null);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,278 @@
+package com.foranx.cooladapter.core;
+
+import com.foranx.cooladapter.config.AppConfiguration;
+import com.foranx.cooladapter.mq.JmsConnectionFactory;
+import com.foranx.cooladapter.mq.JmsProducer;
+import com.foranx.cooladapter.state.CheckpointStore;
+import com.foranx.cooladapter.state.CheckpointStore.Checkpoint;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A file whose sending stops part way is resumed from its checkpoint: the checkpoint follows the
+ * commits while the file is still being sent, and the retry sends exactly the records that were
+ * not committed, on the sequential and on the chunked path.
+ */
+class CheckpointResumeTest {
+
+    private static final String QUEUE = "resume.test";
+    private static final Pattern AMOUNT = Pattern.compile("DEBIT\\.AMOUNT[^=]*=(\\d+)");
+
+    @TempDir
+    Path root;
+
+    private EmbeddedActiveMQ broker;
+    private ActiveMQConnectionFactory connectionFactory;
+    private Path jobDir;
+    private FileProcessor processor;
+    private final CommitGate gate = new CommitGate();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .addAcceptorConfiguration("in-vm", "vm://0"));
+        broker.start();
+        connectionFactory = new ActiveMQConnectionFactory("vm://0");
+        jobDir = Files.createDirectories(root.resolve("in").resolve("payments"));
+        Files.createDirectories(root.resolve("log"));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        gate.open();
+        if (processor != null) {
+            processor.close();
+        }
+        connectionFactory.close();
+        broker.stop();
+    }
+
+    @Test
+    void sequentialFileResumesWithTheUncommittedTail() throws Exception {
+        assertResumesWithTheUncommittedTail(false);
+    }
+
+    @Test
+    void chunkedFileResumesWithTheUncommittedTail() throws Exception {
+        assertResumesWithTheUncommittedTail(true);
+    }
+
+    private void assertResumesWithTheUncommittedTail(boolean chunked) throws Exception {
+        int records = 6000;
+        writeJob(chunked);
+        Path file = dataFile(records);
+        processor = instance();
+        gate.failAfter(2);
+
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return processor.processFile(file);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTrue(gate.awaitBlocked(), "the third commit must be reached");
+
+        // As if the process died here: what the broker has and what the checkpoint says must agree
+        List<Integer> committed = drainQueue();
+        assertTrue(committed.size() > 0 && committed.size() < records, committed.size() + " committed");
+        Checkpoint saved = awaitCheckpoint(file, committed.size());
+        assertEquals(committed.size(), saved.records(), "checkpoint saved on commit, not at the end of the file");
+
+        gate.release();
+        assertFalse(first.get(30, TimeUnit.SECONDS), "sending must fail once the commits fail");
+        gate.open();
+
+        assertEquals(1, processor.recoverClaims(jobDir));
+        assertTrue(processor.processFile(file));
+        List<Integer> resent = drainQueue();
+        assertEquals(records - committed.size(), resent.size(), "only the uncommitted tail is sent again");
+
+        List<Integer> all = new ArrayList<>(committed);
+        all.addAll(resent);
+        assertEquals(IntStream.rangeClosed(1, records).boxed().toList(), all, "every record once, in order");
+    }
+
+    private Checkpoint awaitCheckpoint(Path file, long records) throws Exception {
+        CheckpointStore store = new CheckpointStore(root.resolve("state").resolve("checkpoints"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        Checkpoint checkpoint = store.load(file);
+        while ((checkpoint == null || checkpoint.records() < records) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            checkpoint = store.load(file);
+        }
+        assertNotNull(checkpoint, "no checkpoint saved while the file is being sent");
+        return checkpoint;
+    }
+
+    private FileProcessor instance() throws IOException {
+        Properties props = new Properties();
+        props.setProperty("directory", root.resolve("in").toString());
+        props.setProperty("stateDirectory", root.resolve("state").toString());
+        props.setProperty("logFolder", root.resolve("log").resolve("adapter.log").toString());
+        props.setProperty("fallbackLogName", "fallback.log");
+        props.setProperty("instanceId", "a");
+        AppConfiguration config = new AppConfiguration();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        props.store(bytes, null);
+        config.init(new ByteArrayInputStream(bytes.toByteArray()));
+
+        JmsProducer producer = new JmsProducer(new JmsConnectionFactory(gate.wrap(connectionFactory), QUEUE, 1, 1),
+                1000, 50, 1000, 1);
+        return new FileProcessor(config, producer);
+    }
+
+    private void writeJob(boolean chunked) throws IOException {
+        Properties job = new Properties();
+        job.setProperty("application", "FUNDS.TRANSFER");
+        job.setProperty("version", "BULK");
+        job.setProperty("skipHeader", "true");
+        job.setProperty("idColumn", "1");
+        job.setProperty("field.2", "DEBIT.AMOUNT");
+        if (chunked) {
+            job.setProperty("splitThreshold", "1");
+            job.setProperty("chunkSize", "64K");
+        } else {
+            job.setProperty("splitThreshold", "0");
+        }
+        try (Writer writer = Files.newBufferedWriter(jobDir.resolve("payments.properties"))) {
+            job.store(writer, null);
+        }
+    }
+
+    private Path dataFile(int records) throws IOException {
+        StringBuilder csv = new StringBuilder("id,amount\n");
+        for (int i = 1; i <= records; i++) {
+            csv.append("record-").append(i).append(',').append(i).append('\n');
+        }
+        return Files.writeString(jobDir.resolve("batch.csv"), csv);
+    }
+
+    /** The amounts of the messages on the queue, in queue order. */
+    private List<Integer> drainQueue() throws Exception {
+        List<Integer> amounts = new ArrayList<>();
+        try (Connection connection = connectionFactory.createConnection()) {
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer consumer = session.createConsumer(session.createQueue(QUEUE));
+            Message message;
+            while ((message = consumer.receive(500)) != null) {
+                Matcher amount = AMOUNT.matcher(((TextMessage) message).getText());
+                assertTrue(amount.find(), ((TextMessage) message).getText());
+                amounts.add(Integer.parseInt(amount.group(1)));
+            }
+        }
+        return amounts;
+    }
+
+    /**
+     * Lets a number of commits through, then holds the next one until {@link #release} and fails
+     * it and every later one, until {@link #open}.
+     */
+    private static final class CommitGate {
+        private final AtomicInteger commits = new AtomicInteger();
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile int allowed = Integer.MAX_VALUE;
+
+        void failAfter(int commits) {
+            allowed = commits;
+        }
+
+        boolean awaitBlocked() throws InterruptedException {
+            return blocked.await(30, TimeUnit.SECONDS);
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        void open() {
+            allowed = Integer.MAX_VALUE;
+            released.countDown();
+        }
+
+        ConnectionFactory wrap(ConnectionFactory factory) {
+            return proxy(ConnectionFactory.class, factory, (target, method, args) ->
+                    method.getName().equals("createConnection")
+                            ? wrap((Connection) method.invoke(target, args)) : method.invoke(target, args));
+        }
+
+        private Connection wrap(Connection connection) {
+            return proxy(Connection.class, connection, (target, method, args) ->
+                    method.getName().equals("createSession")
+                            ? wrap((Session) method.invoke(target, args)) : method.invoke(target, args));
+        }
+
+        private Session wrap(Session session) {
+            return proxy(Session.class, session, (target, method, args) -> {
+                if (method.getName().equals("commit") && commits.incrementAndGet() > allowed) {
+                    blocked.countDown();
+                    released.await();
+                    if (commits.get() > allowed) {
+                        session.rollback();
+                        throw new JMSException("commit refused by the test");
+                    }
+                }
+                return method.invoke(target, args);
+            });
+        }
+
+        private interface Call {
+            Object invoke(Object target, Method method, Object[] args) throws Throwable;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, Call call) {
+            InvocationHandler handler = (self, method, args) -> {
+                try {
+                    return call.invoke(target, method, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            };
+            return (T) Proxy.newProxyInstance(CheckpointResumeTest.class.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.foranx.cooladapter.core;
+
+import com.foranx.cooladapter.config.AppConfiguration;
+import com.foranx.cooladapter.mq.JmsConnectionFactory;
+import com.foranx.cooladapter.mq.JmsProducer;
+import com.foranx.cooladapter.state.FileClaims;
+import jakarta.jms.Connection;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Session;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Several {@link FileProcessor} instances sharing one directory, as separate deployments would. */
+class MultiInstanceTest {
+
+    private static final String QUEUE = "instances.test";
+    private static final int RECORDS = 5;
+
+    @TempDir
+    Path root;
+
+    private EmbeddedActiveMQ broker;
+    private ActiveMQConnectionFactory connectionFactory;
+    private Path jobDir;
+    private final List<JmsProducer> producers = new ArrayList<>();
+    private final List<FileProcessor> processors = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .addAcceptorConfiguration("in-vm", "vm://0"));
+        broker.start();
+        connectionFactory = new ActiveMQConnectionFactory("vm://0");
+
+        jobDir = Files.createDirectories(root.resolve("in").resolve("payments"));
+        Properties job = new Properties();
+        job.setProperty("application", "FUNDS.TRANSFER");
+        job.setProperty("version", "BULK");
+        job.setProperty("skipHeader", "true");
+        job.setProperty("idColumn", "1");
+        job.setProperty("field.2", "DEBIT.AMOUNT");
+        try (Writer writer = Files.newBufferedWriter(jobDir.resolve("payments.properties"))) {
+            job.store(writer, null);
+        }
+        Files.createDirectories(root.resolve("log"));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (FileProcessor processor : processors) {
+            processor.close();
+        }
+        connectionFactory.close();
+        broker.stop();
+    }
+
+    @Test
+    void everyFileIsSentByExactlyOneInstance() throws Exception {
+        List<FileProcessor> instances = List.of(instance("a"), instance("b"), instance("c"));
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            files.add(dataFile("batch-" + i + ".csv"));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(instances.size());
+        try {
+            List<Future<Integer>> processed = new ArrayList<>();
+            for (FileProcessor instance : instances) {
+                processed.add(pool.submit(() -> {
+                    int count = 0;
+                    for (Path file : files) {
+                        if (instance.processFile(file)) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> count : processed) {
+                total += count.get();
+            }
+            assertEquals(files.size(), total, "files processed, summed over the instances");
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(files.size(), countFiles(jobDir.resolve(".processed")));
+        assertEquals(0, countFiles(jobDir.resolve(FileClaims.CLAIM_DIR)));
+        assertEquals(files.size() * RECORDS, drainQueue(), "messages on the queue");
+    }
+
+    @Test
+    void failedFileIsReleasedAndRetriedByAnotherInstance() throws Exception {
+        FileProcessor a = instance("a");
+        FileProcessor b = instance("b");
+        Path file = dataFile("batch.csv");
+        // Sends through a closed producer fail through their callbacks
+        producers.get(0).close();
+
+        assertFalse(a.processFile(file));
+        assertFalse(Files.exists(file), "the failed file stays claimed until recovery");
+
+        assertEquals(1, a.recoverClaims(jobDir), "a failed claim must not stay active");
+        assertTrue(Files.exists(file));
+        assertTrue(b.processFile(file));
+        assertTrue(Files.exists(jobDir.resolve(".processed").resolve("batch.csv")));
+        assertEquals(RECORDS, drainQueue());
+    }
+
+    @Test
+    void claimsOfAStoppedInstanceAreRecoveredByTheOthers() throws Exception {
+        FileProcessor a = instance("a");
+        FileProcessor b = instance("b");
+        Path file = dataFile("batch.csv");
+        Path claimed = Files.createDirectories(jobDir.resolve(FileClaims.CLAIM_DIR).resolve("a"))
+                .resolve(file.getFileName());
+        Files.move(file, claimed);
+
+        assertEquals(0, b.recoverClaims(jobDir), "the claim of a live instance must be left alone");
+        a.close();
+        processors.remove(a);
+
+        assertEquals(1, b.recoverClaims(jobDir));
+        assertTrue(b.processFile(file));
+        assertEquals(RECORDS, drainQueue());
+    }
+
+    @Test
+    void fileDeliveredByOneInstanceIsNotSentAgainByAnother() throws Exception {
+        FileProcessor a = instance("a");
+        FileProcessor b = instance("b");
+        Path file = dataFile("batch.csv");
+        byte[] content = Files.readAllBytes(file);
+
+        assertTrue(a.processFile(file));
+        assertEquals(RECORDS, drainQueue());
+
+        // The same content shows up again, e.g. copied in twice by the sender
+        Files.write(file, content);
+        assertTrue(b.processFile(file));
+        assertEquals(0, drainQueue(), "b must not resend what a delivered");
+        assertTrue(Files.exists(jobDir.resolve(".processed").resolve("batch.csv")));
+
+        // Changed content is a new file
+        Files.writeString(file, new String(content, StandardCharsets.UTF_8) + "batch.csv-6,60\n");
+        assertTrue(b.processFile(file));
+        assertEquals(RECORDS + 1, drainQueue());
+    }
+
+    private FileProcessor instance(String id) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("directory", root.resolve("in").toString());
+        props.setProperty("stateDirectory", root.resolve("state").toString());
+        props.setProperty("logFolder", root.resolve("log").resolve("adapter.log").toString());
+        props.setProperty("fallbackLogName", "fallback.log");
+        props.setProperty("instanceId", id);
+        props.setProperty("leaseTimeoutMs", "60000");
+        AppConfiguration config = new AppConfiguration();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        props.store(bytes, null);
+        config.init(new ByteArrayInputStream(bytes.toByteArray()));
+
+        JmsProducer producer = new JmsProducer(new JmsConnectionFactory(connectionFactory, QUEUE, 1, 1),
+                10, 0, 100, 1);
+        producers.add(producer);
+        FileProcessor processor = new FileProcessor(config, producer);
+        processors.add(processor);
+        return processor;
+    }
+
+    private Path dataFile(String name) throws IOException {
+        StringBuilder csv = new StringBuilder("id,amount\n");
+        for (int i = 1; i <= RECORDS; i++) {
+            csv.append(name).append('-').append(i).append(',').append(i * 10).append('\n');
+        }
+        return Files.writeString(jobDir.resolve(name), csv);
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private int drainQueue() throws Exception {
+        int count = 0;
+        try (Connection connection = connectionFactory.createConnection()) {
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer consumer = session.createConsumer(session.createQueue(QUEUE));
+            while (consumer.receive(500) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
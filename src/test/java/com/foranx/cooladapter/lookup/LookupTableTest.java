@@ -0,0 +1,117 @@
+package com.foranx.cooladapter.lookup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link LookupTable}: loading mapping files and probing the off-heap hash table. */
+class LookupTableTest {
+
+    @TempDir
+    Path dir;
+
+    private final LookupTable.View view = new LookupTable.View();
+
+    @Test
+    void keysWithTheSameHashAreFoundByProbing() throws IOException {
+        // "Aa" and "BB" have the same String hash, and so do all their concatenations
+        List<String> keys = List.of("AaAa", "AaBB", "BBAa", "BBBB", "Aa", "BB");
+        StringBuilder file = new StringBuilder();
+        for (String key : keys) {
+            file.append(key).append('=').append(key.toLowerCase()).append('\n');
+        }
+        LookupTable table = load(file.toString());
+
+        assertEquals(keys.size(), table.size());
+        for (String key : keys) {
+            assertEquals(key.toLowerCase(), string(table.get(key, view)), key);
+        }
+        assertNull(table.get("AaAaAa", view));
+        assertNull(table.get("BBBBBB", view));
+    }
+
+    @Test
+    void manyKeys() throws IOException {
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            file.append("K").append(i).append(';').append("V").append(i * 7).append('\n');
+        }
+        Path path = Files.writeString(dir.resolve("big.txt"), file);
+        LookupTable table = LookupTable.load(path, ';', StandardCharsets.UTF_8);
+
+        assertEquals(20_000, table.size());
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals("V" + i * 7, string(table.get("K" + i, view)));
+        }
+        for (int i = 20_000; i < 21_000; i++) {
+            assertNull(table.get("K" + i, view));
+        }
+    }
+
+    @Test
+    void laterLineWinsAndCountsOnce() throws IOException {
+        LookupTable table = load("a=1\nb=2\na=3\na=4\n");
+        assertEquals(2, table.size());
+        assertEquals("4", string(table.get("a", view)));
+        assertEquals("2", string(table.get("b", view)));
+    }
+
+    @Test
+    void emptyFilesGiveEmptyTables() throws IOException {
+        for (String content : List.of("", "\n\n", "# only a comment\n   \n  # another\n")) {
+            LookupTable table = load(content);
+            assertEquals(0, table.size());
+            assertNull(table.get("a", view));
+            assertNull(table.get("", view));
+        }
+    }
+
+    @Test
+    void linesAreTrimmedAndSplitAtTheFirstDelimiter() throws IOException {
+        LookupTable table = load("  key one = value=with=delimiters  \n# skipped=1\nempty=\n=blank key\n");
+        assertEquals("value=with=delimiters", string(table.get("key one", view)));
+        assertEquals("", string(table.get("empty", view)));
+        assertEquals("blank key", string(table.get("", view)));
+        assertNull(table.get("# skipped", view));
+    }
+
+    @Test
+    void viewIsRepointedByTheNextLookup() throws IOException {
+        LookupTable table = load("a=first\nb=second value\n");
+        CharSequence a = table.get("a", view);
+        CharSequence b = table.get("b", view);
+        assertSame(a, b);
+        assertEquals("second value", b.toString());
+        assertEquals("value", b.subSequence(7, 12).toString());
+        assertEquals('s', b.charAt(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> b.charAt(12));
+    }
+
+    @Test
+    void lineWithoutDelimiterIsReportedWithItsNumber() throws IOException {
+        Path path = Files.writeString(dir.resolve("bad.txt"), "a=1\n\nno delimiter\n");
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> LookupTable.load(path, '=', StandardCharsets.UTF_8));
+        assertTrue(e.getMessage().contains("line 3"), e.getMessage());
+    }
+
+    private LookupTable load(String content) throws IOException {
+        Path path = Files.writeString(dir.resolve("map.txt"), content);
+        return LookupTable.load(path, '=', StandardCharsets.UTF_8);
+    }
+
+    private static String string(CharSequence value) {
+        return value == null ? null : value.toString();
+    }
+}
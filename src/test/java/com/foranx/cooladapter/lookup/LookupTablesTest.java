@@ -0,0 +1,118 @@
+package com.foranx.cooladapter.lookup;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link LookupTables}: CLOCK eviction within the byte budget, reloading evicted tables. */
+class LookupTablesTest {
+
+    @TempDir
+    Path dir;
+
+    private LookupTables tables;
+    private final LookupTable.View view = new LookupTable.View();
+
+    @AfterEach
+    void tearDown() {
+        if (tables != null) {
+            tables.close();
+        }
+    }
+
+    @Test
+    void unusedTableIsEvictedBeforeARecentlyUsedOne() throws IOException {
+        // Room for three tables
+        tables = new LookupTables(tableBytes() * 7 / 2, 0);
+        LookupTables.Source a = source("a");
+        LookupTables.Source b = source("b");
+        LookupTables.Source c = source("c");
+        LookupTables.Source d = source("d");
+        LookupTables.Source e = source("e");
+
+        a.table();
+        b.table();
+        c.table();
+        assertResident(a, b, c);
+
+        // Every bit is set: the hand clears them all and comes back to the oldest
+        d.table();
+        assertFalse(a.isResident());
+        assertResident(b, c, d);
+
+        // The hand now points at b; b was used since, c was not
+        b.table();
+        e.table();
+        assertFalse(c.isResident());
+        assertResident(b, d, e);
+    }
+
+    @Test
+    void evictedTableIsLoadedAgainOnItsNextLookup() throws IOException {
+        tables = new LookupTables(tableBytes(), 0);
+        LookupTables.Source a = source("a");
+        LookupTables.Source b = source("b");
+
+        LookupTable first = a.table();
+        b.table();
+        assertFalse(a.isResident());
+        assertTrue(b.isResident());
+
+        LookupTable again = a.table();
+        assertNotSame(first, again);
+        assertEquals("a-value-3", again.get("key3", view).toString());
+        assertFalse(b.isResident());
+    }
+
+    @Test
+    void tableLargerThanTheBudgetStaysResidentAlone() throws IOException {
+        tables = new LookupTables(1, 0);
+        LookupTables.Source a = source("a");
+        LookupTable table = a.table();
+        assertTrue(a.isResident());
+        assertSame(table, a.table());
+    }
+
+    @Test
+    void jobsNamingTheSameFileShareOneSource() throws IOException {
+        tables = new LookupTables(Long.MAX_VALUE, 0);
+        Path file = mapping("a");
+        assertSame(tables.source(file, '=', StandardCharsets.UTF_8),
+                tables.source(dir.resolve(".").resolve("a.txt"), '=', StandardCharsets.UTF_8));
+    }
+
+    private LookupTables.Source source(String name) throws IOException {
+        return tables.source(mapping(name), '=', StandardCharsets.UTF_8);
+    }
+
+    /** Off-heap size of the table of any {@link #mapping}. */
+    private long tableBytes() throws IOException {
+        return LookupTable.load(mapping("x"), '=', StandardCharsets.UTF_8).bytes();
+    }
+
+    /** A mapping file whose table has the same size for every one-letter name. */
+    private Path mapping(String name) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            content.append("key").append(i).append('=').append(name).append("-value-").append(i).append('\n');
+        }
+        return Files.writeString(dir.resolve(name + ".txt"), content);
+    }
+
+    private static void assertResident(LookupTables.Source... sources) {
+        for (LookupTables.Source source : sources) {
+            assertTrue(source.isResident(), source.file() + " must be resident");
+        }
+    }
+}
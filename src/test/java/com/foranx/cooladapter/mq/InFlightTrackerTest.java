@@ -0,0 +1,190 @@
+package com.foranx.cooladapter.mq;
+
+import com.foranx.cooladapter.mq.InFlightTracker.Outcome;
+import com.foranx.cooladapter.mq.InFlightTracker.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link InFlightTracker}: the timeout wheel and the split of packed replies. */
+class InFlightTrackerTest {
+
+    private static final String POSTED = "FT1/MSG/1,DEBIT.AMOUNT=10";
+    private static final String REJECTED = "FT2/MSG/-1,DEBIT.AMOUNT:1:1=INVALID AMOUNT";
+
+    private InFlightTracker tracker;
+
+    @AfterEach
+    void tearDown() {
+        if (tracker != null) {
+            tracker.close();
+        }
+    }
+
+    @Test
+    void messageWithoutReplyTimesOut() throws Exception {
+        tracker = new InFlightTracker("t-", 50);
+        Results result = new Results(1);
+        long start = System.nanoTime();
+        tracker.register(result.outcome(0));
+
+        assertTrue(result.await(), "the timer must fail the message");
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50, "not before the timeout");
+        assertEquals(Status.TIMEOUT, result.status(0));
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    void repliedMessageLeavesTheWheel() throws Exception {
+        tracker = new InFlightTracker("t-", 50);
+        Results result = new Results(1);
+        String id = tracker.register(result.outcome(0));
+
+        assertTrue(tracker.complete(id, POSTED));
+        Thread.sleep(200);
+        assertEquals(List.of(Status.OK), result.statuses(), "exactly one outcome, and no timeout after it");
+        assertEquals("FT1", result.detail(0));
+        assertFalse(tracker.complete(id, POSTED), "a second reply no longer matches");
+    }
+
+    @Test
+    void timeoutsFireAcrossManyTicks() throws Exception {
+        tracker = new InFlightTracker("t-", 30);
+        Results results = new Results(20);
+        for (int i = 0; i < 20; i++) {
+            tracker.register(results.outcome(i));
+            Thread.sleep(5);
+        }
+        assertTrue(results.await());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Status.TIMEOUT, results.status(i));
+        }
+    }
+
+    @Test
+    void failEndsTrackingWithAnError() throws Exception {
+        tracker = new InFlightTracker("t-", 60_000);
+        Results result = new Results(2);
+        String id = tracker.register(new Outcome[]{result.outcome(0), result.outcome(1)}, "|");
+
+        tracker.fail(id, "rolled back");
+        assertEquals(List.of(Status.ERROR, Status.ERROR), result.statuses());
+        assertEquals("rolled back", result.detail(1));
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    void packedReplyGivesEachRecordItsPart() {
+        tracker = new InFlightTracker("t-", 60_000);
+        Results results = new Results(2);
+        String id = tracker.register(new Outcome[]{results.outcome(0), results.outcome(1)}, "|");
+
+        assertTrue(tracker.complete(id, POSTED + "|" + REJECTED));
+        assertEquals(List.of(Status.OK, Status.ERROR), results.statuses());
+        assertEquals("DEBIT.AMOUNT:1:1=INVALID AMOUNT", results.detail(1));
+    }
+
+    @Test
+    void extraPartsOfAPackedReplyAreIgnored() {
+        tracker = new InFlightTracker("t-", 60_000);
+        Results results = new Results(2);
+        String id = tracker.register(new Outcome[]{results.outcome(0), results.outcome(1)}, "|");
+
+        assertTrue(tracker.complete(id, POSTED + "|" + POSTED + "|" + REJECTED));
+        assertEquals(List.of(Status.OK, Status.OK), results.statuses());
+    }
+
+    @Test
+    void missingOrBlankPartsFailTheirRecord() {
+        tracker = new InFlightTracker("t-", 60_000);
+        Results results = new Results(3);
+        String id = tracker.register(
+                new Outcome[]{results.outcome(0), results.outcome(1), results.outcome(2)}, "|");
+
+        assertTrue(tracker.complete(id, POSTED + "| "));
+        assertEquals(List.of(Status.OK, Status.ERROR, Status.ERROR), results.statuses());
+        assertEquals("no reply to this record in the packed reply", results.detail(1));
+        assertEquals("no reply to this record in the packed reply", results.detail(2));
+    }
+
+    @Test
+    void replyWithoutSeparatorAppliesToEveryRecord() {
+        tracker = new InFlightTracker("t-", 60_000);
+        Results results = new Results(3);
+        String id = tracker.register(
+                new Outcome[]{results.outcome(0), results.outcome(1), results.outcome(2)}, "|");
+
+        assertTrue(tracker.complete(id, REJECTED));
+        assertEquals(List.of(Status.ERROR, Status.ERROR, Status.ERROR), results.statuses());
+        assertEquals("DEBIT.AMOUNT:1:1=INVALID AMOUNT", results.detail(2));
+    }
+
+    @Test
+    void nullReplyIsAnError() {
+        tracker = new InFlightTracker("t-", 60_000);
+        Results results = new Results(2);
+        String id = tracker.register(new Outcome[]{results.outcome(0), results.outcome(1)}, "|");
+
+        assertTrue(tracker.complete(id, null));
+        assertEquals(List.of(Status.ERROR, Status.ERROR), results.statuses());
+    }
+
+    @Test
+    void unknownCorrelationIdIsNotMatched() {
+        tracker = new InFlightTracker("t-", 60_000);
+        assertFalse(tracker.complete("t-unknown", POSTED));
+        assertFalse(tracker.complete(null, POSTED));
+    }
+
+    /** Outcomes of the records of one message, by index; each record must get exactly one. */
+    private static final class Results {
+        private final List<List<String>> received = new ArrayList<>();
+        private final List<Status> statuses = new ArrayList<>();
+        private final CountDownLatch done;
+
+        Results(int records) {
+            done = new CountDownLatch(records);
+            for (int i = 0; i < records; i++) {
+                received.add(new ArrayList<>());
+                statuses.add(null);
+            }
+        }
+
+        Outcome outcome(int index) {
+            return (status, detail) -> {
+                synchronized (this) {
+                    if (statuses.get(index) != null) {
+                        throw new AssertionError("second outcome for record " + index);
+                    }
+                    statuses.set(index, status);
+                    received.get(index).add(detail);
+                }
+                done.countDown();
+            };
+        }
+
+        boolean await() throws InterruptedException {
+            return done.await(5, TimeUnit.SECONDS);
+        }
+
+        synchronized List<Status> statuses() {
+            return List.copyOf(statuses);
+        }
+
+        synchronized Status status(int index) {
+            return statuses.get(index);
+        }
+
+        synchronized String detail(int index) {
+            return received.get(index).get(0);
+        }
+    }
+}
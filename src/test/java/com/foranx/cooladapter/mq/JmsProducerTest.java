@@ -0,0 +1,220 @@
+package com.foranx.cooladapter.mq;
+
+import jakarta.jms.Connection;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link JmsProducer} against an in-VM Artemis broker. */
+class JmsProducerTest {
+
+    private static final String QUEUE = "producer.test";
+
+    private EmbeddedActiveMQ broker;
+    private ActiveMQConnectionFactory connectionFactory;
+    private JmsProducer producer;
+
+    @BeforeEach
+    void startBroker() throws Exception {
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .addAcceptorConfiguration("in-vm", "vm://0"));
+        broker.start();
+        connectionFactory = new ActiveMQConnectionFactory("vm://0");
+    }
+
+    @AfterEach
+    void stopBroker() throws Exception {
+        if (producer != null) {
+            producer.close();
+        }
+        connectionFactory.close();
+        broker.stop();
+    }
+
+    private JmsProducer producer(int batchSize, long lingerMs, int maxInFlight) {
+        producer = new JmsProducer(new JmsConnectionFactory(connectionFactory, QUEUE, 1, 2),
+                batchSize, lingerMs, maxInFlight, 1);
+        return producer;
+    }
+
+    @Test
+    void fullBatchIsCommittedWithoutWaitingForTheLinger() throws Exception {
+        JmsProducer producer = producer(5, 10_000, 100);
+        CountDownLatch committed = new CountDownLatch(5);
+        List<Exception> errors = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            producer.send("msg-" + i, error -> {
+                if (error != null) {
+                    errors.add(error);
+                }
+                committed.countDown();
+            });
+        }
+
+        assertTrue(committed.await(5, TimeUnit.SECONDS), "a full batch must not wait for lingerMs");
+        assertTrue(errors.isEmpty(), errors::toString);
+        assertEquals(List.of("msg-0", "msg-1", "msg-2", "msg-3", "msg-4"), receive(5));
+    }
+
+    @Test
+    void partialBatchWaitsForTheLinger() throws Exception {
+        JmsProducer producer = producer(100, 500, 100);
+        CountDownLatch committed = new CountDownLatch(3);
+        long started = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            producer.send("msg-" + i, error -> committed.countDown());
+        }
+
+        assertFalse(committed.await(200, TimeUnit.MILLISECONDS), "committed before lingerMs");
+        assertTrue(committed.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(3, receive(3).size());
+    }
+
+    @Test
+    void batchLimitKeepsMessagesInSmallerTransactions() throws Exception {
+        JmsProducer producer = producer(100, 0, 100);
+        CountDownLatch committed = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            producer.send("msg-" + i, 1, error -> committed.countDown());
+        }
+
+        assertTrue(committed.await(5, TimeUnit.SECONDS));
+        assertEquals(4, receive(4).size());
+    }
+
+    @Test
+    void failedCommitReachesTheCallback() throws Exception {
+        JmsProducer producer = producer(1, 0, 10);
+        broker.stop();
+        AtomicReference<Exception> result = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        producer.send("lost", error -> {
+            result.set(error);
+            done.countDown();
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNotNull(result.get(), "a rolled back or unsent batch must report its error");
+        assertEquals(0, producer.getInFlight());
+    }
+
+    @Test
+    void sendBlocksOnceMaxInFlightIsReached() throws Exception {
+        JmsProducer producer = producer(2, 0, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstCommitted = new CountDownLatch(1);
+        // The callback holds the sender thread, so the batch stays in flight
+        producer.send("a", error -> {
+            firstCommitted.countDown();
+            await(release);
+        });
+        producer.send("b", error -> {
+        });
+        assertTrue(firstCommitted.await(5, TimeUnit.SECONDS));
+        assertEquals(2, producer.getInFlight());
+
+        CountDownLatch third = new CountDownLatch(1);
+        Thread blocked = Thread.ofPlatform().start(() -> {
+            try {
+                producer.send("c", error -> third.countDown());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        blocked.join(300);
+        assertTrue(blocked.isAlive(), "send must block while maxInFlight messages are unconfirmed");
+
+        release.countDown();
+        blocked.join(5000);
+        assertFalse(blocked.isAlive());
+        assertTrue(third.await(5, TimeUnit.SECONDS));
+        assertEquals(3, receive(3).size());
+    }
+
+    @Test
+    void closeFailsASendThatIsStillWaitingForRoom() throws Exception {
+        JmsProducer producer = producer(1, 0, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch sending = new CountDownLatch(1);
+        producer.send("a", error -> {
+            sending.countDown();
+            await(release);
+        });
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        AtomicReference<Exception> result = new AtomicReference<>();
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        CountDownLatch completed = new CountDownLatch(1);
+        Thread blocked = Thread.ofPlatform().start(() -> {
+            try {
+                producer.send("b", error -> {
+                    result.set(error);
+                    completed.countDown();
+                });
+            } catch (Throwable e) {
+                thrown.set(e);
+            }
+        });
+        blocked.join(200);
+        assertTrue(blocked.isAlive());
+
+        Thread closing = Thread.ofPlatform().start(producer::close);
+        Thread.sleep(100);
+        release.countDown();
+        closing.join(15_000);
+        blocked.join(5000);
+
+        assertNull(thrown.get(), "send must report the closed producer through its callback");
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, result.get());
+        this.producer = null;
+    }
+
+    private List<String> receive(int count) throws Exception {
+        List<String> texts = new ArrayList<>();
+        try (Connection connection = connectionFactory.createConnection()) {
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer consumer = session.createConsumer(session.createQueue(QUEUE));
+            for (int i = 0; i < count; i++) {
+                TextMessage message = (TextMessage) consumer.receive(5000);
+                assertNotNull(message, "message " + i + " of " + count + " not delivered");
+                texts.add(message.getText());
+            }
+            assertNull(consumer.receiveNoWait(), "more messages than sent");
+        }
+        return texts;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
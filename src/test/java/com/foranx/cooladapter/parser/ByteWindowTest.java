@@ -0,0 +1,128 @@
+package com.foranx.cooladapter.parser;
+
+import com.foranx.cooladapter.util.ByteBufferPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link ByteWindow}: the bytes and offsets each kind of window hands out across refills. */
+class ByteWindowTest {
+
+    private static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyWindowHandsOutTheWholeRange() throws IOException {
+        Path file = write();
+        byte[] bytes = CONTENT.getBytes(StandardCharsets.US_ASCII);
+        for (int size = 1; size <= 10; size++) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                assertEquals(CONTENT, drain(ByteWindow.file(channel, 0, channel.size(), new ByteBufferPool(size, 1))));
+                assertEquals(CONTENT, drain(ByteWindow.mapped(channel, 0, channel.size(), size)));
+                assertEquals("56789abcdefghij", drain(ByteWindow.file(channel, 5, 20, new ByteBufferPool(size, 1))));
+                assertEquals("56789abcdefghij", drain(ByteWindow.mapped(channel, 5, 20, size)));
+            }
+            assertEquals(CONTENT, drain(ByteWindow.stream(ParsedRecords.trickle(bytes, 3), new ByteBufferPool(size, 1))));
+        }
+    }
+
+    @Test
+    void refillDropsTheBytesBeforeKeepFrom() throws IOException {
+        Path file = write();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (ByteWindow window : new ByteWindow[]{
+                    ByteWindow.file(channel, 0, channel.size(), new ByteBufferPool(8, 1)),
+                    ByteWindow.mapped(channel, 0, channel.size(), 8)}) {
+                assertTrue(window.refill(0));
+                assertEquals("01234567", text(window));
+                assertTrue(window.refill(5));
+                assertEquals(5, window.base());
+                assertEquals("56789abc", text(window));
+                window.close();
+            }
+        }
+    }
+
+    @Test
+    void aFullBufferGrowsInsteadOfDroppingBytes() throws IOException {
+        Path file = write();
+        ByteBufferPool pool = new ByteBufferPool(4, 1);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteWindow buffered = ByteWindow.file(channel, 0, channel.size(), pool);
+            ByteWindow mapped = ByteWindow.mapped(channel, 0, channel.size(), 4);
+            for (ByteWindow window : new ByteWindow[]{buffered, mapped}) {
+                assertTrue(window.refill(0));
+                assertEquals("0123", text(window));
+                assertTrue(window.refill(0));
+                assertEquals("01234567", text(window));
+                assertTrue(window.refill(0));
+                assertEquals("0123456789abcdef", text(window));
+                assertEquals(0, window.base());
+            }
+            assertEquals(16, buffered.buffer().capacity());
+            buffered.close();
+            // The grown buffer is not pooled; the pool hands out its own size again
+            assertEquals(4, pool.acquire().capacity());
+        }
+    }
+
+    @Test
+    void exhaustedWindowsChangeNothing() throws IOException {
+        Path file = write();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (ByteWindow window : new ByteWindow[]{
+                    ByteWindow.file(channel, 30, channel.size(), new ByteBufferPool(64, 1)),
+                    ByteWindow.mapped(channel, 30, channel.size(), 64)}) {
+                while (window.refill(0) && window.limit() < 6) {
+                    // Until the whole range is in the window
+                }
+                assertEquals("uvwxyz", text(window));
+                assertFalse(window.refill(0));
+                assertFalse(window.refill(3));
+                assertEquals(30, window.base());
+                assertEquals("uvwxyz", text(window));
+                window.close();
+            }
+        }
+    }
+
+    /** Reads the window to its end as a reader that consumes everything it is given would. */
+    private static String drain(ByteWindow window) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long expectedBase = window.base();
+        do {
+            assertEquals(expectedBase, window.base());
+            out.writeBytes(text(window).getBytes(StandardCharsets.US_ASCII));
+            expectedBase += window.limit();
+        } while (window.refill(window.limit()));
+        window.close();
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static String text(ByteWindow window) {
+        ByteBuffer buf = window.buffer();
+        byte[] bytes = new byte[window.limit()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buf.get(i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private Path write() throws IOException {
+        return Files.writeString(dir.resolve("data.txt"), CONTENT, StandardCharsets.US_ASCII);
+    }
+}
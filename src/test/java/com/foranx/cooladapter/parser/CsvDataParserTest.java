@@ -0,0 +1,150 @@
+package com.foranx.cooladapter.parser;
+
+import com.foranx.cooladapter.util.ByteBufferPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** {@link CsvDataParser}: quoting, records across buffer refills, read modes and charsets. */
+class CsvDataParserTest {
+
+    private static final String QUOTED = """
+            id,comment,amount
+            1,"with, delimiter",10
+            2,"doubled ""quotes"" inside",20
+            3,"two
+            lines",30
+            4,"",40
+            5,\"\"\"\",50
+            6,PIPE 12" STEEL,60
+            7,,
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void quotedFieldsAndDoubledQuotes() throws IOException {
+        assertEquals(List.of(
+                "1-2@0-18|id|comment|amount",
+                "2-3@18-41|1|with, delimiter|10",
+                "3-4@41-74|2|doubled \"quotes\" inside|20",
+                "4-6@74-91|3|two\nlines|30",
+                "6-7@91-99|4||40",
+                "7-8@99-109|5|\"|50",
+                "8-9@109-129|6|PIPE 12\" STEEL|60",
+                "9-10@129-133|7||"), ParsedRecords.file(new CsvDataParser(), write(QUOTED)));
+    }
+
+    @Test
+    void blankLinesAndCrlfAreHandled() throws IOException {
+        Path file = write("a,b\r\n\r\n\n\"c\r\nd\",e\r\nf,g");
+        assertEquals(List.of("1-2@0-5|a|b", "4-6@8-18|c\r\nd|e", "6-6@18-21|f|g"),
+                ParsedRecords.file(new CsvDataParser(), file));
+    }
+
+    @Test
+    void recordsAcrossRefillsMatchOneLargeBuffer() throws IOException {
+        Path file = write(QUOTED + "8,\"a quoted field much longer than the small buffers, with\nnewlines\n\nand \"\"quotes\"\"\",80\n");
+        List<String> expected = ParsedRecords.file(new CsvDataParser(), file);
+        // Buffers smaller than a record take the path that grows the buffer
+        for (int size = 1; size <= 40; size++) {
+            assertEquals(expected, ParsedRecords.file(parser(ReadMode.STREAM, size), file), "buffer of " + size);
+            assertEquals(expected, ParsedRecords.file(parser(ReadMode.MMAP, size), file), "window of " + size);
+        }
+        for (int perRead = 1; perRead <= 5; perRead++) {
+            assertEquals(expected, ParsedRecords.stream(parser(ReadMode.STREAM, 4), Files.readAllBytes(file), perRead),
+                    perRead + " bytes per read");
+        }
+    }
+
+    @Test
+    void doubledQuoteSplitByARefillIsStillOneQuote() throws IOException {
+        // With 4-byte buffers the second quote of each pair lands in every possible position
+        for (int pad = 0; pad < 4; pad++) {
+            String content = "x".repeat(pad) + ",\"a\"\"b\"\"\"\"c\"\n" + "y,\"\"\"\"\n";
+            Path file = write(content);
+            List<String> expected = List.of("1-2@0-" + (13 + pad) + "|" + "x".repeat(pad) + "|a\"b\"\"c",
+                    "2-3@" + (13 + pad) + "-" + (20 + pad) + "|y|\"");
+            assertEquals(expected, ParsedRecords.file(parser(ReadMode.STREAM, 4), file), "pad " + pad);
+            assertEquals(expected, ParsedRecords.file(parser(ReadMode.MMAP, 4), file), "pad " + pad);
+        }
+    }
+
+    @Test
+    void chunkedParsingMatchesSequentialParsing() throws IOException {
+        StringBuilder content = new StringBuilder("id,text,amount\n");
+        for (int i = 0; i < 50; i++) {
+            content.append(i).append(',');
+            content.append(switch (i % 4) {
+                case 0 -> "\"multi\nline " + i + "\"";
+                case 1 -> "\"with \"\"quotes\"\", and delimiter\"";
+                case 2 -> "plain " + i;
+                default -> "stray \" quote";
+            });
+            content.append(',').append(i * 5).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        Path file = write(content.toString());
+        CsvDataParser parser = parser(ReadMode.STREAM, 16);
+        List<String> expected = ParsedRecords.file(parser, file);
+        assertEquals(51, expected.size());
+        for (long chunkSize : new long[]{1, 10, 37, 100, 500, 5000}) {
+            assertEquals(expected, ParsedRecords.chunked(parser, file, chunkSize), "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    void multibyteCharsetsAreDecodedPerField() throws IOException {
+        String content = "Zürich;\"Ελλάδα; \"\"Αθήνα\"\"\";日本\n€;\"naïve\ncafé\";😀\n";
+        Path file = Files.writeString(dir.resolve("data.csv"), content, StandardCharsets.UTF_8);
+        List<String> expected = ParsedRecords.file(
+                new CsvDataParser(';', '"', StandardCharsets.UTF_8, ReadMode.STREAM), file);
+        assertEquals(List.of("Zürich|Ελλάδα; \"Αθήνα\"|日本", "€|naïve\ncafé|😀"),
+                expected.stream().map(record -> record.substring(record.indexOf('|') + 1)).toList());
+        // A buffer refill in the middle of a multibyte character changes nothing
+        for (int size = 1; size <= 12; size++) {
+            CsvDataParser small = new CsvDataParser(';', '"', StandardCharsets.UTF_8, ReadMode.STREAM,
+                    new ByteBufferPool(size, 1), size);
+            assertEquals(expected, ParsedRecords.file(small, file), "buffer of " + size);
+        }
+    }
+
+    @Test
+    void singleByteCharsetsOtherThanAscii() throws IOException {
+        for (String name : List.of("windows-1251", "IBM866", "ISO-8859-5")) {
+            Charset charset = Charset.forName(name);
+            Path file = Files.write(dir.resolve("data.csv"), "Москва,\"Санкт-Петербург, \"\"СПб\"\"\"\n".getBytes(charset));
+            assertEquals(List.of("1-2@0-34|Москва|Санкт-Петербург, \"СПб\""),
+                    ParsedRecords.file(new CsvDataParser(',', '"', charset, ReadMode.MMAP), file), name);
+        }
+    }
+
+    @Test
+    void separatorsMustBeSingleAsciiBytes() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CsvDataParser(',', '"', StandardCharsets.UTF_16, ReadMode.STREAM));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CsvDataParser('§', '"', StandardCharsets.UTF_8, ReadMode.STREAM));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CsvDataParser('"', '"', StandardCharsets.UTF_8, ReadMode.STREAM));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CsvDataParser('\n', '"', StandardCharsets.UTF_8, ReadMode.STREAM));
+    }
+
+    private static CsvDataParser parser(ReadMode readMode, int bufferSize) {
+        return new CsvDataParser(',', '"', StandardCharsets.UTF_8, readMode, new ByteBufferPool(bufferSize, 1), bufferSize);
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(dir.resolve("data.csv"), content, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,123 @@
+package com.foranx.cooladapter.parser;
+
+import com.foranx.cooladapter.util.ByteBufferPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** {@link FixedWidthDataParser}: byte ranges, padding, short lines and the {@code fixed} format keys. */
+class FixedWidthDataParserTest {
+
+    private static final Charset LATIN_1 = StandardCharsets.ISO_8859_1;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void fieldsAreCutAtTheirByteRangesAndTrimmed() throws IOException {
+        Path file = write("FT001  DEBIT 0000100\nFT002  CREDIT0000200\n");
+        assertEquals(List.of("1-2@0-21|FT001|DEBIT|0000100", "2-3@21-42|FT002|CREDIT|0000200"),
+                ParsedRecords.file(parser("1-7,8-13,14-20", true), file));
+    }
+
+    @Test
+    void paddingIsKeptWithoutTrim() throws IOException {
+        Path file = write("  A   B \n");
+        assertEquals(List.of("1-2@0-9|  A |  B "), ParsedRecords.file(parser("1-4,5-8", false), file));
+        assertEquals(List.of("1-2@0-9|A|B"), ParsedRecords.file(parser("1-4,5-8", true), file));
+    }
+
+    @Test
+    void rangesPastTheEndOfTheLineAreTruncatedOrEmpty() throws IOException {
+        Path file = write("ABCDEFG\nAB\r\n\nABCDEFGHIJKLMNO\n");
+        assertEquals(List.of("1-2@0-8|ABC|DEFG||", "2-3@8-12|AB|||", "4-5@13-29|ABC|DEFGH|IJ|O"),
+                ParsedRecords.file(parser("1-3,4-8,9-10,15", true), file));
+    }
+
+    @Test
+    void singleByteCharsetsCountCharacters() throws IOException {
+        Path file = Files.write(dir.resolve("data.txt"), "ÄÖÜ123\néè 45\n".getBytes(LATIN_1));
+        assertEquals(List.of("1-2@0-7|ÄÖÜ|123", "2-3@7-13|éè|45"), ParsedRecords.file(parser("1-3,4-6", true), file));
+    }
+
+    @Test
+    void chunkedParsingMatchesSequentialParsing() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            content.append(String.format("%05d%-8s%07d", i, "N" + i, i * 17)).append(i % 3 == 0 ? "\r\n" : "\n");
+            if (i % 7 == 0) {
+                content.append('\n');
+            }
+        }
+        content.append("99999LAST    0000001");
+        Path file = write(content.toString());
+        DataParser parser = parser("1-5,6-13,14-20", true);
+
+        List<String> expected = ParsedRecords.file(parser, file);
+        assertEquals(41, expected.size());
+        for (long chunkSize : new long[]{1, 7, 21, 22, 100, 333, 1000}) {
+            assertEquals(expected, ParsedRecords.chunked(parser, file, chunkSize), "chunk size " + chunkSize);
+        }
+        assertEquals(expected, ParsedRecords.stream(parser, Files.readAllBytes(file), 5));
+    }
+
+    @Test
+    void streamAndMappedReadsGiveTheSameRecords() throws IOException {
+        Path file = write("AAAA1111\nBBBB2222\n\nCCCC3333333333333333333333\nDDDD");
+        int[] starts = {0, 4};
+        int[] ends = {4, 8};
+        ByteBufferPool small = new ByteBufferPool(4, 1);
+        List<String> stream = ParsedRecords.file(
+                new FixedWidthDataParser(starts, ends, true, LATIN_1, ReadMode.STREAM, small, 4), file);
+        List<String> mapped = ParsedRecords.file(
+                new FixedWidthDataParser(starts, ends, true, LATIN_1, ReadMode.MMAP, small, 4), file);
+        assertEquals(List.of("1-2@0-9|AAAA|1111", "2-3@9-18|BBBB|2222", "4-5@19-46|CCCC|3333", "5-5@46-50|DDDD|"),
+                stream);
+        assertEquals(stream, mapped);
+    }
+
+    @Test
+    void invalidLayoutsAreConfigurationErrors() {
+        assertThrows(IllegalStateException.class, () -> create(new Properties()));
+        assertThrows(IllegalStateException.class, () -> create(" "));
+        assertThrows(IllegalStateException.class, () -> create("1-5,x"));
+        assertThrows(IllegalStateException.class, () -> create("5-1"));
+        assertThrows(IllegalStateException.class, () -> create("0-3"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new FixedWidthDataParser(new int[]{0}, new int[]{4}, true, StandardCharsets.UTF_16, ReadMode.STREAM));
+    }
+
+    private static DataParser parser(String layout, boolean trim) {
+        Properties props = new Properties();
+        props.setProperty("fixedColumns", layout);
+        props.setProperty("fixedTrim", String.valueOf(trim));
+        return create(props);
+    }
+
+    private static DataParser create(String layout) {
+        Properties props = new Properties();
+        if (layout != null) {
+            props.setProperty("fixedColumns", layout);
+        }
+        return create(props);
+    }
+
+    private static DataParser create(Properties props) {
+        return new FixedWidthDataParser.Format().create(
+                new DataFormat.Settings(props, ',', '"', LATIN_1, ReadMode.STREAM));
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(dir.resolve("data.txt"), content, LATIN_1);
+    }
+}
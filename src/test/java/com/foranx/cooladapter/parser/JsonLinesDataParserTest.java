@@ -0,0 +1,159 @@
+package com.foranx.cooladapter.parser;
+
+import com.foranx.cooladapter.util.ByteBufferPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** {@link JsonLinesDataParser}: member mapping, escapes, nested values and malformed lines. */
+class JsonLinesDataParserTest {
+
+    private static final JsonLinesDataParser PARSER = new JsonLinesDataParser(
+            new String[]{"id", "name", "amount"}, StandardCharsets.UTF_8, ReadMode.STREAM);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void membersAreMappedByNameInAnyOrder() throws IOException {
+        List<String> records = parse("""
+                {"id":"FT1","name":"Alice","amount":10.5}
+                { "amount" : -3 , "id" : "FT2" , "name" : "Bob" }
+                {"extra":true,"name":"Carol","id":7,"amount":1e3}
+                """);
+        assertEquals(List.of("FT1|Alice|10.5", "FT2|Bob|-3", "7|Carol|1e3"), fields(records));
+    }
+
+    @Test
+    void nullAndMissingMembersAreEmpty() throws IOException {
+        List<String> records = parse("""
+                {"id":"FT1","name":null,"amount":null}
+                {"id":"FT2"}
+                {}
+                {"name":"only"}
+                """);
+        assertEquals(List.of("FT1||", "FT2||", "||", "|only|"), fields(records));
+    }
+
+    @Test
+    void escapesAreResolved() throws IOException {
+        List<String> records = parse("""
+                {"id":"q\\"b\\\\s\\/","name":"a\\nb\\tc\\rd\\be\\ff","amount":"\\u0041\\u00e9\\u20AC"}
+                {"id":"ends \\u00e9","name":"\\u0041","amount":"x\\"\\\\"}
+                """);
+        assertEquals(List.of("q\"b\\s/|a\nb\tc\rd\be\ff|Aé€", "ends é|A|x\"\\"), fields(records));
+    }
+
+    @Test
+    void truncatedAndUnknownEscapesAreKeptAsWritten() throws IOException {
+        List<String> records = parse("""
+                {"id":"\\u00","name":"\\q","amount":"ab\\u12G4"}
+                """);
+        assertEquals(List.of("\\u00|\\q|ab\\u12G4"), fields(records));
+    }
+
+    @Test
+    void nestedValuesArePassedOnAsJsonText() throws IOException {
+        List<String> records = parse("""
+                {"id":{"a":[1,{"b":"}]"}],"c":{}},"name":[1, "x,y", [2]],"skipped":{"id":[{}]},"amount":0}
+                """);
+        assertEquals(List.of("{\"a\":[1,{\"b\":\"}]\"}],\"c\":{}}|[1, \"x,y\", [2]]|0"), fields(records));
+    }
+
+    @Test
+    void nonAsciiTextIsDecoded() throws IOException {
+        List<String> records = parse("{\"id\":\"Zürich\",\"name\":\"Ελλάδα\",\"amount\":\"日本\"}\n");
+        assertEquals(List.of("Zürich|Ελλάδα|日本"), fields(records));
+    }
+
+    @Test
+    void blankLinesAndALastLineWithoutNewlineAreHandled() throws IOException {
+        List<String> records = parse("\n{\"id\":1}\r\n  \t\n{\"id\":2}");
+        assertEquals(List.of("2-3@1-11|1||", "4-4@15-23|2||"), records);
+    }
+
+    @Test
+    void malformedLinesReportTheirPosition() {
+        assertMalformed("{\"id\":1}\n{\"id\":1,}\n", "line 2, byte 9: expected '\"'");
+        assertMalformed("{\"id\":\"open\n", "line 1, byte 12: unterminated string");
+        assertMalformed("{\"id\":1} x\n", "line 1, byte 10: text after the object");
+        assertMalformed("{\"id\":}\n", "line 1, byte 7: missing value");
+        assertMalformed("[1,2]\n", "line 1, byte 1: expected '{'");
+        assertMalformed("{\"id\":[1,{\"a\":2}\n", "line 1, byte 17: unterminated object or array");
+        assertMalformed("{\"id\" 1}\n", "line 1, byte 7: expected ':'");
+        assertMalformed("\n\n{\"id\":1", "line 3, byte 8: expected '}'");
+    }
+
+    @Test
+    void chunkedParsingMatchesSequentialParsing() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            content.append("{\"id\":\"R").append(i).append("\",\"name\":\"a\\nb \\\"q\\\" ").append(i)
+                    .append("\",\"nested\":{\"x\":[").append(i).append("]},\"amount\":").append(i * 3).append('}');
+            content.append(i % 4 == 0 ? "\r\n" : "\n");
+            if (i % 9 == 0) {
+                content.append('\n');
+            }
+        }
+        content.append("{\"id\":\"end\"}");
+        Path file = write(content.toString());
+
+        List<String> expected = ParsedRecords.file(PARSER, file);
+        assertEquals(61, expected.size());
+        for (long chunkSize : new long[]{1, 13, 64, 65, 250, 1000, 10_000}) {
+            assertEquals(expected, ParsedRecords.chunked(PARSER, file, chunkSize), "chunk size " + chunkSize);
+        }
+        assertEquals(expected, ParsedRecords.stream(PARSER, Files.readAllBytes(file), 3));
+
+        ByteBufferPool small = new ByteBufferPool(16, 1);
+        String[] names = {"id", "name", "amount"};
+        assertEquals(expected, ParsedRecords.file(
+                new JsonLinesDataParser(names, StandardCharsets.UTF_8, ReadMode.STREAM, small, 16), file));
+        assertEquals(expected, ParsedRecords.file(
+                new JsonLinesDataParser(names, StandardCharsets.UTF_8, ReadMode.MMAP, small, 16), file));
+    }
+
+    @Test
+    void formatNeedsTheMemberNames() throws IOException {
+        JsonLinesDataParser.Format format = new JsonLinesDataParser.Format();
+        Properties props = new Properties();
+        DataFormat.Settings settings = new DataFormat.Settings(props, ',', '"', StandardCharsets.UTF_8, ReadMode.STREAM);
+        assertThrows(IllegalStateException.class, () -> format.create(settings));
+
+        props.setProperty("jsonFields", " id , amount ");
+        DataParser parser = format.create(settings);
+        try (RecordReader reader = parser.open(ParsedRecords.trickle(
+                "{\"amount\":5,\"id\":\"x\"}\n".getBytes(StandardCharsets.UTF_8), 64))) {
+            assertEquals(List.of("1-2@0-22|x|5"), ParsedRecords.read(reader));
+        }
+        assertThrows(IllegalStateException.class, () -> format.create(new DataFormat.Settings(
+                props, ',', '"', StandardCharsets.UTF_16, ReadMode.STREAM)));
+    }
+
+    private void assertMalformed(String content, String message) {
+        IOException e = assertThrows(IOException.class, () -> parse(content));
+        assertEquals("Malformed JSON at " + message, e.getMessage());
+    }
+
+    private List<String> parse(String content) throws IOException {
+        return ParsedRecords.file(PARSER, write(content));
+    }
+
+    /** Just the fields of each record. */
+    private static List<String> fields(List<String> records) {
+        return records.stream().map(record -> record.substring(record.indexOf('|') + 1)).toList();
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(dir.resolve("data.jsonl"), content, StandardCharsets.UTF_8);
+    }
+}
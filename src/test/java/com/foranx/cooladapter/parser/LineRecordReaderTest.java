@@ -0,0 +1,130 @@
+package com.foranx.cooladapter.parser;
+
+import com.foranx.cooladapter.util.ByteBufferPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link LineRecordReader}: line finding, numbering and offsets, whatever the window size. */
+class LineRecordReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void linesAreNumberedAndPositioned() throws IOException {
+        List<String> records = read("alpha\nbeta\ngamma\n", 1024);
+        assertEquals(List.of("1-2@0-6|alpha", "2-3@6-11|beta", "3-4@11-17|gamma"), records);
+    }
+
+    @Test
+    void blankLinesAreSkippedButCounted() throws IOException {
+        List<String> records = read("\nalpha\n\r\n\n\nbeta\n\n", 1024);
+        assertEquals(List.of("2-3@1-7|alpha", "6-7@11-16|beta"), records);
+    }
+
+    @Test
+    void carriageReturnBeforeTheNewlineIsDropped() throws IOException {
+        List<String> records = read("alpha\r\nbe\rta\r\n", 1024);
+        assertEquals(List.of("1-2@0-7|alpha", "2-3@7-14|be\rta"), records);
+    }
+
+    @Test
+    void lastLineWithoutANewlineIsARecord() throws IOException {
+        assertEquals(List.of("1-2@0-6|alpha", "2-2@6-10|beta"), read("alpha\nbeta", 1024));
+        assertEquals(List.of("1-1@0-4|beta"), read("beta", 1024));
+        assertEquals(List.of("1-2@0-6|alpha", "2-2@6-11|beta"), read("alpha\nbeta\r", 1024));
+        assertEquals(List.of(), read("", 1024));
+    }
+
+    @Test
+    void linesLongerThanTheBufferGrowIt() throws IOException {
+        String longLine = "x".repeat(100);
+        String content = "a\n" + longLine + "\nb\n" + longLine + longLine;
+        List<String> expected = read(content, 1024);
+        assertEquals(4, expected.size());
+        assertEquals("2-3@2-103|" + longLine, expected.get(1));
+        for (int size = 1; size <= 8; size++) {
+            assertEquals(expected, read(content, size), "buffer of " + size + " bytes");
+        }
+    }
+
+    @Test
+    void streamReadsGiveTheSameRecords() throws IOException {
+        String content = "alpha\n\nbeta\r\n" + "y".repeat(40) + "\nlast";
+        List<String> expected = read(content, 1024);
+        for (int perRead = 1; perRead <= 7; perRead++) {
+            ByteBufferPool pool = new ByteBufferPool(4, 1);
+            try (RecordReader reader = new Lines(ByteWindow.stream(
+                    ParsedRecords.trickle(content.getBytes(StandardCharsets.US_ASCII), perRead), pool))) {
+                assertEquals(expected, ParsedRecords.read(reader), perRead + " bytes per read");
+            }
+        }
+    }
+
+    @Test
+    void numberingStartsWhereTheCallerSays() throws IOException {
+        Path file = Files.writeString(dir.resolve("data.txt"), "skip\nalpha\nbeta\n");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             RecordReader reader = new Lines(ByteWindow.file(channel, 5, channel.size(), new ByteBufferPool(1024, 1)))) {
+            reader.numbering(2, 7);
+            assertTrue(reader.next());
+            DataRecord record = reader.record();
+            assertEquals(2, record.lineNumber());
+            assertEquals(7, record.recordIndex());
+            assertEquals(5, record.startOffset());
+            assertTrue(reader.next());
+            assertEquals(8, reader.record().recordIndex());
+            assertEquals("beta", reader.record().field(0).toString());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void mappedWindowsGiveTheSameRecords() throws IOException {
+        String content = "alpha\n\nbeta\r\n" + "z".repeat(50) + "\nlast";
+        Path file = Files.writeString(dir.resolve("data.txt"), content);
+        List<String> expected = read(content, 1024);
+        for (int window = 1; window <= 9; window++) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                 RecordReader reader = new Lines(ByteWindow.mapped(channel, 0, channel.size(), window))) {
+                assertEquals(expected, ParsedRecords.read(reader), "window of " + window + " bytes");
+            }
+        }
+    }
+
+    private List<String> read(String content, int bufferSize) throws IOException {
+        Path file = Files.writeString(dir.resolve("data.txt"), content);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             RecordReader reader = new Lines(ByteWindow.file(channel, 0, channel.size(),
+                     new ByteBufferPool(bufferSize, 1)))) {
+            return ParsedRecords.read(reader);
+        }
+    }
+
+    /** Each line is one field. */
+    private static final class Lines extends LineRecordReader {
+
+        Lines(ByteWindow window) {
+            super(window, new DataRecord(StandardCharsets.US_ASCII, (char) 0));
+        }
+
+        @Override
+        boolean parse(ByteBuffer buf, int start, int end, long lineNumber) {
+            record.addField(start, end, DataRecord.Escaping.NONE);
+            return true;
+        }
+    }
+}
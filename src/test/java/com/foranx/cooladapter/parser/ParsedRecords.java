@@ -0,0 +1,108 @@
+package com.foranx.cooladapter.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Reads every record of a parser into comparable strings, sequentially or in chunks. */
+final class ParsedRecords {
+
+    private ParsedRecords() {
+    }
+
+    /** The whole file through {@link DataParser#open(Path)}. */
+    static List<String> file(DataParser parser, Path file) throws IOException {
+        try (RecordReader reader = parser.open(file)) {
+            return read(reader);
+        }
+    }
+
+    /** The bytes through {@link DataParser#open(ReadableByteChannel)}, at most {@code perRead} bytes per read. */
+    static List<String> stream(DataParser parser, byte[] content, int perRead) throws IOException {
+        try (RecordReader reader = parser.open(trickle(content, perRead))) {
+            return read(reader);
+        }
+    }
+
+    /** The file split by the parser's splitter into chunks of about {@code chunkSize} bytes, read in order. */
+    static List<String> chunked(DataParser parser, Path file, long chunkSize) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<FileChunk> chunks = parser.splitter().split(channel, 0, channel.size(), 1, chunkSize, Runnable::run);
+            long offset = 0;
+            for (FileChunk chunk : chunks) {
+                if (chunk.start() != offset) {
+                    throw new AssertionError("chunk " + chunk + " does not start at " + offset);
+                }
+                offset = chunk.end();
+                try (RecordReader reader = parser.open(channel, chunk.start(), chunk.end())) {
+                    reader.numbering(chunk.firstLine(), 0);
+                    records.addAll(read(reader));
+                }
+            }
+            if (offset != Files.size(file)) {
+                throw new AssertionError("chunks end at " + offset + " of " + Files.size(file));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Each record as {@code line-nextLine@start-end|field|field...}; the record index is left
+     * out because chunks number their records from 0.
+     */
+    static List<String> read(RecordReader reader) throws IOException {
+        List<String> records = new ArrayList<>();
+        while (reader.next()) {
+            records.add(describe(reader.record()));
+        }
+        return records;
+    }
+
+    static String describe(DataRecord record) {
+        StringBuilder text = new StringBuilder()
+                .append(record.lineNumber()).append('-').append(record.nextLineNumber())
+                .append('@').append(record.startOffset()).append('-').append(record.endOffset());
+        for (int i = 0; i < record.fieldCount(); i++) {
+            text.append('|').append(record.field(i));
+        }
+        return text.toString();
+    }
+
+    /** Channel handing out at most {@code perRead} bytes per read, as pipes and decompressors do. */
+    static ReadableByteChannel trickle(byte[] content, int perRead) {
+        ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(content));
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                if (dst.remaining() <= perRead) {
+                    return in.read(dst);
+                }
+                ByteBuffer slice = dst.slice(dst.position(), perRead);
+                int n = in.read(slice);
+                if (n > 0) {
+                    dst.position(dst.position() + n);
+                }
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return in.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+}
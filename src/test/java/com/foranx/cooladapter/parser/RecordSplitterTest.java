@@ -0,0 +1,166 @@
+package com.foranx.cooladapter.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link RecordSplitter}: every chunk starts on a record boundary with its line number. */
+class RecordSplitterTest {
+
+    private static final CsvDataParser CSV = new CsvDataParser();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void boundariesInsideQuotedFieldsMoveToTheEndOfTheRecord() throws IOException {
+        Path file = write("""
+                id,comment,amount
+                1,"two
+                lines",10
+                2,"with, delimiter and ""quotes""
+                and a newline",20
+                3,plain,30
+                4,"
+                
+                ",40
+                5,"ends with a quote""\",50
+                6,last,60
+                """);
+        assertSplitsLikeSequentialParsing(file);
+    }
+
+    @Test
+    void strayQuoteInAnUnquotedValueDoesNotShiftTheBoundaries() throws IOException {
+        Path file = write("""
+                id,item,amount
+                1,PIPE 12" STEEL,10
+                2,"quoted
+                newline",20
+                3,BOLT 3/4",30
+                4,"again
+                a newline, and more",40
+                5,"x"y,50
+                6,"one
+                more",60
+                7,tail,70
+                """);
+        assertSplitsLikeSequentialParsing(file);
+    }
+
+    @Test
+    void crlfLinesSplitAfterTheLineFeed() throws IOException {
+        Path file = write("id,amount\r\n1,\"a\r\nb\",10\r\n2,plain,20\r\n3,\"c\"\"\r\n\",30\r\n4,d,40\r\n");
+        assertSplitsLikeSequentialParsing(file);
+        for (FileChunk chunk : split(file, 0, 1, 5)) {
+            if (chunk.start() > 0) {
+                assertEquals('\n', byteAt(file, chunk.start() - 1));
+            }
+        }
+    }
+
+    @Test
+    void chunksAreNumberedFromTheGivenFirstLine() throws IOException {
+        StringBuilder csv = new StringBuilder("id,amount\n");
+        for (int i = 1; i <= 50; i++) {
+            csv.append(i).append(",\"").append(i).append("\n0\"\n");
+        }
+        Path file = write(csv.toString());
+        long header = "id,amount\n".length();
+
+        List<FileChunk> chunks = split(file, header, 2, 40);
+        assertTrue(chunks.size() > 1);
+        assertEquals(header, chunks.get(0).start());
+        assertEquals(2, chunks.get(0).firstLine());
+        String content = Files.readString(file);
+        for (FileChunk chunk : chunks) {
+            // Record i spans lines 2 * i and 2 * i + 1
+            String rest = content.substring((int) chunk.start());
+            int record = Integer.parseInt(rest.substring(0, rest.indexOf(',')));
+            assertEquals(2L * record, chunk.firstLine(), "chunk at " + chunk.start());
+        }
+    }
+
+    @Test
+    void withoutQuotingEveryNewlineEndsARecord() throws IOException {
+        Path file = write("{\"a\":\"\\\"\"}\n{\"b\":1}\n\"\n{\"c\":2}\n{\"d\":3}\n");
+        RecordSplitter splitter = new RecordSplitter((char) 0, (char) 0);
+        for (long chunkSize = 1; chunkSize < 12; chunkSize++) {
+            long line = 1;
+            long offset = 0;
+            String content = Files.readString(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (FileChunk chunk : splitter.split(channel, 0, channel.size(), 1, chunkSize, Runnable::run)) {
+                    assertEquals(offset, chunk.start());
+                    assertTrue(chunk.start() == 0 || content.charAt((int) chunk.start() - 1) == '\n');
+                    assertEquals(line, chunk.firstLine());
+                    line += content.substring((int) chunk.start(), (int) chunk.end()).chars().filter(c -> c == '\n').count();
+                    offset = chunk.end();
+                }
+            }
+            assertEquals(content.length(), offset);
+        }
+    }
+
+    /** Splits at every chunk size up to the file length and compares with one sequential pass. */
+    private void assertSplitsLikeSequentialParsing(Path file) throws IOException {
+        List<String> expected = parse(file, List.of(new FileChunk(0, 0, Files.size(file), 1)));
+        for (long chunkSize = 1; chunkSize <= Files.size(file); chunkSize++) {
+            List<FileChunk> chunks = split(file, 0, 1, chunkSize);
+            long offset = 0;
+            for (FileChunk chunk : chunks) {
+                assertEquals(offset, chunk.start(), "chunks must be contiguous");
+                offset = chunk.end();
+            }
+            assertEquals(Files.size(file), offset);
+            assertEquals(expected, parse(file, chunks), "chunk size " + chunkSize);
+        }
+    }
+
+    private static List<FileChunk> split(Path file, long start, long firstLine, long chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return CSV.splitter().split(channel, start, channel.size(), firstLine, chunkSize, Runnable::run);
+        }
+    }
+
+    /** Each record as its line number, offset and fields. */
+    private static List<String> parse(Path file, List<FileChunk> chunks) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (FileChunk chunk : chunks) {
+                try (RecordReader reader = CSV.open(channel, chunk.start(), chunk.end())) {
+                    reader.numbering(chunk.firstLine(), 0);
+                    while (reader.next()) {
+                        DataRecord record = reader.record();
+                        StringBuilder text = new StringBuilder()
+                                .append(record.lineNumber()).append('@').append(record.startOffset());
+                        for (int i = 0; i < record.fieldCount(); i++) {
+                            text.append('|').append(record.field(i));
+                        }
+                        records.add(text.toString());
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(dir.resolve("data.csv"), content, StandardCharsets.UTF_8);
+    }
+
+    private static char byteAt(Path file, long offset) throws IOException {
+        return (char) Files.readAllBytes(file)[(int) offset];
+    }
+}
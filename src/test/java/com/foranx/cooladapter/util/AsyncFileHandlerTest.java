@@ -0,0 +1,151 @@
+package com.foranx.cooladapter.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ErrorManager;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link AsyncFileHandler}: overflow policies and rotation, including a rotation that fails. */
+class AsyncFileHandlerTest {
+
+    private static final Pattern DROPS = Pattern.compile(">>> (\\d+) log records dropped");
+
+    @TempDir
+    Path dir;
+
+    private AsyncFileHandler handler;
+
+    @AfterEach
+    void tearDown() {
+        if (handler != null) {
+            handler.close();
+        }
+    }
+
+    @Test
+    void blockingOverflowWritesEveryRecord() throws Exception {
+        Path file = dir.resolve("adapter.log");
+        handler = new AsyncFileHandler(file, 4, AsyncFileHandler.Overflow.BLOCK, 50, 0, 1);
+        publishConcurrently(4, 5_000);
+        handler.close();
+
+        assertEquals(0, handler.getDropped());
+        assertEquals(20_000, count(file, "record-"));
+        assertEquals(0, count(file, "log records dropped"));
+    }
+
+    @Test
+    void droppingOverflowAccountsForEveryRecord() throws Exception {
+        Path file = dir.resolve("adapter.log");
+        handler = new AsyncFileHandler(file, 2, AsyncFileHandler.Overflow.DROP, 50, 0, 1);
+        publishConcurrently(4, 5_000);
+        handler.close();
+
+        long dropped = handler.getDropped();
+        assertEquals(20_000, count(file, "record-") + dropped, "written plus dropped");
+        long reported = 0;
+        for (String line : Files.readAllLines(file)) {
+            Matcher drops = DROPS.matcher(line);
+            if (drops.find()) {
+                reported += Long.parseLong(drops.group(1));
+            }
+        }
+        assertEquals(dropped, reported, "every drop is reported in the file");
+    }
+
+    @Test
+    void fullFileIsRotated() throws Exception {
+        Path file = dir.resolve("adapter.log");
+        handler = new AsyncFileHandler(file, 1024, AsyncFileHandler.Overflow.BLOCK, 10, 1000, 3);
+        for (int i = 0; i < 200; i++) {
+            handler.publish(new LogRecord(Level.INFO, "record-" + i + " " + "x".repeat(40)));
+            if (i % 20 == 0) {
+                awaitFlush();
+            }
+        }
+        handler.close();
+
+        assertTrue(Files.exists(dir.resolve("adapter.log.1")));
+        assertTrue(Files.exists(dir.resolve("adapter.log.3")));
+        assertFalse(Files.exists(dir.resolve("adapter.log.4")), "at most maxFiles old files");
+        // The final flush may rotate the current file too, so the newest records are in one of the two
+        assertEquals(1, count(file, "record-199 ") + count(dir.resolve("adapter.log.1"), "record-199 "));
+    }
+
+    @Test
+    void failedRotationKeepsAppendingToTheCurrentFile() throws Exception {
+        Path file = dir.resolve("adapter.log");
+        // A non-empty directory where the old file should go makes the rename fail
+        Path blocker = Files.createDirectories(dir.resolve("adapter.log.1"));
+        Files.writeString(blocker.resolve("keep"), "x");
+        List<String> errors = new ArrayList<>();
+
+        handler = new AsyncFileHandler(file, 1024, AsyncFileHandler.Overflow.BLOCK, 10, 100, 1);
+        handler.setErrorManager(new ErrorManager() {
+            @Override
+            public synchronized void error(String msg, Exception ex, int code) {
+                errors.add(String.valueOf(ex));
+            }
+        });
+        for (int i = 0; i < 20; i++) {
+            handler.publish(new LogRecord(Level.INFO, "before-" + i + " " + "x".repeat(40)));
+        }
+        awaitFlush();
+        assertFalse(errors.isEmpty(), "the failed rotation is reported");
+
+        for (int i = 0; i < 20; i++) {
+            handler.publish(new LogRecord(Level.INFO, "after-" + i));
+        }
+        awaitFlush();
+        assertEquals(20, count(file, "after-"), "logging goes on in the current file");
+
+        // Once the rename works again, rotation resumes
+        Files.delete(blocker.resolve("keep"));
+        Files.delete(blocker);
+        handler.publish(new LogRecord(Level.INFO, "last"));
+        handler.close();
+        assertTrue(Files.isRegularFile(dir.resolve("adapter.log.1")));
+        assertEquals(20, count(dir.resolve("adapter.log.1"), "after-"));
+    }
+
+    private void publishConcurrently(int threads, int perThread) throws InterruptedException {
+        List<Thread> publishers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread publisher = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    handler.publish(new LogRecord(Level.INFO, "record-" + thread + "-" + i));
+                }
+            });
+            publisher.start();
+            publishers.add(publisher);
+        }
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+    }
+
+    /** Gives the writer thread a few flush periods to catch up. */
+    private static void awaitFlush() throws InterruptedException {
+        TimeUnit.MILLISECONDS.sleep(200);
+    }
+
+    private static long count(Path file, String text) throws IOException {
+        return Files.readAllLines(file).stream().filter(line -> line.contains(text)).count();
+    }
+}
@@ -0,0 +1,106 @@
+package com.foranx.cooladapter.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link MpscRingBuffer}: bounded FIFO order, wrap-around and many concurrent producers. */
+class MpscRingBufferTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(2, new MpscRingBuffer<String>(2).capacity());
+        assertEquals(4, new MpscRingBuffer<String>(3).capacity());
+        assertEquals(4, new MpscRingBuffer<String>(4).capacity());
+        assertEquals(1024, new MpscRingBuffer<String>(1000).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<String>(1));
+    }
+
+    @Test
+    void fullBufferRefusesUntilPolled() {
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        assertEquals(4, ring.size());
+
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4));
+        assertFalse(ring.offer(5));
+    }
+
+    @Test
+    void elementsComeOutInOrderAcrossManyWrapArounds() {
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(4);
+        int next = 0;
+        for (int round = 0; round < 1000; round++) {
+            int offered = round % 4 + 1;
+            for (int i = 0; i < offered; i++) {
+                assertTrue(ring.offer(round * 10 + i));
+            }
+            for (int i = 0; i < offered; i++) {
+                assertEquals(round * 10 + i, ring.poll());
+                next++;
+            }
+            assertNull(ring.poll());
+            assertTrue(ring.isEmpty());
+        }
+        assertEquals(2500, next);
+    }
+
+    @Test
+    void concurrentProducersLoseNothing() throws Exception {
+        int producers = 4;
+        int perProducer = 100_000;
+        MpscRingBuffer<long[]> ring = new MpscRingBuffer<>(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    long[] element = {producer, i};
+                    while (!ring.offer(element)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        long[] expected = new long[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] element = ring.poll();
+            if (element == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int producer = (int) element[0];
+            // Each producer's elements keep their order
+            assertEquals(expected[producer], element[1]);
+            expected[producer]++;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(ring.poll());
+    }
+}
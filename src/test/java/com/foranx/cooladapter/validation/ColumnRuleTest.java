@@ -0,0 +1,100 @@
+package com.foranx.cooladapter.validation;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link ColumnRule}: parsing of the job's checks and the checks on raw values. */
+class ColumnRuleTest {
+
+    @Test
+    void datesAreRealCalendarDates() {
+        ColumnRule date = ColumnRule.parse("date");
+        assertValid(date, "20240229", "20000229", "19991231", "20240131", "20240430");
+        assertInvalid(date, "is not a yyyyMMdd date",
+                "20230229", "19000229", "21000229", "20240230", "20240431", "20241301", "20240001",
+                "20240100", "20240132", "2024022", "202402290", "2024-2-1", "2024022a", "-2024022");
+    }
+
+    @Test
+    void integersHaveAnOptionalSignAndUpToEighteenDigits() {
+        ColumnRule integer = ColumnRule.parse("int");
+        assertValid(integer, "0", "-12", "007", "123456789012345678", "-123456789012345678");
+        assertInvalid(integer, "is not an integer",
+                "-", "+1", "1.0", "1-", "--1", "1 ", "1234567890123456789", "12a");
+    }
+
+    @Test
+    void decimalsNeedDigitsOnBothSidesOfThePoint() {
+        ColumnRule decimal = ColumnRule.parse("decimal");
+        assertValid(decimal, "0", "-1", "1.5", "-0.25", "123.456789", "00.10");
+        assertInvalid(decimal, "is not a decimal", "-", "-.5", ".5", "1.", "-1.", "1.2.3", "1e5", "1,5", "+1.5");
+    }
+
+    @Test
+    void decimalScaleLimitsTheDecimals() {
+        ColumnRule two = ColumnRule.parse("decimal:2");
+        assertValid(two, "1", "1.5", "-1.50", "123.45");
+        assertInvalid(two, "is not a decimal with at most 2 decimals", "1.505", "-0.001", "1.");
+
+        ColumnRule none = ColumnRule.parse("decimal:0");
+        assertValid(none, "1", "-10");
+        assertInvalid(none, "is not a decimal with at most 0 decimals", "1.0", "0.5");
+    }
+
+    @Test
+    void typeChecksSkipEmptyValuesUnlessRequired() {
+        assertNull(check(ColumnRule.parse("int"), ""));
+        assertNull(check(ColumnRule.parse("date"), ""));
+        assertEquals("is empty", check(ColumnRule.parse("required,int"), ""));
+        assertTrue(ColumnRule.parse("required").isRequired());
+    }
+
+    @Test
+    void maxLengthCountsCharactersNotBytes() {
+        ColumnRule rule = ColumnRule.parse("maxlen:3");
+        byte[] value = "äöü".getBytes(StandardCharsets.UTF_8);
+        assertNull(rule.check(value, 0, value.length, 3));
+        assertEquals("is 4 characters, at most 3 allowed", rule.check(value, 0, value.length, 4));
+    }
+
+    @Test
+    void checksAreCaseInsensitiveAndCombined() {
+        ColumnRule rule = ColumnRule.parse(" Required , DECIMAL:1 , maxlen:4 ");
+        assertTrue(rule.isRequired());
+        assertValid(rule, "12.5");
+        assertEquals("is 5 characters, at most 4 allowed", check(rule, "123.5"));
+        assertEquals("is not a decimal with at most 1 decimals", check(rule, "1.25"));
+    }
+
+    @Test
+    void invalidSpecsAreRejected() {
+        assertThrows(IllegalStateException.class, () -> ColumnRule.parse("number"));
+        assertThrows(IllegalStateException.class, () -> ColumnRule.parse("maxlen"));
+        assertThrows(IllegalStateException.class, () -> ColumnRule.parse("maxlen:-1"));
+        assertThrows(IllegalStateException.class, () -> ColumnRule.parse("decimal:x"));
+    }
+
+    private static void assertValid(ColumnRule rule, String... values) {
+        for (String value : values) {
+            assertNull(check(rule, value), value);
+        }
+    }
+
+    private static void assertInvalid(ColumnRule rule, String message, String... values) {
+        for (String value : values) {
+            assertEquals(message, check(rule, value), value);
+        }
+    }
+
+    /** Checks {@code value} in the middle of a larger array, as the validator passes it. */
+    private static String check(ColumnRule rule, String value) {
+        byte[] bytes = ("1,9" + value + "9,").getBytes(StandardCharsets.US_ASCII);
+        return rule.check(bytes, 3, 3 + value.length(), value.length());
+    }
+}
@@ -0,0 +1,241 @@
+package com.foranx.cooladapter.validation;
+
+import com.foranx.cooladapter.util.ByteBufferPool;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link FileValidator}: field boundaries found eight bytes at a time must match a byte by byte
+ * scan wherever the delimiter, quote or newline falls in a word and in the buffer.
+ */
+class FileValidatorTest {
+
+    private static final Charset UTF_8 = StandardCharsets.UTF_8;
+
+    @Test
+    void delimiterAtEveryPositionOfAWord() throws IOException {
+        for (int width = 0; width < 17; width++) {
+            String value = "7".repeat(width);
+            String csv = value + ",12," + value + "\n" + "x".repeat(width) + ",-3,\n";
+            ValidationReport report = validate(csv, 3, Map.of(0, "maxlen:" + width, 1, "required,int"));
+            assertTrue(report.isValid(), "width " + width + ": " + report);
+            assertEquals(2, report.getRecords());
+        }
+    }
+
+    @Test
+    void newlineAtEveryPositionOfAWord() throws IOException {
+        for (int width = 0; width < 17; width++) {
+            for (String newline : List.of("\n", "\r\n")) {
+                String csv = ("1".repeat(width) + newline).repeat(3) + "x" + newline;
+                ValidationReport report = validate(csv, 1, Map.of(0, "int,maxlen:" + Math.max(1, width)));
+                // Blank lines are skipped, so only width 0 has a single record
+                assertEquals(width == 0 ? 1 : 4, report.getRecords(), "width " + width);
+                assertEquals(List.of(new ValidationReport.Error(4, 0, "is not an integer: 'x'")), report.getErrors(),
+                        "width " + width);
+            }
+        }
+    }
+
+    @Test
+    void quoteAtEveryPositionOfAWord() throws IOException {
+        for (int width = 0; width < 17; width++) {
+            String prefix = "a".repeat(width);
+            // Quoted value x,y<LF>" z: 7 characters, holding a delimiter, a newline and a doubled quote
+            String csv = prefix + ",\"x,y\n\"\" z\",c" + prefix + "\"b\n" + "1,2," + "z".repeat(width + 4) + "\n";
+            ValidationReport report = validate(csv, 3, Map.of(1, "maxlen:7", 2, "maxlen:" + (width + 3)));
+            assertEquals(1, report.getErrors().size(), "width " + width + ": " + report);
+            assertEquals(3, report.getErrors().get(0).line());
+            assertEquals(2, report.getErrors().get(0).column());
+
+            ValidationReport shorter = validate(csv, 3, Map.of(1, "maxlen:6"));
+            assertEquals(1, shorter.getErrors().size(), "width " + width);
+            assertEquals(1, shorter.getErrors().get(0).line());
+        }
+    }
+
+    @Test
+    void quoteInsideAnUnquotedValueIsData() throws IOException {
+        String csv = "PIPE 12\" STEEL,1\nBOLT\",2\nA\"B\"C,3\n";
+        ValidationReport report = validate(csv, 2, Map.of(1, "int"));
+        assertTrue(report.isValid(), report.toString());
+        assertEquals(3, report.getRecords());
+    }
+
+    @Test
+    void onlyTheLowestMatchOfAWordIsTrusted() throws IOException {
+        // A match borrows from the byte above it: ',' then '-', '\n' then 0x0B and '"' then '#'
+        // would be reported as matches too if more than the lowest one were used
+        String csv = "a,-1,-2\n\u000B,-3,-4\n\"#\"\"\",-5,-6\n#\"#,-7,-8\n";
+        ValidationReport report = validate(csv, 3, Map.of(1, "int", 2, "int"));
+        assertTrue(report.isValid(), report.toString());
+        assertEquals(4, report.getRecords());
+    }
+
+    @Test
+    void recordsCrossingTheBufferBoundary() throws IOException {
+        ByteBufferPool pool = new ByteBufferPool(16, 1);
+        StringBuilder csv = new StringBuilder("id,amount,text\n");
+        for (int i = 0; i < 40; i++) {
+            // Lengths vary so that every kind of byte ends up at the end of a buffer
+            csv.append(i).append(",").append("9".repeat(i % 9)).append(",\"")
+                    .append("q\n\"\"".repeat(i % 4)).append("\"\n");
+        }
+        csv.append("40,x,\"\"\n");
+        ValidationReport report = validate(csv.toString().getBytes(UTF_8), 3, Map.of(1, "int"), true, pool);
+        assertEquals(41, report.getRecords());
+        // Record i takes 1 + i % 4 lines, after the header
+        long line = 2 + 40 + (40 / 4) * (0 + 1 + 2 + 3);
+        assertEquals(List.of(new ValidationReport.Error(line, 1, "is not an integer: 'x'")), report.getErrors());
+    }
+
+    @Test
+    void recordLargerThanTheBufferGrowsIt() throws IOException {
+        ByteBufferPool pool = new ByteBufferPool(16, 1);
+        String big = "b".repeat(100);
+        String csv = "1,\"" + big + "\n" + big + "\"\n2," + big + "\n3,\"short\"\n4,x\n";
+        ValidationReport report = validate(csv.getBytes(UTF_8), 2, Map.of(0, "int", 1, "maxlen:201"), false, pool);
+        assertEquals(4, report.getRecords());
+        assertTrue(report.isValid(), report.toString());
+
+        ValidationReport tooLong = validate(csv.getBytes(UTF_8), 2, Map.of(1, "maxlen:99"), false, pool);
+        assertEquals(List.of(1L, 3L), tooLong.getErrors().stream().map(ValidationReport.Error::line).toList());
+    }
+
+    @Test
+    void quotedValueSpanningRefills() throws IOException {
+        ByteBufferPool pool = new ByteBufferPool(8, 1);
+        String csv = "1,\"a\"\"b\"\"c\nd\"\n2,\"\"\"\"\n3,\"\n\n\"\n";
+        ValidationReport report = validate(csv.getBytes(UTF_8), 2, Map.of(1, "maxlen:1"), false, pool);
+        // Characters after unescaping: a"b"c<LF>d is 7, " is 1, <LF><LF> is 2
+        assertEquals(3, report.getRecords());
+        assertEquals(List.of(1L, 4L), report.getErrors().stream().map(ValidationReport.Error::line).toList());
+    }
+
+    @Test
+    void unclosedQuoteAtTheEndOfTheFile() throws IOException {
+        ValidationReport report = validate("1,ok\n2,\"open\nstill open\n", 2, Map.of());
+        assertEquals(List.of(new ValidationReport.Error(2, 1, "quoted value is not closed")), report.getErrors());
+    }
+
+    @Test
+    void lastLineWithoutNewline() throws IOException {
+        ValidationReport report = validate("1,2\r\n3,x", 2, Map.of(1, "int"));
+        assertEquals(2, report.getRecords());
+        assertEquals(List.of(new ValidationReport.Error(2, 1, "is not an integer: 'x'")), report.getErrors());
+    }
+
+    @Test
+    void columnCountAndMissingColumns() throws IOException {
+        Map<Integer, String> rules = Map.of(2, "required");
+        ValidationReport report = validate("a,b,c\na,b\na,b,c,d\n", 3, rules);
+        assertEquals(List.of(
+                new ValidationReport.Error(2, -1, "2 columns, expected 3"),
+                new ValidationReport.Error(3, -1, "4 columns, expected 3")), report.getErrors());
+
+        ValidationReport anyCount = validate("a,b,c\na,b\n", 0, rules);
+        assertEquals(List.of(new ValidationReport.Error(2, 2, "is missing")), anyCount.getErrors());
+    }
+
+    @Test
+    void nonAsciiValuesAreMeasuredInCharacters() throws IOException {
+        for (int width = 0; width < 9; width++) {
+            String pad = "p".repeat(width);
+            // Non-ASCII in the first value must not make the ASCII ones after it look longer or invalid
+            String csv = pad + "äöü," + pad + ",ß" + pad + "\n";
+            ValidationReport report = validate(csv, 3,
+                    Map.of(0, "maxlen:" + (width + 3), 1, "maxlen:" + width, 2, "maxlen:" + (width + 1)));
+            assertTrue(report.isValid(), "width " + width + ": " + report);
+        }
+    }
+
+    @Test
+    void invalidBytesAreReportedWithTheirLineAndColumn() throws IOException {
+        for (int width = 0; width < 9; width++) {
+            ByteArrayOutputStream csv = new ByteArrayOutputStream();
+            csv.writeBytes("id,name,city\n1,\"two\nlines\",Zürich\n".getBytes(UTF_8));
+            csv.writeBytes(("2,ok" + "k".repeat(width) + ",").getBytes(UTF_8));
+            csv.writeBytes(new byte[]{'B', (byte) 0xC3, '(', 'n'});
+            csv.writeBytes(",end\n".getBytes(UTF_8));
+            ValidationReport report = validate(csv.toByteArray(), 0, Map.of(), true, ByteBufferPool.shared());
+            assertEquals(1, report.getErrors().size(), "width " + width + ": " + report);
+            ValidationReport.Error error = report.getErrors().get(0);
+            assertEquals(4, error.line());
+            assertEquals(2, error.column());
+            assertTrue(error.message().startsWith("is not valid UTF-8: "), error.message());
+            assertEquals("line 4, column 3", error.toString().substring(0, "line 4, column 3".length()));
+        }
+    }
+
+    @Test
+    void headerIsNotChecked() throws IOException {
+        ValidationReport report = validate("id,amount\n1,2\n".getBytes(UTF_8), 2, Map.of(1, "int"), true,
+                ByteBufferPool.shared());
+        assertTrue(report.isValid());
+        assertEquals(1, report.getRecords());
+    }
+
+    @Test
+    void scanStopsAtMaxErrors() throws IOException {
+        FileValidator validator = new FileValidator(',', '"', UTF_8, 2, Map.of(), 2);
+        ValidationReport report = validator.validate(channel("a\nb\nc\nd\n".getBytes(UTF_8)), false);
+        assertEquals(2, report.getErrors().size());
+        assertTrue(report.isTruncated());
+        assertEquals(2, report.getRecords());
+        assertFalse(report.isValid());
+    }
+
+    private static ValidationReport validate(String csv, int columns, Map<Integer, String> rules) throws IOException {
+        return validate(csv.getBytes(UTF_8), columns, rules, false, ByteBufferPool.shared());
+    }
+
+    private static ValidationReport validate(byte[] csv, int columns, Map<Integer, String> rules,
+                                             boolean skipHeader, ByteBufferPool pool) throws IOException {
+        Map<Integer, ColumnRule> parsed = new HashMap<>();
+        rules.forEach((column, spec) -> parsed.put(column, ColumnRule.parse(spec)));
+        FileValidator validator = new FileValidator(',', '"', UTF_8, columns, parsed, 100, pool);
+        return validator.validate(channel(csv), skipHeader);
+    }
+
+    /** Hands out at most 5 bytes per read, so that refills happen mid-record. */
+    private static ReadableByteChannel channel(byte[] bytes) {
+        ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(bytes));
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                ByteBuffer slice = dst.slice();
+                slice.limit(Math.min(slice.limit(), 5));
+                int n = in.read(slice);
+                if (n > 0) {
+                    dst.position(dst.position() + n);
+                }
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return in.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+}